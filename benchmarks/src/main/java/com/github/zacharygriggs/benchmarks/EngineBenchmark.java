@@ -0,0 +1,58 @@
+package com.github.zacharygriggs.benchmarks;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineEvaluation;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.EvaluationWeights;
+import com.github.zacharygriggs.engine.SearchLimits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full engine search to a fixed depth. The evaluation noise is turned off
+ * so every invocation searches the same tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    @Param({BenchmarkPositions.START, BenchmarkPositions.KIWIPETE,
+            BenchmarkPositions.MIDDLEGAME, BenchmarkPositions.ENDGAME})
+    public String position;
+
+    @Param({"1", "2", "3"})
+    public int depth;
+
+    private ChessEngine engine;
+    private ChessPosition pos;
+
+    @Setup
+    public void setUp() {
+        engine = new ChessEngine(depth, EngineSettings.BEST_MOVE);
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        engine.setWeights(weights);
+        pos = BenchmarkPositions.get(position);
+    }
+
+    @Benchmark
+    public EngineEvaluation evaluate() {
+        return engine.evaluate(pos, pos.getSideToMove(), SearchLimits.depth(depth));
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.zacharygriggs.benchmarks;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.helper.MovementHelper;
+import com.github.zacharygriggs.chess.pieces.ChessPiece;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the movement predicates over every pair of squares, and candidate
+ * square generation over every piece of a position.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MovementHelperBenchmark {
+
+    private static final int PAIRS = 64 * 64;
+
+    @Param({BenchmarkPositions.START, BenchmarkPositions.KIWIPETE})
+    public String position;
+
+    private ChessCoordinate[] coordinates;
+    private ChessPosition pos;
+    private List<ChessPiece> pieces;
+    private int[] candidates;
+
+    @Setup
+    public void setUp() {
+        coordinates = new ChessCoordinate[64];
+        for (int square = 0; square < 64; square++) {
+            coordinates[square] = ChessCoordinate.fromIndex(square);
+        }
+        pos = BenchmarkPositions.get(position);
+        pieces = pos.getPieces();
+        candidates = new int[MovementHelper.MAX_CANDIDATES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void validRookMove(Blackhole blackhole) {
+        for (ChessCoordinate from : coordinates) {
+            for (ChessCoordinate to : coordinates) {
+                blackhole.consume(MovementHelper.validRookMove(from, to));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void validBishopMove(Blackhole blackhole) {
+        for (ChessCoordinate from : coordinates) {
+            for (ChessCoordinate to : coordinates) {
+                blackhole.consume(MovementHelper.validBishopMove(from, to));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void validKnightMove(Blackhole blackhole) {
+        for (ChessCoordinate from : coordinates) {
+            for (ChessCoordinate to : coordinates) {
+                blackhole.consume(MovementHelper.validKnightMove(from, to));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void validQueenMove(Blackhole blackhole) {
+        for (ChessCoordinate from : coordinates) {
+            for (ChessCoordinate to : coordinates) {
+                blackhole.consume(MovementHelper.validQueenMove(from, to));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void validKingMove(Blackhole blackhole) {
+        for (ChessCoordinate from : coordinates) {
+            for (ChessCoordinate to : coordinates) {
+                blackhole.consume(MovementHelper.validKingMove(from, to));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void emptyBetween(Blackhole blackhole) {
+        for (ChessCoordinate from : coordinates) {
+            for (ChessCoordinate to : coordinates) {
+                blackhole.consume(MovementHelper.emptyBetween(pos, from, to));
+            }
+        }
+    }
+
+    @Benchmark
+    public int candidateSquares() {
+        int total = 0;
+        for (ChessPiece piece : pieces) {
+            total += MovementHelper.candidateSquares(pos, piece, candidates);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.zacharygriggs.benchmarks;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the basic operations on a position: generating legal moves, making a move,
+ * testing for check and looking up squares.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PositionBenchmark {
+
+    @Param({BenchmarkPositions.START, BenchmarkPositions.KIWIPETE,
+            BenchmarkPositions.MIDDLEGAME, BenchmarkPositions.ENDGAME})
+    public String position;
+
+    private ChessPosition pos;
+    private ChessPlayer toMove;
+    private List<ChessMove> moves;
+    private ChessCoordinate[] coordinates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        pos = BenchmarkPositions.get(position);
+        toMove = pos.getSideToMove();
+        moves = pos.findLegalMoves(toMove);
+        coordinates = new ChessCoordinate[64];
+        for (int square = 0; square < 64; square++) {
+            coordinates[square] = ChessCoordinate.fromIndex(square);
+        }
+    }
+
+    @Benchmark
+    public List<ChessMove> findLegalMoves() {
+        return pos.findLegalMoves(toMove);
+    }
+
+    @Benchmark
+    public boolean noLegalMoves() {
+        return pos.noLegalMoves(toMove);
+    }
+
+    /**
+     * Makes each legal move in turn, one per invocation.
+     */
+    @Benchmark
+    public ChessPosition positionAfterMove() {
+        ChessMove move = moves.get(next);
+        next = next + 1 == moves.size() ? 0 : next + 1;
+        ChessPosition after = pos.positionAfterMove(move);
+        after.updateAllPieces();
+        return after;
+    }
+
+    @Benchmark
+    public boolean inCheck() {
+        return pos.inCheck(toMove);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public void pieceAtCoordinate(Blackhole blackhole) {
+        for (ChessCoordinate coordinate : coordinates) {
+            blackhole.consume(pos.pieceAt(coordinate));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public void pieceAtSquare(Blackhole blackhole) {
+        for (int square = 0; square < 64; square++) {
+            blackhole.consume(pos.pieceAt(square));
+        }
+    }
+
+    @Benchmark
+    public long zobristKey() {
+        // Copying drops the cached key, so this measures a copy plus computing the key.
+        return new ChessPosition(pos).getZobristKey(toMove);
+    }
+}
@@ -15,16 +15,46 @@ public class ChessBoard {
 
     private ChessPosition currentPosition;
     private ChessPlayer movingPlayer;
-    private int fiftyMoveRuleCounter = 0;
     private List<ChessMove> history;
+    // Zobrist key of every position in the game so far, the current one last.
+    private long[] positionKeys;
+    private int positionCount;
+    // Result of the current position, worked out once per move.
+    private ChessResult result;
+    // Undo record of each move in the history, the last move's on top.
+    private long[] undoRecords;
+    // Moves taken back and not yet replayed, the next one to redo last.
+    private List<ChessMove> redoMoves;
+    // Copy of the position every SNAPSHOT_INTERVAL plies along the current line, the first being the start.
+    private List<ChessPosition> snapshots;
+
+    private static final int SNAPSHOT_INTERVAL = 16;
 
     /**
      * Creates a chess board with the starting position.
      */
     public ChessBoard() {
+        this(ChessPosition.startingPosition());
+    }
+
+    /**
+     * Creates a chess board that continues a game from a position,
+     * for example one read with {@link ChessPosition#fromFen(CharSequence)}.
+     * Positions before this one are not known, so they do not count towards repetitions.
+     *
+     * @param position Position to play from. The board plays on a copy, so it is not changed.
+     */
+    public ChessBoard(ChessPosition position) {
         this.history = new ArrayList<>();
-        this.currentPosition = ChessPosition.startingPosition();
-        this.movingPlayer = ChessPlayer.WHITE;
+        this.currentPosition = new ChessPosition(position);
+        this.movingPlayer = position.getSideToMove();
+        this.positionKeys = new long[64];
+        this.undoRecords = new long[64];
+        this.redoMoves = new ArrayList<>();
+        this.snapshots = new ArrayList<>();
+        this.snapshots.add(new ChessPosition(position));
+        recordPositionKey();
+        this.result = computeGameResult(currentPosition.inCheck(movingPlayer));
     }
 
     /**
@@ -40,7 +70,6 @@ public class ChessBoard {
 
     /**
      * Determines if the game's over.
-     * Stubbed.
      *
      * @return True if game's over; false if not.
      */
@@ -62,31 +91,18 @@ public class ChessBoard {
      * @return  True if either player has material to checkmate. False if not (and it is a draw)
      */
     private boolean hasSufficientMaterial() {
-
-        int whiteBishopCount = 0;
-        int whiteKnightCount = 0;
-        int blackBishopCount = 0;
-        int blackKnightCount = 0;
-        for (ChessPiece piece : currentPosition.getPieces()) {
-            if (piece instanceof Queen || piece instanceof Pawn || piece instanceof Rook) {
-                // Any of these on any side can force checkmate.
+        // Any of these on any side can force checkmate.
+        for (ChessPlayer player : ChessPlayer.values()) {
+            if (currentPosition.countPieces(player, ChessPiece.QUEEN) > 0
+                    || currentPosition.countPieces(player, ChessPiece.PAWN) > 0
+                    || currentPosition.countPieces(player, ChessPiece.ROOK) > 0) {
                 return true;
             }
-            if (piece instanceof Knight) {
-                if (piece.getOwner() == ChessPlayer.WHITE) {
-                    whiteKnightCount++;
-                } else {
-                    blackKnightCount++;
-                }
-            }
-            if (piece instanceof Bishop) {
-                if (piece.getOwner() == ChessPlayer.WHITE) {
-                    whiteBishopCount++;
-                } else {
-                    blackBishopCount++;
-                }
-            }
         }
+        int whiteBishopCount = currentPosition.countPieces(ChessPlayer.WHITE, ChessPiece.BISHOP);
+        int whiteKnightCount = currentPosition.countPieces(ChessPlayer.WHITE, ChessPiece.KNIGHT);
+        int blackBishopCount = currentPosition.countPieces(ChessPlayer.BLACK, ChessPiece.BISHOP);
+        int blackKnightCount = currentPosition.countPieces(ChessPlayer.BLACK, ChessPiece.KNIGHT);
         // Two of any minor piece can checkmate.
         if (whiteBishopCount > 1 || whiteKnightCount > 1 || blackBishopCount > 1 || blackKnightCount > 1) {
             return true;
@@ -101,59 +117,82 @@ public class ChessBoard {
 
     /**
      * Gets the chess result of the current position.
+     * The result is worked out when a move is played, so this is cheap to call.
      *
      * @return A result saying whether the game is ongoing, over, etc.
      */
     public ChessResult getGameResult() {
-        ChessResult res = ChessResult.ONGOING; // Assume ongoing by default.
-        // Check for a victory or stalemate by either side.
-        // If it's a player's turn and they have no moves, the game is over.
-        // If the player with no moves is in check, then it's a checkmate.
-        // If the player isn't in check it's a stalemate.
-        if (movingPlayer == ChessPlayer.WHITE) {
-            if (currentPosition.noLegalMoves(ChessPlayer.WHITE)) {
-                if (currentPosition.inCheck(ChessPlayer.WHITE)) {
-                    res = ChessResult.BLACK_WINS;
-                } else {
-                    res = ChessResult.STALEMATE; // Stalemate
-                }
-            }
+        return result;
+    }
+
+    /**
+     * Works out the chess result of the current position.
+     * The draws are checked first, as they decide the result whenever they apply
+     * and are cheap to find. Only then are the moving player's moves looked at.
+     *
+     * @param inCheck Whether the moving player is in check
+     * @return A result saying whether the game is ongoing, over, etc.
+     */
+    private ChessResult computeGameResult(boolean inCheck) {
+        // Threefold repetition - if the same position has occurred three times
+        // with the same player to move, then it's a draw.
+        if (isThreefoldRepetition()) {
+            return ChessResult.REPETITION_DRAW;
         }
-        if (movingPlayer == ChessPlayer.BLACK) {
-            if (currentPosition.noLegalMoves(ChessPlayer.BLACK)) {
-                if (currentPosition.inCheck(ChessPlayer.BLACK)) {
-                    res = ChessResult.WHITE_WINS;
-                } else {
-                    res = ChessResult.STALEMATE; // Stalemate
-                }
-            }
+
+        // 50-Move Rule: if there are 50 moves in a row by each player without a pawn move
+        // or a capture, then the game is drawn.
+        if (currentPosition.getHalfmoveClock() >= 100) {
+            return ChessResult.FIFTY_MOVE_DRAW;
         }
 
         // If neither side has material enough to win the game, it's a book draw.
         // An example is King + Bishop vs King.
         // Cannot checkmate under any circumstance, therefore we'll call it a draw now.
         if (!hasSufficientMaterial()) {
-            res = ChessResult.INSUFFICIENT_MATERIAL;
+            return ChessResult.INSUFFICIENT_MATERIAL;
         }
 
-        // 50-Move Rule: if there are 50 moves in a row without a pawn move or a capture
-        // Then the game is drawn.
-        if (fiftyMoveRuleCounter >= 50) {
-            res = ChessResult.FIFTY_MOVE_DRAW;
+        // Check for a victory or stalemate by either side.
+        // If it's a player's turn and they have no moves, the game is over.
+        // If the player with no moves is in check, then it's a checkmate.
+        // If the player isn't in check it's a stalemate.
+        if (currentPosition.noLegalMoves(movingPlayer)) {
+            if (!inCheck) {
+                return ChessResult.STALEMATE;
+            }
+            return movingPlayer == ChessPlayer.WHITE ? ChessResult.BLACK_WINS : ChessResult.WHITE_WINS;
         }
+        return ChessResult.ONGOING;
+    }
 
-        // Threefold repetition - if the last 6 moves are the same (3 from each side)
-        // Then it's a draw.
-        // The logic is a bit weird here...
-        if (history.size() > 7) {
-            int lastHistory = history.size() - 1;
-            if (history.get(lastHistory).equals(history.get(lastHistory - 2)) &&
-                    history.get(lastHistory - 1).equals(history.get(lastHistory - 3)) &&
-                    history.get(lastHistory - 4).equals(history.get(lastHistory - 6))) {
-                res = ChessResult.REPETITION_DRAW;
+    /**
+     * Determines if the current position has occurred at least twice before.
+     * Only positions since the last capture or pawn move can repeat, and only every
+     * other position has the same player to move.
+     *
+     * @return True if the current position has now occurred three times.
+     */
+    private boolean isThreefoldRepetition() {
+        int current = positionCount - 1;
+        long key = positionKeys[current];
+        int occurrences = 1;
+        for (int i = current - 2; i >= 0 && i >= current - currentPosition.getHalfmoveClock(); i -= 2) {
+            if (positionKeys[i] == key && ++occurrences >= 3) {
+                return true;
             }
         }
-        return res;
+        return false;
+    }
+
+    /**
+     * Records the key of the current position in the game's key history.
+     */
+    private void recordPositionKey() {
+        if (positionCount == positionKeys.length) {
+            positionKeys = Arrays.copyOf(positionKeys, positionCount * 2);
+        }
+        positionKeys[positionCount++] = currentPosition.getZobristKey(movingPlayer);
     }
 
     /**
@@ -198,30 +237,133 @@ public class ChessBoard {
         // generating the PGN report after the game.
         move.setCapture(isThisACapture);
         move.setPieceIdentity(isPieceAt.get().identity());
-        // Execute the move, update the position.
-        currentPosition = currentPosition.positionAfterMove(move);
-        currentPosition.updateAllPieces();
+        // Playing the move that was taken back keeps the rest of the line for redo.
+        // Any other move starts a new line.
+        if (!redoMoves.isEmpty() && redoMoves.get(redoMoves.size() - 1).equals(move)) {
+            redoMoves.remove(redoMoves.size() - 1);
+        } else {
+            redoMoves.clear();
+            int kept = history.size() / SNAPSHOT_INTERVAL + 1;
+            snapshots.subList(Math.min(kept, snapshots.size()), snapshots.size()).clear();
+        }
+        ChessPosition before = currentPosition;
+        playMove(move);
         // Update metadata that's only known after the move.
-        if (getGameResult() == ChessResult.BLACK_WINS ||
-                getGameResult() == ChessResult.WHITE_WINS) {
+        boolean check = currentPosition.inCheck(movingPlayer);
+        result = computeGameResult(check);
+        move.setCheck(check);
+        if (result == ChessResult.BLACK_WINS || result == ChessResult.WHITE_WINS) {
             move.setCheckmate(true);
         }
-        if (currentPosition.inCheck(MiscHelper.opposite(movingPlayer))) {
-            move.setCheck(true);
+        move.setSan(San.write(before, move, check, check && (result == ChessResult.BLACK_WINS
+                || result == ChessResult.WHITE_WINS)));
+        return true;
+    }
+
+    /**
+     * Plays a move known to be legal, and records it in the game's history.
+     * Does not work out the game result.
+     *
+     * @param move Move to play
+     */
+    private void playMove(ChessMove move) {
+        int ply = history.size();
+        if (ply == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, ply * 2);
         }
+        undoRecords[ply] = currentPosition.undoRecord(move);
+        // Execute the move, update the position.
+        currentPosition = currentPosition.positionAfterMove(move);
+        currentPosition.updateAllPieces();
         // Switch moving player
         movingPlayer = MiscHelper.opposite(movingPlayer);
-        // Account for the 50 move rule.
-        fiftyMoveRuleCounter++;
-        if (movingPiece instanceof Pawn || isThisACapture) {
-            fiftyMoveRuleCounter = 0;
-        }
+        recordPositionKey();
         // Track this for the game's report generation
         history.add(move);
-        currentPosition.setTurn(currentPosition.getTurn() + 1);
+        if ((ply + 1) % SNAPSHOT_INTERVAL == 0 && snapshots.size() == (ply + 1) / SNAPSHOT_INTERVAL) {
+            snapshots.add(new ChessPosition(currentPosition));
+        }
+    }
+
+    /**
+     * Takes back a move without working out the game result.
+     */
+    private void takeBackMove() {
+        int ply = history.size() - 1;
+        currentPosition = currentPosition.positionBeforeMove(undoRecords[ply]);
+        movingPlayer = MiscHelper.opposite(movingPlayer);
+        positionCount--;
+        redoMoves.add(history.remove(ply));
+    }
+
+    /**
+     * Takes back the last move. It can be played again with {@link #redo()}.
+     *
+     * @return True if a move was taken back; false if no moves have been played.
+     */
+    public boolean undo() {
+        if (history.isEmpty()) {
+            return false;
+        }
+        takeBackMove();
+        result = computeGameResult(currentPosition.inCheck(movingPlayer));
+        return true;
+    }
+
+    /**
+     * Plays the last move taken back again.
+     *
+     * @return True if a move was played; false if there is nothing to redo.
+     */
+    public boolean redo() {
+        if (redoMoves.isEmpty()) {
+            return false;
+        }
+        playMove(redoMoves.remove(redoMoves.size() - 1));
+        result = computeGameResult(currentPosition.inCheck(movingPlayer));
         return true;
     }
 
+    /**
+     * Moves to any ply of the game, taking back or replaying moves as needed.
+     * Going back far starts from the nearest snapshot and replays up to the ply,
+     * so it never costs more than a few moves.
+     *
+     * @param ply Number of half moves from the start of the game, up to the last move that can be redone
+     */
+    public void goToPly(int ply) {
+        int last = history.size() + redoMoves.size();
+        if (ply < 0 || ply > last) {
+            throw new IllegalArgumentException("Ply " + ply + " is not between 0 and " + last);
+        }
+        int snapshotPly = ply / SNAPSHOT_INTERVAL * SNAPSHOT_INTERVAL;
+        if (ply < history.size() && history.size() - ply > ply - snapshotPly + 1) {
+            // Restore the snapshot. The moves after it go on the redo stack, latest first.
+            for (int i = history.size() - 1; i >= snapshotPly; i--) {
+                redoMoves.add(history.remove(i));
+            }
+            currentPosition = new ChessPosition(snapshots.get(snapshotPly / SNAPSHOT_INTERVAL));
+            movingPlayer = currentPosition.getSideToMove();
+            positionCount = snapshotPly + 1;
+        }
+        while (history.size() > ply) {
+            takeBackMove();
+        }
+        while (history.size() < ply) {
+            playMove(redoMoves.remove(redoMoves.size() - 1));
+        }
+        result = computeGameResult(currentPosition.inCheck(movingPlayer));
+    }
+
+    /**
+     * Provides the number of half moves played so far.
+     *
+     * @return  Current ply
+     */
+    public int getPly() {
+        return history.size();
+    }
+
     /**
      * Gets the current player who should move now.
      *
@@ -268,4 +410,23 @@ public class ChessBoard {
     public List<ChessMove> getHistory() {
         return history;
     }
+
+    /**
+     * Provides the Zobrist key of every position reached in the game,
+     * from the starting position up to and including the current one.
+     *
+     * @return  Position keys, oldest first
+     */
+    public long[] getPositionKeys() {
+        return Arrays.copyOf(positionKeys, positionCount);
+    }
+
+    /**
+     * Provides the number of half moves since the last capture or pawn move.
+     *
+     * @return  Half move clock for the fifty move rule
+     */
+    public int getHalfmoveClock() {
+        return currentPosition.getHalfmoveClock();
+    }
 }
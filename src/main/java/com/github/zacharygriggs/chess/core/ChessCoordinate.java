@@ -57,6 +57,16 @@ public class ChessCoordinate {
         checkValidCoordinate();
     }
 
+    /**
+     * Creates the coordinate of a square index.
+     *
+     * @param index Square index, from 0 (a1) to 63 (h8)
+     * @return Coordinate of that square
+     */
+    public static ChessCoordinate fromIndex(int index) {
+        return new ChessCoordinate((char) ('a' + (index & 7)), (index >> 3) + 1);
+    }
+
     public int getRank() {
         return rank;
     }
@@ -73,6 +83,16 @@ public class ChessCoordinate {
         this.file = file;
     }
 
+    /**
+     * Gets the index of this square, counting from 0 (a1) to 63 (h8)
+     * along each rank in turn.
+     *
+     * @return Square index
+     */
+    public int getIndex() {
+        return (file - 'a') + 8 * (rank - 1);
+    }
+
     public String toString() {
         return file + "" + rank;
     }
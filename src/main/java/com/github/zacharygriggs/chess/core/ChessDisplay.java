@@ -241,7 +241,7 @@ public class ChessDisplay extends Canvas {
             return;
         }
         if(whichPlayer == ChessPlayer.BLACK) {
-            EngineEvaluation eval = engine.evaluate(board.getPosition(), whichPlayer);
+            EngineEvaluation eval = engine.evaluate(board);
             board.submitMove(eval.getBestMove());
             System.out.println("Made Engine move: " + eval.getBestMove().getFrom() + " - " + eval.getBestMove().getTo());
             lastOpponentMoveFromX = (eval.getBestMove().getFrom().getFile() - 'a');
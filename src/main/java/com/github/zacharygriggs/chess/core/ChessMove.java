@@ -9,6 +9,8 @@ public class ChessMove {
      */
     private ChessCoordinate from;
     private ChessCoordinate to;
+    // Identity of the piece a pawn promotes to, e.g. "N". Null promotes to a queen.
+    private String promotion;
 
     /**
      * Metadata set by the chess board itself.
@@ -21,6 +23,7 @@ public class ChessMove {
     private String pieceIdentity;
     private boolean isCheckmate;
     private boolean isCheck;
+    private String san;
 
     public ChessMove() {
 
@@ -47,13 +50,32 @@ public class ChessMove {
         this.to = to;
     }
 
+    public String getPromotion() {
+        return promotion;
+    }
+
+    public void setPromotion(String promotion) {
+        this.promotion = promotion;
+    }
+
+    /**
+     * Gets the identity of the piece a pawn promotes to with this move,
+     * should the move be a promotion.
+     *
+     * @return Promotion piece identity, "Q" unless another piece was chosen
+     */
+    public String promotionIdentity() {
+        return promotion == null ? "Q" : promotion.toUpperCase();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ChessMove chessMove = (ChessMove) o;
         return Objects.equals(from, chessMove.from) &&
-                Objects.equals(to, chessMove.to);
+                Objects.equals(to, chessMove.to) &&
+                promotionIdentity().equals(chessMove.promotionIdentity());
     }
 
     @Override
@@ -61,7 +83,23 @@ public class ChessMove {
         return Objects.hash(from, to);
     }
 
+    /**
+     * Gets the move in Standard Algebraic Notation, as set by the board when the move was played.
+     *
+     * @return The move in SAN, or null if the move was not played on a board
+     */
+    public String getSan() {
+        return san;
+    }
+
+    public void setSan(String san) {
+        this.san = san;
+    }
+
     public String toString() {
+        if(san != null) {
+            return san;
+        }
         StringBuilder sb = new StringBuilder();
         // Leave out the piece identity if it's a pawn since it's assumed.
         if(pieceIdentity != null && !pieceIdentity.equalsIgnoreCase("P")) {
@@ -72,6 +110,9 @@ public class ChessMove {
             sb.append("x");
         }
         sb.append(to.toString());
+        if(promotion != null) {
+            sb.append("=").append(promotion.toUpperCase());
+        }
         if(isCheckmate) {
             sb.append("#");
         } else if(isCheck) {
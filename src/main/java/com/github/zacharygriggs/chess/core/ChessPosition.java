@@ -2,33 +2,75 @@ package com.github.zacharygriggs.chess.core;
 
 import com.github.zacharygriggs.chess.data.ChessConstants;
 import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.helper.MovementHelper;
 import com.github.zacharygriggs.chess.pieces.*;
 
 import java.util.*;
 
 public class ChessPosition {
 
+    // Castling rights, as bits of the castling rights mask.
+    public static final int WHITE_SHORT_CASTLE = 1 << Zobrist.WHITE_SHORT_CASTLE;
+    public static final int WHITE_LONG_CASTLE = 1 << Zobrist.WHITE_LONG_CASTLE;
+    public static final int BLACK_SHORT_CASTLE = 1 << Zobrist.BLACK_SHORT_CASTLE;
+    public static final int BLACK_LONG_CASTLE = 1 << Zobrist.BLACK_LONG_CASTLE;
+    public static final int ALL_CASTLING = WHITE_SHORT_CASTLE | WHITE_LONG_CASTLE
+            | BLACK_SHORT_CASTLE | BLACK_LONG_CASTLE;
+    public static final int NO_EN_PASSANT = -1;
+
+    // Castling rights kept when a piece moves from or to each square. Anything leaving
+    // or landing on a king or rook home square loses the rights that depend on it.
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_KEPT, ALL_CASTLING);
+        CASTLING_KEPT[0] &= ~WHITE_LONG_CASTLE;
+        CASTLING_KEPT[4] &= ~(WHITE_SHORT_CASTLE | WHITE_LONG_CASTLE);
+        CASTLING_KEPT[7] &= ~WHITE_SHORT_CASTLE;
+        CASTLING_KEPT[56] &= ~BLACK_LONG_CASTLE;
+        CASTLING_KEPT[60] &= ~(BLACK_SHORT_CASTLE | BLACK_LONG_CASTLE);
+        CASTLING_KEPT[63] &= ~BLACK_SHORT_CASTLE;
+    }
+
+    // Pieces a pawn can promote to, best first.
+    private static final String[] PROMOTIONS = {"Q", "R", "B", "N"};
+
     private List<ChessPiece> pieces;
+    // Mailbox lookup of the pieces list, indexed by ChessCoordinate.getIndex()
+    private ChessPiece[] squares;
+    // Number of pieces of each type, White's types first and then Black's
+    private int[] pieceCounts = new int[2 * ChessPiece.TYPE_COUNT];
+    // Zobrist key of the pieces, castling rights and en passant square, computed on demand
+    private long key;
+    private boolean keyValid;
     private Map<ChessPlayer, List<ChessPiece>> capturedPieces;
-    private int turn = 1;
+    private ChessPlayer sideToMove = ChessPlayer.WHITE;
+    private int castlingRights;
+    // Square a pawn just passed over by moving two squares, where it can be captured en passant
+    private int enPassantSquare = NO_EN_PASSANT;
+    // Half moves since the last capture or pawn move
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
 
     /**
      * Initializes a new (empty) position.
      */
     public ChessPosition() {
         pieces = new ArrayList<>();
+        squares = new ChessPiece[64];
         capturedPieces = new HashMap<>();
         capturedPieces.put(ChessPlayer.WHITE, new ArrayList<>());
         capturedPieces.put(ChessPlayer.BLACK, new ArrayList<>());
     }
 
     public ChessPosition(ChessPosition old) {
-        pieces = new ArrayList<>();
+        pieces = new ArrayList<>(old.pieces.size());
+        squares = new ChessPiece[64];
         capturedPieces = new HashMap<>();
         for(ChessPiece piece : old.pieces) {
             ChessPiece newPiece = piece.copy();
             newPiece.setPosition(this);
-            pieces.add(newPiece);
+            addPiece(newPiece);
         }
         for(ChessPlayer player : old.capturedPieces.keySet()) {
             List<ChessPiece> capturedPiecesList = new ArrayList<>();
@@ -37,7 +79,11 @@ public class ChessPosition {
             }
             capturedPieces.put(player, capturedPiecesList);
         }
-        this.turn = old.turn;
+        this.sideToMove = old.sideToMove;
+        this.castlingRights = old.castlingRights;
+        this.enPassantSquare = old.enPassantSquare;
+        this.halfmoveClock = old.halfmoveClock;
+        this.fullmoveNumber = old.fullmoveNumber;
     }
 
     /**
@@ -47,7 +93,7 @@ public class ChessPosition {
      * @param coordinate    Coordinate to add to
      */
     private void addPawn(ChessPlayer player, String coordinate) {
-        pieces.add(new Pawn(this, player, coordinate));
+        addPiece(new Pawn(this, player, coordinate));
     }
 
     /**
@@ -57,7 +103,7 @@ public class ChessPosition {
      * @param coordinate    Coordinate to add to
      */
     private void addKnight(ChessPlayer player, String coordinate) {
-        pieces.add(new Knight(this, player, coordinate));
+        addPiece(new Knight(this, player, coordinate));
     }
 
     /**
@@ -67,7 +113,7 @@ public class ChessPosition {
      * @param coordinate    Coordinate to add to
      */
     private void addBishop(ChessPlayer player, String coordinate) {
-        pieces.add(new Bishop(this, player, coordinate));
+        addPiece(new Bishop(this, player, coordinate));
     }
 
     /**
@@ -77,7 +123,7 @@ public class ChessPosition {
      * @param coordinate    Coordinate to add to
      */
     private void addQueen(ChessPlayer player, String coordinate) {
-        pieces.add(new Queen(this, player, coordinate));
+        addPiece(new Queen(this, player, coordinate));
     }
 
     /**
@@ -87,7 +133,7 @@ public class ChessPosition {
      * @param coordinate    Coordinate to add to
      */
     private void addKing(ChessPlayer player, String coordinate) {
-        pieces.add(new King(this, player, coordinate));
+        addPiece(new King(this, player, coordinate));
     }
 
     /**
@@ -97,7 +143,7 @@ public class ChessPosition {
      * @param coordinate    Coordinate to add to
      */
     private void addRook(ChessPlayer player, String coordinate) {
-        pieces.add(new Rook(this, player, coordinate));
+        addPiece(new Rook(this, player, coordinate));
     }
 
     /**
@@ -110,11 +156,98 @@ public class ChessPosition {
      */
     public ChessPosition positionAfterMove(ChessMove move) {
         ChessPosition newPos = new ChessPosition(this);
-        Optional<ChessPiece> optPiece = newPos.pieceAt(move.getFrom());
-        optPiece.ifPresent(chessPiece -> chessPiece.move(move.getTo()));
+        int from = move.getFrom().getIndex();
+        int to = move.getTo().getIndex();
+        ChessPiece piece = newPos.squares[from];
+        if(piece == null) {
+            return newPos;
+        }
+        boolean pawnMove = piece instanceof Pawn;
+        boolean capture = squares[to] != null || (pawnMove && (from & 7) != (to & 7));
+        // The piece checks en passant captures against the old square, so it is replaced afterwards.
+        piece.move(move.getTo());
+        if(pawnMove && move.getPromotion() != null && newPos.squares[to] instanceof Queen) {
+            newPos.underpromote(newPos.squares[to], move.promotionIdentity());
+        }
+        newPos.enPassantSquare = pawnMove && Math.abs(to - from) == 16 ? (from + to) / 2 : NO_EN_PASSANT;
+        newPos.castlingRights &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        newPos.halfmoveClock = pawnMove || capture ? 0 : halfmoveClock + 1;
+        if(piece.getOwner() == ChessPlayer.BLACK) {
+            newPos.fullmoveNumber++;
+        }
+        newPos.sideToMove = piece.getOwner() == ChessPlayer.WHITE ? ChessPlayer.BLACK : ChessPlayer.WHITE;
+        newPos.keyValid = false;
         return newPos;
     }
 
+    /**
+     * Records what it takes to take back a move, before the move is made.
+     *
+     * @param move  Move about to be made from this position
+     * @return      Undo record for {@link #positionBeforeMove(long)}
+     */
+    public long undoRecord(ChessMove move) {
+        int from = move.getFrom().getIndex();
+        int to = move.getTo().getIndex();
+        ChessPiece mover = squares[from];
+        boolean pawnMove = mover instanceof Pawn;
+        int capturedSquare = to;
+        ChessPiece captured = squares[to];
+        if(captured == null && pawnMove && (from & 7) != (to & 7)) {
+            // En passant: the captured pawn is beside the mover, not on the destination.
+            capturedSquare = (from & ~7) | (to & 7);
+            captured = squares[capturedSquare];
+        }
+        int capturedType = captured == null ? UndoRecord.NO_CAPTURE : UndoRecord.typeOf(captured);
+        boolean promotion = pawnMove && (to >> 3 == 0 || to >> 3 == 7);
+        return UndoRecord.pack(from, to, capturedSquare, capturedType, promotion,
+                castlingRights, enPassantSquare, halfmoveClock);
+    }
+
+    /**
+     * Calculates what the position was before the move that led to it.
+     *
+     * @param record    Undo record taken with {@link #undoRecord(ChessMove)} before the move
+     * @return          New Chess Position before that move.
+     */
+    public ChessPosition positionBeforeMove(long record) {
+        ChessPosition oldPos = new ChessPosition(this);
+        int from = UndoRecord.from(record);
+        int to = UndoRecord.to(record);
+        ChessPiece mover = oldPos.squares[to];
+        ChessPlayer owner = mover.getOwner();
+        if(UndoRecord.promotion(record)) {
+            oldPos.removePiece(mover);
+            oldPos.addPiece(new Pawn(oldPos, owner, ChessCoordinate.fromIndex(from)));
+        } else {
+            mover.forceMove(ChessCoordinate.fromIndex(from));
+        }
+        if(mover instanceof King && Math.abs(to - from) == 2) {
+            // Castling: put the rook back in its corner too.
+            boolean kingside = to > from;
+            ChessPiece rook = oldPos.squares[kingside ? to - 1 : to + 1];
+            rook.forceMove(ChessCoordinate.fromIndex(kingside ? from + 3 : from - 4));
+        }
+        int capturedType = UndoRecord.capturedType(record);
+        if(capturedType != UndoRecord.NO_CAPTURE) {
+            ChessPlayer victimOwner = owner == ChessPlayer.WHITE ? ChessPlayer.BLACK : ChessPlayer.WHITE;
+            oldPos.addPiece(UndoRecord.create(capturedType, oldPos, victimOwner, UndoRecord.capturedSquare(record)));
+            List<ChessPiece> captured = oldPos.capturedPieces.get(owner);
+            if(!captured.isEmpty()) {
+                captured.remove(captured.size() - 1);
+            }
+        }
+        oldPos.sideToMove = owner;
+        oldPos.castlingRights = UndoRecord.castlingRights(record);
+        oldPos.enPassantSquare = UndoRecord.enPassantSquare(record);
+        oldPos.halfmoveClock = UndoRecord.halfmoveClock(record);
+        if(owner == ChessPlayer.BLACK) {
+            oldPos.fullmoveNumber--;
+        }
+        oldPos.keyValid = false;
+        return oldPos;
+    }
+
     /**
      * Creates the starting chess position.
      *
@@ -143,6 +276,7 @@ public class ChessPosition {
         pos.addBishop(ChessPlayer.BLACK, "f8");
         pos.addQueen(ChessPlayer.BLACK, "d8");
         pos.addKing(ChessPlayer.BLACK, "e8");
+        pos.castlingRights = ALL_CASTLING;
         return pos;
     }
 
@@ -152,6 +286,60 @@ public class ChessPosition {
 
     public void setPieces(List<ChessPiece> pieces) {
         this.pieces = pieces;
+        this.squares = new ChessPiece[64];
+        this.pieceCounts = new int[2 * ChessPiece.TYPE_COUNT];
+        for(ChessPiece piece : pieces) {
+            squares[piece.getCoordinate().getIndex()] = piece;
+            pieceCounts[countIndex(piece)]++;
+        }
+        this.keyValid = false;
+    }
+
+    /**
+     * Adds a piece to the board on its coordinate.
+     *
+     * @param piece Piece to add
+     */
+    private void addPiece(ChessPiece piece) {
+        pieces.add(piece);
+        squares[piece.getCoordinate().getIndex()] = piece;
+        pieceCounts[countIndex(piece)]++;
+        keyValid = false;
+    }
+
+    private static int countIndex(ChessPiece piece) {
+        return countIndex(piece.getOwner(), piece.getType());
+    }
+
+    private static int countIndex(ChessPlayer owner, int type) {
+        return owner == ChessPlayer.WHITE ? type : type + ChessPiece.TYPE_COUNT;
+    }
+
+    /**
+     * Counts the pieces of one type a player has. The counts are kept as pieces are
+     * added and removed, so this does not look at the pieces.
+     *
+     * @param owner     Player to count for
+     * @param type      Type of piece, e.g. ChessPiece.KNIGHT
+     * @return          Number of such pieces on the board
+     */
+    public int countPieces(ChessPlayer owner, int type) {
+        return pieceCounts[countIndex(owner, type)];
+    }
+
+    /**
+     * Keeps the square lookup in step when a piece on this board changes coordinate.
+     *
+     * @param piece Piece that moved
+     * @param from  Coordinate it left
+     * @param to    Coordinate it arrived on
+     */
+    public void pieceMoved(ChessPiece piece, ChessCoordinate from, ChessCoordinate to) {
+        if(squares[from.getIndex()] == piece) {
+            squares[from.getIndex()] = null;
+        }
+        squares[to.getIndex()] = piece;
+        keyValid = false;
     }
 
     /**
@@ -162,12 +350,17 @@ public class ChessPosition {
      * @return              Optional of piece, or empty optional.
      */
     public Optional<ChessPiece> pieceAt(ChessCoordinate coordinate) {
-        for(ChessPiece piece: pieces) {
-            if(piece.getCoordinate().equals(coordinate)) {
-                return Optional.of(piece);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(squares[coordinate.getIndex()]);
+    }
+
+    /**
+     * Finds the piece on the given square without allocating.
+     *
+     * @param square    Square index, as from ChessCoordinate.getIndex()
+     * @return          Piece on that square, or null if it's empty.
+     */
+    public ChessPiece pieceAt(int square) {
+        return squares[square];
     }
 
     public void addCapturedPiece(ChessPlayer owner, ChessPiece whichPiece) {
@@ -250,7 +443,11 @@ public class ChessPosition {
     public List<ChessPiece> getAttackers(ChessCoordinate square, ChessPlayer whichPlayer) {
         List<ChessPiece> attackers = new ArrayList<>();
         for(ChessPiece piece : pieces) {
-            if(piece.getOwner() == whichPlayer && piece.canMoveNoLegalCheck(square)) {
+            if(piece.getOwner() != whichPlayer) {
+                continue;
+            }
+            // A pawn attacks diagonally even when the square is empty, unlike how it moves.
+            if(piece instanceof Pawn ? ((Pawn) piece).attacks(square) : piece.canMoveNoLegalCheck(square)) {
                 attackers.add(piece);
             }
         }
@@ -276,14 +473,24 @@ public class ChessPosition {
      */
     public List<ChessMove> findLegalMoves(ChessPlayer whichPlayer) {
         List<ChessMove> moves = new ArrayList<>();
+        int[] candidates = new int[MovementHelper.MAX_CANDIDATES];
         for(ChessPiece piece : pieces) {
             if(whichPlayer == piece.getOwner()) {
-                for(char file : ChessConstants.VALID_FILES) {
-                    for(int rank: ChessConstants.VALID_RANKS_W_PERSPECTIVE) {
-                        if(piece.canMove(new ChessCoordinate(file, rank))) {
+                int count = MovementHelper.candidateSquares(this, piece, candidates);
+                for(int i = 0; i < count; i++) {
+                    ChessCoordinate destination = ChessCoordinate.fromIndex(candidates[i]);
+                    if(piece.canMove(destination)) {
+                        if(piece instanceof Pawn && (candidates[i] >> 3 == 0 || candidates[i] >> 3 == 7)) {
+                            // One move for each piece the pawn can become, the queen first.
+                            for(String promotion : PROMOTIONS) {
+                                ChessMove move = new ChessMove(piece.getCoordinate(), destination);
+                                move.setPromotion(promotion);
+                                moves.add(move);
+                            }
+                        } else {
                             ChessMove move = new ChessMove();
                             move.setFrom(piece.getCoordinate());
-                            move.setTo(new ChessCoordinate(file, rank));
+                            move.setTo(destination);
                             moves.add(move);
                         }
                     }
@@ -301,17 +508,13 @@ public class ChessPosition {
      */
     public boolean noLegalMoves(ChessPlayer whichPlayer) {
         // Code duplicated intentionally for early exit.
+        int[] candidates = new int[MovementHelper.MAX_CANDIDATES];
         for(ChessPiece piece : pieces) {
             if(whichPlayer == piece.getOwner()) {
-                for(char file : ChessConstants.VALID_FILES) {
-                    for(int rank: ChessConstants.VALID_RANKS_W_PERSPECTIVE) {
-                        try {
-                            if (piece.canMove(new ChessCoordinate(file, rank))) {
-                                return false;
-                            }
-                        } catch (Exception ex) {
-                            ex.printStackTrace();
-                        }
+                int count = MovementHelper.candidateSquares(this, piece, candidates);
+                for(int i = 0; i < count; i++) {
+                    if(piece.canMove(ChessCoordinate.fromIndex(candidates[i]))) {
+                        return false;
                     }
                 }
             }
@@ -325,7 +528,14 @@ public class ChessPosition {
      * @param whichPiece    Piece to remove.
      */
     public void removePiece(ChessPiece whichPiece) {
-        pieces.remove(whichPiece);
+        if(pieces.remove(whichPiece)) {
+            pieceCounts[countIndex(whichPiece)]--;
+        }
+        int square = whichPiece.getCoordinate().getIndex();
+        if(squares[square] == whichPiece) {
+            squares[square] = null;
+        }
+        keyValid = false;
     }
 
     public void updateAllPieces() {
@@ -338,10 +548,39 @@ public class ChessPosition {
         ChessCoordinate coord = pawn.getCoordinate();
         ChessPlayer owner = pawn.getOwner();
         this.removePiece(pawn);
-        this.pieces.add(new Queen(this, owner, coord));
+        this.addPiece(new Queen(this, owner, coord));
         updateAllPieces();
     }
 
+    /**
+     * Swaps a freshly promoted queen for the piece the player chose instead.
+     *
+     * @param queen     Queen the pawn became
+     * @param identity  Identity of the chosen piece: "R", "B" or "N"
+     */
+    private void underpromote(ChessPiece queen, String identity) {
+        ChessCoordinate coord = queen.getCoordinate();
+        ChessPlayer owner = queen.getOwner();
+        ChessPiece chosen;
+        switch (identity) {
+            case "R":
+                chosen = new Rook(this, owner, coord);
+                break;
+            case "B":
+                chosen = new Bishop(this, owner, coord);
+                break;
+            case "N":
+                chosen = new Knight(this, owner, coord);
+                break;
+            case "Q":
+                return;
+            default:
+                throw new IllegalArgumentException("Cannot promote to " + identity);
+        }
+        removePiece(queen);
+        addPiece(chosen);
+    }
+
     /**
      * Gets numeric value of material for a player.
      *
@@ -358,11 +597,148 @@ public class ChessPosition {
         return mat;
     }
 
-    public int getTurn() {
-        return turn;
+    /**
+     * Gets the Zobrist key of this position. Positions with the same pieces on the
+     * same squares, the same castling rights, the same en passant capture and the same
+     * player to move have the same key.
+     *
+     * @param toMove    Player to move in this position
+     * @return          Zobrist key
+     */
+    public long getZobristKey(ChessPlayer toMove) {
+        if(!keyValid) {
+            long pieceKey = 0;
+            for(int i = 0; i < pieces.size(); i++) {
+                ChessPiece piece = pieces.get(i);
+                pieceKey ^= Zobrist.pieceKey(piece, piece.getCoordinate().getIndex());
+            }
+            for(int right = 0; right < 4; right++) {
+                if((castlingRights & (1 << right)) != 0) {
+                    pieceKey ^= Zobrist.castlingKey(right);
+                }
+            }
+            if(canCaptureEnPassant()) {
+                pieceKey ^= Zobrist.enPassantKey(enPassantSquare & 7);
+            }
+            key = pieceKey;
+            keyValid = true;
+        }
+        return key ^ Zobrist.sideKey(toMove);
+    }
+
+    /**
+     * Determines if a pawn can actually capture on the en passant square. Only then does
+     * the square make a difference to the position.
+     *
+     * @return          True if an en passant capture is available.
+     */
+    private boolean canCaptureEnPassant() {
+        if(enPassantSquare == NO_EN_PASSANT) {
+            return false;
+        }
+        // The pawn that moved two squares stands just past the en passant square.
+        boolean whitePassed = enPassantSquare >> 3 == 2;
+        int passedPawn = whitePassed ? enPassantSquare + 8 : enPassantSquare - 8;
+        ChessPlayer capturer = whitePassed ? ChessPlayer.BLACK : ChessPlayer.WHITE;
+        int file = passedPawn & 7;
+        return (file > 0 && isPawnOf(squares[passedPawn - 1], capturer))
+                || (file < 7 && isPawnOf(squares[passedPawn + 1], capturer));
+    }
+
+    private static boolean isPawnOf(ChessPiece piece, ChessPlayer owner) {
+        return piece instanceof Pawn && piece.getOwner() == owner;
+    }
+
+    /**
+     * Reads a position from Forsyth-Edwards Notation.
+     *
+     * @param fen       FEN of the position
+     * @return          The position
+     * @throws IllegalArgumentException If the FEN is not valid
+     */
+    public static ChessPosition fromFen(CharSequence fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * Writes this position in Forsyth-Edwards Notation.
+     *
+     * @return          FEN of this position
+     */
+    public String toFen() {
+        return Fen.write(this);
+    }
+
+    /**
+     * Gets the player to move. This is White in a new position, and changes with every move made.
+     *
+     * @return          Player to move
+     */
+    public ChessPlayer getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(ChessPlayer sideToMove) {
+        this.sideToMove = sideToMove;
+    }
+
+    /**
+     * Determines if a castling right is still held. Holding the right does not mean
+     * castling is possible right now, only that the king and rook have not moved.
+     *
+     * @param right     Castling right, e.g. {@link #WHITE_SHORT_CASTLE}
+     * @return          True if the right is held.
+     */
+    public boolean hasCastlingRight(int right) {
+        return (castlingRights & right) != 0;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        this.castlingRights = castlingRights;
+        this.keyValid = false;
+    }
+
+    /**
+     * Gets the square a pawn passed over on the last move by moving two squares.
+     *
+     * @return          Square index, or {@link #NO_EN_PASSANT} if the last move was not a two square pawn move.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        this.enPassantSquare = enPassantSquare;
+        this.keyValid = false;
+    }
+
+    /**
+     * Gets the number of half moves since the last capture or pawn move.
+     *
+     * @return          Half move clock for the fifty move rule
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Gets the number of the current move. It starts at 1 and goes up after each move by Black.
+     *
+     * @return          Full move number
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
     }
 
-    public void setTurn(int turn) {
-        this.turn = turn;
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
     }
 }
@@ -0,0 +1,397 @@
+package com.github.zacharygriggs.chess.core;
+
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g. the starting position
+ * "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+ * <p>
+ * Both directions walk the characters directly, without regular expressions, splitting
+ * or substrings, so the only objects created are the position and its pieces when
+ * reading, and nothing beyond the output when writing into a StringBuilder.
+ * <p>
+ * The half move clock and full move number are optional when reading, as they are
+ * left out in EPD files. They default to 0 and 1.
+ */
+public final class Fen {
+
+    private Fen() {}
+
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Most characters a FEN can take: 64 pieces with separators, then the other fields.
+    private static final int MAX_LENGTH = 128;
+
+    /**
+     * Reads a position.
+     *
+     * @param fen FEN of the position. Surrounding whitespace is ignored.
+     * @return The position
+     * @throws IllegalArgumentException If the FEN is not valid
+     */
+    public static ChessPosition parse(CharSequence fen) {
+        return parse(fen, 0, fen.length());
+    }
+
+    /**
+     * Reads a position from part of a longer text.
+     *
+     * @param text  Text holding the FEN
+     * @param start Index of the first character of the FEN
+     * @param end   Index after the last character of the FEN. Only whitespace may follow the FEN before it.
+     * @return The position
+     * @throws IllegalArgumentException If the FEN is not valid
+     */
+    public static ChessPosition parse(CharSequence text, int start, int end) {
+        int i = skipSpaces(text, start, end);
+        ChessPosition position = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>(32);
+
+        // Piece placement, from a8 to h1 one rank at a time.
+        int rank = 8;
+        int file = 0;
+        int whiteKings = 0;
+        int blackKings = 0;
+        for (; i < end && text.charAt(i) != ' '; i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (file != 8 || rank == 1) {
+                    throw invalid(text, start, end, "Rank " + rank + " does not have eight squares");
+                }
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                if (file >= 8) {
+                    throw invalid(text, start, end, "Rank " + rank + " has more than eight squares");
+                }
+                pieces.add(createPiece(position, c, file, rank, text, start, end));
+                if (c == 'K') {
+                    whiteKings++;
+                } else if (c == 'k') {
+                    blackKings++;
+                }
+                file++;
+            }
+            if (file > 8) {
+                throw invalid(text, start, end, "Rank " + rank + " has more than eight squares");
+            }
+        }
+        if (rank != 1 || file != 8) {
+            throw invalid(text, start, end, "The board does not have eight full ranks");
+        }
+        if (whiteKings != 1 || blackKings != 1) {
+            throw invalid(text, start, end, "Each side must have exactly one king");
+        }
+        position.setPieces(pieces);
+
+        // Side to move
+        i = expectSpace(text, i, end, start);
+        char side = i < end ? text.charAt(i++) : ' ';
+        if (side == 'w') {
+            position.setSideToMove(ChessPlayer.WHITE);
+        } else if (side == 'b') {
+            position.setSideToMove(ChessPlayer.BLACK);
+        } else {
+            throw invalid(text, start, end, "Side to move must be w or b");
+        }
+
+        // Castling rights
+        i = expectSpace(text, i, end, start);
+        int rights = 0;
+        if (i < end && text.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < end && text.charAt(i) != ' '; i++) {
+                rights |= castlingRight(text.charAt(i), text, start, end);
+            }
+            if (rights == 0) {
+                throw invalid(text, start, end, "Missing castling rights");
+            }
+        }
+        position.setCastlingRights(rights);
+
+        // En passant square
+        i = expectSpace(text, i, end, start);
+        if (i < end && text.charAt(i) == '-') {
+            i++;
+        } else {
+            if (i + 1 >= end) {
+                throw invalid(text, start, end, "Missing en passant square");
+            }
+            char epFile = text.charAt(i);
+            char epRank = text.charAt(i + 1);
+            if (epFile < 'a' || epFile > 'h' || (epRank != '3' && epRank != '6')) {
+                throw invalid(text, start, end, "Invalid en passant square");
+            }
+            position.setEnPassantSquare((epFile - 'a') + 8 * (epRank - '1'));
+            i += 2;
+        }
+
+        // Optional move counters
+        i = skipSpaces(text, i, end);
+        if (i < end) {
+            int clockEnd = digitsEnd(text, i, end);
+            position.setHalfmoveClock(readNumber(text, i, clockEnd, start, end));
+            i = skipSpaces(text, clockEnd, end);
+            if (i < end) {
+                int moveEnd = digitsEnd(text, i, end);
+                int fullmove = readNumber(text, i, moveEnd, start, end);
+                if (fullmove < 1) {
+                    throw invalid(text, start, end, "The move number starts at 1");
+                }
+                position.setFullmoveNumber(fullmove);
+                i = skipSpaces(text, moveEnd, end);
+            }
+        }
+        if (i < end) {
+            throw invalid(text, start, end, "Unexpected text after the FEN");
+        }
+        return position;
+    }
+
+    /**
+     * Reads a position from one line of ASCII text in a buffer, such as a memory mapped file
+     * of FENs. Reads from the buffer's position up to the end of the line or the buffer's
+     * limit, and leaves the buffer's position after the line ending.
+     *
+     * @param buffer Buffer to read from
+     * @return The position
+     * @throws IllegalArgumentException If the line is not a valid FEN
+     */
+    public static ChessPosition parse(ByteBuffer buffer) {
+        int start = buffer.position();
+        int lineEnd = start;
+        while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        buffer.position(lineEnd < buffer.limit() ? lineEnd + 1 : lineEnd);
+        if (lineEnd > start && buffer.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        return parse(new AsciiSequence(buffer, start, lineEnd - start), 0, lineEnd - start);
+    }
+
+    /**
+     * Finds where a FEN inside a longer text ends, such as a line of an EPD file where
+     * operations follow the FEN. The FEN ends after the en passant field, or after the
+     * move counters if they follow.
+     *
+     * @param text  Text holding the FEN
+     * @param start Index of the first character of the FEN
+     * @param end   Index after the last character of the text
+     * @return Index after the last character of the FEN
+     */
+    public static int findEnd(CharSequence text, int start, int end) {
+        int i = skipSpaces(text, start, end);
+        // Placement, side to move, castling and en passant.
+        for (int field = 0; field < 4; field++) {
+            i = skipSpaces(text, i, end);
+            while (i < end && text.charAt(i) != ' ') {
+                i++;
+            }
+        }
+        // The counters are only there if both are numbers.
+        int clockStart = skipSpaces(text, i, end);
+        int clockEnd = digitsEnd(text, clockStart, end);
+        int moveStart = skipSpaces(text, clockEnd, end);
+        int moveEnd = digitsEnd(text, moveStart, end);
+        boolean counters = clockEnd > clockStart && moveEnd > moveStart
+                && (clockEnd == end || text.charAt(clockEnd) == ' ')
+                && (moveEnd == end || text.charAt(moveEnd) == ' ');
+        return counters ? moveEnd : i;
+    }
+
+    /**
+     * Writes a position.
+     *
+     * @param position Position to write
+     * @return FEN of the position
+     */
+    public static String write(ChessPosition position) {
+        StringBuilder sb = new StringBuilder(MAX_LENGTH);
+        write(position, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Writes a position to the end of a builder. Reusing one builder for
+     * many positions writes them without allocating.
+     *
+     * @param position Position to write
+     * @param out      Builder to write to
+     */
+    public static void write(ChessPosition position, StringBuilder out) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                ChessPiece piece = position.pieceAt(file + 8 * rank);
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char letter = piece.identity().charAt(0);
+                out.append(piece.getOwner() == ChessPlayer.WHITE ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (rank > 0) {
+                out.append('/');
+            }
+        }
+        out.append(position.getSideToMove() == ChessPlayer.WHITE ? " w " : " b ");
+        int rights = position.getCastlingRights();
+        if (rights == 0) {
+            out.append('-');
+        } else {
+            if ((rights & ChessPosition.WHITE_SHORT_CASTLE) != 0) {
+                out.append('K');
+            }
+            if ((rights & ChessPosition.WHITE_LONG_CASTLE) != 0) {
+                out.append('Q');
+            }
+            if ((rights & ChessPosition.BLACK_SHORT_CASTLE) != 0) {
+                out.append('k');
+            }
+            if ((rights & ChessPosition.BLACK_LONG_CASTLE) != 0) {
+                out.append('q');
+            }
+        }
+        out.append(' ');
+        int ep = position.getEnPassantSquare();
+        if (ep == ChessPosition.NO_EN_PASSANT) {
+            out.append('-');
+        } else {
+            out.append((char) ('a' + (ep & 7))).append((char) ('1' + (ep >> 3)));
+        }
+        out.append(' ').append(position.getHalfmoveClock())
+                .append(' ').append(position.getFullmoveNumber());
+    }
+
+    private static ChessPiece createPiece(ChessPosition position, char c, int file, int rank,
+                                          CharSequence text, int start, int end) {
+        ChessPlayer owner = c < 'a' ? ChessPlayer.WHITE : ChessPlayer.BLACK;
+        char fileLetter = (char) ('a' + file);
+        switch (Character.toLowerCase(c)) {
+            case 'p':
+                if (rank == 1 || rank == 8) {
+                    throw invalid(text, start, end, "Pawn on rank " + rank);
+                }
+                return new Pawn(position, owner, fileLetter, rank);
+            case 'n':
+                return new Knight(position, owner, fileLetter, rank);
+            case 'b':
+                return new Bishop(position, owner, fileLetter, rank);
+            case 'r':
+                return new Rook(position, owner, fileLetter, rank);
+            case 'q':
+                return new Queen(position, owner, fileLetter, rank);
+            case 'k':
+                return new King(position, owner, fileLetter, rank);
+            default:
+                throw invalid(text, start, end, "Invalid piece '" + c + "'");
+        }
+    }
+
+    private static int castlingRight(char c, CharSequence text, int start, int end) {
+        switch (c) {
+            case 'K':
+                return ChessPosition.WHITE_SHORT_CASTLE;
+            case 'Q':
+                return ChessPosition.WHITE_LONG_CASTLE;
+            case 'k':
+                return ChessPosition.BLACK_SHORT_CASTLE;
+            case 'q':
+                return ChessPosition.BLACK_LONG_CASTLE;
+            default:
+                throw invalid(text, start, end, "Invalid castling right '" + c + "'");
+        }
+    }
+
+    private static int skipSpaces(CharSequence text, int i, int end) {
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int expectSpace(CharSequence text, int i, int end, int start) {
+        if (i >= end || text.charAt(i) != ' ') {
+            throw invalid(text, start, end, "Missing field");
+        }
+        return skipSpaces(text, i, end);
+    }
+
+    private static int digitsEnd(CharSequence text, int i, int end) {
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int readNumber(CharSequence text, int from, int to, int start, int end) {
+        if (from == to || to - from > 6) {
+            throw invalid(text, start, end, "Invalid move counter");
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, int start, int end, String reason) {
+        return new IllegalArgumentException(reason + ": " + text.subSequence(start, end));
+    }
+
+    /**
+     * Characters of ASCII bytes in a buffer, read in place.
+     */
+    private static final class AsciiSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                sb.append(charAt(i));
+            }
+            return sb.toString();
+        }
+    }
+}
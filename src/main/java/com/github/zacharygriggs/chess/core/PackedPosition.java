@@ -0,0 +1,233 @@
+package com.github.zacharygriggs.chess.core;
+
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes positions as 32 bytes each, with a score and a game result, for files of
+ * many millions of positions such as training data.
+ * <pre>
+ *  0 occupancy:long  bit i set if square i holds a piece, a1 being 0 and h8 63
+ *  8 pieces:16 bytes a nibble per piece in square order, low nibble first:
+ *                    0-5 for a White pawn, knight, bishop, rook, queen, king, 8-13 for Black's
+ * 24 flags:byte      bit 0 set if Black is to move, bits 1-4 the castling rights
+ * 25 enPassant:byte  en passant square, or 255 if none
+ * 26 halfmove:byte   half move clock, at most 255
+ * 27 result:byte     one of the result codes
+ * 28 score:short     score in centipawns from White's point of view
+ * 30 fullmove:short  full move number
+ * </pre>
+ * Positions are read and written straight from and to a buffer, which may be a memory-mapped
+ * file, so the only objects created are the position and its pieces when reading, and none
+ * when writing. Numbers are in the byte order of the buffer, big-endian unless it was changed.
+ */
+public final class PackedPosition {
+
+    private PackedPosition() {}
+
+    /**
+     * Size of a packed position.
+     */
+    public static final int BYTES = 32;
+
+    // Game results.
+    public static final int UNKNOWN_RESULT = 0;
+    public static final int WHITE_WINS = 1;
+    public static final int DRAW = 2;
+    public static final int BLACK_WINS = 3;
+
+    private static final String PIECES = "PNBRQK";
+    private static final int BLACK = 8;
+    private static final int NO_EN_PASSANT = 0xFF;
+
+    /**
+     * Writes a position at the buffer's position, and moves the position past it.
+     *
+     * @param position Position, with at most 32 pieces
+     * @param score    Score in centipawns from White's point of view, clamped to a short
+     * @param result   Result code of the game the position is from
+     * @param out      Buffer with at least {@link #BYTES} remaining
+     * @throws IllegalArgumentException If the position has more than 32 pieces
+     */
+    public static void write(ChessPosition position, int score, int result, ByteBuffer out) {
+        write(position, score, result, out, out.position());
+        out.position(out.position() + BYTES);
+    }
+
+    /**
+     * Writes a position at an index of a buffer, leaving the buffer's position as it is.
+     *
+     * @param position Position, with at most 32 pieces
+     * @param score    Score in centipawns from White's point of view, clamped to a short
+     * @param result   Result code of the game the position is from
+     * @param out      Buffer
+     * @param index    Index of the first byte to write
+     * @throws IllegalArgumentException If the position has more than 32 pieces
+     */
+    public static void write(ChessPosition position, int score, int result, ByteBuffer out, int index) {
+        if (result < UNKNOWN_RESULT || result > BLACK_WINS) {
+            throw new IllegalArgumentException("Unknown result code: " + result);
+        }
+        long occupancy = 0;
+        long low = 0;
+        long high = 0;
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = position.pieceAt(square);
+            if (piece == null) {
+                continue;
+            }
+            if (count == 32) {
+                throw new IllegalArgumentException("More than 32 pieces cannot be packed");
+            }
+            long code = PIECES.indexOf(piece.identity().charAt(0)) | (piece.getOwner() == ChessPlayer.WHITE ? 0 : BLACK);
+            if (count < 16) {
+                low |= code << (4 * count);
+            } else {
+                high |= code << (4 * (count - 16));
+            }
+            occupancy |= 1L << square;
+            count++;
+        }
+        out.putLong(index, occupancy);
+        // The nibbles go out byte by byte, so their order does not depend on the buffer's.
+        for (int i = 0; i < 8; i++) {
+            out.put(index + 8 + i, (byte) (low >>> (8 * i)));
+            out.put(index + 16 + i, (byte) (high >>> (8 * i)));
+        }
+        int flags = (position.getSideToMove() == ChessPlayer.WHITE ? 0 : 1) | (position.getCastlingRights() & 0xF) << 1;
+        out.put(index + 24, (byte) flags);
+        int enPassant = position.getEnPassantSquare();
+        out.put(index + 25, (byte) (enPassant == ChessPosition.NO_EN_PASSANT ? NO_EN_PASSANT : enPassant));
+        out.put(index + 26, (byte) Math.min(255, position.getHalfmoveClock()));
+        out.put(index + 27, (byte) result);
+        out.putShort(index + 28, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+        out.putShort(index + 30, (short) Math.min(0xFFFF, position.getFullmoveNumber()));
+    }
+
+    /**
+     * Reads a position at the buffer's position, and moves the position past it.
+     *
+     * @param in Buffer with at least {@link #BYTES} remaining
+     * @return The position
+     * @throws IllegalArgumentException If the bytes are not a packed position
+     */
+    public static ChessPosition read(ByteBuffer in) {
+        ChessPosition position = read(in, in.position());
+        in.position(in.position() + BYTES);
+        return position;
+    }
+
+    /**
+     * Reads a position at an index of a buffer, leaving the buffer's position as it is.
+     *
+     * @param in    Buffer
+     * @param index Index of the first byte to read
+     * @return The position
+     * @throws IllegalArgumentException If the bytes are not a packed position
+     */
+    public static ChessPosition read(ByteBuffer in, int index) {
+        long occupancy = in.getLong(index);
+        if (Long.bitCount(occupancy) > 32) {
+            throw new IllegalArgumentException("More than 32 pieces in a packed position");
+        }
+        ChessPosition position = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>(Long.bitCount(occupancy));
+        for (int count = 0; occupancy != 0; count++, occupancy &= occupancy - 1) {
+            int square = Long.numberOfTrailingZeros(occupancy);
+            pieces.add(createPiece(position, pieceCode(in, index, count), square));
+        }
+        position.setPieces(pieces);
+        int flags = in.get(index + 24);
+        position.setSideToMove((flags & 1) == 0 ? ChessPlayer.WHITE : ChessPlayer.BLACK);
+        position.setCastlingRights(flags >> 1 & 0xF);
+        int enPassant = in.get(index + 25) & 0xFF;
+        position.setEnPassantSquare(enPassant == NO_EN_PASSANT ? ChessPosition.NO_EN_PASSANT : enPassant);
+        position.setHalfmoveClock(in.get(index + 26) & 0xFF);
+        position.setFullmoveNumber(Math.max(1, in.getShort(index + 30) & 0xFFFF));
+        return position;
+    }
+
+    private static ChessPiece createPiece(ChessPosition position, int code, int square) {
+        ChessPlayer owner = (code & BLACK) == 0 ? ChessPlayer.WHITE : ChessPlayer.BLACK;
+        char file = (char) ('a' + (square & 7));
+        int rank = (square >> 3) + 1;
+        switch (code & 7) {
+            case 0:
+                return new Pawn(position, owner, file, rank);
+            case 1:
+                return new Knight(position, owner, file, rank);
+            case 2:
+                return new Bishop(position, owner, file, rank);
+            case 3:
+                return new Rook(position, owner, file, rank);
+            case 4:
+                return new Queen(position, owner, file, rank);
+            case 5:
+                return new King(position, owner, file, rank);
+            default:
+                throw new IllegalArgumentException("Invalid piece code " + code + " in a packed position");
+        }
+    }
+
+    /**
+     * Reads only the score of a packed position.
+     *
+     * @param in    Buffer
+     * @param index Index of the first byte of the position
+     * @return Score in centipawns from White's point of view
+     */
+    public static int score(ByteBuffer in, int index) {
+        return in.getShort(index + 28);
+    }
+
+    /**
+     * Reads only the result of a packed position.
+     *
+     * @param in    Buffer
+     * @param index Index of the first byte of the position
+     * @return Result code
+     */
+    public static int result(ByteBuffer in, int index) {
+        return in.get(index + 27);
+    }
+
+    /**
+     * Reads only whether Black is to move in a packed position.
+     *
+     * @param in    Buffer
+     * @param index Index of the first byte of the position
+     * @return True if Black is to move
+     */
+    public static boolean blackToMove(ByteBuffer in, int index) {
+        return (in.get(index + 24) & 1) != 0;
+    }
+
+    /**
+     * Reads only the code of one piece of a packed position: 0 to 5 for a White pawn, knight,
+     * bishop, rook, queen or king, 8 to 13 for Black's.
+     *
+     * @param in    Buffer
+     * @param index Index of the first byte of the position
+     * @param piece Which piece, counting the occupied squares from a1
+     * @return Piece code
+     */
+    public static int pieceCode(ByteBuffer in, int index, int piece) {
+        return in.get(index + 8 + piece / 2) >> (4 * (piece & 1)) & 0xF;
+    }
+
+    /**
+     * Reads only which squares hold pieces, for scanning many positions without reading them.
+     *
+     * @param in    Buffer
+     * @param index Index of the first byte of the position
+     * @return Bit i set if square i holds a piece
+     */
+    public static long occupancy(ByteBuffer in, int index) {
+        return in.getLong(index);
+    }
+}
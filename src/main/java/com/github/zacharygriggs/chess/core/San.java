@@ -0,0 +1,254 @@
+package com.github.zacharygriggs.chess.core;
+
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.ChessPiece;
+
+import java.util.List;
+
+/**
+ * Reads and writes moves in Standard Algebraic Notation, e.g. "Nbd7", "exd6", "e8=Q+" or "O-O".
+ * <p>
+ * Both directions only look at the pieces that could make the move, never at every legal
+ * move of the position. Writing into a StringBuilder allocates nothing but the legality
+ * check of a second piece that could reach the same square.
+ */
+public final class San {
+
+    private San() {}
+
+    // Piece identities, indexed by their letter's position in " KQRBN".
+    private static final String[] PIECES = {"P", "K", "Q", "R", "B", "N"};
+
+    /**
+     * Finds the legal move a SAN move stands for. Check and annotation marks after
+     * the move are ignored, as is a missing "=" before a promotion piece.
+     * <p>
+     * Only the pieces that could make the move are tried, so this does not generate
+     * every legal move of the position.
+     *
+     * @param position Position the move is played from, with the mover to move
+     * @param san      The move
+     * @return The move
+     * @throws IllegalArgumentException If the text is not a legal move, or could be more than one
+     */
+    public static ChessMove parse(ChessPosition position, CharSequence san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        ChessPlayer side = position.getSideToMove();
+        if (isCastle(san, end, 3)) {
+            return castle(position, side, 'g', san);
+        } else if (isCastle(san, end, 5)) {
+            return castle(position, side, 'c', san);
+        }
+        int i = 0;
+        String identity = "P";
+        if (end > 0 && "KQRBN".indexOf(san.charAt(0)) >= 0) {
+            identity = PIECES[" KQRBN".indexOf(san.charAt(0))];
+            i++;
+        }
+        String promotion = null;
+        int squareEnd = end;
+        if (identity.equals("P") && squareEnd > 2 && "QRBN".indexOf(san.charAt(squareEnd - 1)) >= 0) {
+            promotion = PIECES[" KQRBN".indexOf(san.charAt(squareEnd - 1))];
+            squareEnd -= san.charAt(squareEnd - 2) == '=' ? 2 : 1;
+        }
+        if (squareEnd - i < 2) {
+            throw invalid(san, "no destination square");
+        }
+        ChessCoordinate to = square(san.charAt(squareEnd - 2), san.charAt(squareEnd - 1), san);
+        // Whatever is left between the piece and the destination disambiguates the mover.
+        char fromFile = 0;
+        int fromRank = 0;
+        for (int j = i; j < squareEnd - 2; j++) {
+            char c = san.charAt(j);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c;
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '0';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                throw invalid(san, "unexpected '" + c + "'");
+            }
+        }
+        ChessPiece found = null;
+        List<ChessPiece> pieces = position.getPieces();
+        for (int p = 0; p < pieces.size(); p++) {
+            ChessPiece piece = pieces.get(p);
+            ChessCoordinate from = piece.getCoordinate();
+            if (piece.getOwner() != side || !piece.identity().equals(identity)
+                    || (fromFile != 0 && from.getFile() != fromFile)
+                    || (fromRank != 0 && from.getRank() != fromRank)
+                    || !piece.canMove(to)) {
+                continue;
+            }
+            if (found != null) {
+                throw invalid(san, "ambiguous");
+            }
+            found = piece;
+        }
+        if (found == null) {
+            throw invalid(san, "not a legal move");
+        }
+        ChessMove move = new ChessMove(found.getCoordinate(), to);
+        if (identity.equals("P") && (to.getRank() == 1 || to.getRank() == 8)) {
+            move.setPromotion(promotion == null ? "Q" : promotion);
+        } else if (promotion != null) {
+            throw invalid(san, "only a pawn reaching the last rank promotes");
+        }
+        return move;
+    }
+
+    /**
+     * Writes a move, working out whether it checks or mates.
+     *
+     * @param position Position the move is played from
+     * @param move     Legal move
+     * @return The move in SAN
+     */
+    public static String write(ChessPosition position, ChessMove move) {
+        ChessPosition after = position.positionAfterMove(move);
+        after.updateAllPieces();
+        ChessPlayer opponent = after.getSideToMove();
+        boolean check = after.inCheck(opponent);
+        return write(position, move, check, check && after.noLegalMoves(opponent));
+    }
+
+    /**
+     * Writes a move whose check and mate are already known.
+     *
+     * @param position  Position the move is played from
+     * @param move      Legal move
+     * @param check     Whether the move gives check
+     * @param checkmate Whether the move gives checkmate
+     * @return The move in SAN
+     */
+    public static String write(ChessPosition position, ChessMove move, boolean check, boolean checkmate) {
+        StringBuilder out = new StringBuilder(8);
+        write(position, move, check, checkmate, out);
+        return out.toString();
+    }
+
+    /**
+     * Writes a move whose check and mate are already known.
+     *
+     * @param position  Position the move is played from
+     * @param move      Legal move
+     * @param check     Whether the move gives check
+     * @param checkmate Whether the move gives checkmate
+     * @param out       Receives the move in SAN
+     */
+    public static void write(ChessPosition position, ChessMove move, boolean check, boolean checkmate,
+                             StringBuilder out) {
+        int from = move.getFrom().getIndex();
+        int to = move.getTo().getIndex();
+        ChessPiece mover = position.pieceAt(from);
+        if (mover == null) {
+            throw new IllegalArgumentException("No piece on " + move.getFrom());
+        }
+        String identity = mover.identity();
+        boolean capture = position.pieceAt(to) != null;
+        if (identity.equals("K") && Math.abs(to - from) == 2) {
+            out.append(to > from ? "O-O" : "O-O-O");
+        } else if (identity.equals("P")) {
+            if ((from & 7) != (to & 7)) {
+                // A pawn changing file always captures, en passant included.
+                out.append(file(from)).append('x');
+            }
+            out.append(file(to)).append(rank(to));
+            if (to >> 3 == 0 || to >> 3 == 7) {
+                out.append('=').append(move.promotionIdentity());
+            }
+        } else {
+            out.append(identity);
+            appendDisambiguation(position, mover, move.getTo(), out);
+            if (capture) {
+                out.append('x');
+            }
+            out.append(file(to)).append(rank(to));
+        }
+        if (checkmate) {
+            out.append('#');
+        } else if (check) {
+            out.append('+');
+        }
+    }
+
+    /**
+     * Adds the file, rank or square of the mover when another piece of its kind can also
+     * move to the destination: the file if that tells them apart, else the rank, else both.
+     */
+    private static void appendDisambiguation(ChessPosition position, ChessPiece mover, ChessCoordinate to,
+                                             StringBuilder out) {
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        ChessCoordinate from = mover.getCoordinate();
+        List<ChessPiece> pieces = position.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            ChessPiece other = pieces.get(i);
+            if (other == mover || other.getOwner() != mover.getOwner() || other.getClass() != mover.getClass()
+                    || !other.canMove(to)) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= other.getCoordinate().getFile() == from.getFile();
+            sameRank |= other.getCoordinate().getRank() == from.getRank();
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            out.append(from.getFile());
+        } else if (!sameRank) {
+            out.append(from.getRank());
+        } else {
+            out.append(from.getFile()).append(from.getRank());
+        }
+    }
+
+    private static char file(int square) {
+        return (char) ('a' + (square & 7));
+    }
+
+    private static char rank(int square) {
+        return (char) ('1' + (square >> 3));
+    }
+
+    private static boolean isCastle(CharSequence san, int end, int length) {
+        if (end != length) {
+            return false;
+        }
+        char o = san.charAt(0);
+        for (int i = 0; i < length; i++) {
+            char expected = i % 2 == 0 ? o : '-';
+            if ((o != 'O' && o != '0') || san.charAt(i) != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ChessMove castle(ChessPosition position, ChessPlayer side, char toFile, CharSequence san) {
+        ChessPiece king = position.getKing(side);
+        ChessCoordinate from = king.getCoordinate();
+        if (from.getFile() == 'e') {
+            ChessCoordinate to = new ChessCoordinate(toFile, from.getRank());
+            if (king.canMove(to)) {
+                return new ChessMove(from, to);
+            }
+        }
+        throw invalid(san, "castling is not legal");
+    }
+
+    private static ChessCoordinate square(char file, char rank, CharSequence san) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            throw invalid(san, "no destination square");
+        }
+        return new ChessCoordinate(file, rank - '0');
+    }
+
+    private static IllegalArgumentException invalid(CharSequence san, String reason) {
+        return new IllegalArgumentException("Invalid move \"" + san + "\": " + reason);
+    }
+}
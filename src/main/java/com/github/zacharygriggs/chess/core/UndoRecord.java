@@ -0,0 +1,113 @@
+package com.github.zacharygriggs.chess.core;
+
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+
+/**
+ * Packs what it takes to take back a move into a single long, so a game's undo
+ * stack is a plain long array.
+ * <p>
+ * Layout, lowest bits first: from square (6), to square (6), square of the captured piece (6),
+ * type of the captured piece (3, 0 for none), promotion flag (1), castling rights before
+ * the move (4), en passant square before the move plus one (7, 0 for none) and half move
+ * clock before the move (16).
+ */
+final class UndoRecord {
+
+    private UndoRecord() {}
+
+    static final int NO_CAPTURE = 0;
+    // Captured piece types, one more than ChessPiece.getType(). A king is never captured.
+    private static final int PAWN = ChessPiece.PAWN + 1;
+    private static final int KNIGHT = ChessPiece.KNIGHT + 1;
+    private static final int BISHOP = ChessPiece.BISHOP + 1;
+    private static final int ROOK = ChessPiece.ROOK + 1;
+    private static final int QUEEN = ChessPiece.QUEEN + 1;
+
+    private static final int MAX_CLOCK = 0xFFFF;
+
+    static long pack(int from, int to, int capturedSquare, int capturedType, boolean promotion,
+                     int castlingRights, int enPassantSquare, int halfmoveClock) {
+        return from
+                | (long) to << 6
+                | (long) capturedSquare << 12
+                | (long) capturedType << 18
+                | (promotion ? 1L : 0L) << 21
+                | (long) castlingRights << 22
+                | (long) (enPassantSquare + 1) << 26
+                | (long) Math.min(halfmoveClock, MAX_CLOCK) << 33;
+    }
+
+    static int from(long record) {
+        return (int) (record & 63);
+    }
+
+    static int to(long record) {
+        return (int) (record >>> 6 & 63);
+    }
+
+    static int capturedSquare(long record) {
+        return (int) (record >>> 12 & 63);
+    }
+
+    static int capturedType(long record) {
+        return (int) (record >>> 18 & 7);
+    }
+
+    static boolean promotion(long record) {
+        return (record >>> 21 & 1) != 0;
+    }
+
+    static int castlingRights(long record) {
+        return (int) (record >>> 22 & 15);
+    }
+
+    static int enPassantSquare(long record) {
+        return (int) (record >>> 26 & 127) - 1;
+    }
+
+    static int halfmoveClock(long record) {
+        return (int) (record >>> 33 & MAX_CLOCK);
+    }
+
+    /**
+     * Gets the captured type code of a piece.
+     *
+     * @param piece Piece, not a king
+     * @return Type code
+     */
+    static int typeOf(ChessPiece piece) {
+        int type = piece.getType();
+        if (type == ChessPiece.KING) {
+            throw new IllegalArgumentException("Cannot capture " + piece);
+        }
+        return type + 1;
+    }
+
+    /**
+     * Creates a piece of a captured type code.
+     *
+     * @param type     Type code
+     * @param position Position the piece belongs to
+     * @param owner    Owning player
+     * @param square   Square of the piece
+     * @return New piece
+     */
+    static ChessPiece create(int type, ChessPosition position, ChessPlayer owner, int square) {
+        ChessCoordinate coordinate = ChessCoordinate.fromIndex(square);
+        switch (type) {
+            case PAWN:
+                return new Pawn(position, owner, coordinate);
+            case KNIGHT:
+                return new Knight(position, owner, coordinate);
+            case BISHOP:
+                return new Bishop(position, owner, coordinate);
+            case ROOK:
+                return new Rook(position, owner, coordinate);
+            case QUEEN:
+                return new Queen(position, owner, coordinate);
+            default:
+                throw new IllegalArgumentException("Invalid piece type " + type);
+        }
+    }
+}
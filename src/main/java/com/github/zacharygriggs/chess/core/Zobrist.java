@@ -0,0 +1,94 @@
+package com.github.zacharygriggs.chess.core;
+
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+
+import java.util.Random;
+
+/**
+ * Random keys for Zobrist hashing of positions.
+ * <p>
+ * A position's key is the XOR of one key per (piece, square), one per castling right
+ * still available, one for the file of an en passant capture if there is one, and one
+ * more if Black is to move. Two positions with the same pieces, castling rights, en passant
+ * capture and side to move share a key, however they were reached.
+ */
+public final class Zobrist {
+
+    private Zobrist() {}
+
+    // Fixed seed, so keys are the same in every run and can be stored.
+    private static final long SEED = 0x45617379436865L;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[4];
+    private static final long BLACK_TO_MOVE;
+    private static final long[] EN_PASSANT = new long[8];
+
+    public static final int WHITE_SHORT_CASTLE = 0;
+    public static final int WHITE_LONG_CASTLE = 1;
+    public static final int BLACK_SHORT_CASTLE = 2;
+    public static final int BLACK_LONG_CASTLE = 3;
+
+    static {
+        Random random = new Random(SEED);
+        for (long[] squares : PIECE_SQUARE) {
+            for (int i = 0; i < squares.length; i++) {
+                squares[i] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        for (int i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Gets the key of a piece standing on a square.
+     *
+     * @param piece  Piece
+     * @param square Square index, as from ChessCoordinate.getIndex()
+     * @return Key
+     */
+    public static long pieceKey(ChessPiece piece, int square) {
+        return PIECE_SQUARE[pieceIndex(piece)][square];
+    }
+
+    /**
+     * Gets the key of a castling right.
+     *
+     * @param right One of the castle constants, e.g. {@link #WHITE_SHORT_CASTLE}
+     * @return Key
+     */
+    public static long castlingKey(int right) {
+        return CASTLING[right];
+    }
+
+    /**
+     * Gets the key of an en passant capture.
+     *
+     * @param file File of the en passant square, 0 for the a-file
+     * @return Key
+     */
+    public static long enPassantKey(int file) {
+        return EN_PASSANT[file];
+    }
+
+    /**
+     * Gets the key for the side to move.
+     *
+     * @param toMove Player to move
+     * @return Key, zero for White
+     */
+    public static long sideKey(ChessPlayer toMove) {
+        return toMove == ChessPlayer.BLACK ? BLACK_TO_MOVE : 0;
+    }
+
+    private static int pieceIndex(ChessPiece piece) {
+        int type = piece.getType();
+        return piece.getOwner() == ChessPlayer.WHITE ? type : type + ChessPiece.TYPE_COUNT;
+    }
+}
@@ -3,6 +3,7 @@ package com.github.zacharygriggs.chess.helper;
 import com.github.zacharygriggs.chess.core.ChessCoordinate;
 import com.github.zacharygriggs.chess.data.ChessPlayer;
 import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.pieces.*;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +20,17 @@ public class MovementHelper {
 
     private MovementHelper() {}
 
+    /**
+     * Most destinations any piece can have from one square: a queen in the middle of an empty board.
+     */
+    public static final int MAX_CANDIDATES = 27;
+
+    private static final int[] KNIGHT_FILE_STEPS = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_RANK_STEPS = {2, 1, -1, -2, -2, -1, 1, 2};
+    // The first four directions are diagonals, the last four are lines.
+    private static final int[] RAY_FILE_STEPS = {1, 1, -1, -1, 1, -1, 0, 0};
+    private static final int[] RAY_RANK_STEPS = {1, -1, 1, -1, 0, 0, 1, -1};
+
     /**
      * Determines if moving from one to two is a valid Rook move.
      *
@@ -184,4 +196,64 @@ public class MovementHelper {
             return false;
         }
     }
+
+    /**
+     * Finds the squares a piece could possibly move to, from its movement pattern and the
+     * pieces blocking it. Every square the piece can legally move to is included, but
+     * not every included square is a legal move - captures of own pieces, pawn moves
+     * and castling still have to be checked with canMove.
+     *
+     * @param board     Position the piece is on
+     * @param piece     Piece to find squares for
+     * @param squares   Receives the square indices, at least {@link #MAX_CANDIDATES} long
+     * @return          Number of squares found
+     */
+    public static int candidateSquares(ChessPosition board, ChessPiece piece, int[] squares) {
+        int from = piece.getCoordinate().getIndex();
+        int file = from & 7;
+        int rank = from >> 3;
+        int count = 0;
+        if(piece instanceof Pawn) {
+            int direction = piece.getOwner() == ChessPlayer.WHITE ? 1 : -1;
+            for(int df = -1; df <= 1; df++) {
+                count = addSquare(squares, count, file + df, rank + direction);
+            }
+            count = addSquare(squares, count, file, rank + 2 * direction);
+        } else if(piece instanceof Knight) {
+            for(int i = 0; i < KNIGHT_FILE_STEPS.length; i++) {
+                count = addSquare(squares, count, file + KNIGHT_FILE_STEPS[i], rank + KNIGHT_RANK_STEPS[i]);
+            }
+        } else if(piece instanceof King) {
+            for(int i = 0; i < RAY_FILE_STEPS.length; i++) {
+                count = addSquare(squares, count, file + RAY_FILE_STEPS[i], rank + RAY_RANK_STEPS[i]);
+            }
+            // Castling, to the c or g file.
+            count = addSquare(squares, count, file - 2, rank);
+            count = addSquare(squares, count, file + 2, rank);
+        } else {
+            int firstRay = piece instanceof Rook ? 4 : 0;
+            int lastRay = piece instanceof Bishop ? 4 : 8;
+            for(int dir = firstRay; dir < lastRay; dir++) {
+                int f = file + RAY_FILE_STEPS[dir];
+                int r = rank + RAY_RANK_STEPS[dir];
+                while(f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    squares[count++] = f + 8 * r;
+                    if(board.pieceAt(f + 8 * r) != null) {
+                        break; // Blocked past this point.
+                    }
+                    f += RAY_FILE_STEPS[dir];
+                    r += RAY_RANK_STEPS[dir];
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int addSquare(int[] squares, int count, int file, int rank) {
+        if(file < 0 || file >= 8 || rank < 0 || rank >= 8) {
+            return count;
+        }
+        squares[count] = file + 8 * rank;
+        return count + 1;
+    }
 }
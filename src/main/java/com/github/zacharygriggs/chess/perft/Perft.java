@@ -0,0 +1,218 @@
+package com.github.zacharygriggs.chess.perft;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Counts the positions reachable from a position in a given number of moves, for checking
+ * the move generator against known counts and for measuring how fast it is.
+ * <p>
+ * Root moves are counted in parallel, one task per move. Below the root each task walks
+ * its subtree alone. Leaves are not made: at the last ply the legal moves are counted.
+ */
+public class Perft implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    private final PerftTable table;
+
+    /**
+     * Creates a perft runner.
+     *
+     * @param parallelism Number of worker threads
+     * @param table       Table of counts shared by the workers, or null to count every node
+     */
+    public Perft(int parallelism, PerftTable table) {
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("perft-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.table = table;
+    }
+
+    /**
+     * Creates a perft runner with one worker per available processor and no table.
+     */
+    public Perft() {
+        this(Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Counts the positions at a depth, with the count under each root move.
+     *
+     * @param position Position to count from
+     * @param depth    Number of plies, at least 1
+     * @return The counts
+     */
+    public PerftResult divide(ChessPosition position, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1, not " + depth);
+        }
+        long start = System.nanoTime();
+        List<ChessMove> moves = position.findLegalMoves(position.getSideToMove());
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>(moves.size());
+        for (ChessMove move : moves) {
+            ChessPosition child = makeMove(position, move);
+            tasks.add(pool.submit(() -> count(child, depth - 1)));
+        }
+        Map<String, Long> divide = new LinkedHashMap<>();
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            long count = join(tasks.get(i));
+            divide.put(moveName(moves.get(i)), count);
+            nodes += count;
+        }
+        return new PerftResult(depth, divide, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Counts the positions at a depth on the calling thread.
+     *
+     * @param position Position to count from
+     * @param depth    Number of plies
+     * @return Node count
+     */
+    public long count(ChessPosition position, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long key = 0;
+        if (table != null && depth > 1) {
+            key = position.getZobristKey(position.getSideToMove());
+            long known = table.get(key, depth);
+            if (known >= 0) {
+                return known;
+            }
+        }
+        List<ChessMove> moves = position.findLegalMoves(position.getSideToMove());
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (ChessMove move : moves) {
+            nodes += count(makeMove(position, move), depth - 1);
+        }
+        if (table != null) {
+            table.put(key, depth, nodes);
+        }
+        return nodes;
+    }
+
+    private static ChessPosition makeMove(ChessPosition position, ChessMove move) {
+        ChessPosition child = position.positionAfterMove(move);
+        child.updateAllPieces();
+        return child;
+    }
+
+    private static long join(ForkJoinTask<Long> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Counting failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Writes a move as its from and to squares, followed by the promotion piece if there is one.
+     *
+     * @param move Move to write
+     * @return Move name, e.g. "e2e4" or "a7a8q"
+     */
+    public static String moveName(ChessMove move) {
+        String name = move.getFrom().toString() + move.getTo();
+        return move.getPromotion() == null ? name : name + move.getPromotion().toLowerCase();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Runs perft from the command line. Either divides one position:
+     * <pre>Perft depth [fen] [--threads n] [--hash megabytes]</pre>
+     * or checks every reference position up to a depth:
+     * <pre>Perft --check depth [--threads n] [--hash megabytes]</pre>
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: Perft depth [fen] [--threads n] [--hash megabytes]");
+            System.err.println("       Perft --check depth [--threads n] [--hash megabytes]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = 0;
+        boolean check = false;
+        String depthArg = null;
+        StringBuilder fen = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--hash":
+                    hash = Integer.parseInt(args[++i]);
+                    break;
+                case "--check":
+                    check = true;
+                    break;
+                default:
+                    if (depthArg == null) {
+                        depthArg = args[i];
+                    } else {
+                        fen.append(fen.length() == 0 ? "" : " ").append(args[i]);
+                    }
+            }
+        }
+        int depth = Integer.parseInt(depthArg);
+        try (Perft perft = new Perft(threads, hash > 0 ? new PerftTable(hash) : null)) {
+            if (check) {
+                System.exit(perft.check(depth) ? 0 : 1);
+            }
+            ChessPosition position = Fen.parse(fen.length() == 0 ? Fen.STARTING_POSITION : fen);
+            PerftResult result = perft.divide(position, depth);
+            for (Map.Entry<String, Long> entry : result.getDivide().entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+            }
+            System.out.printf("%nNodes: %d%nTime: %d ms%nNPS: %d%n", result.getNodes(),
+                    result.getElapsedNanos() / 1_000_000, result.getNodesPerSecond());
+        }
+    }
+
+    /**
+     * Counts every reference position up to a depth and prints how each compares.
+     *
+     * @param maxDepth Deepest depth to check, limited by the counts each position has
+     * @return True if every count matched
+     */
+    public boolean check(int maxDepth) {
+        boolean allMatch = true;
+        for (PerftPosition reference : PerftPosition.REFERENCE) {
+            ChessPosition position = Fen.parse(reference.getFen());
+            for (int depth = 1; depth <= Math.min(maxDepth, reference.getMaxDepth()); depth++) {
+                PerftResult result = divide(position, depth);
+                boolean match = result.getNodes() == reference.getCount(depth);
+                allMatch &= match;
+                System.out.printf("%-32s depth %d: %12d %s (%d nps)%n", reference.getName(), depth,
+                        result.getNodes(), match ? "ok" : "expected " + reference.getCount(depth),
+                        result.getNodesPerSecond());
+            }
+        }
+        return allMatch;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.zacharygriggs.chess.perft;
+
+import com.github.zacharygriggs.chess.core.Fen;
+
+import java.util.List;
+
+/**
+ * A reference position with its known perft counts.
+ */
+public class PerftPosition {
+
+    /**
+     * The usual move generator test positions, between them covering castling, en passant,
+     * promotions and discovered checks.
+     */
+    public static final List<PerftPosition> REFERENCE = List.of(
+            new PerftPosition("Starting position", Fen.STARTING_POSITION,
+                    20, 400, 8_902, 197_281, 4_865_609),
+            new PerftPosition("Kiwipete",
+                    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2_039, 97_862, 4_085_603),
+            new PerftPosition("Rook endgame with en passant",
+                    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2_812, 43_238, 674_624),
+            new PerftPosition("Promotions and castling",
+                    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9_467, 422_333),
+            new PerftPosition("Promotion with discovered check",
+                    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1_486, 62_379, 2_103_487),
+            new PerftPosition("Symmetrical middlegame",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2_079, 89_890, 3_894_594)
+    );
+
+    private final String name;
+    private final String fen;
+    private final long[] counts;
+
+    /**
+     * Creates a reference position.
+     *
+     * @param name   Name to report it by
+     * @param fen    FEN of the position
+     * @param counts Node counts at depth 1, 2 and so on
+     */
+    public PerftPosition(String name, String fen, long... counts) {
+        this.name = name;
+        this.fen = fen;
+        this.counts = counts;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * Gets the deepest depth with a known count.
+     *
+     * @return Maximum depth
+     */
+    public int getMaxDepth() {
+        return counts.length;
+    }
+
+    /**
+     * Gets the known node count at a depth.
+     *
+     * @param depth Depth, from 1 to {@link #getMaxDepth()}
+     * @return Node count
+     */
+    public long getCount(int depth) {
+        return counts[depth - 1];
+    }
+}
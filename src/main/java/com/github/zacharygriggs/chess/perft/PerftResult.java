@@ -0,0 +1,57 @@
+package com.github.zacharygriggs.chess.perft;
+
+import java.util.Map;
+
+/**
+ * The outcome of a perft run: the node count under each root move and how long it took.
+ */
+public class PerftResult {
+
+    private final int depth;
+    private final Map<String, Long> divide;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    PerftResult(int depth, Map<String, Long> divide, long nodes, long elapsedNanos) {
+        this.depth = depth;
+        this.divide = divide;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the node count under each root move, in the order the moves were generated.
+     * Moves are written as from and to squares followed by any promotion, e.g. "e7e8n".
+     *
+     * @return Node count of each root move
+     */
+    public Map<String, Long> getDivide() {
+        return divide;
+    }
+
+    /**
+     * Gets the number of leaf positions at the full depth.
+     *
+     * @return Total node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the speed of the run. Nodes found in the hash table count as if they had been generated.
+     *
+     * @return Nodes per second
+     */
+    public long getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+    }
+}
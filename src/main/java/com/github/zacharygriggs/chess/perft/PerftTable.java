@@ -0,0 +1,67 @@
+package com.github.zacharygriggs.chess.perft;
+
+/**
+ * Remembers the node counts of positions already counted, so transpositions are only
+ * counted once.
+ * <p>
+ * The table is shared by every thread of a run without locking. Each entry stores the
+ * key XORed with its data, so an entry torn by two threads writing at once no longer
+ * matches its key and is treated as a miss.
+ */
+public class PerftTable {
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    private final long[] checks;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * Creates a table.
+     *
+     * @param megabytes Size of the table, rounded down to a power of two number of entries
+     */
+    public PerftTable(int megabytes) {
+        long entries = Math.max(1, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        this.checks = new long[size];
+        this.data = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Looks up the node count of a position.
+     *
+     * @param key   Zobrist key of the position
+     * @param depth Depth it was counted to
+     * @return Node count, or -1 if the table does not have it
+     */
+    public long get(long key, int depth) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        if ((checks[index] ^ entry) != key || (entry & DEPTH_MASK) != depth) {
+            return -1;
+        }
+        return entry >>> DEPTH_BITS;
+    }
+
+    /**
+     * Stores the node count of a position, replacing whatever shared its slot.
+     *
+     * @param key   Zobrist key of the position
+     * @param depth Depth it was counted to
+     * @param nodes Node count
+     */
+    public void put(long key, int depth, long nodes) {
+        int index = (int) key & mask;
+        long entry = nodes << DEPTH_BITS | depth;
+        data[index] = entry;
+        checks[index] = key ^ entry;
+    }
+
+    public int getEntries() {
+        return data.length;
+    }
+}
@@ -55,4 +55,9 @@ public class Bishop extends ChessPiece {
     public int getMaterialValue() {
         return 3;
     }
+
+    @Override
+    public int getType() {
+        return BISHOP;
+    }
 }
@@ -19,10 +19,20 @@ import static com.github.zacharygriggs.chess.data.ChessPlayer.WHITE;
  */
 public abstract class ChessPiece {
 
+    /**
+     * Piece types, as returned by {@link #getType()}.
+     */
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int TYPE_COUNT = 6;
+
     private ChessPosition position;
     private ChessPlayer owner;
     private ChessCoordinate coordinate;
-    private boolean hasMoved;
 
     /**
      * Creates a new main.java.chess piece.
@@ -69,7 +79,6 @@ public abstract class ChessPiece {
         this.position = old.position;
         this.owner = old.owner;
         this.coordinate = old.coordinate;
-        this.hasMoved = old.hasMoved;
     }
 
     /**
@@ -126,8 +135,9 @@ public abstract class ChessPiece {
     public abstract String identity();
 
     protected void setCoordinate(ChessCoordinate coordinate) {
+        ChessCoordinate previous = this.coordinate;
         this.coordinate = coordinate;
-        this.hasMoved = true;
+        position.pieceMoved(this, previous, coordinate);
     }
 
     /**
@@ -283,7 +293,11 @@ public abstract class ChessPiece {
      */
     public abstract int getMaterialValue();
 
-    public boolean hasMoved() {
-        return hasMoved;
-    }
+    /**
+     * Provides the type of this chess piece, one of {@link #PAWN}, {@link #KNIGHT},
+     * {@link #BISHOP}, {@link #ROOK}, {@link #QUEEN} or {@link #KING}.
+     *
+     * @return Type of piece
+     */
+    public abstract int getType();
 }
@@ -12,7 +12,7 @@ import java.util.Optional;
 public class King extends ChessPiece {
 
     // G = Short castle
-    // B = log castle
+    // C = Long castle
 
     public King(ChessPosition onBoard, ChessPlayer owner, ChessCoordinate coordinate) {
         super(onBoard, owner, coordinate);
@@ -31,7 +31,7 @@ public class King extends ChessPiece {
     }
 
     private void doCastle(ChessCoordinate destination) {
-        if (canLongCastle() && (destination.getFile() == 'b' || destination.getFile() == 'c' || destination.getFile() == 'd')) {
+        if (destination.getFile() == 'c') {
             doLongCastle();
         } else {
             doShortCastle();
@@ -67,11 +67,9 @@ public class King extends ChessPiece {
     @Override
     public void move(ChessCoordinate destination) {
         // Determine if player's trying to castle or just to move.
-        if (!hasMoved()) {
-            if (validCastle(destination)) {
-                doCastle(destination);
-                return;
-            }
+        if (validCastle(destination)) {
+            doCastle(destination);
+            return;
         }
         super.move(destination);
     }
@@ -97,7 +95,11 @@ public class King extends ChessPiece {
         // There must be no pieces on f and g file
         // The f and g file must not be under attack
         // The king must not be in check
-        // Rooks cannot have moved
+        // The king and rook cannot have moved
+        int right = getOwner() == ChessPlayer.WHITE ? ChessPosition.WHITE_SHORT_CASTLE : ChessPosition.BLACK_SHORT_CASTLE;
+        if (!getPosition().hasCastlingRight(right)) {
+            return false;
+        }
         int kingsRank = this.getCoordinate().getRank();
         if (pieceOn('f', kingsRank) || pieceOn('g', kingsRank)) {
             return false;
@@ -110,9 +112,6 @@ public class King extends ChessPiece {
         if (!(shouldBeRook instanceof Rook)) {
             return false;
         }
-        if (shouldBeRook.hasMoved()) {
-            return false;
-        }
         if (underAttack('f', kingsRank) || underAttack('g', kingsRank)) {
             return false;
         }
@@ -124,13 +123,17 @@ public class King extends ChessPiece {
     }
 
     private boolean canLongCastle() {
-        // In order to short castle, the King will move from
+        // In order to long castle, the King will move from
         // e1 (or e8) to c1 (or c8)
         // The rook must be present on the a file
         // There must be no pieces on b, c, and d file
-        // The b, c, and d file must not be under attack
+        // The c and d file must not be under attack - the king never crosses b
         // The king must not be in check
-        // Rooks cannot have moved
+        // The king and rook cannot have moved
+        int right = getOwner() == ChessPlayer.WHITE ? ChessPosition.WHITE_LONG_CASTLE : ChessPosition.BLACK_LONG_CASTLE;
+        if (!getPosition().hasCastlingRight(right)) {
+            return false;
+        }
         int kingsRank = this.getCoordinate().getRank();
         if (pieceOn('b', kingsRank) || pieceOn('c', kingsRank) || pieceOn('d', kingsRank)) {
             return false;
@@ -143,10 +146,7 @@ public class King extends ChessPiece {
         if (!(shouldBeRook instanceof Rook)) {
             return false;
         }
-        if (shouldBeRook.hasMoved()) {
-            return false;
-        }
-        if (underAttack('b', kingsRank) || underAttack('c', kingsRank) || underAttack('d', kingsRank)) {
+        if (underAttack('c', kingsRank) || underAttack('d', kingsRank)) {
             return false;
         }
         if (getPosition().inCheck(getOwner())) {
@@ -157,15 +157,17 @@ public class King extends ChessPiece {
     }
 
     private boolean validCastle(ChessCoordinate destination) {
-        if (hasMoved()) {
-            return false; // Cannot castle after move, even if you move back onto starting square
+        // The castling rights are lost once the king moves, even if it moves back onto its starting square.
+        int homeRank = getOwner() == ChessPlayer.WHITE ? 1 : 8;
+        if (getCoordinate().getFile() != 'e' || getCoordinate().getRank() != homeRank) {
+            return false;
         }
-        if (destination.getRank() != this.getCoordinate().getRank()) {
+        if (destination.getRank() != homeRank) {
             return false; // Can't castle to another rank..
         }
-        if (destination.getFile() == 'b' || destination.getFile() == 'c' || destination.getFile() == 'd') {
+        if (destination.getFile() == 'c') {
             return canLongCastle();
-        } else if (destination.getFile() == 'g' || destination.getFile() == 'h') {
+        } else if (destination.getFile() == 'g') {
             return canShortCastle();
         }
         return false;
@@ -197,4 +199,9 @@ public class King extends ChessPiece {
     public int getMaterialValue() {
         return 0;
     }
+
+    @Override
+    public int getType() {
+        return KING;
+    }
 }
@@ -51,6 +51,11 @@ public class Knight extends ChessPiece {
         return 3;
     }
 
+    @Override
+    public int getType() {
+        return KNIGHT;
+    }
+
     private void addIfValid(ChessCoordinate from, List<ChessMove> moves, char file, int rank) {
         if (ChessCoordinate.validFile(file) && ChessCoordinate.validRank(rank)) {
             moves.add(new ChessMove(from, new ChessCoordinate(file, rank)));
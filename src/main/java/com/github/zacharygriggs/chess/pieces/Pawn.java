@@ -10,8 +10,6 @@ import java.util.Optional;
 
 public class Pawn extends ChessPiece {
 
-    private boolean canBeEnPassanted = false;
-
     public Pawn(ChessPosition onBoard, ChessPlayer owner, ChessCoordinate coordinate) {
         super(onBoard, owner, coordinate);
     }
@@ -26,7 +24,6 @@ public class Pawn extends ChessPiece {
 
     public Pawn(Pawn old) {
         super(old);
-        this.canBeEnPassanted = old.canBeEnPassanted;
     }
 
     /**
@@ -36,18 +33,6 @@ public class Pawn extends ChessPiece {
      */
     @Override
     public void move(ChessCoordinate destination) {
-        // We do need some custom logic here, to track whether the pawn
-        // can be en-passanted by another pawn (possible only if moves 2 spaces)
-        // and to mark that this pawn has already moved and will not be able
-        // to move 2 spaces again.
-        int dist = Math.abs(destination.getRank() - getCoordinate().getRank());
-        if (dist == 2) {
-            canBeEnPassanted = true;
-        } else if (canBeEnPassanted) {
-            canBeEnPassanted = false;
-        }
-
-
         // This method is called for both moving and capturing.
         // If capturing, we need to perform capture code.
         ChessPiece capturablePiece = findCapturablePieceInternal(destination);
@@ -76,11 +61,12 @@ public class Pawn extends ChessPiece {
     private boolean canMoveInternal(ChessCoordinate destination) {
         // Pawns can only move one space ahead of where they are currently.
         // They cannot capture on this space.
-        // The only exception is the first time this pawn is moved,
-        // where they may move two spaces.
+        // The only exception is a pawn still on its starting rank,
+        // which may move two spaces.
         // A White pawn should move forward, and a Black pawn should move backward
         int range = 1;
-        if (!hasMoved()) {
+        int startingRank = getOwner() == ChessPlayer.WHITE ? 2 : 7;
+        if (getCoordinate().getRank() == startingRank) {
             range = range * 2; // Allow moving two spaces
         }
         int moveRangeAttempted = destination.getRank() - getCoordinate().getRank();
@@ -111,6 +97,10 @@ public class Pawn extends ChessPiece {
             // We can generalize this by saying:
             // If there is a pawn one space relatively behind (-1 for white, +1 for black)
             // And this pawn has moved two spaces in the last turn, then we allow capture.
+            // The position remembers the square passed over by the last two space move.
+            if (destination.getIndex() != getPosition().getEnPassantSquare()) {
+                return null; // No en passant here, or the attempt was too late.
+            }
             int direction;
             if (getOwner() == ChessPlayer.WHITE) {
                 direction = -1;
@@ -126,11 +116,7 @@ public class Pawn extends ChessPiece {
             if (!(pieceAt instanceof Pawn)) {
                 return null; // You may only en passant pawns.
             }
-            Pawn checkedPawn = (Pawn) pieceAt;
-            if (!checkedPawn.canBeEnPassanted) {
-                return null; // The attempt was too late.
-            }
-            desiredCapture = checkedPawn; // Everything OK - we can play en passant.
+            desiredCapture = pieceAt; // Everything OK - we can play en passant.
         } else {
             desiredCapture = getPosition().pieceAt(destination).get();
         }
@@ -170,6 +156,19 @@ public class Pawn extends ChessPiece {
         }
     }
 
+    /**
+     * Determines whether this pawn attacks a square, whether or not there is anything on it to capture.
+     * A pawn attacks the two squares diagonally in front of it, never the square straight ahead.
+     *
+     * @param square Square to check
+     * @return True if attacked; false if not.
+     */
+    public boolean attacks(ChessCoordinate square) {
+        int forward = getOwner() == ChessPlayer.WHITE ? 1 : -1;
+        return square.getRank() - getCoordinate().getRank() == forward
+                && Math.abs(square.getFile() - getCoordinate().getFile()) == 1;
+    }
+
     @Override
     public String identity() {
         return "P";
@@ -187,4 +186,9 @@ public class Pawn extends ChessPiece {
     public int getMaterialValue() {
         return 1;
     }
+
+    @Override
+    public int getType() {
+        return PAWN;
+    }
 }
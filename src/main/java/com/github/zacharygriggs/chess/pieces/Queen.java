@@ -51,4 +51,9 @@ public class Queen extends ChessPiece {
         return 9;
     }
 
+    @Override
+    public int getType() {
+        return QUEEN;
+    }
+
 }
@@ -57,4 +57,9 @@ public class Rook extends ChessPiece {
     public int getMaterialValue() {
         return 5;
     }
+
+    @Override
+    public int getType() {
+        return ROOK;
+    }
 }
@@ -0,0 +1,434 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tells games already seen from new ones, by a 64-bit hash of their moves and the tags that
+ * tell games apart, in one pass and in bounded memory.
+ * <p>
+ * A Bloom filter answers most questions: a game whose hash it has not seen is new. A game it
+ * may have seen, either a duplicate or one game in a hundred by chance, is looked up in the
+ * exact set of hashes. The exact set is a table of the latest hashes in memory and, below it,
+ * sorted runs of the older ones on disk. A full table is sorted and written as a run, and runs
+ * of about the same size are merged, so there are only a few runs and each hash is rewritten
+ * only a few times. Each run keeps every 512th hash in memory, so a lookup reads one page of
+ * each run.
+ * <p>
+ * Two different games have the same hash about once in 30 times a billion games are filtered.
+ */
+public class DuplicateFilter implements AutoCloseable {
+
+    /**
+     * Hashes kept in memory before they are written to disk when none is given: 64 MB.
+     */
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 22;
+
+    // Bits per expected game and hashes per game, giving about one false positive in a hundred.
+    private static final int BITS_PER_GAME = 10;
+    private static final int BLOOM_HASHES = 7;
+    private static final int SAMPLE = 512;
+
+    // Tags that, with the moves, tell games apart.
+    private static final String[] TAGS = {"White", "Black", "Date", "Round", "Result", "FEN"};
+
+    private final Path tempDirectory;
+    private final long[] bloom;
+    private final int bloomShift;
+    // Open addressing table of the latest hashes, at most half full; 0 marks an empty slot.
+    private final long[] table;
+    private final int tableEntries;
+    private int tableSize;
+    private boolean hasZero;
+    private final List<Run> runs = new ArrayList<>();
+    private final ByteBuffer page = ByteBuffer.allocate(SAMPLE * 8);
+    private long games;
+    private long duplicates;
+
+    /**
+     * Creates a filter.
+     *
+     * @param tempDirectory Where the runs of older hashes are written
+     * @param expectedGames About how many games will be filtered; the Bloom filter takes
+     *                      10 bits for each
+     */
+    public DuplicateFilter(Path tempDirectory, long expectedGames) {
+        this(tempDirectory, expectedGames, DEFAULT_TABLE_ENTRIES);
+    }
+
+    /**
+     * Creates a filter.
+     *
+     * @param tempDirectory Where the runs of older hashes are written
+     * @param expectedGames About how many games will be filtered
+     * @param tableEntries  Hashes kept in memory before they are written to disk
+     */
+    DuplicateFilter(Path tempDirectory, long expectedGames, int tableEntries) {
+        if (expectedGames < 1 || expectedGames > (1L << 36) / BITS_PER_GAME) {
+            throw new IllegalArgumentException("Expected games must be from 1 to 6 billion: " + expectedGames);
+        }
+        if (tableEntries < 1 || tableEntries > 1 << 29) {
+            throw new IllegalArgumentException("Table entries must be from 1 to 2^29: " + tableEntries);
+        }
+        this.tempDirectory = tempDirectory;
+        int bits = Math.max(6, 64 - Long.numberOfLeadingZeros(expectedGames * BITS_PER_GAME - 1));
+        this.bloom = new long[1 << (bits - 6)];
+        this.bloomShift = 64 - bits;
+        this.tableEntries = tableEntries;
+        this.table = new long[Integer.highestOneBit(Math.max(1, tableEntries - 1)) << 2];
+    }
+
+    /**
+     * Hashes a game: its moves, and its players, date, round, result and starting position.
+     *
+     * @param pgn Game, with its moves resolved
+     * @return Hash
+     */
+    public static long hash(Pgn pgn) {
+        if (pgn.getMoves() == null) {
+            throw new IllegalArgumentException("Game has no moves; read it with moves resolved");
+        }
+        long hash = 0xCBF29CE484222325L;
+        PgnHeader header = pgn.getHeader();
+        for (String tag : TAGS) {
+            String value = header == null ? null : header.getTag(tag);
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+                }
+            }
+            // Separates the tags, so "ab" "c" and "a" "bc" differ.
+            hash = (hash ^ 0xFFFF) * 0x100000001B3L;
+        }
+        // The moves are folded in one at a time, as from, to and promotion.
+        for (ChessMove move : pgn.getMoves()) {
+            int code = move.getFrom().getIndex() << 13 | move.getTo().getIndex() << 7 | move.promotionIdentity().charAt(0);
+            hash = (hash ^ code) * 0x100000001B3L;
+        }
+        return mix(hash ^ pgn.getMoves().size());
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ hash >>> 33) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ hash >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+
+    /**
+     * Adds a game if it has not been seen.
+     *
+     * @param pgn Game, with its moves resolved
+     * @return True if the game is new, false if it is a duplicate
+     * @throws IOException If reading or writing a run fails
+     */
+    public boolean add(Pgn pgn) throws IOException {
+        return add(hash(pgn));
+    }
+
+    /**
+     * Adds the hash of a game if it has not been seen.
+     *
+     * @param hash Hash, as from {@link #hash(Pgn)}
+     * @return True if the hash is new, false if it is a duplicate
+     * @throws IOException If reading or writing a run fails
+     */
+    public boolean add(long hash) throws IOException {
+        games++;
+        if (!bloomAdd(hash) && exactContains(hash)) {
+            duplicates++;
+            return false;
+        }
+        tableAdd(hash);
+        if (tableSize >= tableEntries) {
+            spill();
+        }
+        return true;
+    }
+
+    /**
+     * Sets the bits of a hash in the Bloom filter.
+     *
+     * @return True if any bit was clear, so the hash is certainly new
+     */
+    private boolean bloomAdd(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) * 0x9E3779B97F4A7C15L | 1;
+        boolean added = false;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (h1 + i * h2) >>> bloomShift;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bloom[word] & mask) == 0) {
+                bloom[word] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Determines if the hash of a game has been seen, without adding it. Not counted as a game.
+     *
+     * @param hash Hash, as from {@link #hash(Pgn)}
+     * @return True if the hash was added before
+     * @throws IOException If reading a run fails
+     */
+    public boolean contains(long hash) throws IOException {
+        return bloomContains(hash) && exactContains(hash);
+    }
+
+    private boolean bloomContains(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) * 0x9E3779B97F4A7C15L | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (h1 + i * h2) >>> bloomShift;
+            if ((bloom[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean exactContains(long hash) throws IOException {
+        if (hash == 0 ? hasZero : tableContains(hash)) {
+            return true;
+        }
+        for (Run run : runs) {
+            if (run.contains(hash, page)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tableContains(long hash) {
+        int mask = table.length - 1;
+        for (int slot = (int) mix(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (table[slot] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void tableAdd(long hash) {
+        if (hash == 0) {
+            hasZero = true;
+        } else {
+            int mask = table.length - 1;
+            int slot = (int) mix(hash) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+        }
+        tableSize++;
+    }
+
+    /**
+     * Writes the table as a sorted run, then merges runs of about the same size.
+     */
+    private void spill() throws IOException {
+        long[] hashes = new long[tableSize];
+        int length = 0;
+        if (hasZero) {
+            hashes[length++] = 0;
+        }
+        for (long hash : table) {
+            if (hash != 0) {
+                hashes[length++] = hash;
+            }
+        }
+        Arrays.sort(hashes);
+        Arrays.fill(table, 0);
+        tableSize = 0;
+        hasZero = false;
+        Path path = Files.createTempFile(tempDirectory, "games", ".run");
+        try (RunWriter out = new RunWriter(path, length)) {
+            for (long hash : hashes) {
+                out.write(hash);
+            }
+            runs.add(out.finish());
+        }
+        while (runs.size() >= 2 && runs.get(runs.size() - 1).count * 2 >= runs.get(runs.size() - 2).count) {
+            Run newer = runs.remove(runs.size() - 1);
+            Run older = runs.remove(runs.size() - 1);
+            runs.add(merge(older, newer));
+        }
+    }
+
+    private Run merge(Run a, Run b) throws IOException {
+        Path path = Files.createTempFile(tempDirectory, "games", ".run");
+        try (DataInputStream inA = a.open();
+             DataInputStream inB = b.open();
+             RunWriter out = new RunWriter(path, a.count + b.count)) {
+            long leftA = a.count;
+            long leftB = b.count;
+            long hashA = leftA > 0 ? inA.readLong() : 0;
+            long hashB = leftB > 0 ? inB.readLong() : 0;
+            while (leftA > 0 || leftB > 0) {
+                if (leftB == 0 || (leftA > 0 && hashA <= hashB)) {
+                    out.write(hashA);
+                    hashA = --leftA > 0 ? inA.readLong() : 0;
+                } else {
+                    out.write(hashB);
+                    hashB = --leftB > 0 ? inB.readLong() : 0;
+                }
+            }
+            Run merged = out.finish();
+            a.delete();
+            b.delete();
+            return merged;
+        }
+    }
+
+    /**
+     * Gets how many games have been filtered.
+     *
+     * @return Number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Gets how many of the games filtered were duplicates.
+     *
+     * @return Number of duplicates
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Gets how many runs of hashes are on disk.
+     *
+     * @return Number of runs
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Run run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
+    /**
+     * Sorted hashes on disk, with every 512th kept in memory.
+     */
+    private static class Run {
+        private final Path path;
+        private final FileChannel channel;
+        private final long count;
+        private final long[] samples;
+
+        Run(Path path, long count, long[] samples) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.count = count;
+            this.samples = samples;
+        }
+
+        boolean contains(long hash, ByteBuffer page) throws IOException {
+            // The last page whose first hash is not above the one sought.
+            int low = 0;
+            int high = samples.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (samples[mid] <= hash) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (samples.length == 0 || samples[low] > hash) {
+                return false;
+            }
+            page.clear();
+            page.limit((int) Math.min(SAMPLE, count - (long) low * SAMPLE) * 8);
+            long position = (long) low * SAMPLE * 8;
+            while (page.hasRemaining()) {
+                if (channel.read(page, position + page.position()) < 0) {
+                    throw new IOException("Run ended early: " + path);
+                }
+            }
+            page.flip();
+            int from = 0;
+            int to = page.limit() / 8 - 1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                long value = page.getLong(mid * 8);
+                if (value < hash) {
+                    from = mid + 1;
+                } else if (value > hash) {
+                    to = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        DataInputStream open() throws IOException {
+            return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Writes sorted hashes as a run, sampling every 512th.
+     */
+    private static class RunWriter implements AutoCloseable {
+        private final Path path;
+        private final DataOutputStream out;
+        private final long[] samples;
+        private long count;
+
+        RunWriter(Path path, long expected) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+            this.samples = new long[(int) ((expected + SAMPLE - 1) / SAMPLE)];
+        }
+
+        void write(long hash) throws IOException {
+            if (count % SAMPLE == 0) {
+                samples[(int) (count / SAMPLE)] = hash;
+            }
+            out.writeLong(hash);
+            count++;
+        }
+
+        Run finish() throws IOException {
+            out.close();
+            return new Run(path, count, samples);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
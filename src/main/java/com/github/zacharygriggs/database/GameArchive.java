@@ -0,0 +1,136 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.pgn.Pgn;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads any game of a binary game file by its number, using the file's block index.
+ * <p>
+ * Reading a game seeks to the start of its block, skips the games before it without replaying
+ * their moves, and replays only the game asked for.
+ */
+public class GameArchive implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long games;
+    private final long[] blockOffsets;
+    // Where the games end: the end marker before the index.
+    private final long gamesEnd;
+
+    /**
+     * Opens a game file.
+     *
+     * @param file Game file written by {@link GameWriter}
+     * @throws IOException If the file cannot be read, or has no index
+     */
+    public GameArchive(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < GameFormat.TRAILER_BYTES) {
+                throw new IOException("Not a game file: " + file);
+            }
+            ByteBuffer trailer = read(size - GameFormat.TRAILER_BYTES, GameFormat.TRAILER_BYTES);
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != GameFormat.INDEX_MAGIC || indexOffset < 0 || indexOffset > size) {
+                throw new IOException("Game file has no index, it may not have been closed: " + file);
+            }
+            this.gamesEnd = indexOffset - 1;
+            ByteBuffer index = read(indexOffset, (int) (size - GameFormat.TRAILER_BYTES - indexOffset));
+            this.blockSize = index.getInt();
+            this.games = index.getLong();
+            this.blockOffsets = new long[index.getInt()];
+            for (int i = 0; i < blockOffsets.length; i++) {
+                blockOffsets[i] = index.getLong();
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads a game.
+     *
+     * @param number Number of the game, from 0
+     * @return The game
+     * @throws IOException If reading fails
+     * @throws IllegalArgumentException If there is no such game
+     */
+    public synchronized Pgn read(long number) throws IOException {
+        if (number < 0 || number >= games) {
+            throw new IllegalArgumentException("No game " + number + " in an archive of " + games);
+        }
+        channel.position(blockOffsets[(int) (number / blockSize)]);
+        // The channel is left open: it is closed with the archive.
+        GameReader reader = new GameReader(Channels.newInputStream(channel), false);
+        for (long i = number % blockSize; i > 0; i--) {
+            reader.skip();
+        }
+        return reader.next();
+    }
+
+    /**
+     * Reads every game of a block. Blocks can be read from several threads at once.
+     *
+     * @param block    Number of the block, from 0
+     * @param writeSan Whether the moves get their SAN; see {@link GameReader#setWriteSan(boolean)}
+     * @return The games, the first being game {@code block * getBlockSize()}
+     * @throws IOException If reading fails
+     */
+    public List<Pgn> readBlock(int block, boolean writeSan) throws IOException {
+        long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : gamesEnd;
+        ByteBuffer bytes = read(blockOffsets[block], (int) (end - blockOffsets[block]));
+        GameReader reader = new GameReader(new ByteArrayInputStream(bytes.array()), false);
+        reader.setWriteSan(writeSan);
+        int count = (int) Math.min(blockSize, games - (long) block * blockSize);
+        List<Pgn> blockGames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            blockGames.add(reader.next());
+        }
+        return blockGames;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Gets how many games the file has.
+     *
+     * @return Number of games
+     */
+    public long getGameCount() {
+        return games;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Game file ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
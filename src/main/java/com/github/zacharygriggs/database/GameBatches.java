@@ -0,0 +1,175 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import com.github.zacharygriggs.pgn.PgnImporter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Hands the games of a file to a pool in batches, for the builders that replay every game.
+ */
+final class GameBatches {
+
+    // Games in a batch read from PGN.
+    private static final int PGN_BATCH = 256;
+    // Batches read from PGN waiting or being replayed, per worker. Reading waits for the oldest
+    // beyond this, and batches are let go once replayed, so a file bigger than the heap is never
+    // held in memory.
+    private static final int PGN_BATCHES_PER_WORKER = 2;
+
+    private GameBatches() {}
+
+    /**
+     * Work done on a batch of games.
+     */
+    interface Task {
+        /**
+         * Handles a batch.
+         *
+         * @param first Number of the first game of the batch in its file, counting from 0
+         * @param games Games, with their moves resolved
+         */
+        void run(long first, List<Pgn> games) throws IOException;
+    }
+
+    /**
+     * Makes a pool whose threads are named after what they do.
+     *
+     * @param name        Name of the threads, followed by their number
+     * @param parallelism Number of threads
+     * @return The pool
+     */
+    static ForkJoinPool newPool(String name, int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Runs a task on every block of a binary game file.
+     *
+     * @return Number of games
+     */
+    static long fromArchive(ForkJoinPool pool, GameArchive archive, Task task) throws IOException {
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for (int block = 0; block < archive.getBlockCount(); block++) {
+            int b = block;
+            tasks.add(pool.submit(() -> {
+                task.run((long) b * archive.getBlockSize(), archive.readBlock(b, false));
+                return null;
+            }));
+        }
+        joinAll(tasks);
+        return archive.getGameCount();
+    }
+
+    /**
+     * Runs a task on every game of a PGN file that can be read, in batches. Games that cannot
+     * be read are left out and not counted. Only a few batches per worker are read ahead of
+     * the tasks.
+     *
+     * @return Number of games
+     */
+    static long fromPgn(ForkJoinPool pool, Path file, Task task) throws IOException {
+        // A finished task still holds its batch, so only the tasks not yet joined are kept.
+        Deque<ForkJoinTask<Void>> ahead = new ArrayDeque<>();
+        int maxAhead = pool.getParallelism() * PGN_BATCHES_PER_WORKER;
+        List<Pgn> batch = new ArrayList<>(PGN_BATCH);
+        long[] count = {0};
+        try (PgnImporter importer = new PgnImporter(pool.getParallelism(), 4 << 20)) {
+            importer.importFile(file, pgn -> {
+                batch.add(pgn);
+                if (batch.size() == PGN_BATCH) {
+                    try {
+                        if (ahead.size() == maxAhead) {
+                            join(ahead.poll());
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    ahead.add(submit(pool, task, count[0], new ArrayList<>(batch)));
+                    count[0] += batch.size();
+                    batch.clear();
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        if (!batch.isEmpty()) {
+            ahead.add(submit(pool, task, count[0], batch));
+            count[0] += batch.size();
+        }
+        joinAll(ahead);
+        return count[0];
+    }
+
+    private static ForkJoinTask<Void> submit(ForkJoinPool pool, Task task, long first, List<Pgn> games) {
+        return pool.submit(() -> {
+            task.run(first, games);
+            return null;
+        });
+    }
+
+    private static void joinAll(Collection<ForkJoinTask<Void>> tasks) throws IOException {
+        for (ForkJoinTask<Void> task : tasks) {
+            join(task);
+        }
+    }
+
+    private static void join(ForkJoinTask<Void> task) throws IOException {
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying games", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IllegalStateException("Replaying games failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Reads the result of a game.
+     *
+     * @return One of the {@link PositionIndex} result codes
+     */
+    static int result(PgnHeader header) {
+        switch (header.getResult()) {
+            case "1-0":
+                return PositionIndex.WHITE_WINS;
+            case "1/2-1/2":
+                return PositionIndex.DRAW;
+            case "0-1":
+                return PositionIndex.BLACK_WINS;
+            default:
+                return PositionIndex.UNKNOWN_RESULT;
+        }
+    }
+
+    /**
+     * Reads the average rating of the players of a game, or the one rating given.
+     *
+     * @return Rating, or 0 if neither is known
+     */
+    static int rating(PgnHeader header) {
+        int white = header.getWhiteElo();
+        int black = header.getBlackElo();
+        return white > 0 && black > 0 ? (white + black) / 2 : Math.max(white, black);
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.helper.MovementHelper;
+import com.github.zacharygriggs.chess.pieces.ChessPiece;
+import com.github.zacharygriggs.chess.pieces.Pawn;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Layout of a binary game file, shared by {@link GameWriter}, {@link GameReader} and {@link GameArchive}.
+ * <pre>
+ * file    = "ECGF" version:byte block* END index trailer
+ * block   = BLOCK game*            (the string table starts empty)
+ * game    = GAME tagCount:varint (name:string value:string)* flags:byte [fen:string]
+ *           plies:varint move:byte* [count:varint clock:zigzag*] [count:varint eval:zigzag*]
+ * string  = 0 length:varint utf8  (added to the string table)
+ *         | id+1:varint           (a string already in the table)
+ * index   = blockSize:int games:long blocks:int offset:long*
+ * trailer = indexOffset:long "ECGI"
+ * </pre>
+ * A move is stored as its index in the position's legal moves, sorted by origin, destination and
+ * promotion piece. A position never has more than 218 legal moves, so each ply takes one byte.
+ * Clocks are stored as the change from the same side's previous clock, evaluations as the change
+ * from the previous evaluation.
+ */
+final class GameFormat {
+
+    static final int MAGIC = 0x45434746;
+    static final int INDEX_MAGIC = 0x45434749;
+    static final int VERSION = 1;
+    static final int TRAILER_BYTES = 12;
+
+    // Record markers.
+    static final int END = 0;
+    static final int GAME = 1;
+    static final int BLOCK = 2;
+
+    // Game flags.
+    static final int CUSTOM_START = 1;
+    static final int HAS_CLOCKS = 2;
+    static final int HAS_EVALS = 4;
+
+    // Promotion pieces, in the order they sort in.
+    private static final String[] PROMOTIONS = {"Q", "R", "B", "N"};
+
+    private GameFormat() {}
+
+    /**
+     * Makes a buffer big enough for the moves of any position.
+     *
+     * @return Buffer for {@link #pseudoLegalKeys(ChessPosition, int[])}
+     */
+    static int[] newKeyBuffer() {
+        return new int[16 * MovementHelper.MAX_CANDIDATES];
+    }
+
+    /**
+     * Finds the moves of the side to move that the pieces allow, before checking if they leave
+     * the king in check, as sorted keys: origin, destination and promotion piece.
+     *
+     * @param position Position
+     * @param keys     Receives the keys
+     * @return Number of keys
+     */
+    static int pseudoLegalKeys(ChessPosition position, int[] keys) {
+        int count = 0;
+        int[] candidates = new int[MovementHelper.MAX_CANDIDATES];
+        List<ChessPiece> pieces = position.getPieces();
+        for (int p = 0; p < pieces.size(); p++) {
+            ChessPiece piece = pieces.get(p);
+            if (piece.getOwner() != position.getSideToMove()) {
+                continue;
+            }
+            int from = piece.getCoordinate().getIndex();
+            int found = MovementHelper.candidateSquares(position, piece, candidates);
+            for (int i = 0; i < found; i++) {
+                int to = candidates[i];
+                if (!piece.canMoveNoLegalCheck(ChessCoordinate.fromIndex(to))) {
+                    continue;
+                }
+                int promotions = piece instanceof Pawn && (to >> 3 == 0 || to >> 3 == 7) ? PROMOTIONS.length : 1;
+                for (int promotion = 0; promotion < promotions; promotion++) {
+                    keys[count++] = key(from, to, promotion);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        return count;
+    }
+
+    /**
+     * Finds the index of a move among the legal moves of a position.
+     *
+     * @param position Position, with the mover to move
+     * @param move     Move
+     * @param keys     Buffer from {@link #newKeyBuffer()}
+     * @return Index of the move
+     * @throws IllegalArgumentException If the move is not legal
+     */
+    static int encode(ChessPosition position, ChessMove move, int[] keys) {
+        int count = pseudoLegalKeys(position, keys);
+        int target = moveKey(position, move);
+        int index = 0;
+        int last = -1;
+        boolean lastLegal = false;
+        for (int i = 0; i < count && keys[i] <= target; i++) {
+            // Promotions to different pieces are legal together, so the check is done once.
+            if (keys[i] >> 2 != last) {
+                last = keys[i] >> 2;
+                lastLegal = isLegal(position, keys[i]);
+            }
+            if (keys[i] == target) {
+                if (lastLegal) {
+                    return index;
+                }
+                break;
+            }
+            if (lastLegal) {
+                index++;
+            }
+        }
+        throw new IllegalArgumentException("Illegal move " + move.getFrom() + move.getTo() + " in " + position.toFen());
+    }
+
+    /**
+     * Finds the legal move at an index, stopping at it rather than checking every move.
+     *
+     * @param position Position
+     * @param index    Index of the move
+     * @param keys     Buffer from {@link #newKeyBuffer()}
+     * @return The move
+     * @throws IllegalArgumentException If the position has fewer legal moves
+     */
+    static ChessMove decode(ChessPosition position, int index, int[] keys) {
+        int count = pseudoLegalKeys(position, keys);
+        int last = -1;
+        boolean lastLegal = false;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] >> 2 != last) {
+                last = keys[i] >> 2;
+                lastLegal = isLegal(position, keys[i]);
+            }
+            if (lastLegal && index-- == 0) {
+                return toMove(position, keys[i]);
+            }
+        }
+        throw new IllegalArgumentException("No legal move " + index + " in " + position.toFen());
+    }
+
+    /**
+     * Packs a move into 16 bits: origin, destination and promotion piece.
+     *
+     * @param position Position the move is played from
+     * @param move     Move
+     * @return Key of the move
+     */
+    static int moveKey(ChessPosition position, ChessMove move) {
+        int from = move.getFrom().getIndex();
+        int to = move.getTo().getIndex();
+        int promotion = position.pieceAt(from) instanceof Pawn && (to >> 3 == 0 || to >> 3 == 7)
+                ? Arrays.asList(PROMOTIONS).indexOf(move.promotionIdentity()) : 0;
+        return key(from, to, promotion);
+    }
+
+    /**
+     * Unpacks a move from {@link #moveKey(ChessPosition, ChessMove)}.
+     *
+     * @param position Position the move is played from
+     * @param key      Key of the move
+     * @return The move
+     */
+    static ChessMove toMove(ChessPosition position, int key) {
+        int from = key >> 8;
+        int to = (key >> 2) & 63;
+        ChessMove move = new ChessMove(ChessCoordinate.fromIndex(from), ChessCoordinate.fromIndex(to));
+        if (position.pieceAt(from) instanceof Pawn && (to >> 3 == 0 || to >> 3 == 7)) {
+            move.setPromotion(PROMOTIONS[key & 3]);
+        }
+        return move;
+    }
+
+    private static boolean isLegal(ChessPosition position, int key) {
+        return position.pieceAt(key >> 8).legalPositionCheck(ChessCoordinate.fromIndex((key >> 2) & 63));
+    }
+
+    private static int key(int from, int to, int promotion) {
+        return from << 8 | to << 2 | promotion;
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.San;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import com.github.zacharygriggs.pgn.PgnUtility;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads games one at a time from a binary game file written by {@link GameWriter}.
+ * <p>
+ * Moves are replayed from their indices, and get their SAN, so the games can be written
+ * back out as PGN.
+ */
+public class GameReader implements Closeable {
+
+    private final InputStream in;
+    private final int[] keys = GameFormat.newKeyBuffer();
+    private final List<String> strings = new ArrayList<>();
+    private final StringBuilder san = new StringBuilder();
+    private boolean ended;
+    private boolean writeSan = true;
+
+    /**
+     * Creates a reader.
+     *
+     * @param in Stream to read from. Closed with the reader.
+     * @throws IOException If reading fails, or the stream is not a game file
+     */
+    public GameReader(InputStream in) throws IOException {
+        this(in, true);
+    }
+
+    /**
+     * Creates a reader of a file.
+     *
+     * @param file Game file
+     * @throws IOException If the file cannot be read, or is not a game file
+     */
+    public GameReader(Path file) throws IOException {
+        this(Files.newInputStream(file));
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param in         Stream to read from
+     * @param fileHeader Whether the stream is at the start of the file, rather than a block
+     */
+    GameReader(InputStream in, boolean fileHeader) throws IOException {
+        this.in = new BufferedInputStream(in, 1 << 16);
+        if (fileHeader) {
+            if (readInt() != GameFormat.MAGIC) {
+                throw new IOException("Not a game file");
+            }
+            int version = readByte();
+            if (version != GameFormat.VERSION) {
+                throw new IOException("Unsupported game file version " + version);
+            }
+        }
+    }
+
+    /**
+     * Reads the next game.
+     *
+     * @return The game, or null at the end of the file
+     * @throws IOException If reading fails
+     */
+    public Pgn next() throws IOException {
+        if (!nextGame()) {
+            return null;
+        }
+        PgnHeader header = readHeader();
+        int flags = readByte();
+        ChessPosition start = (flags & GameFormat.CUSTOM_START) != 0
+                ? Fen.parse(readString()) : ChessPosition.startingPosition();
+        int plies = readVarint();
+        List<ChessMove> moves = new ArrayList<>(plies);
+        ChessPosition position = start;
+        for (int i = 0; i < plies; i++) {
+            ChessMove move = GameFormat.decode(position, readByte(), keys);
+            ChessPosition after = position.positionAfterMove(move);
+            after.updateAllPieces();
+            if (writeSan) {
+                boolean check = after.inCheck(after.getSideToMove());
+                san.setLength(0);
+                San.write(position, move, check, check && after.noLegalMoves(after.getSideToMove()), san);
+                move.setSan(san.toString());
+            }
+            moves.add(move);
+            position = after;
+        }
+        Pgn pgn = new Pgn();
+        pgn.setHeader(header);
+        pgn.setStartingPosition(start);
+        pgn.setMoves(moves);
+        if (writeSan) {
+            pgn.setMovetext(PgnUtility.movesToMovetext(start, moves, header.getResult()));
+        }
+        if ((flags & GameFormat.HAS_CLOCKS) != 0) {
+            pgn.setClocks(readDeltas(2));
+        }
+        if ((flags & GameFormat.HAS_EVALS) != 0) {
+            pgn.setEvals(readDeltas(1));
+        }
+        return pgn;
+    }
+
+    /**
+     * Skips the next game without replaying its moves.
+     *
+     * @return False at the end of the file
+     * @throws IOException If reading fails
+     */
+    public boolean skip() throws IOException {
+        if (!nextGame()) {
+            return false;
+        }
+        // Tags are read even so, as later games may use their strings.
+        readHeader();
+        int flags = readByte();
+        if ((flags & GameFormat.CUSTOM_START) != 0) {
+            readString();
+        }
+        skipBytes(readVarint());
+        for (int list = GameFormat.HAS_CLOCKS; list <= GameFormat.HAS_EVALS; list <<= 1) {
+            if ((flags & list) != 0) {
+                for (int i = readVarint(); i > 0; i--) {
+                    readVarint();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves past any block marker to the next game.
+     *
+     * @return False at the end of the file
+     */
+    private boolean nextGame() throws IOException {
+        if (ended) {
+            return false;
+        }
+        int marker = readByte();
+        if (marker == GameFormat.BLOCK) {
+            strings.clear();
+            marker = readByte();
+        }
+        if (marker == GameFormat.END) {
+            ended = true;
+            return false;
+        } else if (marker != GameFormat.GAME) {
+            throw new IOException("Corrupt game file: unexpected record " + marker);
+        }
+        return true;
+    }
+
+    private PgnHeader readHeader() throws IOException {
+        PgnHeader header = new PgnHeader();
+        for (int i = readVarint(); i > 0; i--) {
+            String name = readString();
+            header.setTag(name, readString());
+        }
+        return header;
+    }
+
+    private List<Integer> readDeltas(int distance) throws IOException {
+        int count = readVarint();
+        List<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int delta = readVarint();
+            int value = (delta >>> 1) ^ -(delta & 1);
+            values.add(i < distance ? value : values.get(i - distance) + value);
+        }
+        return values;
+    }
+
+    private String readString() throws IOException {
+        int id = readVarint();
+        if (id > 0) {
+            if (id > strings.size()) {
+                throw new IOException("Corrupt game file: unknown string " + (id - 1));
+            }
+            return strings.get(id - 1);
+        }
+        byte[] bytes = new byte[readVarint()];
+        for (int read = 0; read < bytes.length; ) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt game file: varint too long");
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | readByte();
+        }
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Game file ends early");
+        }
+        return b;
+    }
+
+    private void skipBytes(int count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                readByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Chooses whether moves get their SAN and games their movetext. Without, games are read
+     * faster, for when only the moves themselves are needed.
+     *
+     * @param writeSan True to write SAN; the default
+     */
+    public void setWriteSan(boolean writeSan) {
+        this.writeSan = writeSan;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import com.github.zacharygriggs.pgn.PgnImporter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games to a binary game file, about one byte per ply. See {@link GameFormat} for the layout.
+ * <p>
+ * Games are written in blocks. Each block starts a new string table, so any block can be read
+ * on its own, and the index written on {@link #close()} lets {@link GameArchive} find them.
+ */
+public class GameWriter implements Closeable {
+
+    /**
+     * Games per block when none is given.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private static final String START_FEN = ChessPosition.startingPosition().toFen();
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final int[] keys = GameFormat.newKeyBuffer();
+    // Tag names and values already in the current block's string table.
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<Long> blockOffsets = new ArrayList<>();
+    // Encoded moves of the game being written, so an illegal move is found before anything is written.
+    private byte[] moveBytes = new byte[256];
+    private DuplicateFilter duplicates;
+    private long offset;
+    private long games;
+    private boolean closed;
+
+    /**
+     * Creates a writer.
+     *
+     * @param out       Stream to write to. Closed with the writer.
+     * @param blockSize Games per block: fewer make random access faster, more make the file smaller
+     * @throws IOException If writing fails
+     */
+    public GameWriter(OutputStream out, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.out = new BufferedOutputStream(out, 1 << 16);
+        this.blockSize = blockSize;
+        writeInt(GameFormat.MAGIC);
+        writeByte(GameFormat.VERSION);
+    }
+
+    /**
+     * Creates a writer of a file, replacing any file already there.
+     *
+     * @param file File to write
+     * @throws IOException If the file cannot be written
+     */
+    public GameWriter(Path file) throws IOException {
+        this(Files.newOutputStream(file), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Writes a game, unless the duplicate filter has seen it. A game that cannot be written
+     * leaves the file and the filter as they were.
+     *
+     * @param pgn Game, with its moves resolved
+     * @return True if the game was written, false if it was a duplicate
+     * @throws IOException If writing fails
+     * @throws IllegalArgumentException If the game has no moves, or an illegal one
+     */
+    public boolean write(Pgn pgn) throws IOException {
+        if (pgn.getMoves() == null) {
+            throw new IllegalArgumentException("Game has no moves; read it with moves resolved");
+        }
+        long hash = 0;
+        if (duplicates != null) {
+            hash = DuplicateFilter.hash(pgn);
+            if (duplicates.contains(hash)) {
+                // Counts the duplicate.
+                duplicates.add(hash);
+                return false;
+            }
+        }
+        ChessPosition position = pgn.getStartingPosition() == null
+                ? ChessPosition.startingPosition() : pgn.getStartingPosition();
+        String fen = position.toFen();
+        List<ChessMove> moves = pgn.getMoves();
+        if (moveBytes.length < moves.size()) {
+            moveBytes = new byte[Math.max(moves.size(), 2 * moveBytes.length)];
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            moveBytes[i] = (byte) GameFormat.encode(position, moves.get(i), keys);
+            position = position.positionAfterMove(moves.get(i));
+            position.updateAllPieces();
+        }
+        if (games % blockSize == 0) {
+            blockOffsets.add(offset);
+            writeByte(GameFormat.BLOCK);
+            strings.clear();
+        }
+        writeByte(GameFormat.GAME);
+        PgnHeader header = pgn.getHeader() == null ? new PgnHeader() : pgn.getHeader();
+        // The seven standard tags come first in a header.
+        writeVarint(header.getTagCount());
+        for (int i = 0; i < header.getTagCount(); i++) {
+            writeString(header.getTagName(i));
+            writeString(header.getTagValue(i));
+        }
+        boolean customStart = !fen.equals(START_FEN);
+        List<Integer> clocks = pgn.getClocks();
+        List<Integer> evals = pgn.getEvals();
+        writeByte((customStart ? GameFormat.CUSTOM_START : 0)
+                | (clocks != null ? GameFormat.HAS_CLOCKS : 0)
+                | (evals != null ? GameFormat.HAS_EVALS : 0));
+        if (customStart) {
+            writeString(fen);
+        }
+        writeVarint(moves.size());
+        out.write(moveBytes, 0, moves.size());
+        offset += moves.size();
+        if (clocks != null) {
+            writeVarint(clocks.size());
+            for (int i = 0; i < clocks.size(); i++) {
+                writeZigzag(clocks.get(i) - (i < 2 ? 0 : clocks.get(i - 2)));
+            }
+        }
+        if (evals != null) {
+            writeVarint(evals.size());
+            for (int i = 0; i < evals.size(); i++) {
+                writeZigzag(evals.get(i) - (i < 1 ? 0 : evals.get(i - 1)));
+            }
+        }
+        games++;
+        if (duplicates != null) {
+            duplicates.add(hash);
+        }
+        return true;
+    }
+
+    /**
+     * Skips games already written, as told by a filter, for merging files that share games.
+     *
+     * @param duplicates Filter, or null to write every game; the default. Not closed with the writer.
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * Gets how many games have been written.
+     *
+     * @return Number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Writes the block index and closes the file.
+     *
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeByte(GameFormat.END);
+            long indexOffset = offset;
+            writeInt(blockSize);
+            writeLong(games);
+            writeInt(blockOffsets.size());
+            for (long blockOffset : blockOffsets) {
+                writeLong(blockOffset);
+            }
+            writeLong(indexOffset);
+            writeInt(GameFormat.INDEX_MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Merges PGN files and binary game files into one binary game file from the command line,
+     * leaving out games seen before:
+     * <pre>GameWriter games.ecg input.pgn|input.ecg... [--expected games] [--threads n] [--keep-duplicates]</pre>
+     * Files ending in ".pgn" are read as PGN, any other as binary game files.
+     *
+     * @param args Command line arguments
+     * @throws IOException If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GameWriter games.ecg input.pgn|input.ecg... "
+                    + "[--expected games] [--threads n] [--keep-duplicates]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        long expected = 10_000_000;
+        boolean dedup = true;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--expected") && i + 1 < args.length) {
+                expected = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--keep-duplicates")) {
+                dedup = false;
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        long start = System.nanoTime();
+        Path output = Paths.get(args[0]);
+        long written;
+        long duplicates;
+        try (DuplicateFilter filter = new DuplicateFilter(output.toAbsolutePath().getParent(), expected);
+             GameWriter writer = new GameWriter(output)) {
+            writer.setDuplicateFilter(dedup ? filter : null);
+            for (Path input : inputs) {
+                if (input.toString().endsWith(".pgn")) {
+                    try (PgnImporter importer = new PgnImporter(threads, 4 << 20)) {
+                        importer.importFile(input, pgn -> {
+                            try {
+                                writer.write(pgn);
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        });
+                    } catch (UncheckedIOException ex) {
+                        throw ex.getCause();
+                    }
+                } else {
+                    try (GameReader reader = new GameReader(input)) {
+                        Pgn pgn;
+                        while ((pgn = reader.next()) != null) {
+                            writer.write(pgn);
+                        }
+                    }
+                }
+            }
+            written = writer.getGames();
+            duplicates = filter.getDuplicates();
+        }
+        System.out.printf("%d games, %d duplicates left out, in %d ms, %d KB%n", written,
+                duplicates, (System.nanoTime() - start) / 1_000_000, Files.size(output) >> 10);
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer id = strings.get(value);
+        if (id != null) {
+            writeVarint(id + 1);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(0);
+        writeVarint(bytes.length);
+        out.write(bytes);
+        offset += bytes.length;
+    }
+
+    private void writeZigzag(int value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeInt(int value) throws IOException {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte(value >>> shift);
+        }
+    }
+
+    private void writeByte(int value) throws IOException {
+        out.write(value);
+        offset++;
+    }
+}
@@ -0,0 +1,387 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.PackedPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the games that reached some material, such as rook and pawn against rook, in an index
+ * written by {@link MaterialIndexBuilder}.
+ * <pre>
+ * file      = "ECMI" version:byte block* directory trailer
+ * block     = (signatures:varint first:varint delta:varint*)*   one run per game
+ * directory = (firstGame:int games:int offset:long length:int filter:long[8])*
+ * trailer   = directoryOffset:long blocks:int games:int "ECMI"
+ * </pre>
+ * Each game has the {@link MaterialSignature}s it reached, sorted. Each block has a filter of
+ * 512 bits, one set for every signature in it, so blocks without the signature sought are
+ * skipped unread. The blocks are memory-mapped and scanned in parallel, and a query stops as
+ * soon as it has found as many games as asked for.
+ * <p>
+ * Games found can be narrowed down further by a {@link PositionPattern}, by replaying them from
+ * the game file the index was built from. Replaying a game stops once it has fewer pieces than
+ * the material sought, since captured pieces never come back.
+ */
+public class MaterialIndex implements AutoCloseable {
+
+    static final int MAGIC = 0x45434D49;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5;
+    static final int FILTER_LONGS = 8;
+    private static final int DIRECTORY_BYTES = 20 + 8 * FILTER_LONGS;
+    private static final int TRAILER_BYTES = 20;
+    private static final long SEGMENT_BYTES = 1L << 30;
+    // Blocks scanned by one task.
+    private static final int BLOCKS_PER_TASK = 64;
+
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    private final MappedByteBuffer[] segments;
+    private final int[] firstGames;
+    private final int[] gameCounts;
+    private final int[] segmentOf;
+    private final int[] starts;
+    private final int[] lengths;
+    private final long[] filters;
+    private final int games;
+
+    /**
+     * Opens an index, to be queried with a thread per available processor.
+     *
+     * @param file Index file
+     * @throws IOException If the file cannot be read, or is not an index
+     */
+    public MaterialIndex(Path file) throws IOException {
+        this(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens an index.
+     *
+     * @param file        Index file
+     * @param parallelism Number of threads a query runs on
+     * @throws IOException If the file cannot be read, or is not an index
+     */
+    public MaterialIndex(Path file, int parallelism) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw new IOException("Not a material index: " + file);
+            }
+            ByteBuffer header = read(0, HEADER_BYTES);
+            ByteBuffer trailer = read(size - TRAILER_BYTES, TRAILER_BYTES);
+            long directoryOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            this.games = trailer.getInt();
+            if (header.getInt() != MAGIC || header.get() != VERSION || trailer.getInt() != MAGIC) {
+                throw new IOException("Not a material index: " + file);
+            }
+            ByteBuffer directory = read(directoryOffset, blocks * DIRECTORY_BYTES);
+            firstGames = new int[blocks];
+            gameCounts = new int[blocks];
+            segmentOf = new int[blocks];
+            starts = new int[blocks];
+            lengths = new int[blocks];
+            filters = new long[blocks * FILTER_LONGS];
+            long[] offsets = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                firstGames[i] = directory.getInt();
+                gameCounts[i] = directory.getInt();
+                offsets[i] = directory.getLong();
+                lengths[i] = directory.getInt();
+                for (int j = 0; j < FILTER_LONGS; j++) {
+                    filters[i * FILTER_LONGS + j] = directory.getLong();
+                }
+            }
+            // Consecutive blocks are mapped together, up to a gigabyte at a time.
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            int first = 0;
+            while (first < blocks) {
+                long start = offsets[first];
+                int last = first;
+                while (last + 1 < blocks && offsets[last + 1] + lengths[last + 1] - start <= SEGMENT_BYTES) {
+                    last++;
+                }
+                for (int i = first; i <= last; i++) {
+                    segmentOf[i] = mapped.size();
+                    starts[i] = (int) (offsets[i] - start);
+                }
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, offsets[last] + lengths[last] - start));
+                first = last + 1;
+            }
+            this.segments = mapped.toArray(new MappedByteBuffer[0]);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        this.pool = GameBatches.newPool("material-query", parallelism);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Material index ended early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Picks the bit of a signature in the block filters.
+     */
+    static int filterBit(int signature) {
+        return (signature * 0x9E3779B1) >>> (32 - 9);
+    }
+
+    /**
+     * Finds games that reached some material.
+     *
+     * @param query Signature sought, as from {@link MaterialSignature#parse}
+     * @param limit Most games to find
+     * @return Ids of games found, in order. If there are more than the limit, which are found
+     *         may differ from query to query.
+     * @throws IOException If the query is interrupted
+     */
+    public List<Integer> find(int query, int limit) throws IOException {
+        AtomicInteger found = new AtomicInteger();
+        List<Callable<List<Integer>>> tasks = new ArrayList<>();
+        for (int first = 0; first < firstGames.length; first += BLOCKS_PER_TASK) {
+            int from = first;
+            int to = Math.min(firstGames.length, first + BLOCKS_PER_TASK);
+            tasks.add(() -> {
+                List<Integer> games = new ArrayList<>();
+                for (int block = from; block < to && found.get() < limit; block++) {
+                    scan(block, query, games, found, limit);
+                }
+                return games;
+            });
+        }
+        return joinAll(tasks, limit);
+    }
+
+    /**
+     * Finds games that reached some material in a position matching a pattern.
+     *
+     * @param query   Signature sought, as from {@link MaterialSignature#parse}
+     * @param pattern Pattern the position must also match
+     * @param archive The game file the index was built from
+     * @param limit   Most games to find
+     * @return Ids of games found, in order. If there are more than the limit, which are found
+     *         may differ from query to query.
+     * @throws IOException If the game file cannot be read
+     */
+    public List<Integer> find(int query, PositionPattern pattern, GameArchive archive, int limit) throws IOException {
+        if (archive.getGameCount() != games) {
+            throw new IllegalArgumentException("The index was not built from this game file");
+        }
+        List<Integer> candidates = find(query, Integer.MAX_VALUE);
+        AtomicInteger found = new AtomicInteger();
+        List<Callable<List<Integer>>> tasks = new ArrayList<>();
+        int blockSize = archive.getBlockSize();
+        for (int i = 0; i < candidates.size(); ) {
+            int block = candidates.get(i) / blockSize;
+            int from = i;
+            while (i < candidates.size() && candidates.get(i) / blockSize == block) {
+                i++;
+            }
+            List<Integer> inBlock = candidates.subList(from, i);
+            tasks.add(() -> {
+                List<Integer> games = new ArrayList<>();
+                if (found.get() >= limit) {
+                    return games;
+                }
+                List<Pgn> pgns = archive.readBlock(block, false);
+                ByteBuffer packed = ByteBuffer.allocate(PackedPosition.BYTES);
+                for (int game : inBlock) {
+                    if (found.get() >= limit) {
+                        break;
+                    }
+                    if (replay(pgns.get(game - block * blockSize), query, pattern, packed)) {
+                        games.add(game);
+                        found.incrementAndGet();
+                    }
+                }
+                return games;
+            });
+        }
+        return joinAll(tasks, limit);
+    }
+
+    /**
+     * Replays a game until a position has the material and matches the pattern, or the game has
+     * too few pieces left to get there.
+     */
+    private static boolean replay(Pgn pgn, int query, PositionPattern pattern, ByteBuffer packed) {
+        int pieces = MaterialSignature.pieces(query);
+        ChessPosition position = pgn.getStartingPosition() == null
+                ? ChessPosition.startingPosition() : pgn.getStartingPosition();
+        List<ChessMove> moves = pgn.getMoves();
+        for (int ply = 0; ; ply++) {
+            if (position.getPieces().size() < pieces) {
+                return false;
+            }
+            if (MaterialSignature.matches(query, MaterialSignature.of(position))) {
+                PackedPosition.write(position, 0, PackedPosition.UNKNOWN_RESULT, packed, 0);
+                if (pattern.matches(packed, 0)) {
+                    return true;
+                }
+            }
+            if (ply == moves.size()) {
+                return false;
+            }
+            position = position.positionAfterMove(moves.get(ply));
+            position.updateAllPieces();
+        }
+    }
+
+    /**
+     * Adds the games of a block that reached the material.
+     */
+    private void scan(int block, int query, List<Integer> games, AtomicInteger found, int limit) {
+        boolean anySide = (query & MaterialSignature.ANY_SIDE) != 0;
+        int white = query & ~MaterialSignature.ANY_SIDE & ~MaterialSignature.BLACK_TO_MOVE;
+        int black = white | MaterialSignature.BLACK_TO_MOVE;
+        int low = anySide || (query & MaterialSignature.BLACK_TO_MOVE) == 0 ? white : black;
+        int high = anySide || (query & MaterialSignature.BLACK_TO_MOVE) != 0 ? black : white;
+        if (!inFilter(block, low) && (low == high || !inFilter(block, high))) {
+            return;
+        }
+        ByteBuffer bytes = segments[segmentOf[block]].duplicate();
+        bytes.position(starts[block]);
+        for (int game = firstGames[block]; game < firstGames[block] + gameCounts[block]; game++) {
+            int count = readVarint(bytes);
+            int signature = 0;
+            boolean reached = false;
+            for (int i = 0; i < count; i++) {
+                signature += readVarint(bytes);
+                if (!reached && MaterialSignature.matches(query, signature)) {
+                    reached = true;
+                }
+            }
+            if (reached) {
+                games.add(game);
+                if (found.incrementAndGet() >= limit) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean inFilter(int block, int signature) {
+        int bit = filterBit(signature);
+        return (filters[block * FILTER_LONGS + (bit >>> 6)] & 1L << bit) != 0;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private List<Integer> joinAll(List<Callable<List<Integer>>> tasks, int limit) throws IOException {
+        List<ForkJoinTask<List<Integer>>> submitted = new ArrayList<>(tasks.size());
+        for (Callable<List<Integer>> task : tasks) {
+            submitted.add(pool.submit(task));
+        }
+        List<Integer> games = new ArrayList<>();
+        for (ForkJoinTask<List<Integer>> task : submitted) {
+            try {
+                games.addAll(task.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while querying", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IllegalStateException("Query failed", ex.getCause());
+            }
+        }
+        return games.size() > limit ? new ArrayList<>(games.subList(0, limit)) : games;
+    }
+
+    /**
+     * Gets how many games the index has.
+     *
+     * @return Number of games
+     */
+    public int getGameCount() {
+        return games;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdown();
+        channel.close();
+    }
+
+    /**
+     * Queries an index from the command line:
+     * <pre>MaterialIndex material.idx KRPvKR [w|b] [--limit n] [--games games.ecg --pattern placement]</pre>
+     *
+     * @param args Command line arguments
+     * @throws IOException If a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MaterialIndex material.idx KRPvKR [w|b] [--limit n] [--games games.ecg --pattern placement]");
+            System.exit(1);
+        }
+        String signature = args[1];
+        int limit = 20;
+        Path gameFile = null;
+        PositionPattern pattern = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--limit") && i + 1 < args.length) {
+                limit = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--games") && i + 1 < args.length) {
+                gameFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--pattern") && i + 1 < args.length) {
+                pattern = PositionPattern.parse(args[++i]);
+            } else if (args[i].equals("w") || args[i].equals("b")) {
+                signature += " " + args[i];
+            } else {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(1);
+            }
+        }
+        int query = MaterialSignature.parse(signature);
+        try (MaterialIndex index = new MaterialIndex(Paths.get(args[0]))) {
+            long start = System.nanoTime();
+            List<Integer> found;
+            if (pattern != null && gameFile != null) {
+                try (GameArchive archive = new GameArchive(gameFile)) {
+                    found = index.find(query, pattern, archive, limit);
+                }
+            } else {
+                found = index.find(query, limit);
+            }
+            System.out.printf("%d games reaching %s in %.2f ms: %s%n", found.size(), MaterialSignature.toString(query),
+                    (System.nanoTime() - start) / 1e6, found);
+        }
+    }
+}
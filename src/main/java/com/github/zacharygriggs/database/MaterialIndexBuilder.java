@@ -0,0 +1,220 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds a {@link MaterialIndex} from PGN files and binary game files.
+ * <p>
+ * Games are replayed in parallel and the material signatures each reaches are gathered, sorted
+ * and delta coded per batch of games. Material only changes on captures and promotions, so a
+ * game reaches few signatures and the index takes a few dozen bytes a game. Games get their
+ * ids in the order they are added, from 0, as in a {@link PositionIndex}.
+ */
+public class MaterialIndexBuilder implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    // Encoded batches by the id of their first game, so they are written in order.
+    private final Map<Long, Batch> batches = new TreeMap<>();
+    private long games;
+
+    /**
+     * Creates a builder.
+     *
+     * @param parallelism Number of worker threads
+     */
+    public MaterialIndexBuilder(int parallelism) {
+        this.pool = GameBatches.newPool("material-index", parallelism);
+    }
+
+    /**
+     * Adds every game of a binary game file, one block per task.
+     *
+     * @param archive Game file
+     * @throws IOException If reading fails
+     */
+    public void addArchive(GameArchive archive) throws IOException {
+        long firstId = games;
+        if (firstId + archive.getGameCount() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many games for one index");
+        }
+        games += GameBatches.fromArchive(pool, archive, (first, pgns) -> add(firstId + first, pgns));
+    }
+
+    /**
+     * Adds every game of a PGN file that can be read. Games that cannot are left out and get no id.
+     *
+     * @param file PGN file
+     * @throws IOException If reading fails
+     */
+    public void addPgn(Path file) throws IOException {
+        long firstId = games;
+        games += GameBatches.fromPgn(pool, file, (first, pgns) -> add(firstId + first, pgns));
+    }
+
+    /**
+     * Replays a batch of games and encodes the signatures each reaches.
+     */
+    private void add(long first, List<Pgn> pgns) {
+        Batch batch = new Batch(pgns.size());
+        int[] signatures = new int[64];
+        for (Pgn pgn : pgns) {
+            ChessPosition position = pgn.getStartingPosition() == null
+                    ? ChessPosition.startingPosition() : pgn.getStartingPosition();
+            List<ChessMove> moves = pgn.getMoves();
+            if (signatures.length < moves.size() + 1) {
+                signatures = new int[moves.size() + 1];
+            }
+            signatures[0] = MaterialSignature.of(position);
+            for (int ply = 0; ply < moves.size(); ply++) {
+                position = position.positionAfterMove(moves.get(ply));
+                position.updateAllPieces();
+                signatures[ply + 1] = MaterialSignature.of(position);
+            }
+            Arrays.sort(signatures, 0, moves.size() + 1);
+            int count = 0;
+            for (int i = 0; i <= moves.size(); i++) {
+                if (i == 0 || signatures[i] != signatures[i - 1]) {
+                    signatures[count++] = signatures[i];
+                }
+            }
+            batch.writeVarint(count);
+            for (int i = 0; i < count; i++) {
+                batch.writeVarint(i == 0 ? signatures[0] : signatures[i] - signatures[i - 1]);
+                int bit = MaterialIndex.filterBit(signatures[i]);
+                batch.filter[bit >>> 6] |= 1L << bit;
+            }
+        }
+        synchronized (batches) {
+            batches.put(first, batch);
+        }
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param file Index file to write
+     * @throws IOException If writing fails
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MaterialIndex.MAGIC);
+            out.writeByte(MaterialIndex.VERSION);
+            long offset = MaterialIndex.HEADER_BYTES;
+            long[] offsets = new long[batches.size()];
+            int block = 0;
+            for (Batch batch : batches.values()) {
+                offsets[block++] = offset;
+                out.write(batch.bytes, 0, batch.length);
+                offset += batch.length;
+            }
+            block = 0;
+            for (Map.Entry<Long, Batch> entry : batches.entrySet()) {
+                out.writeInt((int) (long) entry.getKey());
+                out.writeInt(entry.getValue().games);
+                out.writeLong(offsets[block++]);
+                out.writeInt(entry.getValue().length);
+                for (long bits : entry.getValue().filter) {
+                    out.writeLong(bits);
+                }
+            }
+            out.writeLong(offset);
+            out.writeInt(batches.size());
+            out.writeInt((int) games);
+            out.writeInt(MaterialIndex.MAGIC);
+        }
+    }
+
+    /**
+     * Gets how many games have been added.
+     *
+     * @return Number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * The signatures of a batch of games, encoded, and which signatures it has at all.
+     */
+    private static class Batch {
+        private final int games;
+        private final long[] filter = new long[MaterialIndex.FILTER_LONGS];
+        private byte[] bytes = new byte[1024];
+        private int length;
+
+        Batch(int games) {
+            this.games = games;
+        }
+
+        void writeVarint(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Builds an index from the command line:
+     * <pre>MaterialIndexBuilder material.idx games.pgn|games.ecg... [--threads n]</pre>
+     * Files ending in ".pgn" are read as PGN, any other as binary game files.
+     *
+     * @param args Command line arguments
+     * @throws IOException If a file cannot be read or the index written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MaterialIndexBuilder material.idx games.pgn|games.ecg... [--threads n]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        long start = System.nanoTime();
+        try (MaterialIndexBuilder builder = new MaterialIndexBuilder(threads)) {
+            for (Path input : inputs) {
+                if (input.toString().endsWith(".pgn")) {
+                    builder.addPgn(input);
+                } else {
+                    try (GameArchive archive = new GameArchive(input)) {
+                        builder.addArchive(archive);
+                    }
+                }
+            }
+            Path index = Paths.get(args[0]);
+            builder.write(index);
+            System.out.printf("%d games in %d ms, %d KB%n", builder.getGames(),
+                    (System.nanoTime() - start) / 1_000_000, Files.size(index) >> 10);
+        }
+    }
+}
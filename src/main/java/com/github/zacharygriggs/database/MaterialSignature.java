@@ -0,0 +1,180 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.PackedPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.ChessPiece;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The material of a position as an int: how many pawns, knights, bishops, rooks and queens each
+ * side has, and who is to move. Kings are always there and not counted.
+ * <p>
+ * White's counts take bits 0 to 11 and Black's bits 12 to 23, four bits for pawns and two for
+ * each other piece, so more than three knights, bishops, rooks or queens count as three. Bit 24
+ * is set if Black is to move. Signatures are written as in endgame tables, e.g. "KRPvKR", with
+ * "w" or "b" after a space for the side to move.
+ */
+public final class MaterialSignature {
+
+    /**
+     * Bit set if Black is to move.
+     */
+    public static final int BLACK_TO_MOVE = 1 << 24;
+
+    /**
+     * Bit set in a query that matches either side to move. Never set in a position's signature.
+     */
+    public static final int ANY_SIDE = 1 << 25;
+
+    // Pieces in the order of their counts, and where each count starts.
+    private static final String PIECES = "PNBRQ";
+    private static final int[] SHIFTS = {0, 4, 6, 8, 10};
+    private static final int[] MAXIMUMS = {15, 3, 3, 3, 3};
+    private static final int BLACK_SHIFT = 12;
+
+    private MaterialSignature() {}
+
+    /**
+     * Gets the signature of a position.
+     *
+     * @param position Position
+     * @return Signature
+     */
+    public static int of(ChessPosition position) {
+        int signature = count(position, ChessPlayer.WHITE) | count(position, ChessPlayer.BLACK) << BLACK_SHIFT;
+        return position.getSideToMove() == ChessPlayer.WHITE ? signature : signature | BLACK_TO_MOVE;
+    }
+
+    private static int count(ChessPosition position, ChessPlayer owner) {
+        return add(0, 0, position.countPieces(owner, ChessPiece.PAWN))
+                | add(0, 1, position.countPieces(owner, ChessPiece.KNIGHT))
+                | add(0, 2, position.countPieces(owner, ChessPiece.BISHOP))
+                | add(0, 3, position.countPieces(owner, ChessPiece.ROOK))
+                | add(0, 4, position.countPieces(owner, ChessPiece.QUEEN));
+    }
+
+    private static int add(int signature, int piece, int count) {
+        return signature | Math.min(count, MAXIMUMS[piece]) << SHIFTS[piece];
+    }
+
+    /**
+     * Gets the signature of a packed position, without reading the position.
+     *
+     * @param packed Buffer of packed positions
+     * @param index  Index of the first byte of the position
+     * @return Signature
+     */
+    public static int of(ByteBuffer packed, int index) {
+        int[] counts = new int[2 * PIECES.length()];
+        int pieces = Long.bitCount(PackedPosition.occupancy(packed, index));
+        for (int i = 0; i < pieces; i++) {
+            int code = PackedPosition.pieceCode(packed, index, i);
+            int type = code & 7;
+            if (type < PIECES.length()) {
+                counts[(code >> 3) * PIECES.length() + type]++;
+            }
+        }
+        int signature = 0;
+        for (int piece = 0; piece < PIECES.length(); piece++) {
+            signature = add(signature, piece, counts[piece]);
+            signature |= add(0, piece, counts[PIECES.length() + piece]) << BLACK_SHIFT;
+        }
+        return PackedPosition.blackToMove(packed, index) ? signature | BLACK_TO_MOVE : signature;
+    }
+
+    /**
+     * Reads a signature, e.g. "KRPvKR w". Without a side to move, the signature is a query for
+     * either side.
+     *
+     * @param text Signature
+     * @return Signature, with {@link #ANY_SIDE} if no side to move is given
+     * @throws IllegalArgumentException If the text is not a signature
+     */
+    public static int parse(String text) {
+        String trimmed = text.trim();
+        int side = ANY_SIDE;
+        if (trimmed.endsWith(" w")) {
+            side = 0;
+            trimmed = trimmed.substring(0, trimmed.length() - 2).trim();
+        } else if (trimmed.endsWith(" b")) {
+            side = BLACK_TO_MOVE;
+            trimmed = trimmed.substring(0, trimmed.length() - 2).trim();
+        }
+        int split = trimmed.indexOf('v');
+        if (split < 0 || !trimmed.startsWith("K") || split + 1 >= trimmed.length() || trimmed.charAt(split + 1) != 'K') {
+            throw new IllegalArgumentException("Not a material signature, e.g. KRPvKR: " + text);
+        }
+        return parseSide(trimmed, 1, split, text) | parseSide(trimmed, split + 2, trimmed.length(), text) << BLACK_SHIFT | side;
+    }
+
+    private static int parseSide(String text, int from, int to, String original) {
+        int[] counts = new int[PIECES.length()];
+        for (int i = from; i < to; i++) {
+            int piece = PIECES.indexOf(text.charAt(i));
+            if (piece < 0) {
+                throw new IllegalArgumentException("Not a material signature, e.g. KRPvKR: " + original);
+            }
+            counts[piece]++;
+        }
+        int signature = 0;
+        for (int piece = 0; piece < PIECES.length(); piece++) {
+            signature = add(signature, piece, counts[piece]);
+        }
+        return signature;
+    }
+
+    /**
+     * Writes a signature, e.g. "KRPvKR w".
+     *
+     * @param signature Signature
+     * @return Text of the signature, with no side to move if it is a query for either side
+     */
+    public static String toString(int signature) {
+        StringBuilder text = new StringBuilder("K");
+        appendSide(signature, text);
+        text.append("vK");
+        appendSide(signature >>> BLACK_SHIFT, text);
+        if ((signature & ANY_SIDE) == 0) {
+            text.append((signature & BLACK_TO_MOVE) == 0 ? " w" : " b");
+        }
+        return text.toString();
+    }
+
+    private static void appendSide(int counts, StringBuilder text) {
+        // Strongest piece first, as endgames are named.
+        for (int piece = PIECES.length() - 1; piece >= 0; piece--) {
+            for (int i = counts >>> SHIFTS[piece] & MAXIMUMS[piece]; i > 0; i--) {
+                text.append(PIECES.charAt(piece));
+            }
+        }
+    }
+
+    /**
+     * Counts the pieces of a signature, kings included.
+     *
+     * @param signature Signature
+     * @return Number of pieces
+     */
+    public static int pieces(int signature) {
+        int count = 2;
+        for (int side = 0; side < 2; side++) {
+            for (int piece = 0; piece < PIECES.length(); piece++) {
+                count += signature >>> (SHIFTS[piece] + side * BLACK_SHIFT) & MAXIMUMS[piece];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines if a position's signature answers a query.
+     *
+     * @param query     Signature sought, perhaps with {@link #ANY_SIDE}
+     * @param signature Signature of a position
+     * @return True if they match
+     */
+    public static boolean matches(int query, int signature) {
+        return (query & ANY_SIDE) == 0 ? signature == query : (signature & ~BLACK_TO_MOVE) == (query & ~ANY_SIDE);
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+
+/**
+ * How a move played from a position has done: how often it was played, the results of those
+ * games and the average rating of their players.
+ */
+public class MoveStats {
+
+    private final ChessMove move;
+    private long games;
+    private long whiteWins;
+    private long draws;
+    private long blackWins;
+    private long ratingSum;
+    private long ratedGames;
+
+    MoveStats(ChessMove move) {
+        this.move = move;
+    }
+
+    /**
+     * Counts one more game.
+     *
+     * @param result Result, one of the {@link PositionIndex} result codes
+     * @param rating Average rating of the players, or 0 if unknown
+     */
+    void add(int result, int rating) {
+        games++;
+        if (result == PositionIndex.WHITE_WINS) {
+            whiteWins++;
+        } else if (result == PositionIndex.DRAW) {
+            draws++;
+        } else if (result == PositionIndex.BLACK_WINS) {
+            blackWins++;
+        }
+        if (rating > 0) {
+            ratingSum += rating;
+            ratedGames++;
+        }
+    }
+
+    /**
+     * Counts games already added up.
+     *
+     * @param games     Number of games
+     * @param whiteWins Games White won
+     * @param draws     Games drawn
+     * @param blackWins Games Black won
+     * @param rated     Games whose rating is known
+     * @param ratingSum Sum of the ratings of those games
+     */
+    void add(long games, long whiteWins, long draws, long blackWins, long rated, long ratingSum) {
+        this.games += games;
+        this.whiteWins += whiteWins;
+        this.draws += draws;
+        this.blackWins += blackWins;
+        this.ratedGames += rated;
+        this.ratingSum += ratingSum;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWhiteWins() {
+        return whiteWins;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    public long getBlackWins() {
+        return blackWins;
+    }
+
+    /**
+     * Gets the average rating of the players, over the games where it is known.
+     *
+     * @return Average rating, or 0 if no game had ratings
+     */
+    public int getAverageRating() {
+        return ratedGames == 0 ? 0 : (int) (ratingSum / ratedGames);
+    }
+
+    public String toString() {
+        return move + ": " + games + " games, +" + whiteWins + " =" + draws + " -" + blackWins
+                + ", rating " + getAverageRating();
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.San;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An opening tree written by {@link OpeningTreeBuilder}: the moves played from every position
+ * reached within its depth, with how often and how well.
+ * <pre>
+ * file     = "ECOT" version:byte maxPly:byte move* position* trailer
+ * move     = move:short games:int whiteWins:int draws:int blackWins:int rated:int ratingSum:long
+ * position = key:long firstMove:int moves:short      (sorted by key)
+ * trailer  = positionsOffset:long positions:int moves:int "ECOT"
+ * </pre>
+ * The file is memory-mapped and the positions binary searched in place, so opening even a big
+ * tree is instant and it can be read from any number of threads.
+ */
+public class OpeningTree implements AutoCloseable {
+
+    static final int MAGIC = 0x45434F54;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 6;
+    static final int MOVE_BYTES = 30;
+    static final int POSITION_BYTES = 14;
+    private static final int TRAILER_BYTES = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer moves;
+    private final MappedByteBuffer positions;
+    private final int positionCount;
+    private final int maxPly;
+
+    /**
+     * Opens a tree.
+     *
+     * @param file Tree file
+     * @throws IOException If the file cannot be read, or is not a tree
+     */
+    public OpeningTree(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw new IOException("Not an opening tree: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            channel.read(trailer, size - TRAILER_BYTES);
+            trailer.flip();
+            long positionsOffset = trailer.getLong();
+            this.positionCount = trailer.getInt();
+            int moveCount = trailer.getInt();
+            if (header.getInt(0) != MAGIC || trailer.getInt() != MAGIC || header.get(4) != VERSION) {
+                throw new IOException("Not an opening tree: " + file);
+            }
+            this.maxPly = header.get(5) & 0xFF;
+            this.moves = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) moveCount * MOVE_BYTES);
+            this.positions = channel.map(FileChannel.MapMode.READ_ONLY, positionsOffset,
+                    (long) positionCount * POSITION_BYTES);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Looks up a position, with the side to move as given by the position.
+     *
+     * @param position Position
+     * @return The moves played from it, most played first; no games if it is not in the tree
+     */
+    public PositionStats lookup(ChessPosition position) {
+        long key = position.getZobristKey(position.getSideToMove());
+        MoveStats total = new MoveStats(null);
+        List<MoveStats> found = new ArrayList<>();
+        int low = 0;
+        int high = positionCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = positions.getLong(mid * POSITION_BYTES);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                int first = positions.getInt(mid * POSITION_BYTES + 8);
+                int count = positions.getShort(mid * POSITION_BYTES + 12);
+                for (int m = first; m < first + count; m++) {
+                    int at = m * MOVE_BYTES;
+                    ChessMove move = GameFormat.toMove(position, moves.getShort(at) & 0xFFFF);
+                    move.setSan(San.write(position, move));
+                    MoveStats stats = new MoveStats(move);
+                    stats.add(moves.getInt(at + 2), moves.getInt(at + 6), moves.getInt(at + 10),
+                            moves.getInt(at + 14), moves.getInt(at + 18), moves.getLong(at + 22));
+                    total.add(stats.getGames(), stats.getWhiteWins(), stats.getDraws(), stats.getBlackWins(),
+                            moves.getInt(at + 18), moves.getLong(at + 22));
+                    found.add(stats);
+                }
+                found.sort((a, b) -> Long.compare(b.getGames(), a.getGames()));
+                break;
+            }
+        }
+        return new PositionStats(key, total, found);
+    }
+
+    /**
+     * Gets how deep the tree goes.
+     *
+     * @return Plies replayed from each game
+     */
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    /**
+     * Gets how many positions the tree has moves for.
+     *
+     * @return Number of positions
+     */
+    public int getPositionCount() {
+        return positionCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,288 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds an {@link OpeningTree} from PGN files and binary game files.
+ * <p>
+ * Games are replayed in parallel up to a ply depth. Each position and the move played from it
+ * are counted in one of several {@link TreeShard}s, held off the heap and chosen by the top bits
+ * of the position key, so workers rarely wait on each other and the heap only ever holds the
+ * games being replayed. As the shards split the keys by range, writing the tree merges them by
+ * sorting each and taking them in turn.
+ */
+public class OpeningTreeBuilder implements AutoCloseable {
+
+    /**
+     * Plies replayed from each game when none is given.
+     */
+    public static final int DEFAULT_MAX_PLY = 30;
+
+    private static final int SHARD_CAPACITY = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final int maxPly;
+    private final TreeShard[] shards;
+    private final int shardBits;
+    private int minGames = 1;
+    private long games;
+
+    /**
+     * Creates a builder.
+     *
+     * @param parallelism Number of worker threads
+     * @param maxPly      Plies replayed from each game
+     */
+    public OpeningTreeBuilder(int parallelism, int maxPly) {
+        this(parallelism, maxPly, SHARD_CAPACITY);
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @param parallelism   Number of worker threads
+     * @param maxPly        Plies replayed from each game
+     * @param shardCapacity Slots each shard starts with, a power of two
+     */
+    OpeningTreeBuilder(int parallelism, int maxPly, int shardCapacity) {
+        if (maxPly < 1 || maxPly > 255) {
+            throw new IllegalArgumentException("Depth must be from 1 to 255 plies: " + maxPly);
+        }
+        this.pool = GameBatches.newPool("opening-tree", parallelism);
+        this.maxPly = maxPly;
+        // Four shards a worker, at least two.
+        this.shardBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(4 * parallelism - 1));
+        this.shards = new TreeShard[1 << shardBits];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new TreeShard(shardCapacity);
+        }
+    }
+
+    /**
+     * Adds every game of a binary game file, one block per task.
+     *
+     * @param archive Game file
+     * @throws IOException If reading fails
+     */
+    public void addArchive(GameArchive archive) throws IOException {
+        games += GameBatches.fromArchive(pool, archive, (first, pgns) -> count(pgns));
+    }
+
+    /**
+     * Adds every game of a PGN file that can be read.
+     *
+     * @param file PGN file
+     * @throws IOException If reading fails
+     */
+    public void addPgn(Path file) throws IOException {
+        games += GameBatches.fromPgn(pool, file, (first, pgns) -> count(pgns));
+    }
+
+    /**
+     * Leaves moves played fewer times than this out of the tree, which makes it much smaller.
+     *
+     * @param minGames Fewest games a move needs; 1, keeping every move, by default
+     */
+    public void setMinGames(int minGames) {
+        this.minGames = minGames;
+    }
+
+    /**
+     * Replays games up to the depth and counts their moves.
+     */
+    private void count(List<Pgn> pgns) {
+        long[] keys = new long[pgns.size() * maxPly];
+        // Move, rating and result of each entry: move << 32 | rating << 2 | result.
+        long[] values = new long[keys.length];
+        int[] shardOf = new int[keys.length];
+        int[] perShard = new int[shards.length + 1];
+        int length = 0;
+        for (Pgn pgn : pgns) {
+            long game = (long) GameBatches.rating(pgn.getHeader()) << 2 | GameBatches.result(pgn.getHeader());
+            ChessPosition position = pgn.getStartingPosition() == null
+                    ? ChessPosition.startingPosition() : pgn.getStartingPosition();
+            List<ChessMove> moves = pgn.getMoves();
+            for (int ply = 0; ply < Math.min(maxPly, moves.size()); ply++) {
+                ChessMove move = moves.get(ply);
+                long key = position.getZobristKey(position.getSideToMove());
+                keys[length] = key;
+                values[length] = (long) GameFormat.moveKey(position, move) << 32 | game;
+                shardOf[length] = shard(key);
+                perShard[shardOf[length] + 1]++;
+                length++;
+                if (ply + 1 < maxPly) {
+                    position = position.positionAfterMove(move);
+                    position.updateAllPieces();
+                }
+            }
+        }
+        // Group the entries by shard, so each shard is locked once per batch.
+        for (int s = 0; s < shards.length; s++) {
+            perShard[s + 1] += perShard[s];
+        }
+        int[] order = new int[length];
+        int[] next = Arrays.copyOf(perShard, shards.length);
+        for (int i = 0; i < length; i++) {
+            order[next[shardOf[i]]++] = i;
+        }
+        for (int s = 0; s < shards.length; s++) {
+            if (perShard[s] == perShard[s + 1]) {
+                continue;
+            }
+            TreeShard shard = shards[s];
+            synchronized (shard) {
+                for (int j = perShard[s]; j < perShard[s + 1]; j++) {
+                    int i = order[j];
+                    long value = values[i];
+                    shard.add(keys[i], (int) (value >>> 32), (int) value & 3, (int) value >>> 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the shard of a key by its top bits, so that the shards in turn hold the keys in
+     * ascending order.
+     */
+    private int shard(long key) {
+        return (int) ((key ^ Long.MIN_VALUE) >>> (64 - shardBits));
+    }
+
+    /**
+     * Writes the tree.
+     *
+     * @param file Tree file to write
+     * @throws IOException If writing fails
+     */
+    public void write(Path file) throws IOException {
+        Path positions = Files.createTempFile(file.toAbsolutePath().getParent(), "positions", ".tmp");
+        try {
+            long positionCount = 0;
+            long moveCount = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                out.writeInt(OpeningTree.MAGIC);
+                out.writeByte(OpeningTree.VERSION);
+                out.writeByte(maxPly);
+                // The position table goes to a temporary file, closed before it is copied after the moves.
+                try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(positions), 1 << 16))) {
+                    for (TreeShard shard : shards) {
+                        long[] entries;
+                        synchronized (shard) {
+                            entries = shard.sortedSlots();
+                            for (int i = 0; i < entries.length; ) {
+                                long key = entries[i];
+                                int moves = 0;
+                                for (; i < entries.length && entries[i] == key; i += 2) {
+                                    int slot = (int) entries[i + 1];
+                                    if (shard.getGames(slot) < minGames) {
+                                        continue;
+                                    }
+                                    out.writeShort((int) (entries[i + 1] >>> 32));
+                                    out.writeInt(shard.getGames(slot));
+                                    out.writeInt(shard.getWhiteWins(slot));
+                                    out.writeInt(shard.getDraws(slot));
+                                    out.writeInt(shard.getBlackWins(slot));
+                                    out.writeInt(shard.getRated(slot));
+                                    out.writeLong(shard.getRatingSum(slot));
+                                    moves++;
+                                }
+                                if (moves > 0) {
+                                    index.writeLong(key);
+                                    index.writeInt((int) moveCount);
+                                    index.writeShort(moves);
+                                    positionCount++;
+                                    moveCount += moves;
+                                }
+                            }
+                        }
+                    }
+                }
+                if (moveCount > Integer.MAX_VALUE / OpeningTree.MOVE_BYTES) {
+                    throw new IOException("Opening tree too big: " + moveCount + " moves");
+                }
+                Files.copy(positions, out);
+                out.writeLong(OpeningTree.HEADER_BYTES + moveCount * OpeningTree.MOVE_BYTES);
+                out.writeInt((int) positionCount);
+                out.writeInt((int) moveCount);
+                out.writeInt(OpeningTree.MAGIC);
+            }
+        } finally {
+            Files.deleteIfExists(positions);
+        }
+    }
+
+    /**
+     * Gets how many games have been added.
+     *
+     * @return Number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Builds a tree from the command line:
+     * <pre>OpeningTreeBuilder tree.bin games.pgn|games.ecg... [--depth plies] [--min-games n] [--threads n]</pre>
+     * Files ending in ".pgn" are read as PGN, any other as binary game files.
+     *
+     * @param args Command line arguments
+     * @throws IOException If a file cannot be read or the tree written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OpeningTreeBuilder tree.bin games.pgn|games.ecg... "
+                    + "[--depth plies] [--min-games n] [--threads n]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = DEFAULT_MAX_PLY;
+        int minGames = 1;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--depth") && i + 1 < args.length) {
+                depth = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--min-games") && i + 1 < args.length) {
+                minGames = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        long start = System.nanoTime();
+        try (OpeningTreeBuilder builder = new OpeningTreeBuilder(threads, depth)) {
+            builder.setMinGames(minGames);
+            for (Path input : inputs) {
+                if (input.toString().endsWith(".pgn")) {
+                    builder.addPgn(input);
+                } else {
+                    try (GameArchive archive = new GameArchive(input)) {
+                        builder.addArchive(archive);
+                    }
+                }
+            }
+            Path tree = Paths.get(args[0]);
+            builder.write(tree);
+            System.out.printf("%d games to %d plies in %d ms, %d KB%n", builder.getGames(), depth,
+                    (System.nanoTime() - start) / 1_000_000, Files.size(tree) >> 10);
+        }
+    }
+}
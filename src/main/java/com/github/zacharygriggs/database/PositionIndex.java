@@ -0,0 +1,299 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.San;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Finds the games that reached a position, by its Zobrist key, in an index written by
+ * {@link PositionIndexBuilder}.
+ * <pre>
+ * file      = "ECPX" version:byte block* directory games trailer
+ * block     = deflate((keyDelta:varlong gameId:varint ply:varint move:short)*)
+ * directory = blocks:int (firstKey:long offset:long length:int rawLength:int)*
+ * games     = count:int (rating &lt;&lt; 2 | result):int*
+ * trailer   = directoryOffset:long gamesOffset:long maxBlockLength:int "ECPX"
+ * </pre>
+ * Entries are sorted by key, then game and ply. Each is a position reached in a game and the
+ * move played from it; the first key delta of a block is from the block's first key.
+ * <p>
+ * The blocks are memory-mapped, and the directory and games table held in memory, so a query
+ * binary searches the directory and inflates only the blocks holding the key.
+ */
+public class PositionIndex implements AutoCloseable {
+
+    // Result codes of the games table.
+    static final int UNKNOWN_RESULT = 0;
+    static final int WHITE_WINS = 1;
+    static final int DRAW = 2;
+    static final int BLACK_WINS = 3;
+
+    static final int MAGIC = 0x45435058;
+    static final int VERSION = 1;
+    static final int TRAILER_BYTES = 24;
+    // Move of the last position of a game, from which no move was played.
+    static final int NO_MOVE = 0xFFFF;
+
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    // Mapped parts of the blocks. Each overlaps the next by the longest block, so no
+    // block is split between two.
+    private final MappedByteBuffer[] segments;
+    private final long[] firstKeys;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] rawLengths;
+    private final int[] games;
+
+    /**
+     * Opens an index.
+     *
+     * @param file Index file
+     * @throws IOException If the file cannot be read, or is not an index
+     */
+    public PositionIndex(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < TRAILER_BYTES) {
+                throw new IOException("Not a position index: " + file);
+            }
+            ByteBuffer trailer = read(size - TRAILER_BYTES, TRAILER_BYTES);
+            long directoryOffset = trailer.getLong();
+            long gamesOffset = trailer.getLong();
+            int maxBlockLength = trailer.getInt();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException("Not a position index: " + file);
+            }
+            ByteBuffer directory = read(directoryOffset, (int) (gamesOffset - directoryOffset));
+            int blocks = directory.getInt();
+            firstKeys = new long[blocks];
+            offsets = new long[blocks];
+            lengths = new int[blocks];
+            rawLengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                firstKeys[i] = directory.getLong();
+                offsets[i] = directory.getLong();
+                lengths[i] = directory.getInt();
+                rawLengths[i] = directory.getInt();
+            }
+            ByteBuffer gameTable = read(gamesOffset, (int) (size - TRAILER_BYTES - gamesOffset));
+            games = new int[gameTable.getInt()];
+            gameTable.asIntBuffer().get(games);
+            segments = new MappedByteBuffer[(int) ((directoryOffset + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_BYTES;
+                long end = Math.min(directoryOffset, start + SEGMENT_BYTES + maxBlockLength);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Looks up a position, with the side to move as given by the position. A game reaching
+     * the position twice counts once in the totals, and once for each move it played from it.
+     *
+     * @param position Position
+     * @return What the index knows of it; no games if none reached it
+     */
+    public PositionStats query(ChessPosition position) {
+        long key = position.getZobristKey(position.getSideToMove());
+        Map<Integer, MoveStats> moves = new HashMap<>();
+        MoveStats total = new MoveStats(null);
+        long[] lastGame = {-1};
+        scan(key, (game, ply, move) -> {
+            int info = games[game];
+            if (game != lastGame[0]) {
+                total.add(info & 3, info >>> 2);
+                lastGame[0] = game;
+            }
+            if (move != NO_MOVE) {
+                moves.computeIfAbsent(move, m -> {
+                    ChessMove played = GameFormat.toMove(position, m);
+                    played.setSan(San.write(position, played));
+                    return new MoveStats(played);
+                }).add(info & 3, info >>> 2);
+            }
+        });
+        List<MoveStats> sorted = new ArrayList<>(moves.values());
+        sorted.sort((a, b) -> Long.compare(b.getGames(), a.getGames()));
+        return new PositionStats(key, total, sorted);
+    }
+
+    /**
+     * Finds the games that reached a position.
+     *
+     * @param position Position
+     * @param limit    Most games to return
+     * @return Game ids, in ascending order
+     */
+    public List<Integer> findGames(ChessPosition position, int limit) {
+        List<Integer> found = new ArrayList<>();
+        scan(position.getZobristKey(position.getSideToMove()), (game, ply, move) -> {
+            if (found.size() < limit && (found.isEmpty() || found.get(found.size() - 1) != game)) {
+                found.add(game);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Gets the number of games indexed.
+     *
+     * @return Number of games; ids run from 0 to one less
+     */
+    public int getGameCount() {
+        return games.length;
+    }
+
+    /**
+     * Visits every entry with a key.
+     */
+    private void scan(long key, EntryVisitor visitor) {
+        // The first block that could hold the key is the last starting before it, as the
+        // key's entries may run on from there.
+        int low = 0;
+        int high = firstKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (firstKeys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        Inflater inflater = new Inflater();
+        try {
+            for (int block = Math.max(0, low - 1); block < firstKeys.length && firstKeys[block] <= key; block++) {
+                byte[] raw = inflate(block, inflater);
+                int i = 0;
+                long entryKey = firstKeys[block];
+                while (i < raw.length) {
+                    long delta = 0;
+                    int shift = 0;
+                    int b;
+                    do {
+                        b = raw[i++];
+                        delta |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+                    entryKey += delta;
+                    if (entryKey > key) {
+                        break;
+                    }
+                    int game = 0;
+                    shift = 0;
+                    do {
+                        b = raw[i++];
+                        game |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+                    int ply = 0;
+                    shift = 0;
+                    do {
+                        b = raw[i++];
+                        ply |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+                    int move = (raw[i] & 0xFF) << 8 | (raw[i + 1] & 0xFF);
+                    i += 2;
+                    if (entryKey == key) {
+                        visitor.visit(game, ply, move);
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private byte[] inflate(int block, Inflater inflater) {
+        ByteBuffer segment = segments[(int) (offsets[block] / SEGMENT_BYTES)].duplicate();
+        segment.position((int) (offsets[block] % SEGMENT_BYTES));
+        byte[] compressed = new byte[lengths[block]];
+        segment.get(compressed);
+        byte[] raw = new byte[rawLengths[block]];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            if (inflater.inflate(raw) != raw.length) {
+                throw new IllegalStateException("Corrupt position index block " + block);
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt position index block " + block, ex);
+        }
+        return raw;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Position index ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Receives the entries of a key.
+     */
+    private interface EntryVisitor {
+        void visit(int game, int ply, int move);
+    }
+
+    /**
+     * Looks up a position from the command line and reports how long it took:
+     * <pre>PositionIndex positions.idx [fen]</pre>
+     * Without a FEN the starting position is looked up.
+     *
+     * @param args Command line arguments
+     * @throws IOException If the index cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: PositionIndex positions.idx [fen]");
+            System.exit(1);
+        }
+        ChessPosition position = args.length > 1
+                ? Fen.parse(String.join(" ", Arrays.copyOfRange(args, 1, args.length)))
+                : ChessPosition.startingPosition();
+        try (PositionIndex index = new PositionIndex(Paths.get(args[0]))) {
+            long start = System.nanoTime();
+            PositionStats stats = index.query(position);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d games, +%d =%d -%d, rating %d%n", stats.getGames(), stats.getWhiteWins(),
+                    stats.getDraws(), stats.getBlackWins(), stats.getAverageRating());
+            for (MoveStats move : stats.getMoves()) {
+                System.out.println(move);
+            }
+            System.out.printf("Looked up in %.2f ms%n", elapsed / 1e6);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * Builds a {@link PositionIndex} from PGN files and binary game files.
+ * <p>
+ * Games are replayed in parallel, each position giving an entry of its Zobrist key, the game, the
+ * ply and the move played from it. Entries are gathered into runs that are sorted and written
+ * to temporary files whenever they fill up, then merged into the index, so the index can be far
+ * bigger than memory. Games get their ids in the order they are added, from 0.
+ */
+public class PositionIndexBuilder implements AutoCloseable {
+
+    /**
+     * Entries sorted in memory at a time when none is given: 64 MB.
+     */
+    public static final int DEFAULT_RUN_ENTRIES = 1 << 22;
+
+    private static final int BLOCK_ENTRIES = 4096;
+
+    private final ForkJoinPool pool;
+    private final Path tempDirectory;
+    private final int runEntries;
+    private final List<Path> runs = new ArrayList<>();
+    // Entries as pairs of key and payload: game << 32 | ply << 16 | move.
+    private long[] run;
+    private int runLength;
+    // Result and rating of each game, for the games table.
+    private int[] games = new int[1024];
+    private int gameCount;
+
+    /**
+     * Creates a builder.
+     *
+     * @param parallelism   Number of worker threads
+     * @param tempDirectory Where the sorted runs are written
+     * @param runEntries    Entries sorted in memory at a time
+     */
+    public PositionIndexBuilder(int parallelism, Path tempDirectory, int runEntries) {
+        this.pool = GameBatches.newPool("position-index", parallelism);
+        this.tempDirectory = tempDirectory;
+        this.runEntries = runEntries;
+        this.run = new long[runEntries * 2];
+    }
+
+    /**
+     * Adds every game of a binary game file, one block per task.
+     *
+     * @param archive Game file
+     * @throws IOException If reading or writing a run fails
+     */
+    public void addArchive(GameArchive archive) throws IOException {
+        int firstId = gameCount;
+        if (firstId + archive.getGameCount() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many games for one index");
+        }
+        gameCount += GameBatches.fromArchive(pool, archive, (first, pgns) -> index(firstId + (int) first, pgns));
+    }
+
+    /**
+     * Adds every game of a PGN file that can be read. Games that cannot are left out and get no id.
+     *
+     * @param file PGN file
+     * @throws IOException If reading or writing a run fails
+     */
+    public void addPgn(Path file) throws IOException {
+        int firstId = gameCount;
+        gameCount += GameBatches.fromPgn(pool, file, (first, pgns) -> index(firstId + (int) first, pgns));
+    }
+
+    /**
+     * Sorts the last entries and merges every run into the index.
+     *
+     * @param file Index file to write
+     * @throws IOException If writing fails
+     */
+    public void write(Path file) throws IOException {
+        spill(run, runLength);
+        runLength = 0;
+        List<Run> open = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> compare(a.key, a.payload, b.key, b.payload));
+            for (Path path : runs) {
+                Run r = new Run(path);
+                open.add(r);
+                if (r.advance()) {
+                    queue.add(r);
+                }
+            }
+            out.writeInt(PositionIndex.MAGIC);
+            out.writeByte(PositionIndex.VERSION);
+            long offset = 5;
+            BlockWriter blocks = new BlockWriter();
+            while (!queue.isEmpty()) {
+                Run r = queue.poll();
+                offset += blocks.add(r.key, r.payload, out, offset);
+                if (r.advance()) {
+                    queue.add(r);
+                }
+            }
+            offset += blocks.finish(out, offset);
+            long directoryOffset = offset;
+            out.writeInt(blocks.count);
+            for (int i = 0; i < blocks.count; i++) {
+                out.writeLong(blocks.firstKeys[i]);
+                out.writeLong(blocks.offsets[i]);
+                out.writeInt(blocks.lengths[i]);
+                out.writeInt(blocks.rawLengths[i]);
+            }
+            long gamesOffset = directoryOffset + 4 + 24L * blocks.count;
+            out.writeInt(gameCount);
+            for (int i = 0; i < gameCount; i++) {
+                out.writeInt(games[i]);
+            }
+            out.writeLong(directoryOffset);
+            out.writeLong(gamesOffset);
+            out.writeInt(blocks.maxLength);
+            out.writeInt(PositionIndex.MAGIC);
+            blocks.deflater.end();
+        } finally {
+            for (Run r : open) {
+                r.in.close();
+            }
+            deleteRuns();
+        }
+    }
+
+    /**
+     * Replays games and adds their entries.
+     */
+    private void index(int firstId, List<Pgn> pgns) throws IOException {
+        long[] entries = new long[1024];
+        int length = 0;
+        int[] info = new int[pgns.size()];
+        for (int g = 0; g < pgns.size(); g++) {
+            Pgn pgn = pgns.get(g);
+            long game = (long) (firstId + g) << 32;
+            info[g] = GameBatches.rating(pgn.getHeader()) << 2 | GameBatches.result(pgn.getHeader());
+            ChessPosition position = pgn.getStartingPosition() == null
+                    ? ChessPosition.startingPosition() : pgn.getStartingPosition();
+            List<ChessMove> moves = pgn.getMoves();
+            for (int ply = 0; ply <= moves.size(); ply++) {
+                if (length + 2 > entries.length) {
+                    entries = Arrays.copyOf(entries, entries.length * 2);
+                }
+                // Plies past 65535 are not told apart; no real game gets there.
+                int move = ply < moves.size() ? GameFormat.moveKey(position, moves.get(ply)) : PositionIndex.NO_MOVE;
+                entries[length++] = position.getZobristKey(position.getSideToMove());
+                entries[length++] = game | (long) Math.min(ply, 0xFFFF) << 16 | move;
+                if (ply < moves.size()) {
+                    position = position.positionAfterMove(moves.get(ply));
+                    position.updateAllPieces();
+                }
+            }
+        }
+        long[] full = null;
+        int fullLength = 0;
+        synchronized (this) {
+            if (firstId + info.length > games.length) {
+                games = Arrays.copyOf(games, Math.max(firstId + info.length, games.length * 2));
+            }
+            System.arraycopy(info, 0, games, firstId, info.length);
+            if (runLength + length > run.length) {
+                full = run;
+                fullLength = runLength;
+                run = new long[Math.max(runEntries * 2, length)];
+                runLength = 0;
+            }
+            System.arraycopy(entries, 0, run, runLength, length);
+            runLength += length;
+        }
+        if (full != null) {
+            // Sorted outside the lock, so the other workers keep replaying games.
+            spill(full, fullLength);
+        }
+    }
+
+    /**
+     * Sorts entries and writes them to a new run file.
+     */
+    private void spill(long[] entries, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        sort(entries, 0, length / 2);
+        Path path = Files.createTempFile(tempDirectory, "positions", ".run");
+        synchronized (runs) {
+            runs.add(path);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            for (int i = 0; i < length; i++) {
+                out.writeLong(entries[i]);
+            }
+        }
+    }
+
+    /**
+     * Sorts the entries from {@code low} to {@code high}, by key and then payload.
+     */
+    static void sort(long[] entries, int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            long pivotKey = entries[2 * mid];
+            long pivotPayload = entries[2 * mid + 1];
+            int i = low;
+            int j = high - 1;
+            while (i <= j) {
+                while (compare(entries[2 * i], entries[2 * i + 1], pivotKey, pivotPayload) < 0) {
+                    i++;
+                }
+                while (compare(entries[2 * j], entries[2 * j + 1], pivotKey, pivotPayload) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(entries, i++, j--);
+                }
+            }
+            // Sort the smaller side by recursion and the larger in the loop, so the stack stays shallow.
+            if (j - low < high - i) {
+                sort(entries, low, j + 1);
+                low = i;
+            } else {
+                sort(entries, i, high);
+                high = j + 1;
+            }
+        }
+        for (int i = low + 1; i < high; i++) {
+            for (int j = i; j > low && compare(entries[2 * j - 2], entries[2 * j - 1], entries[2 * j], entries[2 * j + 1]) > 0; j--) {
+                swap(entries, j, j - 1);
+            }
+        }
+    }
+
+    private static int compare(long key, long payload, long otherKey, long otherPayload) {
+        int byKey = Long.compare(key, otherKey);
+        return byKey != 0 ? byKey : Long.compare(payload, otherPayload);
+    }
+
+    private static void swap(long[] entries, int i, int j) {
+        long key = entries[2 * i];
+        long payload = entries[2 * i + 1];
+        entries[2 * i] = entries[2 * j];
+        entries[2 * i + 1] = entries[2 * j + 1];
+        entries[2 * j] = key;
+        entries[2 * j + 1] = payload;
+    }
+
+    private void deleteRuns() throws IOException {
+        synchronized (runs) {
+            for (Path path : runs) {
+                Files.deleteIfExists(path);
+            }
+            runs.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdown();
+        deleteRuns();
+    }
+
+    /**
+     * A sorted run being merged.
+     */
+    private static class Run {
+        private final DataInputStream in;
+        private long remaining;
+        private long key;
+        private long payload;
+
+        Run(Path path) throws IOException {
+            this.remaining = Files.size(path) / 16;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            key = in.readLong();
+            payload = in.readLong();
+            return true;
+        }
+    }
+
+    /**
+     * Gathers sorted entries into compressed blocks and remembers where each went.
+     */
+    private static class BlockWriter {
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream(BLOCK_ENTRIES * 16);
+        private final Deflater deflater = new Deflater();
+        private final byte[] compressed = new byte[1 << 16];
+        private long[] firstKeys = new long[64];
+        private long[] offsets = new long[64];
+        private int[] lengths = new int[64];
+        private int[] rawLengths = new int[64];
+        private int count;
+        private int entries;
+        private long lastKey;
+        private int maxLength;
+
+        /**
+         * Adds an entry, writing out the block first if it is full.
+         *
+         * @return Bytes written
+         */
+        int add(long key, long payload, DataOutputStream out, long offset) throws IOException {
+            int written = 0;
+            if (entries == BLOCK_ENTRIES) {
+                written = finish(out, offset);
+            }
+            if (entries == 0) {
+                if (count == firstKeys.length) {
+                    firstKeys = Arrays.copyOf(firstKeys, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    lengths = Arrays.copyOf(lengths, count * 2);
+                    rawLengths = Arrays.copyOf(rawLengths, count * 2);
+                }
+                firstKeys[count] = key;
+                lastKey = key;
+            }
+            writeVarint(key - lastKey);
+            writeVarint(payload >>> 32);
+            writeVarint((payload >>> 16) & 0xFFFF);
+            raw.write((int) (payload >>> 8) & 0xFF);
+            raw.write((int) payload & 0xFF);
+            lastKey = key;
+            entries++;
+            return written;
+        }
+
+        /**
+         * Writes out the block being gathered, if any.
+         *
+         * @return Bytes written
+         */
+        int finish(DataOutputStream out, long offset) throws IOException {
+            if (entries == 0) {
+                return 0;
+            }
+            byte[] bytes = raw.toByteArray();
+            deflater.reset();
+            deflater.setInput(bytes);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(compressed);
+                out.write(compressed, 0, n);
+                length += n;
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            rawLengths[count] = bytes.length;
+            maxLength = Math.max(maxLength, length);
+            count++;
+            entries = 0;
+            raw.reset();
+            return length;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                raw.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            raw.write((int) value);
+        }
+    }
+
+    /**
+     * Builds an index from the command line:
+     * <pre>PositionIndexBuilder positions.idx games.pgn|games.ecg... [--threads n]</pre>
+     * Files ending in ".pgn" are read as PGN, any other as binary game files.
+     *
+     * @param args Command line arguments
+     * @throws IOException If a file cannot be read or the index written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PositionIndexBuilder positions.idx games.pgn|games.ecg... [--threads n]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        Path index = Paths.get(args[0]);
+        Path temp = index.toAbsolutePath().getParent();
+        long start = System.nanoTime();
+        try (PositionIndexBuilder builder = new PositionIndexBuilder(threads, temp, DEFAULT_RUN_ENTRIES)) {
+            for (Path input : inputs) {
+                if (input.toString().endsWith(".pgn")) {
+                    builder.addPgn(input);
+                } else {
+                    try (GameArchive archive = new GameArchive(input)) {
+                        builder.addArchive(archive);
+                    }
+                }
+            }
+            builder.write(index);
+            System.out.printf("Indexed %d games in %d ms, %d MB%n", builder.gameCount,
+                    (System.nanoTime() - start) / 1_000_000, Files.size(index) >> 20);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.PackedPosition;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pieces that must stand on some squares and squares that must be empty, tested against packed
+ * positions.
+ * <p>
+ * A pattern is written like the placement field of a FEN, from a8 to h1 with ranks separated by
+ * '/': a piece letter asks for that piece, '.' for an empty square and a digit for that many
+ * squares that may hold anything. "8/8/8/8/8/8/PPP5/1K6" asks for White's king on b1 behind
+ * three pawns. Occupancy is tested first as two bitboard masks, so most positions are turned
+ * down without looking at a single piece.
+ */
+public class PositionPattern {
+
+    private static final String PIECES = "PNBRQK";
+
+    // Squares that must hold a piece, and squares that must be empty.
+    private final long occupied;
+    private final long empty;
+    // Packed piece code wanted on each square of 'occupied'.
+    private final byte[] codes = new byte[64];
+
+    private PositionPattern(long occupied, long empty, byte[] codes) {
+        this.occupied = occupied;
+        this.empty = empty;
+        System.arraycopy(codes, 0, this.codes, 0, 64);
+    }
+
+    /**
+     * Reads a pattern.
+     *
+     * @param text Pattern, e.g. "8/8/8/8/8/8/PPP5/1K6"
+     * @return The pattern
+     * @throws IllegalArgumentException If the text is not a pattern
+     */
+    public static PositionPattern parse(String text) {
+        long occupied = 0;
+        long empty = 0;
+        byte[] codes = new byte[64];
+        int rank = 7;
+        int file = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (file != 8 || rank == 0) {
+                    throw new IllegalArgumentException("Rank " + (rank + 1) + " of the pattern does not have eight squares: " + text);
+                }
+                rank--;
+                file = 0;
+                continue;
+            }
+            if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                if (file >= 8) {
+                    throw new IllegalArgumentException("Rank " + (rank + 1) + " of the pattern has more than eight squares: " + text);
+                }
+                int square = 8 * rank + file;
+                if (c == '.') {
+                    empty |= 1L << square;
+                } else {
+                    int piece = PIECES.indexOf(Character.toUpperCase(c));
+                    if (piece < 0) {
+                        throw new IllegalArgumentException("Invalid piece '" + c + "' in pattern: " + text);
+                    }
+                    occupied |= 1L << square;
+                    codes[square] = (byte) (Character.isUpperCase(c) ? piece : piece | 8);
+                }
+                file++;
+            }
+            if (file > 8) {
+                throw new IllegalArgumentException("Rank " + (rank + 1) + " of the pattern has more than eight squares: " + text);
+            }
+        }
+        if (rank != 0 || file != 8) {
+            throw new IllegalArgumentException("The pattern does not have eight full ranks: " + text);
+        }
+        return new PositionPattern(occupied, empty, codes);
+    }
+
+    /**
+     * Tests a packed position.
+     *
+     * @param packed Buffer of packed positions
+     * @param index  Index of the first byte of the position
+     * @return True if the position has every piece and empty square of the pattern
+     */
+    public boolean matches(ByteBuffer packed, int index) {
+        long occupancy = PackedPosition.occupancy(packed, index);
+        if ((occupancy & occupied) != occupied || (occupancy & empty) != 0) {
+            return false;
+        }
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            // A piece's place among the packed pieces is the number of occupied squares before it.
+            int piece = Long.bitCount(occupancy & ((1L << square) - 1));
+            if (PackedPosition.pieceCode(packed, index, piece) != codes[square]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the packed positions of a buffer that match, such as a memory-mapped file of
+     * training positions.
+     *
+     * @param packed Buffer of packed positions, from its position to its limit
+     * @param limit  Most positions to find; the scan stops there
+     * @return Numbers of the matching positions, counting from the buffer's position
+     */
+    public List<Integer> scan(ByteBuffer packed, int limit) {
+        List<Integer> found = new ArrayList<>();
+        int start = packed.position();
+        int count = packed.remaining() / PackedPosition.BYTES;
+        for (int i = 0; i < count && found.size() < limit; i++) {
+            if (matches(packed, start + i * PackedPosition.BYTES)) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+}
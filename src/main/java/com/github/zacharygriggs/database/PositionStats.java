@@ -0,0 +1,63 @@
+package com.github.zacharygriggs.database;
+
+import java.util.List;
+
+/**
+ * What a {@link PositionIndex} knows of a position: how many games reached it, their results,
+ * and the moves played from it, most played first.
+ */
+public class PositionStats {
+
+    private final long key;
+    private final MoveStats total;
+    private final List<MoveStats> moves;
+
+    PositionStats(long key, MoveStats total, List<MoveStats> moves) {
+        this.key = key;
+        this.total = total;
+        this.moves = moves;
+    }
+
+    /**
+     * Gets the Zobrist key the position was looked up by.
+     *
+     * @return Zobrist key
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the number of games that reached the position.
+     *
+     * @return Number of games
+     */
+    public long getGames() {
+        return total.getGames();
+    }
+
+    public long getWhiteWins() {
+        return total.getWhiteWins();
+    }
+
+    public long getDraws() {
+        return total.getDraws();
+    }
+
+    public long getBlackWins() {
+        return total.getBlackWins();
+    }
+
+    public int getAverageRating() {
+        return total.getAverageRating();
+    }
+
+    /**
+     * Gets the moves played from the position.
+     *
+     * @return Moves, most played first
+     */
+    public List<MoveStats> getMoves() {
+        return moves;
+    }
+}
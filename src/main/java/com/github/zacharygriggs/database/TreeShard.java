@@ -0,0 +1,160 @@
+package com.github.zacharygriggs.database;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One shard of the counts gathered by {@link OpeningTreeBuilder}: a hash table of position and
+ * move, held off the heap in a direct buffer, so a big tree does not weigh on the garbage
+ * collector. Callers lock the shard around every use.
+ * <p>
+ * A slot holds the position key, the move plus one (0 marking a free slot), and the number of
+ * games, White wins, draws, Black wins, rated games and the sum of their ratings.
+ */
+final class TreeShard {
+
+    private static final int SLOT_BYTES = 40;
+    private static final int KEY = 0;
+    private static final int MOVE = 8;
+    private static final int GAMES = 12;
+    private static final int WHITE_WINS = 16;
+    private static final int DRAWS = 20;
+    private static final int BLACK_WINS = 24;
+    private static final int RATED = 28;
+    private static final int RATING_SUM = 32;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    /**
+     * Creates a shard.
+     *
+     * @param capacity Slots to start with, a power of two. The shard doubles as it fills.
+     */
+    TreeShard(int capacity) {
+        this.capacity = capacity;
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+    }
+
+    /**
+     * Counts a game that played a move from a position.
+     *
+     * @param key    Zobrist key of the position
+     * @param move   Key of the move, from {@link GameFormat#moveKey}
+     * @param result Result, one of the {@link PositionIndex} result codes
+     * @param rating Average rating of the players, or 0 if unknown
+     */
+    void add(long key, int move, int result, int rating) {
+        if (size * 4 >= capacity * 3) {
+            grow();
+        }
+        int slot = find(slots, capacity, key, move);
+        int base = slot * SLOT_BYTES;
+        if (slots.getInt(base + MOVE) == 0) {
+            slots.putLong(base + KEY, key);
+            slots.putInt(base + MOVE, move + 1);
+            size++;
+        }
+        increment(base + GAMES);
+        if (result == PositionIndex.WHITE_WINS) {
+            increment(base + WHITE_WINS);
+        } else if (result == PositionIndex.DRAW) {
+            increment(base + DRAWS);
+        } else if (result == PositionIndex.BLACK_WINS) {
+            increment(base + BLACK_WINS);
+        }
+        if (rating > 0) {
+            increment(base + RATED);
+            slots.putLong(base + RATING_SUM, slots.getLong(base + RATING_SUM) + rating);
+        }
+    }
+
+    /**
+     * Lists the used slots sorted by position key and then move, as pairs of the key and
+     * {@code move << 32 | slot}, for {@link PositionIndexBuilder#sort}.
+     *
+     * @return Pairs of key and move and slot
+     */
+    long[] sortedSlots() {
+        long[] entries = new long[size * 2];
+        int length = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = slot * SLOT_BYTES;
+            int move = slots.getInt(base + MOVE);
+            if (move != 0) {
+                entries[length++] = slots.getLong(base + KEY);
+                entries[length++] = (long) (move - 1) << 32 | slot;
+            }
+        }
+        PositionIndexBuilder.sort(entries, 0, size);
+        return entries;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getGames(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + GAMES);
+    }
+
+    int getWhiteWins(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + WHITE_WINS);
+    }
+
+    int getDraws(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + DRAWS);
+    }
+
+    int getBlackWins(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + BLACK_WINS);
+    }
+
+    int getRated(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + RATED);
+    }
+
+    long getRatingSum(int slot) {
+        return slots.getLong(slot * SLOT_BYTES + RATING_SUM);
+    }
+
+    private void increment(int offset) {
+        slots.putInt(offset, slots.getInt(offset) + 1);
+    }
+
+    private void grow() {
+        int newCapacity = capacity * 2;
+        if ((long) newCapacity * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Opening tree shard is full; use more shards");
+        }
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = slot * SLOT_BYTES;
+            int move = slots.getInt(base + MOVE);
+            if (move != 0) {
+                int target = find(newSlots, newCapacity, slots.getLong(base + KEY), move - 1) * SLOT_BYTES;
+                for (int i = 0; i < SLOT_BYTES; i += 4) {
+                    newSlots.putInt(target + i, slots.getInt(base + i));
+                }
+            }
+        }
+        slots = newSlots;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Finds the slot of a position and move, or the free slot where it belongs.
+     */
+    private static int find(ByteBuffer slots, int capacity, long key, int move) {
+        long hash = (key ^ move * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        int slot = (int) (hash >>> 32) & (capacity - 1);
+        while (true) {
+            int base = slot * SLOT_BYTES;
+            int stored = slots.getInt(base + MOVE);
+            if (stored == 0 || (stored == move + 1 && slots.getLong(base + KEY) == key)) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.zacharygriggs.engine;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Searches a fixed set of positions to a fixed depth and reports the total node count and speed.
+ * <p>
+ * The search is deterministic, so the node count is a signature of the engine: a change that
+ * only makes the engine faster leaves it alone, while a change to what the engine searches
+ * changes it. The speed is what the change is measured by.
+ */
+public class Bench {
+
+    /**
+     * Positions searched, from the opening through to the endgame.
+     */
+    public static final List<String> POSITIONS = List.of(
+            Fen.STARTING_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k2r/2pb1ppp/2pp1q2/p7/1nP1B3/1P2P3/P2N1PPP/R2QK2R w KQkq a6 0 14",
+            "4rrk1/2p1b1p1/p1p3q1/4p3/2P2n1p/1P1NR2P/PB3PP1/3R1QK1 b - - 2 24",
+            "r3qbrk/6p1/2b2pPp/p3pP1Q/PpPpP2P/3P1B2/2PB3K/R5R1 w - - 16 42",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "6k1/6p1/6Pp/ppp5/3pn2P/1P3K2/1PP2P2/8 b - - 3 54",
+            "8/8/8/5N2/8/p7/8/2NK3k w - - 0 1"
+    );
+
+    public static final int DEFAULT_DEPTH = 3;
+
+    private final ChessEngine engine;
+    private final int depth;
+
+    /**
+     * Creates a bench that searches without evaluation noise.
+     *
+     * @param depth Depth to search each position to
+     */
+    public Bench(int depth) {
+        this(depth, noiseless());
+    }
+
+    /**
+     * Creates a bench with an engine of its own. The engine is seeded, so noise in its
+     * evaluation still gives the same search every run.
+     *
+     * @param depth  Depth to search each position to
+     * @param engine Engine to search with
+     */
+    public Bench(int depth, ChessEngine engine) {
+        this.depth = depth;
+        this.engine = engine;
+        if (engine.getSeed() == null) {
+            engine.setSeed(0L);
+        }
+    }
+
+    private static ChessEngine noiseless() {
+        ChessEngine engine = new ChessEngine(DEFAULT_DEPTH, EngineSettings.BEST_MOVE);
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        engine.setWeights(weights);
+        return engine;
+    }
+
+    /**
+     * Searches every position.
+     *
+     * @param out Receives a line per position and the totals
+     * @return Total number of nodes searched
+     */
+    public long run(PrintStream out) {
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < POSITIONS.size(); i++) {
+            ChessPosition position = Fen.parse(POSITIONS.get(i));
+            long start = System.nanoTime();
+            EngineEvaluation eval = engine.evaluate(position, position.getSideToMove(), SearchLimits.depth(depth));
+            totalNanos += System.nanoTime() - start;
+            totalNodes += eval.getNodes();
+            out.printf("Position %d/%d: %s, %d nodes%n", i + 1, POSITIONS.size(), eval.getBestMove(), eval.getNodes());
+        }
+        out.println();
+        out.println("Total time (ms) : " + totalNanos / 1_000_000);
+        out.println("Nodes searched  : " + totalNodes);
+        out.println("Nodes/second    : " + (totalNanos == 0 ? 0 : totalNodes * 1_000_000_000L / totalNanos));
+        return totalNodes;
+    }
+
+    /**
+     * Runs the bench from the command line:
+     * <pre>Bench [depth] [--seed n]</pre>
+     * Without a seed the evaluation noise is turned off. With one the noise stays on,
+     * drawn from that seed.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        Long seed = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                depth = Integer.parseInt(args[i]);
+            }
+        }
+        Bench bench;
+        if (seed == null) {
+            bench = new Bench(depth);
+        } else {
+            ChessEngine engine = new ChessEngine(DEFAULT_DEPTH, EngineSettings.BEST_MOVE);
+            engine.setSeed(seed);
+            bench = new Bench(depth, engine);
+        }
+        bench.run(System.out);
+    }
+}
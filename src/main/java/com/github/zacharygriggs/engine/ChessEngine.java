@@ -1,13 +1,20 @@
 package com.github.zacharygriggs.engine;
 
+import com.github.zacharygriggs.chess.core.ChessBoard;
 import com.github.zacharygriggs.chess.core.ChessPosition;
 import com.github.zacharygriggs.chess.data.ChessPlayer;
 import com.github.zacharygriggs.chess.helper.MiscHelper;
 import com.github.zacharygriggs.chess.core.ChessMove;
 import com.github.zacharygriggs.chess.pieces.Bishop;
 import com.github.zacharygriggs.chess.pieces.ChessPiece;
+import com.github.zacharygriggs.chess.pieces.King;
 import com.github.zacharygriggs.chess.pieces.Knight;
+import com.github.zacharygriggs.chess.pieces.Pawn;
+import com.github.zacharygriggs.engine.nnue.NnueEvaluator;
+import com.github.zacharygriggs.engine.nnue.NnueNetwork;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -22,10 +29,58 @@ public class ChessEngine {
     private int depth;
     private EngineSettings settings;
     private Random random;
+    // Seed the random numbers restart from on every evaluation, or null to keep drawing fresh ones.
+    private Long seed;
+    private SearchListener listener;
+    private NnueEvaluator nnue;
+    private EvaluationWeights weights = new EvaluationWeights();
+    private final StaticExchange exchange = new StaticExchange();
+
+    // Zobrist keys of the game so far followed by the current search path.
+    // keys[gameLength] is the root.
+    private long[] keys = new long[MAX_PLY + 1];
+    private int gameLength;
+
+    // Limits of the evaluation in progress, and how far it has got.
+    private SearchLimits limits = SearchLimits.NONE;
+    private long deadline;
+    private long nodes;
+    private boolean aborted;
+    // Set from another thread to end the evaluation in progress.
+    private volatile boolean stopped;
+    // Number of best root moves given an exact score.
+    private int multiPv = 1;
+
+    // Position at the end of the best line found by the quiescence search at each ply.
+    private final ChessPosition[] leaves = new ChessPosition[MAX_PLY + 2];
 
     private static final int DEFAULT_DEPTH = 3;
     private static final EngineSettings DEFAULT_SETTINGS = EngineSettings.BEST_MOVE;
 
+    /**
+     * Score of giving mate. Mate in n half moves scores MATE_SCORE - n for the winner.
+     */
+    public static final double MATE_SCORE = 10000;
+    private static final double INFINITY = 1000000;
+    private static final int MAX_PLY = 64;
+    /**
+     * Deepest iteration searched, whatever depth is asked for.
+     */
+    public static final int MAX_DEPTH = MAX_PLY - 2;
+    // Half moves without a capture or pawn move before the game is drawn.
+    private static final int FIFTY_MOVE_PLIES = 100;
+
+    // Move ordering keys. Winning captures sort above promotions, then quiet moves, and
+    // losing captures below.
+    private static final int GOOD_CAPTURE_ORDER = 1000;
+    private static final int PROMOTION_ORDER = 1;
+    private static final int QUIET_ORDER = 0;
+
+    // Late move pruning: at this depth or less, only the first LATE_MOVE_COUNT[depth]
+    // moves are searched unless they are winning captures or promotions.
+    private static final int LATE_MOVE_DEPTH = 2;
+    private static final int[] LATE_MOVE_COUNT = {0, 8, 14};
+
     /**
      * Creates a chess engine with specified settings.
      *
@@ -55,10 +110,33 @@ public class ChessEngine {
      * @return An evaluation, containing an integer score and a selected move.
      */
     public EngineEvaluation evaluate(ChessPosition pos, ChessPlayer whoseMove) {
+        return evaluate(pos, whoseMove, SearchLimits.NONE);
+    }
+
+    /**
+     * Evaluates a position within limits. The search stops at whichever
+     * limit is reached first and answers with the deepest completed result.
+     *
+     * @param pos       The chess position to evaluate
+     * @param whoseMove Who will move on this turn
+     * @param limits    Depth, node and time limits of the search
+     * @return An evaluation, containing an integer score and a selected move.
+     */
+    public EngineEvaluation evaluate(ChessPosition pos, ChessPlayer whoseMove, SearchLimits limits) {
+        this.limits = limits;
+        this.deadline = limits.getTimeMillis() > 0
+                ? System.nanoTime() + limits.getTimeMillis() * 1_000_000L
+                : 0;
+        this.nodes = 0;
+        this.aborted = false;
+        this.stopped = false;
+        if (seed != null) {
+            random.setSeed(seed);
+        }
         try {
             if (settings == EngineSettings.RANDOM_MOVES) {
                 return randomEval(pos, whoseMove);
-            } else if (settings == EngineSettings.BEST_MOVE) {
+            } else if (settings == EngineSettings.BEST_MOVE || settings == EngineSettings.NEURAL) {
                 return bestMove(pos, whoseMove);
             } else if (settings == EngineSettings.BAD_MOVE) {
                 return badMove(pos, whoseMove);
@@ -74,6 +152,39 @@ public class ChessEngine {
         }
     }
 
+    /**
+     * Evaluates the current position of a game. Unlike evaluating the position alone,
+     * the search knows which positions were already reached in the game, so it can
+     * see repetitions and the fifty move rule coming.
+     *
+     * @param board The game to evaluate
+     * @return An evaluation, containing an integer score and a selected move.
+     */
+    public EngineEvaluation evaluate(ChessBoard board) {
+        return evaluate(board, SearchLimits.NONE);
+    }
+
+    /**
+     * Evaluates the current position of a game within limits.
+     *
+     * @param board  The game to evaluate
+     * @param limits Depth, node and time limits of the search
+     * @return An evaluation, containing an integer score and a selected move.
+     */
+    public EngineEvaluation evaluate(ChessBoard board, SearchLimits limits) {
+        long[] gameKeys = board.getPositionKeys();
+        gameLength = gameKeys.length - 1;
+        if (keys.length < gameKeys.length + MAX_PLY + 1) {
+            keys = new long[gameKeys.length + MAX_PLY + 1];
+        }
+        System.arraycopy(gameKeys, 0, keys, 0, gameLength);
+        try {
+            return evaluate(board.getPosition(), board.getMovingPlayer(), limits);
+        } finally {
+            gameLength = 0;
+        }
+    }
+
     /**
      * Returns a flagged invalid evaluation
      *
@@ -99,7 +210,7 @@ public class ChessEngine {
             invalidEval();
         }
         for (ChessMove move : moves) {
-            double thisMoveValue = evalDepthZero(pos, whoseMove);
+            double thisMoveValue = evalDepthZero(pos, whoseMove, 0);
             // What gives the opponent material?
             if (thisMoveValue > eval.getEval()) {
                 eval.setBestMove(move);
@@ -125,12 +236,14 @@ public class ChessEngine {
         }
         ChessMove move = moves.get(random.nextInt(moves.size()));
         eval.setBestMove(move);
-        eval.setEval(evalDepthZero(pos, whoseMove));
+        eval.setEval(evalDepthZero(pos, whoseMove, 0));
         return eval;
     }
 
     /**
      * Attempts to find the best evaluation and move.
+     * Searches one ply deeper on each iteration, up to the depth limit, so that a
+     * move is available when a node or time limit stops the search early.
      *
      * @param pos       Current chess position to calculate
      * @param whoseMove Whose turn it is
@@ -138,20 +251,80 @@ public class ChessEngine {
      */
     private EngineEvaluation bestMove(ChessPosition pos, ChessPlayer whoseMove) {
         EngineEvaluation eval = new EngineEvaluation();
-
-        ChessMove bestMove = null;
-        double bestValue = Integer.MIN_VALUE;
         List<ChessMove> moves = pos.findLegalMoves(whoseMove);
         if (moves.isEmpty()) {
             invalidEval();
         }
+        if (useNetwork()) {
+            nnue.refresh(0, pos);
+        }
+        keys[gameLength] = pos.getZobristKey(whoseMove);
+        orderMoves(pos, moves);
+        // Until an iteration completes, fall back on the best looking move.
+        eval.setBestMove(moves.get(0));
+        eval.setEval(0);
+        eval.setDepth(-1);
+        // Deeper iterations would run off the end of the key and leaf stacks.
+        int maxDepth = Math.min(limits.getDepth() > 0 ? limits.getDepth() : depth, MAX_DEPTH);
+        for (int iteration = 0; iteration <= maxDepth; iteration++) {
+            double[] values = new double[moves.size()];
+            int best = searchRoot(pos, whoseMove, moves, iteration, values);
+            if (aborted) {
+                break;
+            }
+            eval.setBestMove(moves.get(best));
+            eval.setEval(values[best]);
+            eval.setDepth(iteration);
+            eval.setLines(rankLines(moves, values, iteration));
+            if (listener != null) {
+                eval.setNodes(nodes);
+                listener.iterationComplete(eval);
+            }
+            // Search the best lines first next time, in order.
+            for (int i = eval.getLines().size() - 1; i >= 0; i--) {
+                ChessMove move = eval.getLines().get(i).getBestMove();
+                moves.remove(move);
+                moves.add(0, move);
+            }
+        }
+        eval.setNodes(nodes);
+        return eval;
+    }
+
+    /**
+     * Searches every root move to a fixed depth.
+     *
+     * @param pos       Current chess position to calculate
+     * @param whoseMove Whose turn it is
+     * @param moves     Legal moves, most promising first
+     * @param iteration Depth to search after each root move
+     * @param values    Receives the score of each move, including its development bonus
+     * @return Index of the best move
+     */
+    private int searchRoot(ChessPosition pos, ChessPlayer whoseMove, List<ChessMove> moves, int iteration,
+                           double[] values) {
+        int best = 0;
+        double bestValue = -INFINITY;
         // Go through each possible move and find best one.
-        for (ChessMove move : moves) {
-            double currentVal = calculate(
-                    pos.positionAfterMove(move),
+        for (int i = 0; i < moves.size(); i++) {
+            ChessMove move = moves.get(i);
+            // A move can only be chosen if it beats the best so far after its development
+            // bonus, so anything at or below this bound does not need an exact score.
+            // With several lines it only has to beat the last of them.
+            double alpha = (multiPv == 1 ? bestValue : lineBound(values, i))
+                    - weights.get(EvaluationWeights.DEVELOPMENT_MAX);
+            ChessPosition next = makeMove(pos, move, 1);
+            recordPosition(next, MiscHelper.opposite(whoseMove), 1);
+            double currentVal = -search(
+                    next,
                     MiscHelper.opposite(whoseMove),
-                    whoseMove,
-                    depth);
+                    iteration,
+                    -INFINITY,
+                    -alpha,
+                    1);
+            if (aborted) {
+                return best;
+            }
 
             Optional<ChessPiece> piece = pos.pieceAt(move.getFrom());
             // Give higher value to castling.
@@ -171,27 +344,72 @@ public class ChessEngine {
 //            }
 
             // Prioritize piece development
+            // Turns count half moves, the first being turn 1.
+            int turn = 2 * pos.getFullmoveNumber() - (whoseMove == ChessPlayer.WHITE ? 1 : 0);
             if (piece.isPresent()) {
-                if (pos.getTurn() >= 3
-                        && !piece.get().hasMoved()
+                if (turn >= 3
+                        && isUndeveloped(piece.get())
                         && (piece.get() instanceof Knight || piece.get() instanceof Bishop)) {
-                    double adjustment = 0.25 + (0.10 * (pos.getTurn() - 3));
-                    if(adjustment > 1.50) {
-                        adjustment = 1.50;
+                    double adjustment = weights.get(EvaluationWeights.DEVELOPMENT_BASE)
+                            + (weights.get(EvaluationWeights.DEVELOPMENT_PER_TURN) * (turn - 3));
+                    if(adjustment > weights.get(EvaluationWeights.DEVELOPMENT_MAX)) {
+                        adjustment = weights.get(EvaluationWeights.DEVELOPMENT_MAX);
                     }
                     currentVal += adjustment;
-                    System.out.println("Updating: " + adjustment);
                 }
             }
 
+            values[i] = currentVal;
             if (currentVal > bestValue) {
                 bestValue = currentVal;
-                bestMove = move;
+                best = i;
             }
         }
-        eval.setEval(bestValue);
-        eval.setBestMove(bestMove);
-        return eval;
+        return best;
+    }
+
+    /**
+     * Finds the score a root move has to beat to be among the best lines.
+     *
+     * @param values   Scores of the moves searched so far
+     * @param searched Number of moves searched so far
+     * @return Lowest score of the best lines so far, or -INFINITY until there are enough moves to fill them
+     */
+    private double lineBound(double[] values, int searched) {
+        if (searched < multiPv) {
+            return -INFINITY;
+        }
+        double[] sorted = Arrays.copyOf(values, searched);
+        Arrays.sort(sorted);
+        return sorted[searched - multiPv];
+    }
+
+    /**
+     * Picks the best lines of a completed iteration.
+     *
+     * @param moves     Root moves, in the order they were searched
+     * @param values    Score of each move
+     * @param iteration Depth searched after each root move
+     * @return Up to multiPv lines, best first; moves with equal scores keep their order
+     */
+    private List<EngineEvaluation> rankLines(List<ChessMove> moves, double[] values, int iteration) {
+        List<EngineEvaluation> lines = new ArrayList<>(Math.min(multiPv, moves.size()));
+        boolean[] taken = new boolean[moves.size()];
+        while (lines.size() < multiPv && lines.size() < moves.size()) {
+            int best = -1;
+            for (int i = 0; i < moves.size(); i++) {
+                if (!taken[i] && (best < 0 || values[i] > values[best])) {
+                    best = i;
+                }
+            }
+            taken[best] = true;
+            EngineEvaluation line = new EngineEvaluation();
+            line.setBestMove(moves.get(best));
+            line.setEval(values[best]);
+            line.setDepth(iteration);
+            lines.add(line);
+        }
+        return lines;
     }
 
     /**
@@ -200,91 +418,404 @@ public class ChessEngine {
      *
      * @param pos       Current chess position to calculate
      * @param whoseMove Whose turn it is
+     * @param ply       Distance from the root, selects the network accumulator
      * @return Evaluates the position from the perspective of the moving player.
      */
-    private double evalDepthZero(ChessPosition pos, ChessPlayer whoseMove) {
+    private double evalDepthZero(ChessPosition pos, ChessPlayer whoseMove, int ply) {
         double eval = 0;
-        // First priority is material.
-        int myMaterial = pos.countMaterial(whoseMove);
-        int enemyMaterial = pos.countMaterial(MiscHelper.opposite(whoseMove));
-        eval += (myMaterial - enemyMaterial);
-        // TODO: Add factors for passed pawns and king safety
+        if (useNetwork()) {
+            // The network reports centipawns; the rest of the engine works in pawns.
+            eval += nnue.evaluate(ply, whoseMove) / 100.0;
+        } else {
+            // First priority is material.
+            List<ChessPiece> pieces = pos.getPieces();
+            for (int i = 0; i < pieces.size(); i++) {
+                ChessPiece piece = pieces.get(i);
+                double value = weights.materialValue(piece);
+                eval += piece.getOwner() == whoseMove ? value : -value;
+            }
+            // TODO: Add factors for passed pawns and king safety
+        }
         // Apply a small random factor so every game is different.
-        eval += (random.nextDouble() / 2.0) - (random.nextDouble() / 2.0);
+        double noise = weights.get(EvaluationWeights.NOISE);
+        if (noise != 0) {
+            eval += noise * (random.nextDouble() - random.nextDouble());
+        }
         return eval;
     }
 
     /**
      * Calculates the score of the current position recursively taking depth into account
      * This algorithm assumes both players play their best moves, by the engine's idea of best.
+     * Uses alpha-beta pruning; scores are from the perspective of the moving player.
      *
      * @param pos            Current chess position to calculate
      * @param whoseMove      Whose turn it is
-     * @param optimizeFor    Which player should be optimized for
      * @param depthRemaining How much depth is remaining for the calculation, ends at 0
+     * @param alpha          Score the moving player is already guaranteed elsewhere
+     * @param beta           Score the opponent is already guaranteed elsewhere
+     * @param ply            Distance from the root
      * @return Position score
      */
-    private double calculate(ChessPosition pos, ChessPlayer whoseMove, ChessPlayer optimizeFor, int depthRemaining) {
+    private double search(ChessPosition pos, ChessPlayer whoseMove, int depthRemaining,
+                          double alpha, double beta, int ply) {
+        if (outOfTime()) {
+            return 0;
+        }
+        if (isDraw(pos, ply)) {
+            return 0;
+        }
         if (depthRemaining == 0) {
-            return evalDepthZero(pos, optimizeFor);
+            return quiescence(pos, whoseMove, alpha, beta, ply);
         }
-        if (whoseMove == optimizeFor) {
-            return optimizeFor(pos, whoseMove, optimizeFor, depthRemaining);
-        } else {
-            return optimizeAgainst(pos, whoseMove, optimizeFor, depthRemaining);
+        List<ChessMove> moves = pos.findLegalMoves(whoseMove);
+        boolean inCheck = pos.inCheck(whoseMove);
+        if (moves.isEmpty()) {
+            // Checkmate, or stalemate. Prefer the quickest mate.
+            return inCheck ? -MATE_SCORE + ply : 0;
         }
+        int[] order = orderMoves(pos, moves);
+        double bestValue = -INFINITY;
+        for (int i = 0; i < moves.size(); i++) {
+            // Late move pruning: near the leaves, once the captures, promotions and first few
+            // quiet moves have been tried, skip the remaining quiet moves and losing captures.
+            if (!inCheck
+                    && depthRemaining <= LATE_MOVE_DEPTH
+                    && i >= LATE_MOVE_COUNT[depthRemaining]
+                    && order[i] <= QUIET_ORDER) {
+                break;
+            }
+            ChessMove move = moves.get(i);
+            ChessPosition next = makeMove(pos, move, ply + 1);
+            recordPosition(next, MiscHelper.opposite(whoseMove), ply + 1);
+            double currentVal = -search(next, MiscHelper.opposite(whoseMove),
+                    depthRemaining - 1, -beta, -alpha, ply + 1);
+            if (currentVal > bestValue) {
+                bestValue = currentVal;
+                if (currentVal > alpha) {
+                    alpha = currentVal;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestValue;
     }
 
     /**
-     * Attempts to find the move that provides the highest score available.
+     * Resolves captures at the end of the search so the position is quiet before it is evaluated.
+     * Captures that lose material by static exchange are not searched.
      *
-     * @param pos            Current chess position to calculate
-     * @param whoseMove      Whose turn it is
-     * @param optimizeFor    Which player should be optimized for
-     * @param depthRemaining How much depth is remaining for the calculation, ends at 0
-     * @return Highest position score
+     * @param pos       Current chess position to calculate
+     * @param whoseMove Whose turn it is
+     * @param alpha     Score the moving player is already guaranteed elsewhere
+     * @param beta      Score the opponent is already guaranteed elsewhere
+     * @param ply       Distance from the root
+     * @return Position score
      */
-    private double optimizeFor(ChessPosition pos, ChessPlayer whoseMove, ChessPlayer optimizeFor, int depthRemaining) {
-        List<ChessMove> moves = pos.findLegalMoves(whoseMove);
-        if (moves.isEmpty()) {
-            return Integer.MAX_VALUE; // found the end...
+    private double quiescence(ChessPosition pos, ChessPlayer whoseMove, double alpha, double beta, int ply) {
+        leaves[ply] = pos;
+        if (outOfTime()) {
+            return 0;
         }
-        // Go through each possible move and find best one.
-        double bestValue = Integer.MIN_VALUE;
-        for (ChessMove move : moves) {
-            double currentVal = calculate(pos.positionAfterMove(move), MiscHelper.opposite(whoseMove),
-                    optimizeFor, depthRemaining - 1);
+        // The moving player can usually decline to capture, so the static score is a lower bound.
+        double standPat = evalDepthZero(pos, whoseMove, ply);
+        if (standPat >= beta || ply >= MAX_PLY) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+        List<ChessMove> captures = findCaptures(pos, whoseMove);
+        double bestValue = standPat;
+        for (ChessMove move : captures) {
+            ChessPosition next = makeMove(pos, move, ply + 1);
+            if (next.inCheck(whoseMove)) {
+                continue; // Illegal.
+            }
+            double currentVal = -quiescence(next, MiscHelper.opposite(whoseMove), -beta, -alpha, ply + 1);
             if (currentVal > bestValue) {
                 bestValue = currentVal;
+                leaves[ply] = leaves[ply + 1];
+                if (currentVal > alpha) {
+                    alpha = currentVal;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
             }
         }
         return bestValue;
     }
 
     /**
-     * Attempts to find the move that provides the lowest score available.
+     * Resolves the captures in a position with the quiescence search.
      *
-     * @param pos            Current chess position to calculate
-     * @param whoseMove      Whose turn it is
-     * @param optimizeFor    Which player should be optimized for
-     * @param depthRemaining How much depth is remaining for the calculation, ends at 0
-     * @return Lowest position score
+     * @param pos       Position to resolve
+     * @param whoseMove Whose turn it is
+     * @return The position at the end of the best capture sequence, which may be the position itself.
+     * Its static evaluation is the quiescence score of the given position.
      */
-    private double optimizeAgainst(ChessPosition pos, ChessPlayer whoseMove, ChessPlayer optimizeFor, int depthRemaining) {
-        List<ChessMove> moves = pos.findLegalMoves(whoseMove);
-        if (moves.isEmpty()) {
-            return Integer.MAX_VALUE; // found the end...
+    public ChessPosition quietPosition(ChessPosition pos, ChessPlayer whoseMove) {
+        this.limits = SearchLimits.NONE;
+        this.deadline = 0;
+        this.nodes = 0;
+        this.aborted = false;
+        if (useNetwork()) {
+            nnue.refresh(0, pos);
         }
-        // Go through each possible move and find best one.
-        double worstValue = Integer.MAX_VALUE;
-        for (ChessMove move : moves) {
-            double currentVal = calculate(pos.positionAfterMove(move), MiscHelper.opposite(whoseMove),
-                    optimizeFor, depthRemaining - 1);
-            if (currentVal < worstValue) {
-                worstValue = currentVal;
+        quiescence(pos, whoseMove, -INFINITY, INFINITY, 0);
+        return leaves[0];
+    }
+
+    /**
+     * Finds captures for the quiescence search that do not lose material,
+     * best exchanges first. The captures are not checked for legality.
+     *
+     * @param pos       Current chess position
+     * @param whoseMove Whose turn it is
+     * @return Ordered captures
+     */
+    private List<ChessMove> findCaptures(ChessPosition pos, ChessPlayer whoseMove) {
+        List<ChessPiece> pieces = pos.getPieces();
+        List<ChessMove> captures = new ArrayList<>();
+        List<Integer> gains = new ArrayList<>();
+        for (int i = 0; i < pieces.size(); i++) {
+            ChessPiece attacker = pieces.get(i);
+            if (attacker.getOwner() != whoseMove) {
+                continue;
+            }
+            for (int j = 0; j < pieces.size(); j++) {
+                ChessPiece victim = pieces.get(j);
+                if (victim.getOwner() == whoseMove || victim instanceof King
+                        || !attacker.canMoveNoLegalCheck(victim.getCoordinate())) {
+                    continue;
+                }
+                ChessMove capture = new ChessMove(attacker.getCoordinate(), victim.getCoordinate());
+                int gain = exchange.evaluate(pos, capture);
+                if (gain < 0) {
+                    continue;
+                }
+                // Insertion keeps the list sorted by gain, largest first.
+                int index = 0;
+                while (index < gains.size() && gains.get(index) >= gain) {
+                    index++;
+                }
+                captures.add(index, capture);
+                gains.add(index, gain);
+            }
+        }
+        return captures;
+    }
+
+    /**
+     * Sorts moves so the most promising are searched first: captures that win material,
+     * then promotions, then quiet moves, then captures that lose material.
+     *
+     * @param pos   Position the moves are played from
+     * @param moves Moves to sort in place
+     * @return Ordering key of each move after sorting, highest first
+     */
+    private int[] orderMoves(ChessPosition pos, List<ChessMove> moves) {
+        int[] keys = new int[moves.size()];
+        for (int i = 0; i < moves.size(); i++) {
+            ChessMove move = moves.get(i);
+            ChessPiece mover = pos.pieceAt(move.getFrom().getIndex());
+            ChessPiece victim = pos.pieceAt(move.getTo().getIndex());
+            boolean capture = victim != null
+                    || (mover instanceof Pawn && move.getFrom().getFile() != move.getTo().getFile());
+            if (!capture) {
+                keys[i] = QUIET_ORDER;
+            } else {
+                int gain = exchange.evaluate(pos, move);
+                keys[i] = gain >= 0 ? GOOD_CAPTURE_ORDER + gain : gain;
+            }
+            int toRank = move.getTo().getIndex() >> 3;
+            if (mover instanceof Pawn && (toRank == 0 || toRank == 7)) {
+                keys[i] = Math.max(keys[i], PROMOTION_ORDER);
             }
         }
-        return worstValue;
+        // Insertion sort - stable, and move lists are short.
+        for (int i = 1; i < keys.length; i++) {
+            int key = keys[i];
+            ChessMove move = moves.get(i);
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                keys[j + 1] = keys[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            keys[j + 1] = key;
+            moves.set(j + 1, move);
+        }
+        return keys;
+    }
+
+    /**
+     * Plays a move during the search, keeping the network accumulators in step.
+     *
+     * @param pos  Position before the move
+     * @param move Move to play
+     * @param ply  Distance from the root after the move
+     * @return Position after the move
+     */
+    private ChessPosition makeMove(ChessPosition pos, ChessMove move, int ply) {
+        ChessPosition next = pos.positionAfterMove(move);
+        if (useNetwork()) {
+            nnue.update(ply, pos, next, move);
+        }
+        return next;
+    }
+
+    /**
+     * Counts a node and determines if the search has to stop. Once it has,
+     * every node returns straight away and the current iteration is discarded.
+     *
+     * @return True if the search is out of nodes or time, or was stopped
+     */
+    private boolean outOfTime() {
+        if (aborted) {
+            return true;
+        }
+        nodes++;
+        if (stopped) {
+            aborted = true;
+        } else if (limits.getNodes() > 0 && nodes > limits.getNodes()) {
+            aborted = true;
+        } else if (deadline != 0 && (nodes & 1023) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    /**
+     * Pushes a position reached in the search onto the key stack.
+     *
+     * @param pos    Position after the move
+     * @param toMove Player to move after the move
+     * @param ply    Distance from the root after the move
+     */
+    private void recordPosition(ChessPosition pos, ChessPlayer toMove, int ply) {
+        keys[gameLength + ply] = pos.getZobristKey(toMove);
+    }
+
+    /**
+     * Determines if a knight or bishop is still on its own back rank, where it started.
+     *
+     * @param piece Piece to check
+     * @return True if the piece has yet to be developed
+     */
+    private static boolean isUndeveloped(ChessPiece piece) {
+        int homeRank = piece.getOwner() == ChessPlayer.WHITE ? 1 : 8;
+        return piece.getCoordinate().getRank() == homeRank;
+    }
+
+    /**
+     * Determines if the position at a ply of the search is drawn by the fifty move rule,
+     * or repeats a position from earlier in the game or the search. A single repetition
+     * is scored as a draw: if repeating is good for one side, it can repeat again.
+     *
+     * @param pos Position at that ply
+     * @param ply Distance from the root
+     * @return True if the position should be scored as a draw
+     */
+    private boolean isDraw(ChessPosition pos, int ply) {
+        int clock = pos.getHalfmoveClock();
+        if (clock >= FIFTY_MOVE_PLIES) {
+            return true;
+        }
+        int current = gameLength + ply;
+        long key = keys[current];
+        // A position can first repeat four plies later, with the same player to move,
+        // and no earlier than the last capture or pawn move.
+        for (int i = current - 4; i >= 0 && i >= current - clock; i -= 2) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if positions should be scored by the neural network.
+     * The neural setting falls back to the handcrafted evaluation until a network is loaded.
+     *
+     * @return True if the network evaluates positions
+     */
+    private boolean useNetwork() {
+        return settings == EngineSettings.NEURAL && nnue != null;
+    }
+
+    /**
+     * Loads the network used by the neural setting.
+     *
+     * @param network Network to evaluate with, or null to drop the current one
+     */
+    public void setNetwork(NnueNetwork network) {
+        this.nnue = network == null ? null : new NnueEvaluator(network);
+    }
+
+    public EvaluationWeights getWeights() {
+        return weights;
+    }
+
+    /**
+     * Changes the weights of the handcrafted evaluation.
+     *
+     * @param weights Weights to evaluate with
+     */
+    public void setWeights(EvaluationWeights weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Makes every evaluation start from the same random numbers, so evaluating a position
+     * twice searches the same tree and returns the same result, noise and all.
+     *
+     * @param seed Seed to restart from, or null to go back to different numbers every time
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Stops the evaluation in progress, as if it had run out of time, so it answers with the
+     * deepest completed result. Can be called from any thread. A stop that comes before the
+     * evaluation starts is forgotten, so keep calling until the evaluating thread returns.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Sets how many of the best root moves are scored exactly and reported as lines.
+     * Only the best of them is played; the others cost search time.
+     *
+     * @param multiPv Number of lines, at least 1
+     */
+    public void setMultiPv(int multiPv) {
+        if (multiPv < 1) {
+            throw new IllegalArgumentException("Need at least one line: " + multiPv);
+        }
+        this.multiPv = multiPv;
+    }
+
+    public int getMultiPv() {
+        return multiPv;
+    }
+
+    /**
+     * Sets who is told as each search iteration completes.
+     *
+     * @param listener Listener, or null for none
+     */
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
     }
 
     /**
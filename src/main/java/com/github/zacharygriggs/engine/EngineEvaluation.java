@@ -2,6 +2,9 @@ package com.github.zacharygriggs.engine;
 
 import com.github.zacharygriggs.chess.core.ChessMove;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Model class for the evaluation of the chess engine
  * Stores the selected move and the position score
@@ -10,6 +13,9 @@ public class EngineEvaluation {
 
     private ChessMove bestMove;
     private double eval;
+    private int depth;
+    private long nodes;
+    private List<EngineEvaluation> lines = Collections.emptyList();
 
     public ChessMove getBestMove() {
         return bestMove;
@@ -26,4 +32,46 @@ public class EngineEvaluation {
     public void setEval(double eval) {
         this.eval = eval;
     }
+
+    /**
+     * Gets the depth of the deepest completed search iteration,
+     * or -1 if the search was stopped before any completed.
+     *
+     * @return Completed depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the number of positions searched.
+     *
+     * @return Node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Gets the best root moves of the deepest completed iteration, best first, each with its
+     * move, score and depth. There are as many as the engine's multiPv setting allows; the
+     * first is the best move. Empty if no iteration completed or the move was not searched for.
+     *
+     * @return Best lines
+     */
+    public List<EngineEvaluation> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<EngineEvaluation> lines) {
+        this.lines = lines;
+    }
 }
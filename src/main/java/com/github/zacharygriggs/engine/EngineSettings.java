@@ -17,5 +17,11 @@ public enum EngineSettings {
      * This mode can be fun to practice attacking.
      */
     BAD_MOVE,
+    /**
+     * Plays the best move, scoring positions with a neural network instead of
+     * handcrafted terms. Needs a network from {@link ChessEngine#setNetwork};
+     * without one it plays like {@link #BEST_MOVE}.
+     */
+    NEURAL,
 
 }
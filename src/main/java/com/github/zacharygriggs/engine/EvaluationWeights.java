@@ -0,0 +1,156 @@
+package com.github.zacharygriggs.engine;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The weights used by the engine's handcrafted evaluation, in pawns.
+ * <p>
+ * The first {@link #TERM_COUNT} weights are linear terms of the static evaluation:
+ * the score is the sum of each weight times its feature from {@link #extractFeatures},
+ * which makes them tunable against game results. The remaining weights shape the
+ * root move choice and are not part of the static evaluation.
+ */
+public class EvaluationWeights {
+
+    public static final int PAWN = ChessPiece.PAWN;
+    public static final int KNIGHT = ChessPiece.KNIGHT;
+    public static final int BISHOP = ChessPiece.BISHOP;
+    public static final int ROOK = ChessPiece.ROOK;
+    public static final int QUEEN = ChessPiece.QUEEN;
+    /**
+     * Number of linear terms in the static evaluation.
+     */
+    public static final int TERM_COUNT = 5;
+    /**
+     * Bonus for developing a knight or bishop from turn 3...
+     */
+    public static final int DEVELOPMENT_BASE = 5;
+    /**
+     * ...growing by this much every turn it stays undeveloped...
+     */
+    public static final int DEVELOPMENT_PER_TURN = 6;
+    /**
+     * ...up to this much.
+     */
+    public static final int DEVELOPMENT_MAX = 7;
+    /**
+     * Size of the random factor added to every evaluation so games differ.
+     */
+    public static final int NOISE = 8;
+
+    public static final List<String> NAMES = List.of(
+            "pawn", "knight", "bishop", "rook", "queen",
+            "development.base", "development.perTurn", "development.max", "noise");
+
+    private static final double[] DEFAULTS = {1, 3, 3, 5, 9, 0.25, 0.10, 1.50, 0.5};
+
+    private final double[] values;
+
+    /**
+     * Creates the default weights.
+     */
+    public EvaluationWeights() {
+        this.values = DEFAULTS.clone();
+    }
+
+    public EvaluationWeights(EvaluationWeights old) {
+        this.values = old.values.clone();
+    }
+
+    public double get(int weight) {
+        return values[weight];
+    }
+
+    public void set(int weight, double value) {
+        values[weight] = value;
+    }
+
+    /**
+     * Gets the value of a piece.
+     *
+     * @param piece Piece to value
+     * @return Material value, zero for a king
+     */
+    public double materialValue(ChessPiece piece) {
+        int type = piece.getType();
+        return type == ChessPiece.KING ? 0 : values[type];
+    }
+
+    /**
+     * Computes the static evaluation terms of a position: the static evaluation from
+     * White's point of view is the sum over i of weight i times features[i].
+     *
+     * @param pos      Position to compute for
+     * @param features Receives one value per term, at least {@link #TERM_COUNT} long
+     */
+    public static void extractFeatures(ChessPosition pos, int[] features) {
+        Arrays.fill(features, 0, TERM_COUNT, 0);
+        List<ChessPiece> pieces = pos.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            ChessPiece piece = pieces.get(i);
+            int type = piece.getType();
+            if (type != ChessPiece.KING) {
+                features[type] += piece.getOwner() == ChessPlayer.WHITE ? 1 : -1;
+            }
+        }
+    }
+
+    /**
+     * Loads weights from a properties file, one "name=value" line per weight.
+     * Weights missing from the file keep their default value.
+     *
+     * @param file File to read
+     * @return Loaded weights
+     * @throws IOException If the file cannot be read or a value is not a number
+     */
+    public static EvaluationWeights load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        EvaluationWeights weights = new EvaluationWeights();
+        for (int i = 0; i < NAMES.size(); i++) {
+            String value = properties.getProperty(NAMES.get(i));
+            if (value != null) {
+                try {
+                    weights.values[i] = Double.parseDouble(value.trim());
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Invalid value for " + NAMES.get(i) + ": " + value, ex);
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Writes these weights in the format read by {@link #load(Path)}.
+     *
+     * @param file File to write
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NAMES.size(); i++) {
+            sb.append(NAMES.get(i)).append('=').append(values[i]).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.zacharygriggs.engine;
+
+/**
+ * Limits on how long the engine may search a position.
+ * A limit of zero means that limit is not applied; the engine's own depth
+ * is used when no depth is given.
+ */
+public class SearchLimits {
+
+    /**
+     * No limits beyond the engine's own depth.
+     */
+    public static final SearchLimits NONE = new SearchLimits();
+
+    private int depth;
+    private long nodes;
+    private long timeMillis;
+
+    public SearchLimits() {
+
+    }
+
+    public SearchLimits(int depth, long nodes, long timeMillis) {
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * Creates limits that only restrict the depth.
+     *
+     * @param depth How many moves ahead to search after the engine's own move
+     * @return Depth limits
+     */
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    /**
+     * Creates limits that only restrict the number of nodes searched.
+     *
+     * @param nodes Maximum number of nodes
+     * @return Node limits
+     */
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(0, nodes, 0);
+    }
+
+    /**
+     * Creates limits that only restrict the search time.
+     *
+     * @param timeMillis Maximum time, in milliseconds
+     * @return Time limits
+     */
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(0, 0, timeMillis);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchLimits{depth=" + depth + ", nodes=" + nodes + ", timeMillis=" + timeMillis + "}";
+    }
+}
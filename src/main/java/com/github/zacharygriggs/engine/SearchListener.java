@@ -0,0 +1,16 @@
+package com.github.zacharygriggs.engine;
+
+/**
+ * Follows a search as it deepens.
+ */
+@FunctionalInterface
+public interface SearchListener {
+
+    /**
+     * Called each time a search iteration completes.
+     *
+     * @param evaluation Best move, score, depth and node count so far. It goes on
+     *                   changing as the search continues, so copy anything needed later.
+     */
+    void iterationComplete(EngineEvaluation evaluation);
+}
@@ -0,0 +1,181 @@
+package com.github.zacharygriggs.engine;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.helper.MiscHelper;
+import com.github.zacharygriggs.chess.pieces.*;
+
+/**
+ * Static exchange evaluation.
+ * <p>
+ * Plays out the sequence of captures on a single square, each side always recapturing
+ * with its least valuable attacker, and reports how much material the side making
+ * the first capture comes out with. Pieces that have already captured are taken off the
+ * board as the sequence goes on, so sliders lined up behind them (x-rays) join in.
+ * <p>
+ * Works on the position's square lookup and a reused scratch array, so it does not
+ * allocate. Not thread safe - each search thread needs its own instance.
+ */
+public class StaticExchange {
+
+    /**
+     * Value given to a king so that capturing into a defended square always loses.
+     */
+    private static final int KING_VALUE = 100;
+
+    private static final int[] KNIGHT_FILE_STEPS = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_RANK_STEPS = {2, 1, -1, -2, -2, -1, 1, 2};
+    // The first four directions are diagonals, the last four are lines.
+    private static final int[] RAY_FILE_STEPS = {1, 1, -1, -1, 1, -1, 0, 0};
+    private static final int[] RAY_RANK_STEPS = {1, -1, 1, -1, 0, 0, 1, -1};
+
+    // There are at most 32 pieces, so at most 32 captures on one square.
+    private final int[] gains = new int[33];
+
+    /**
+     * Gets the value of a piece as used by the exchange.
+     *
+     * @param piece Piece to value
+     * @return Value, in pawns
+     */
+    public static int value(ChessPiece piece) {
+        return piece instanceof King ? KING_VALUE : piece.getMaterialValue();
+    }
+
+    /**
+     * Evaluates the exchange started by a move.
+     *
+     * @param pos  Position before the move
+     * @param move Move to evaluate, expected to be legal
+     * @return Material the moving side wins, in pawns. Negative if the move loses material.
+     */
+    public int evaluate(ChessPosition pos, ChessMove move) {
+        int from = move.getFrom().getIndex();
+        int target = move.getTo().getIndex();
+        ChessPiece mover = pos.pieceAt(from);
+        if (mover == null) {
+            return 0;
+        }
+        ChessPiece victim = pos.pieceAt(target);
+        if (victim != null) {
+            gains[0] = value(victim);
+        } else if (mover instanceof Pawn && (from & 7) != (target & 7)) {
+            gains[0] = 1; // En passant
+        } else {
+            gains[0] = 0;
+        }
+        long used = 1L << from;
+        int attackerValue = value(mover);
+        ChessPlayer side = mover.getOwner();
+        int depth = 0;
+        while (true) {
+            depth++;
+            // Speculative: what the side that just captured keeps if it is recaptured.
+            gains[depth] = attackerValue - gains[depth - 1];
+            side = MiscHelper.opposite(side);
+            int attacker = leastValuableAttacker(pos, target, side, used);
+            if (attacker < 0) {
+                break;
+            }
+            used |= 1L << attacker;
+            attackerValue = value(pos.pieceAt(attacker));
+        }
+        while (--depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    /**
+     * Determines if a move wins at least the given amount of material.
+     *
+     * @param pos       Position before the move
+     * @param move      Move to check
+     * @param threshold Material the move has to win, in pawns
+     * @return True if the exchange is worth at least the threshold
+     */
+    public boolean atLeast(ChessPosition pos, ChessMove move, int threshold) {
+        return evaluate(pos, move) >= threshold;
+    }
+
+    /**
+     * Finds the cheapest piece of a side that attacks a square, skipping pieces
+     * that have already taken part in the exchange.
+     *
+     * @param pos    Position to search
+     * @param target Square under attack
+     * @param side   Side whose attackers to find
+     * @param used   Squares of pieces already used, treated as empty
+     * @return Square of the attacker, or -1 if there is none
+     */
+    private int leastValuableAttacker(ChessPosition pos, int target, ChessPlayer side, long used) {
+        int file = target & 7;
+        int rank = target >> 3;
+
+        // Pawns first, they are always the cheapest.
+        int pawnRank = side == ChessPlayer.WHITE ? rank - 1 : rank + 1;
+        for (int df = -1; df <= 1; df += 2) {
+            int square = squareAt(file + df, pawnRank);
+            if (square >= 0 && (used & (1L << square)) == 0) {
+                ChessPiece piece = pos.pieceAt(square);
+                if (piece instanceof Pawn && piece.getOwner() == side) {
+                    return square;
+                }
+            }
+        }
+
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        for (int i = 0; i < KNIGHT_FILE_STEPS.length; i++) {
+            int square = squareAt(file + KNIGHT_FILE_STEPS[i], rank + KNIGHT_RANK_STEPS[i]);
+            if (square >= 0 && (used & (1L << square)) == 0) {
+                ChessPiece piece = pos.pieceAt(square);
+                if (piece instanceof Knight && piece.getOwner() == side && value(piece) < bestValue) {
+                    best = square;
+                    bestValue = value(piece);
+                }
+            }
+        }
+
+        for (int dir = 0; dir < RAY_FILE_STEPS.length; dir++) {
+            boolean diagonal = dir < 4;
+            int f = file + RAY_FILE_STEPS[dir];
+            int r = rank + RAY_RANK_STEPS[dir];
+            int distance = 1;
+            while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                int square = f + 8 * r;
+                ChessPiece piece = pos.pieceAt(square);
+                if (piece != null && (used & (1L << square)) == 0) {
+                    // First piece on the ray. Anything behind it is blocked.
+                    if (piece.getOwner() == side && value(piece) < bestValue && slidesOnto(piece, diagonal, distance)) {
+                        best = square;
+                        bestValue = value(piece);
+                    }
+                    break;
+                }
+                f += RAY_FILE_STEPS[dir];
+                r += RAY_RANK_STEPS[dir];
+                distance++;
+            }
+        }
+        return best;
+    }
+
+    private static boolean slidesOnto(ChessPiece piece, boolean diagonal, int distance) {
+        if (piece instanceof Queen) {
+            return true;
+        }
+        if (piece instanceof King) {
+            return distance == 1;
+        }
+        return diagonal ? piece instanceof Bishop : piece instanceof Rook;
+    }
+
+    private static int squareAt(int file, int rank) {
+        if (file < 0 || file >= 8 || rank < 0 || rank >= 8) {
+            return -1;
+        }
+        return file + 8 * rank;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.zacharygriggs.engine.batch;
+
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineEvaluation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Evaluates many positions at once on a work-stealing thread pool.
+ * <p>
+ * Each worker thread gets its own {@link ChessEngine} from the factory, created the first
+ * time that thread picks up a request and reused for every request after, so no engine
+ * state is shared between threads. Results come back in the order they finish, not the
+ * order they were submitted.
+ */
+public class BatchEvaluator implements AutoCloseable {
+
+    /**
+     * Requests queued per worker before submission waits for results to be taken.
+     */
+    private static final int IN_FLIGHT_PER_WORKER = 4;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<ChessEngine> engines;
+
+    /**
+     * Creates a batch evaluator.
+     *
+     * @param parallelism   Number of worker threads
+     * @param engineFactory Creates the engine for each worker thread
+     */
+    public BatchEvaluator(int parallelism, Supplier<ChessEngine> engineFactory) {
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("batch-eval-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+        this.engines = ThreadLocal.withInitial(engineFactory);
+    }
+
+    /**
+     * Creates a batch evaluator with one worker per available processor.
+     *
+     * @param engineFactory Creates the engine for each worker thread
+     */
+    public BatchEvaluator(Supplier<ChessEngine> engineFactory) {
+        this(Runtime.getRuntime().availableProcessors(), engineFactory);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Starts evaluating a stream of requests. Requests are pulled from the stream only as
+     * results are taken from the returned run, so memory stays bounded for large inputs.
+     *
+     * @param requests Requests to evaluate
+     * @return The run, iterating over results as they finish. Close it to stop early.
+     */
+    public BatchRun submit(Stream<BatchRequest> requests) {
+        return submit(requests.iterator());
+    }
+
+    /**
+     * Starts evaluating requests. Requests are pulled from the iterator only as
+     * results are taken from the returned run, so memory stays bounded for large inputs.
+     *
+     * @param requests Requests to evaluate
+     * @return The run, iterating over results as they finish. Close it to stop early.
+     */
+    public BatchRun submit(Iterator<BatchRequest> requests) {
+        BatchRun run = new BatchRun(this, pool.getParallelism() * IN_FLIGHT_PER_WORKER);
+        run.start(requests);
+        return run;
+    }
+
+    /**
+     * Evaluates a list of requests and waits for all of them.
+     *
+     * @param requests Requests to evaluate
+     * @return Results, in the order they finished
+     */
+    public List<BatchResult> evaluateAll(List<BatchRequest> requests) {
+        List<BatchResult> results = new ArrayList<>(requests.size());
+        try (BatchRun run = submit(requests.iterator())) {
+            while (run.hasNext()) {
+                results.add(run.next());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Queues one request on the pool. A position with no legal moves fails without reaching
+     * the engine, since a finished game has no move to find.
+     *
+     * @param request Request to evaluate
+     * @param run     Run to report the result to
+     */
+    void execute(BatchRequest request, BatchRun run) {
+        pool.execute(() -> {
+            long start = System.nanoTime();
+            BatchResult result;
+            try {
+                if (request.getPosition().noLegalMoves(request.getWhoseMove())) {
+                    throw new IllegalArgumentException("No legal moves in the position");
+                }
+                EngineEvaluation evaluation = engines.get().evaluate(
+                        request.getPosition(), request.getWhoseMove(), request.getLimits());
+                result = new BatchResult(request, evaluation, null, System.nanoTime() - start);
+            } catch (RuntimeException ex) {
+                result = new BatchResult(request, null, ex, System.nanoTime() - start);
+            }
+            run.complete(result);
+        });
+    }
+
+    /**
+     * Stops the worker threads. Requests already queued still finish.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.zacharygriggs.engine.batch;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters of a batch run. Safe to read while the run is in progress.
+ */
+public class BatchMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    void record(BatchResult result) {
+        completed.increment();
+        busyNanos.add(result.getElapsedNanos());
+        if (result.isSuccess()) {
+            nodes.add(result.getEvaluation().getNodes());
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Gets the number of requests finished so far, including failures.
+     *
+     * @return Completed requests
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the number of nodes searched by all workers.
+     *
+     * @return Total nodes
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * Gets the wall clock time since the run started.
+     *
+     * @return Elapsed time, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Gets the time workers spent evaluating, summed over all workers.
+     * Divided by the elapsed time, this is how many cores were kept busy.
+     *
+     * @return Busy time, in milliseconds
+     */
+    public long getBusyMillis() {
+        return busyNanos.sum() / 1_000_000;
+    }
+
+    public double getPositionsPerSecond() {
+        return perSecond(getCompleted());
+    }
+
+    public double getNodesPerSecond() {
+        return perSecond(getNodes());
+    }
+
+    private double perSecond(long count) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : count * 1e9 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d positions (%d failed) in %d ms: %.1f positions/s, %.0f nodes/s, %.1f cores busy",
+                getCompleted(), getFailed(), getElapsedMillis(), getPositionsPerSecond(), getNodesPerSecond(),
+                getElapsedMillis() == 0 ? 0.0 : (double) getBusyMillis() / getElapsedMillis());
+    }
+}
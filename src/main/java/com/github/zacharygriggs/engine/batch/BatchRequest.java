@@ -0,0 +1,47 @@
+package com.github.zacharygriggs.engine.batch;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.engine.SearchLimits;
+
+/**
+ * A position to evaluate as part of a batch, with its own search limits.
+ */
+public class BatchRequest {
+
+    private final long id;
+    private final ChessPosition position;
+    private final ChessPlayer whoseMove;
+    private final SearchLimits limits;
+
+    /**
+     * Creates a batch request.
+     *
+     * @param id        Caller's identifier, handed back with the result
+     * @param position  Position to evaluate
+     * @param whoseMove Who moves in that position
+     * @param limits    Limits of the search for this position
+     */
+    public BatchRequest(long id, ChessPosition position, ChessPlayer whoseMove, SearchLimits limits) {
+        this.id = id;
+        this.position = position;
+        this.whoseMove = whoseMove;
+        this.limits = limits;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public ChessPosition getPosition() {
+        return position;
+    }
+
+    public ChessPlayer getWhoseMove() {
+        return whoseMove;
+    }
+
+    public SearchLimits getLimits() {
+        return limits;
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.zacharygriggs.engine.batch;
+
+import com.github.zacharygriggs.engine.EngineEvaluation;
+
+/**
+ * The outcome of one request in a batch: either an evaluation or the error that prevented it.
+ */
+public class BatchResult {
+
+    private final BatchRequest request;
+    private final EngineEvaluation evaluation;
+    private final RuntimeException error;
+    private final long elapsedNanos;
+
+    BatchResult(BatchRequest request, EngineEvaluation evaluation, RuntimeException error, long elapsedNanos) {
+        this.request = request;
+        this.evaluation = evaluation;
+        this.error = error;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public BatchRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Gets the evaluation of the position.
+     *
+     * @return Evaluation, or null if the evaluation failed
+     */
+    public EngineEvaluation getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * Gets the error raised while evaluating, for example when the position has no legal moves.
+     *
+     * @return Error, or null if the evaluation succeeded
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Gets how long the evaluation took on its worker thread.
+     *
+     * @return Elapsed time, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.zacharygriggs.engine.batch;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of evaluations in progress. Iterating it yields results as they finish,
+ * blocking while workers are still busy.
+ * <p>
+ * A feeder thread submits requests to the pool, but never more than a fixed number
+ * ahead of the results that have been taken, so a slow consumer slows submission down
+ * instead of filling memory.
+ * <p>
+ * A consumer that stops before the results run out should close the run, which stops
+ * the feeder from pulling further requests.
+ */
+public class BatchRun implements Iterator<BatchResult>, AutoCloseable {
+
+    private static final long POLL_MILLIS = 50;
+
+    private final BatchEvaluator evaluator;
+    private final Semaphore inFlight;
+    private final LinkedBlockingQueue<BatchResult> results = new LinkedBlockingQueue<>();
+    private final BatchMetrics metrics = new BatchMetrics();
+
+    private volatile long submitted;
+    private volatile boolean feedingDone;
+    private volatile boolean closed;
+    private Thread feeder;
+    private volatile RuntimeException feedError;
+    private long taken;
+    private BatchResult next;
+
+    BatchRun(BatchEvaluator evaluator, int maxInFlight) {
+        this.evaluator = evaluator;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    void start(Iterator<BatchRequest> requests) {
+        feeder = new Thread(() -> feed(requests), "batch-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+
+    private void feed(Iterator<BatchRequest> requests) {
+        try {
+            while (!closed && requests.hasNext()) {
+                BatchRequest request = requests.next();
+                inFlight.acquire();
+                if (closed) {
+                    break;
+                }
+                submitted++;
+                evaluator.execute(request, this);
+            }
+        } catch (InterruptedException ex) {
+            // Closed while waiting for room
+        } catch (RuntimeException ex) {
+            feedError = ex;
+        } finally {
+            feedingDone = true;
+        }
+    }
+
+    void complete(BatchResult result) {
+        metrics.record(result);
+        results.add(result);
+    }
+
+    /**
+     * Gets the throughput of this run so far.
+     *
+     * @return Metrics, updated as results come in
+     */
+    public BatchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Determines if more results will come, waiting for outstanding work if needed.
+     *
+     * @return True if {@link #next()} will return a result, false once the run is closed
+     * @throws RuntimeException If reading the requests failed; results before the failure
+     *                          have already been returned
+     */
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        while (next == null) {
+            if (feedingDone && taken == submitted) {
+                if (feedError != null) {
+                    throw feedError;
+                }
+                return false;
+            }
+            try {
+                next = results.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for batch results", ex);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public BatchResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BatchResult result = next;
+        next = null;
+        taken++;
+        inFlight.release();
+        return result;
+    }
+
+    /**
+     * Stops submitting requests. Requests already on the pool still finish, but their
+     * results are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        feeder.interrupt();
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.zacharygriggs.engine.epd;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.San;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One line of an EPD test suite: a position followed by operations, e.g.
+ * <pre>2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - bm Qg6; id "WAC.001";</pre>
+ * The best moves ("bm") and moves to avoid ("am") are resolved against the position.
+ */
+public class EpdPosition {
+
+    private final String line;
+    private final ChessPosition position;
+    private final Map<String, List<String>> operations;
+    private final List<ChessMove> bestMoves;
+    private final List<ChessMove> avoidMoves;
+
+    private EpdPosition(String line, ChessPosition position, Map<String, List<String>> operations,
+                        List<ChessMove> bestMoves, List<ChessMove> avoidMoves) {
+        this.line = line;
+        this.position = position;
+        this.operations = operations;
+        this.bestMoves = bestMoves;
+        this.avoidMoves = avoidMoves;
+    }
+
+    /**
+     * Parses a line of an EPD file.
+     *
+     * @param line Line to parse
+     * @return The position and its operations
+     * @throws IllegalArgumentException If the position or a best or avoid move is not valid
+     */
+    public static EpdPosition parse(String line) {
+        int fenEnd = Fen.findEnd(line, 0, line.length());
+        ChessPosition position = Fen.parse(line, 0, fenEnd);
+        Map<String, List<String>> operations = parseOperations(line, fenEnd);
+        return new EpdPosition(line, position, operations,
+                resolve(position, operations.get("bm")), resolve(position, operations.get("am")));
+    }
+
+    private static Map<String, List<String>> parseOperations(String line, int from) {
+        Map<String, List<String>> operations = new LinkedHashMap<>();
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        for (int i = from; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ';';
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ';' || Character.isWhitespace(c)) {
+                if (word.length() > 0) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                }
+                if (c == ';' && !words.isEmpty()) {
+                    operations.put(words.get(0), List.copyOf(words.subList(1, words.size())));
+                    words.clear();
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        return operations;
+    }
+
+    private static List<ChessMove> resolve(ChessPosition position, List<String> sans) {
+        if (sans == null) {
+            return Collections.emptyList();
+        }
+        List<ChessMove> moves = new ArrayList<>(sans.size());
+        for (String san : sans) {
+            moves.add(San.parse(position, san));
+        }
+        return moves;
+    }
+
+    /**
+     * Determines if a move answers this position: it is one of the best moves, if any
+     * are given, and none of the moves to avoid.
+     *
+     * @param move Move to check
+     * @return True if the move solves the position
+     */
+    public boolean isSolution(ChessMove move) {
+        if (move == null) {
+            return false;
+        }
+        return (bestMoves.isEmpty() || bestMoves.contains(move)) && !avoidMoves.contains(move);
+    }
+
+    /**
+     * Gets the name of this position: its "id" operation, or the whole line if it has none.
+     *
+     * @return Name
+     */
+    public String getId() {
+        List<String> id = operations.get("id");
+        return id == null || id.isEmpty() ? line : id.get(0);
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public ChessPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets every operation of the line, by opcode, in the order they were given.
+     *
+     * @return Operands of each operation
+     */
+    public Map<String, List<String>> getOperations() {
+        return operations;
+    }
+
+    public List<ChessMove> getBestMoves() {
+        return bestMoves;
+    }
+
+    public List<ChessMove> getAvoidMoves() {
+        return avoidMoves;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.zacharygriggs.engine.epd;
+
+import com.github.zacharygriggs.engine.EngineEvaluation;
+
+/**
+ * The outcome of searching one EPD position: the move found and, if it solved the
+ * position, when the search first settled on a solution.
+ */
+public class EpdResult {
+
+    private final EpdPosition position;
+    private final EngineEvaluation evaluation;
+    private final boolean solved;
+    private final long elapsedNanos;
+    private final long solveNanos;
+    private final long solveNodes;
+    private final int solveDepth;
+
+    EpdResult(EpdPosition position, EngineEvaluation evaluation, boolean solved, long elapsedNanos,
+              long solveNanos, long solveNodes, int solveDepth) {
+        this.position = position;
+        this.evaluation = evaluation;
+        this.solved = solved;
+        this.elapsedNanos = elapsedNanos;
+        this.solveNanos = solveNanos;
+        this.solveNodes = solveNodes;
+        this.solveDepth = solveDepth;
+    }
+
+    public EpdPosition getPosition() {
+        return position;
+    }
+
+    public EngineEvaluation getEvaluation() {
+        return evaluation;
+    }
+
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * Gets how long the whole search took.
+     *
+     * @return Elapsed time, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets how long the search took to find the solution it kept to the end.
+     *
+     * @return Time to solution, in nanoseconds, or -1 if unsolved
+     */
+    public long getSolveNanos() {
+        return solveNanos;
+    }
+
+    /**
+     * Gets how many nodes the search took to find the solution it kept to the end.
+     *
+     * @return Nodes to solution, or -1 if unsolved
+     */
+    public long getSolveNodes() {
+        return solveNodes;
+    }
+
+    /**
+     * Gets the depth of the iteration that found the solution it kept to the end.
+     *
+     * @return Depth of solution, or -1 if unsolved
+     */
+    public int getSolveDepth() {
+        return solveDepth;
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.zacharygriggs.engine.epd;
+
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineEvaluation;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.EvaluationWeights;
+import com.github.zacharygriggs.engine.SearchLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+/**
+ * Runs an EPD test suite, searching the positions in parallel within a time or node limit.
+ * <p>
+ * Each worker thread gets its own {@link ChessEngine} from the factory. A position counts as
+ * solved when the search ends on a solution; the time and nodes to solution are from the
+ * iteration that first found the move, provided the search never left it afterwards.
+ */
+public class EpdRunner implements AutoCloseable {
+
+    /**
+     * Deepest iteration when only a time or node limit is given.
+     */
+    private static final int MAX_DEPTH = 32;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<ChessEngine> engines;
+    private final SearchLimits limits;
+
+    /**
+     * Creates a suite runner.
+     *
+     * @param parallelism   Number of worker threads
+     * @param engineFactory Creates the engine for each worker thread
+     * @param limits        Limits of the search of each position
+     */
+    public EpdRunner(int parallelism, Supplier<ChessEngine> engineFactory, SearchLimits limits) {
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("epd-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+        this.engines = ThreadLocal.withInitial(engineFactory);
+        this.limits = limits.getDepth() > 0 ? limits
+                : new SearchLimits(MAX_DEPTH, limits.getNodes(), limits.getTimeMillis());
+    }
+
+    /**
+     * Reads a suite. Blank lines and lines starting with '#' are skipped.
+     *
+     * @param file EPD file
+     * @return Positions, in file order
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a line is not a valid EPD position
+     */
+    public static List<EpdPosition> read(Path file) throws IOException {
+        List<EpdPosition> positions = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    positions.add(EpdPosition.parse(line));
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": " + ex.getMessage(), ex);
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Searches every position.
+     *
+     * @param positions Positions to search
+     * @return Results, in the order of the positions
+     */
+    public List<EpdResult> run(List<EpdPosition> positions) {
+        List<ForkJoinTask<EpdResult>> tasks = new ArrayList<>(positions.size());
+        for (EpdPosition position : positions) {
+            tasks.add(pool.submit(() -> solve(position)));
+        }
+        List<EpdResult> results = new ArrayList<>(positions.size());
+        for (ForkJoinTask<EpdResult> task : tasks) {
+            try {
+                results.add(task.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while running suite", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Search failed", ex.getCause());
+            }
+        }
+        return results;
+    }
+
+    private EpdResult solve(EpdPosition position) {
+        ChessEngine engine = engines.get();
+        long start = System.nanoTime();
+        // Time, nodes and depth of the iteration that found the current solution, if any.
+        long[] solvedAt = {-1, -1, -1};
+        engine.setSearchListener(eval -> {
+            if (!position.isSolution(eval.getBestMove())) {
+                solvedAt[0] = -1;
+            } else if (solvedAt[0] < 0) {
+                solvedAt[0] = System.nanoTime() - start;
+                solvedAt[1] = eval.getNodes();
+                solvedAt[2] = eval.getDepth();
+            }
+        });
+        EngineEvaluation eval;
+        try {
+            eval = engine.evaluate(position.getPosition(), position.getPosition().getSideToMove(), limits);
+        } finally {
+            engine.setSearchListener(null);
+        }
+        long elapsed = System.nanoTime() - start;
+        boolean solved = position.isSolution(eval.getBestMove());
+        if (!solved) {
+            return new EpdResult(position, eval, false, elapsed, -1, -1, -1);
+        }
+        return new EpdResult(position, eval, true, elapsed, solvedAt[0], solvedAt[1], (int) solvedAt[2]);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Runs a suite from the command line:
+     * <pre>EpdRunner suite.epd [--time ms] [--nodes n] [--depth d] [--threads n]</pre>
+     * Without a limit each position gets one second. The evaluation noise is turned off,
+     * so the same build gives the same answers every night.
+     *
+     * @param args Command line arguments
+     * @throws IOException If the suite cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: EpdRunner suite.epd [--time ms] [--nodes n] [--depth d] [--threads n]");
+            System.exit(1);
+        }
+        long time = 0;
+        long nodes = 0;
+        int depth = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--time":
+                    time = Long.parseLong(args[i + 1]);
+                    break;
+                case "--nodes":
+                    nodes = Long.parseLong(args[i + 1]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        if (time == 0 && nodes == 0 && depth == 0) {
+            time = 1000;
+        }
+        List<EpdPosition> positions = read(Paths.get(args[0]));
+        long start = System.nanoTime();
+        List<EpdResult> results;
+        try (EpdRunner runner = new EpdRunner(threads, EpdRunner::noiselessEngine,
+                new SearchLimits(depth, nodes, time))) {
+            results = runner.run(positions);
+        }
+        long wall = System.nanoTime() - start;
+        int solved = 0;
+        for (EpdResult result : results) {
+            EngineEvaluation eval = result.getEvaluation();
+            if (result.isSolved()) {
+                solved++;
+                System.out.printf("%-16s solved   %-8s depth %2d, %7d ms, %10d nodes%n", result.getPosition().getId(),
+                        eval.getBestMove(), result.getSolveDepth(), result.getSolveNanos() / 1_000_000,
+                        result.getSolveNodes());
+            } else {
+                System.out.printf("%-16s unsolved %-8s depth %2d, %7d ms, %10d nodes%n", result.getPosition().getId(),
+                        eval.getBestMove(), eval.getDepth(), result.getElapsedNanos() / 1_000_000, eval.getNodes());
+            }
+        }
+        System.out.printf("%nSolved %d of %d (%.1f%%) in %d ms%n", solved, results.size(),
+                results.isEmpty() ? 0 : 100.0 * solved / results.size(), wall / 1_000_000);
+    }
+
+    private static ChessEngine noiselessEngine() {
+        ChessEngine engine = new ChessEngine(MAX_DEPTH, EngineSettings.BEST_MOVE);
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        engine.setWeights(weights);
+        return engine;
+    }
+}
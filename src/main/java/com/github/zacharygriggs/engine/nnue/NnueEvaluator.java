@@ -0,0 +1,208 @@
+package com.github.zacharygriggs.engine.nnue;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.ChessPiece;
+import com.github.zacharygriggs.chess.pieces.King;
+import com.github.zacharygriggs.chess.pieces.Pawn;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Evaluates positions with an {@link NnueNetwork}.
+ * <p>
+ * Keeps a stack of int16 accumulators, one per search ply. The root is computed
+ * from scratch with {@link #refresh(int, ChessPosition)}; every child is derived
+ * from its parent with {@link #update(int, ChessPosition, ChessPosition, ChessMove)},
+ * which only touches the weight rows of the pieces the move added or removed.
+ * Going back up the tree needs no work since the parent's accumulator is untouched.
+ * <p>
+ * Not thread safe - each search thread needs its own evaluator.
+ */
+public class NnueEvaluator {
+
+    /**
+     * Right shift applied to the hidden layer sums before clipping.
+     */
+    static final int WEIGHT_SHIFT = 6;
+    /**
+     * Upper bound of the clipped ReLU activation.
+     */
+    static final int ACTIVATION_MAX = 127;
+    /**
+     * Divisor converting the output neuron to centipawns.
+     */
+    static final int OUTPUT_SCALE = 16;
+
+    private static final int INITIAL_PLIES = 64;
+
+    private final NnueNetwork network;
+    private final int hidden;
+
+    // accumulators[ply] holds the White perspective in [0, H) and Black in [H, 2H).
+    private short[][] accumulators;
+
+    // Scratch buffers for the dense layers, reused between evaluations.
+    private final int[] transformed;
+    private final int[] layer1;
+    private final int[] layer2;
+
+    public NnueEvaluator(NnueNetwork network) {
+        this.network = network;
+        this.hidden = network.getHiddenSize();
+        this.accumulators = new short[INITIAL_PLIES][];
+        this.transformed = new int[2 * hidden];
+        this.layer1 = new int[network.getLayer1Size()];
+        this.layer2 = new int[network.getLayer2Size()];
+    }
+
+    public NnueNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Computes the accumulator for a ply from scratch.
+     *
+     * @param ply Ply to compute
+     * @param pos Position at that ply
+     */
+    public void refresh(int ply, ChessPosition pos) {
+        short[] acc = accumulator(ply);
+        refreshPerspective(acc, pos, ChessPlayer.WHITE);
+        refreshPerspective(acc, pos, ChessPlayer.BLACK);
+    }
+
+    /**
+     * Derives the accumulator of a child ply from its parent's.
+     *
+     * @param ply    Child ply. The accumulator of ply - 1 must be up to date.
+     * @param before Position at the parent ply
+     * @param after  Position after the move was made
+     * @param move   Move leading from before to after
+     */
+    public void update(int ply, ChessPosition before, ChessPosition after, ChessMove move) {
+        short[] parent = accumulators[ply - 1];
+        short[] acc = accumulator(ply);
+        Optional<ChessPiece> optMover = before.pieceAt(move.getFrom());
+        if (optMover.isEmpty() || optMover.get() instanceof King) {
+            // A king move changes every feature of its own perspective, and castling
+            // moves a rook as well. Cheaper and simpler to start over.
+            refresh(ply, after);
+            return;
+        }
+        System.arraycopy(parent, 0, acc, 0, acc.length);
+        ChessPiece mover = optMover.get();
+        int from = NnueFeatures.square(move.getFrom());
+        int to = NnueFeatures.square(move.getTo());
+
+        ChessPiece captured = before.pieceAt(move.getTo()).orElse(null);
+        int capturedSquare = to;
+        if (captured == null && mover instanceof Pawn && move.getFrom().getFile() != move.getTo().getFile()) {
+            // En passant - the captured pawn sits beside the mover, not on the destination.
+            capturedSquare = (to & 7) + (from & ~7);
+            captured = before.pieceAt(new ChessCoordinate(move.getTo().getFile(), move.getFrom().getRank()))
+                    .orElse(null);
+        }
+        // The piece on the destination afterwards differs from the mover on promotion.
+        ChessPiece arrived = after.pieceAt(move.getTo()).orElse(mover);
+
+        for (ChessPlayer perspective : ChessPlayer.values()) {
+            int offset = perspective == ChessPlayer.WHITE ? 0 : hidden;
+            int kingSquare = NnueFeatures.square(before.getKing(perspective).getCoordinate());
+            subtract(acc, offset, NnueFeatures.index(perspective, kingSquare,
+                    NnueFeatures.pieceType(mover), mover.getOwner(), from));
+            add(acc, offset, NnueFeatures.index(perspective, kingSquare,
+                    NnueFeatures.pieceType(arrived), arrived.getOwner(), to));
+            if (captured != null && !(captured instanceof King)) {
+                subtract(acc, offset, NnueFeatures.index(perspective, kingSquare,
+                        NnueFeatures.pieceType(captured), captured.getOwner(), capturedSquare));
+            }
+        }
+    }
+
+    /**
+     * Evaluates the position at a ply.
+     *
+     * @param ply         Ply whose accumulator to use
+     * @param perspective Player to score for
+     * @return Score in centipawns, positive if good for the perspective
+     */
+    public int evaluate(int ply, ChessPlayer perspective) {
+        short[] acc = accumulators[ply];
+        int us = perspective == ChessPlayer.WHITE ? 0 : hidden;
+        int them = hidden - us;
+        for (int i = 0; i < hidden; i++) {
+            transformed[i] = clip(acc[us + i]);
+            transformed[hidden + i] = clip(acc[them + i]);
+        }
+        dense(transformed, network.layer1Weights, network.layer1Biases, layer1);
+        dense(layer1, network.layer2Weights, network.layer2Biases, layer2);
+        int output = network.outputBias;
+        byte[] outputWeights = network.outputWeights;
+        for (int i = 0; i < layer2.length; i++) {
+            output += outputWeights[i] * layer2[i];
+        }
+        return output / OUTPUT_SCALE;
+    }
+
+    private void refreshPerspective(short[] acc, ChessPosition pos, ChessPlayer perspective) {
+        int offset = perspective == ChessPlayer.WHITE ? 0 : hidden;
+        System.arraycopy(network.featureBiases, 0, acc, offset, hidden);
+        int kingSquare = NnueFeatures.square(pos.getKing(perspective).getCoordinate());
+        List<ChessPiece> pieces = pos.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            ChessPiece piece = pieces.get(i);
+            int type = NnueFeatures.pieceType(piece);
+            if (type >= 0) {
+                add(acc, offset, NnueFeatures.index(perspective, kingSquare, type, piece.getOwner(),
+                        NnueFeatures.square(piece.getCoordinate())));
+            }
+        }
+    }
+
+    private void add(short[] acc, int offset, int feature) {
+        short[] weights = network.featureWeights;
+        int row = feature * hidden;
+        for (int i = 0; i < hidden; i++) {
+            acc[offset + i] += weights[row + i];
+        }
+    }
+
+    private void subtract(short[] acc, int offset, int feature) {
+        short[] weights = network.featureWeights;
+        int row = feature * hidden;
+        for (int i = 0; i < hidden; i++) {
+            acc[offset + i] -= weights[row + i];
+        }
+    }
+
+    private static void dense(int[] input, byte[] weights, int[] biases, int[] output) {
+        int inputs = input.length;
+        for (int o = 0; o < output.length; o++) {
+            int sum = biases[o];
+            int row = o * inputs;
+            for (int i = 0; i < inputs; i++) {
+                sum += weights[row + i] * input[i];
+            }
+            output[o] = clip(sum >> WEIGHT_SHIFT);
+        }
+    }
+
+    private static int clip(int value) {
+        return Math.max(0, Math.min(ACTIVATION_MAX, value));
+    }
+
+    private short[] accumulator(int ply) {
+        if (ply >= accumulators.length) {
+            accumulators = Arrays.copyOf(accumulators, Math.max(ply + 1, accumulators.length * 2));
+        }
+        if (accumulators[ply] == null) {
+            accumulators[ply] = new short[2 * hidden];
+        }
+        return accumulators[ply];
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.zacharygriggs.engine.nnue;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+
+/**
+ * HalfKP feature indexing.
+ * <p>
+ * Each perspective sees every non-king piece relative to its own king:
+ * (own king square, piece type, piece colour relative to the perspective, piece square).
+ * Squares are mirrored vertically for Black so both perspectives share the same weights.
+ */
+public final class NnueFeatures {
+
+    private NnueFeatures() {}
+
+    /**
+     * Number of (piece type, relative colour) pairs: five non-king types for each side.
+     */
+    public static final int PIECE_KINDS = 10;
+    public static final int FEATURES_PER_KING_SQUARE = PIECE_KINDS * 64;
+    public static final int FEATURE_COUNT = 64 * FEATURES_PER_KING_SQUARE;
+
+    /**
+     * Converts a coordinate into a square index between 0 (a1) and 63 (h8).
+     *
+     * @param coordinate Coordinate to convert
+     * @return Square index
+     */
+    public static int square(ChessCoordinate coordinate) {
+        return coordinate.getIndex();
+    }
+
+    /**
+     * Orients a square for the given perspective.
+     *
+     * @param square      Square index
+     * @param perspective Perspective to orient for
+     * @return Square as seen by that perspective
+     */
+    public static int orient(int square, ChessPlayer perspective) {
+        return perspective == ChessPlayer.WHITE ? square : square ^ 56;
+    }
+
+    /**
+     * Gets the type index of a piece, or -1 for a king, which has no feature of its own.
+     *
+     * @param piece Piece to classify
+     * @return Type index between 0 and 4, or -1
+     */
+    public static int pieceType(ChessPiece piece) {
+        int type = piece.getType();
+        return type == ChessPiece.KING ? -1 : type;
+    }
+
+    /**
+     * Computes the feature index of a piece for one perspective.
+     *
+     * @param perspective   Perspective to compute for
+     * @param kingSquare    Square of that perspective's king, unoriented
+     * @param pieceType     Type index of the piece from {@link #pieceType(ChessPiece)}
+     * @param pieceOwner    Owner of the piece
+     * @param pieceSquare   Square of the piece, unoriented
+     * @return Feature index
+     */
+    public static int index(ChessPlayer perspective, int kingSquare, int pieceType, ChessPlayer pieceOwner, int pieceSquare) {
+        int kind = pieceType * 2 + (pieceOwner == perspective ? 0 : 1);
+        return orient(kingSquare, perspective) * FEATURES_PER_KING_SQUARE
+                + kind * 64
+                + orient(pieceSquare, perspective);
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.zacharygriggs.engine.nnue;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Quantized weights of an efficiently updatable neural network.
+ * <p>
+ * The network is a HalfKP feature transformer followed by two small hidden layers
+ * and a single output neuron:
+ * <pre>
+ *     2 x (40960 -> H)  int16 feature transformer, one accumulator per perspective
+ *     2H -> L1          int8 weights, int32 biases, clipped ReLU
+ *     L1 -> L2          int8 weights, int32 biases, clipped ReLU
+ *     L2 -> 1           int8 weights, int32 bias
+ * </pre>
+ * Networks are stored as a simple little-endian binary file, see {@link #load(InputStream)}.
+ */
+public class NnueNetwork {
+
+    /**
+     * File header, the ASCII bytes "EZNN" read as a little-endian int.
+     */
+    public static final int MAGIC = 0x4E4E5A45;
+    public static final int VERSION = 1;
+    /**
+     * Largest accumulator and hidden layer sizes a network file may declare, so a corrupt
+     * header cannot ask for more memory than any real network needs.
+     */
+    public static final int MAX_HIDDEN_SIZE = 4096;
+    public static final int MAX_LAYER_SIZE = 1024;
+
+    private final int hiddenSize;
+    private final int layer1Size;
+    private final int layer2Size;
+
+    final short[] featureBiases;
+    final short[] featureWeights;
+    final int[] layer1Biases;
+    final byte[] layer1Weights;
+    final int[] layer2Biases;
+    final byte[] layer2Weights;
+    final byte[] outputWeights;
+    int outputBias;
+
+    /**
+     * Creates a network with all weights set to zero.
+     *
+     * @param hiddenSize Size of each perspective's accumulator
+     * @param layer1Size Size of the first hidden layer
+     * @param layer2Size Size of the second hidden layer
+     */
+    public NnueNetwork(int hiddenSize, int layer1Size, int layer2Size) {
+        if (hiddenSize <= 0 || layer1Size <= 0 || layer2Size <= 0) {
+            throw new IllegalArgumentException("Invalid network dimensions: "
+                    + hiddenSize + "x" + layer1Size + "x" + layer2Size);
+        }
+        this.hiddenSize = hiddenSize;
+        this.layer1Size = layer1Size;
+        this.layer2Size = layer2Size;
+        this.featureBiases = new short[hiddenSize];
+        this.featureWeights = new short[NnueFeatures.FEATURE_COUNT * hiddenSize];
+        this.layer1Biases = new int[layer1Size];
+        this.layer1Weights = new byte[layer1Size * 2 * hiddenSize];
+        this.layer2Biases = new int[layer2Size];
+        this.layer2Weights = new byte[layer2Size * layer1Size];
+        this.outputWeights = new byte[layer2Size];
+    }
+
+    public int getHiddenSize() {
+        return hiddenSize;
+    }
+
+    public int getLayer1Size() {
+        return layer1Size;
+    }
+
+    public int getLayer2Size() {
+        return layer2Size;
+    }
+
+    /**
+     * Loads a network from a file.
+     *
+     * @param file Network file
+     * @return Loaded network
+     * @throws IOException If the file cannot be read or is not a network file
+     */
+    public static NnueNetwork load(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads a network from a stream. The format is, all little-endian:
+     * <pre>
+     *     int   magic ("EZNN"), int version, int H, int L1, int L2
+     *     short featureBiases[H],  short featureWeights[40960][H]
+     *     int   layer1Biases[L1],  byte  layer1Weights[L1][2H]
+     *     int   layer2Biases[L2],  byte  layer2Weights[L2][L1]
+     *     int   outputBias,        byte  outputWeights[L2]
+     * </pre>
+     * H may be at most {@link #MAX_HIDDEN_SIZE}, and L1 and L2 at most {@link #MAX_LAYER_SIZE}.
+     *
+     * @param in Stream to read. Not closed.
+     * @return Loaded network
+     * @throws IOException If the stream cannot be read or is not a network file
+     */
+    public static NnueNetwork load(InputStream in) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(in.readNBytes(20)).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < 20 || header.getInt() != MAGIC) {
+            throw new IOException("Not a network file.");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported network version: " + version);
+        }
+        int hiddenSize = header.getInt();
+        int layer1Size = header.getInt();
+        int layer2Size = header.getInt();
+        if (hiddenSize <= 0 || hiddenSize > MAX_HIDDEN_SIZE
+                || layer1Size <= 0 || layer1Size > MAX_LAYER_SIZE
+                || layer2Size <= 0 || layer2Size > MAX_LAYER_SIZE) {
+            throw new IOException("Invalid network dimensions: "
+                    + hiddenSize + "x" + layer1Size + "x" + layer2Size);
+        }
+        NnueNetwork network = new NnueNetwork(hiddenSize, layer1Size, layer2Size);
+        ByteBuffer body = ByteBuffer.wrap(in.readNBytes(network.bodySize())).order(ByteOrder.LITTLE_ENDIAN);
+        if (body.remaining() != network.bodySize()) {
+            throw new IOException("Truncated network file.");
+        }
+        body.asShortBuffer().get(network.featureBiases).get(network.featureWeights);
+        body.position(body.position() + 2 * (network.featureBiases.length + network.featureWeights.length));
+        body.asIntBuffer().get(network.layer1Biases);
+        body.position(body.position() + 4 * network.layer1Biases.length);
+        body.get(network.layer1Weights);
+        body.asIntBuffer().get(network.layer2Biases);
+        body.position(body.position() + 4 * network.layer2Biases.length);
+        body.get(network.layer2Weights);
+        network.outputBias = body.getInt();
+        body.get(network.outputWeights);
+        return network;
+    }
+
+    /**
+     * Writes this network in the format read by {@link #load(InputStream)}.
+     *
+     * @param out Stream to write to. Not closed.
+     * @throws IOException If writing fails
+     */
+    public void save(OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + bodySize()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(hiddenSize).putInt(layer1Size).putInt(layer2Size);
+        buffer.asShortBuffer().put(featureBiases).put(featureWeights);
+        buffer.position(buffer.position() + 2 * (featureBiases.length + featureWeights.length));
+        buffer.asIntBuffer().put(layer1Biases);
+        buffer.position(buffer.position() + 4 * layer1Biases.length);
+        buffer.put(layer1Weights);
+        buffer.asIntBuffer().put(layer2Biases);
+        buffer.position(buffer.position() + 4 * layer2Biases.length);
+        buffer.put(layer2Weights);
+        buffer.putInt(outputBias);
+        buffer.put(outputWeights);
+        out.write(buffer.array());
+    }
+
+    private int bodySize() {
+        return 2 * (featureBiases.length + featureWeights.length)
+                + 4 * layer1Biases.length + layer1Weights.length
+                + 4 * layer2Biases.length + layer2Weights.length
+                + 4 + outputWeights.length;
+    }
+}
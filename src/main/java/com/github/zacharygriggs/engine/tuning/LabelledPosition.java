@@ -0,0 +1,120 @@
+package com.github.zacharygriggs.engine.tuning;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.PackedPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One line of a tuning file: a position in FEN and the result of the game it came from.
+ * <p>
+ * The move counters of the FEN may be left out. The result can follow anywhere
+ * after the FEN, either as a PGN result ("1-0", "0-1", "1/2-1/2") or as
+ * White's score in brackets ("[1.0]", "[0.5]", "[0.0]").
+ */
+class LabelledPosition {
+
+    private final ChessPosition position;
+    private final ChessPlayer whoseMove;
+    private final float result;
+
+    private LabelledPosition(ChessPosition position, ChessPlayer whoseMove, float result) {
+        this.position = position;
+        this.whoseMove = whoseMove;
+        this.result = result;
+    }
+
+    /**
+     * Parses a line of a tuning file.
+     *
+     * @param line Line to parse
+     * @return The labelled position
+     * @throws IllegalArgumentException If the line has no valid position or result
+     */
+    static LabelledPosition parse(String line) {
+        int fenEnd = Fen.findEnd(line, 0, line.length());
+        ChessPosition position = Fen.parse(line, 0, fenEnd);
+        return new LabelledPosition(position, position.getSideToMove(), readResult(line, fenEnd));
+    }
+
+    /**
+     * Reads a position packed with its result, as written by {@link #pack}.
+     *
+     * @param in    Buffer of packed positions
+     * @param index Index of the first byte of the position
+     * @return The labelled position
+     * @throws IllegalArgumentException If the bytes are not a packed position, or have no result
+     */
+    static LabelledPosition unpack(ByteBuffer in, int index) {
+        float result;
+        switch (PackedPosition.result(in, index)) {
+            case PackedPosition.WHITE_WINS:
+                result = 1;
+                break;
+            case PackedPosition.DRAW:
+                result = 0.5f;
+                break;
+            case PackedPosition.BLACK_WINS:
+                result = 0;
+                break;
+            default:
+                throw new IllegalArgumentException("No game result in packed position " + index / PackedPosition.BYTES);
+        }
+        ChessPosition position = PackedPosition.read(in, index);
+        return new LabelledPosition(position, position.getSideToMove(), result);
+    }
+
+    /**
+     * Packs this position with its result, and no score.
+     *
+     * @param out Buffer with at least {@link PackedPosition#BYTES} remaining
+     */
+    void pack(ByteBuffer out) {
+        int code = result == 1 ? PackedPosition.WHITE_WINS : result == 0 ? PackedPosition.BLACK_WINS
+                : result == 0.5f ? PackedPosition.DRAW : PackedPosition.UNKNOWN_RESULT;
+        PackedPosition.write(position, 0, code, out);
+    }
+
+    private static float readResult(String line, int from) {
+        // Check the draw first, "1/2-1/2" contains neither of the other two.
+        if (line.indexOf("1/2-1/2", from) >= 0) {
+            return 0.5f;
+        } else if (line.indexOf("1-0", from) >= 0) {
+            return 1;
+        } else if (line.indexOf("0-1", from) >= 0) {
+            return 0;
+        }
+        int open = line.lastIndexOf('[');
+        int close = line.lastIndexOf(']');
+        if (open >= from && close > open) {
+            try {
+                float result = Float.parseFloat(line.substring(open + 1, close).trim());
+                if (result >= 0 && result <= 1) {
+                    return result;
+                }
+            } catch (NumberFormatException ex) {
+                // Fall through to the error below.
+            }
+        }
+        throw new IllegalArgumentException("No game result: " + line);
+    }
+
+    ChessPosition getPosition() {
+        return position;
+    }
+
+    ChessPlayer getWhoseMove() {
+        return whoseMove;
+    }
+
+    /**
+     * Gets the result of the game.
+     *
+     * @return 1 if White won, 0.5 for a draw, 0 if Black won
+     */
+    float getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.zacharygriggs.engine.tuning;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.PackedPosition;
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.EvaluationWeights;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Tunes the static evaluation weights against game results (Texel's method).
+ * <p>
+ * Every position is first resolved to a quiet position with the engine's quiescence search,
+ * then the weights are adjusted one at a time for as long as that lowers the squared error
+ * between the game results and the results predicted from the evaluation. The pawn value
+ * is kept fixed so the weights stay in pawns.
+ * <p>
+ * Only the static evaluation terms are tuned. The development bonus is applied to root
+ * moves rather than positions, and the noise is not a property of a position at all,
+ * so neither can be fitted this way; both are carried over unchanged.
+ */
+public class TexelTuner {
+
+    // Lines read and resolved in parallel at a time.
+    private static final int BATCH_SIZE = 65536;
+    private static final double INITIAL_STEP = 0.10;
+    private static final double MIN_STEP = 0.01;
+    private static final double MIN_SCALE = 0.05;
+    private static final double MAX_SCALE = 5.0;
+    private static final double SCALE_TOLERANCE = 0.0001;
+
+    private final EvaluationWeights weights;
+    private final TrainingSet positions = new TrainingSet();
+    private final ThreadLocal<ChessEngine> engines;
+    private double scale;
+    private long skipped;
+
+    /**
+     * Creates a tuner.
+     *
+     * @param start Weights to start from. They also decide which captures the quiescence search plays.
+     */
+    public TexelTuner(EvaluationWeights start) {
+        this.weights = new EvaluationWeights(start);
+        EvaluationWeights searchWeights = new EvaluationWeights(start);
+        searchWeights.set(EvaluationWeights.NOISE, 0);
+        this.engines = ThreadLocal.withInitial(() -> {
+            ChessEngine engine = new ChessEngine(0, EngineSettings.BEST_MOVE);
+            engine.setWeights(searchWeights);
+            return engine;
+        });
+    }
+
+    /**
+     * Reads a file of labelled positions, one per line, in the format of {@link LabelledPosition}.
+     * Blank lines are ignored and lines that cannot be read are skipped.
+     *
+     * @param file File to read
+     * @throws IOException If the file cannot be read
+     */
+    public void load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    batch.add(line);
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    addAll(batch);
+                    batch.clear();
+                }
+            }
+            addAll(batch);
+        }
+    }
+
+    /**
+     * Reads a file of positions packed with their results, {@link PackedPosition#BYTES} bytes
+     * each, as written by {@link #pack}. The file is memory-mapped a batch at a time and the
+     * positions read straight from it. Positions without a result are skipped.
+     *
+     * @param file File to read
+     * @throws IOException If the file cannot be read
+     */
+    public void loadPacked(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long count = channel.size() / PackedPosition.BYTES;
+            for (long first = 0; first < count; first += BATCH_SIZE) {
+                int batch = (int) Math.min(BATCH_SIZE, count - first);
+                ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, first * PackedPosition.BYTES,
+                        (long) batch * PackedPosition.BYTES);
+                addAll(batch, i -> LabelledPosition.unpack(bytes, i * PackedPosition.BYTES));
+            }
+        }
+    }
+
+    /**
+     * Packs a file of labelled positions, one per line, into a file for {@link #loadPacked}, which
+     * is about half the size and much faster to read. Lines that cannot be read are left out.
+     *
+     * @param lines  File of labelled positions
+     * @param packed File to write
+     * @return Number of positions written
+     * @throws IOException If a file cannot be read or written
+     */
+    public static long pack(Path lines, Path packed) throws IOException {
+        long count = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_SIZE / 64 * PackedPosition.BYTES);
+        try (BufferedReader reader = Files.newBufferedReader(lines);
+             FileChannel out = FileChannel.open(packed, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    LabelledPosition.parse(line).pack(buffer);
+                    count++;
+                } catch (IllegalArgumentException ex) {
+                    continue;
+                }
+                if (!buffer.hasRemaining()) {
+                    writeAll(buffer, out);
+                }
+            }
+            writeAll(buffer, out);
+        }
+        return count;
+    }
+
+    private static void writeAll(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Resolves a batch of lines to quiet positions on all cores, then adds them in file order.
+     *
+     * @param lines Lines to add
+     */
+    private void addAll(List<String> lines) {
+        addAll(lines.size(), i -> LabelledPosition.parse(lines.get(i)));
+    }
+
+    /**
+     * Resolves a batch of positions to quiet positions on all cores, then adds them in order.
+     *
+     * @param count    Positions in the batch
+     * @param position Reads a position of the batch by its index
+     */
+    private void addAll(int count, IntFunction<LabelledPosition> position) {
+        int[][] terms = new int[count][];
+        float[] results = new float[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            try {
+                LabelledPosition labelled = position.apply(i);
+                ChessPosition quiet = engines.get().quietPosition(labelled.getPosition(), labelled.getWhoseMove());
+                terms[i] = new int[EvaluationWeights.TERM_COUNT];
+                EvaluationWeights.extractFeatures(quiet, terms[i]);
+                results[i] = labelled.getResult();
+            } catch (IllegalArgumentException ex) {
+                terms[i] = null;
+            }
+        });
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] == null) {
+                skipped++;
+            } else {
+                positions.add(terms[i], results[i]);
+            }
+        }
+    }
+
+    /**
+     * Tunes the weights without reporting progress.
+     *
+     * @param maxPasses Most passes over the weights to make
+     * @return The tuned weights
+     */
+    public EvaluationWeights tune(int maxPasses) {
+        return tune(maxPasses, null);
+    }
+
+    /**
+     * Tunes the weights.
+     *
+     * @param maxPasses Most passes over the weights to make
+     * @param progress  Receives the starting error and a line per pass, or null for none
+     * @return The tuned weights
+     */
+    public EvaluationWeights tune(int maxPasses, PrintStream progress) {
+        double[] values = new double[EvaluationWeights.TERM_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = weights.get(i);
+        }
+        scale = fitScale(values);
+        double bestError = positions.error(values, scale);
+        if (progress != null) {
+            progress.printf("Scale %.4f, starting error %.6f%n", scale, bestError);
+        }
+        double step = INITIAL_STEP;
+        for (int pass = 1; pass <= maxPasses && step >= MIN_STEP; pass++) {
+            boolean improved = false;
+            // The pawn stays fixed at its value, it sets the unit of the others.
+            for (int i = EvaluationWeights.PAWN + 1; i < values.length; i++) {
+                values[i] += step;
+                double error = positions.error(values, scale);
+                if (error < bestError) {
+                    bestError = error;
+                    improved = true;
+                    continue;
+                }
+                values[i] -= 2 * step;
+                error = positions.error(values, scale);
+                if (error < bestError) {
+                    bestError = error;
+                    improved = true;
+                    continue;
+                }
+                values[i] += step;
+            }
+            if (progress != null) {
+                progress.printf("Pass %d, step %.3f, error %.6f%n", pass, step, bestError);
+            }
+            if (!improved) {
+                step /= 2;
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            weights.set(i, values[i]);
+        }
+        return new EvaluationWeights(weights);
+    }
+
+    /**
+     * Finds the scaling constant that best fits the results for the given weights,
+     * by golden section search.
+     *
+     * @param values Evaluation weights
+     * @return Scaling constant
+     */
+    private double fitScale(double[] values) {
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double low = MIN_SCALE;
+        double high = MAX_SCALE;
+        double a = high - ratio * (high - low);
+        double b = low + ratio * (high - low);
+        double errorA = positions.error(values, a);
+        double errorB = positions.error(values, b);
+        while (high - low > SCALE_TOLERANCE) {
+            if (errorA < errorB) {
+                high = b;
+                b = a;
+                errorB = errorA;
+                a = high - ratio * (high - low);
+                errorA = positions.error(values, a);
+            } else {
+                low = a;
+                a = b;
+                errorA = errorB;
+                b = low + ratio * (high - low);
+                errorB = positions.error(values, b);
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    public TrainingSet getPositions() {
+        return positions;
+    }
+
+    /**
+     * Gets the scaling constant used by the last {@link #tune(int)}.
+     *
+     * @return Scaling constant K
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the number of lines skipped because they could not be read.
+     *
+     * @return Skipped lines
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Runs the tuner.
+     * Usage: TexelTuner positions-file [--weights start-file] [--out tuned-file] [--passes n] [--pack packed-file]
+     * <p>
+     * A positions file ending in ".bin" is read as packed positions. With --pack, the positions
+     * file is only packed into the packed file, and nothing is tuned.
+     *
+     * @param args Command line arguments
+     * @throws IOException If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TexelTuner positions-file [--weights start-file] [--out tuned-file] [--passes n] "
+                    + "[--pack packed-file]");
+            System.exit(1);
+        }
+        Path positionsFile = Paths.get(args[0]);
+        EvaluationWeights start = new EvaluationWeights();
+        Path out = null;
+        int passes = 1000;
+        Path packed = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--weights":
+                    start = EvaluationWeights.load(Paths.get(args[i + 1]));
+                    break;
+                case "--out":
+                    out = Paths.get(args[i + 1]);
+                    break;
+                case "--passes":
+                    passes = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--pack":
+                    packed = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        long begin = System.nanoTime();
+        if (packed != null) {
+            System.out.printf("Packed %d positions in %d ms%n", pack(positionsFile, packed),
+                    (System.nanoTime() - begin) / 1_000_000);
+            return;
+        }
+        TexelTuner tuner = new TexelTuner(start);
+        if (positionsFile.toString().endsWith(".bin")) {
+            tuner.loadPacked(positionsFile);
+        } else {
+            tuner.load(positionsFile);
+        }
+        System.out.printf("Loaded %d positions (%d skipped) in %d ms%n", tuner.getPositions().size(),
+                tuner.getSkipped(), (System.nanoTime() - begin) / 1_000_000);
+        EvaluationWeights tuned = tuner.tune(passes, System.out);
+        System.out.print(tuned);
+        if (out != null) {
+            tuned.save(out);
+        }
+    }
+}
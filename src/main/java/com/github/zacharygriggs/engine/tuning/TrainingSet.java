@@ -0,0 +1,87 @@
+package com.github.zacharygriggs.engine.tuning;
+
+import com.github.zacharygriggs.engine.EvaluationWeights;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Quiet positions and game results for tuning, stored in flat primitive arrays.
+ * <p>
+ * Each position is kept only as its evaluation features, {@link EvaluationWeights#TERM_COUNT}
+ * bytes in a row, so millions of positions fit in memory and the error can be computed
+ * in parallel without touching any objects.
+ */
+public class TrainingSet {
+
+    private static final int TERMS = EvaluationWeights.TERM_COUNT;
+    // Positions per parallel task when computing the error.
+    private static final int CHUNK_SIZE = 16384;
+
+    private byte[] features = new byte[1024 * TERMS];
+    private float[] results = new float[1024];
+    private int size;
+
+    /**
+     * Adds a position.
+     *
+     * @param terms  Features of the position from White's point of view,
+     *               as from {@link EvaluationWeights#extractFeatures}
+     * @param result Result of the game, 1 if White won, 0.5 for a draw, 0 if Black won
+     */
+    public void add(int[] terms, float result) {
+        if (size == results.length) {
+            results = Arrays.copyOf(results, size * 2);
+            features = Arrays.copyOf(features, size * 2 * TERMS);
+        }
+        int offset = size * TERMS;
+        for (int i = 0; i < TERMS; i++) {
+            // Every term is a piece count difference, which always fits.
+            features[offset + i] = (byte) terms[i];
+        }
+        results[size] = result;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Computes the mean squared error between the game results and the results predicted
+     * from the evaluation, using all available cores.
+     *
+     * @param weights Evaluation weights, the first {@link EvaluationWeights#TERM_COUNT} are used
+     * @param scale   Scaling constant K of the predicted result 1 / (1 + 10^(-K * eval / 4)),
+     *                with the evaluation in pawns
+     * @return Mean squared error
+     */
+    public double error(double[] weights, double scale) {
+        if (size == 0) {
+            return 0;
+        }
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        double total = IntStream.range(0, chunks)
+                .parallel()
+                .mapToDouble(chunk -> error(weights, scale, chunk * CHUNK_SIZE,
+                        Math.min(size, (chunk + 1) * CHUNK_SIZE)))
+                .sum();
+        return total / size;
+    }
+
+    private double error(double[] weights, double scale, int from, int to) {
+        double sum = 0;
+        double exponent = -scale / 4 * Math.log(10);
+        for (int p = from; p < to; p++) {
+            int offset = p * TERMS;
+            double eval = 0;
+            for (int i = 0; i < TERMS; i++) {
+                eval += weights[i] * features[offset + i];
+            }
+            double predicted = 1 / (1 + Math.exp(exponent * eval));
+            double difference = results[p] - predicted;
+            sum += difference * difference;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,507 @@
+package com.github.zacharygriggs.engine.uci;
+
+import com.github.zacharygriggs.chess.core.ChessBoard;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineEvaluation;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.SearchLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Speaks the Universal Chess Interface, so the engine can be driven by chess GUIs,
+ * tournament managers and test harnesses.
+ * <p>
+ * Commands are handled on the thread that reads them, and each search runs on a thread of its
+ * own, so "stop", "ponderhit" and "isready" are answered while it is thinking. Infinite and
+ * ponder searches hold back their best move until they are stopped or the ponder move is
+ * played, as the protocol asks, even if they run out of depth first.
+ * <p>
+ * UCI depths count the engine's own move, so depth 1 is the engine's iteration 0.
+ * The engine has no hash table and searches on one thread, so the Hash and Threads options are
+ * accepted for the sake of GUIs that always send them, but do not change the search.
+ */
+public class UciEngine {
+
+    public static final String NAME = "EasyChess";
+    public static final String AUTHOR = "Zachary Griggs";
+
+    /**
+     * Deepest iteration when the search is only limited by time or nodes, or not at all.
+     */
+    private static final int MAX_DEPTH = 32;
+    // Moves left in the game assumed when dividing up the clock without "movestogo".
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    // Time kept back for talking to the GUI, in milliseconds.
+    private static final long MOVE_OVERHEAD = 50;
+
+    private static final int DEFAULT_HASH = 16;
+    private static final int MAX_HASH = 1024;
+    private static final int MAX_MULTI_PV = 64;
+
+    private final ChessEngine engine;
+    private final PrintStream out;
+    private final Timer timer = new Timer("uci-timer", true);
+
+    private ChessBoard board = new ChessBoard();
+    private int hash = DEFAULT_HASH;
+    private int threads = 1;
+
+    // The search in progress, if any. Guarded by this.
+    private Thread search;
+    private int searchId;
+    // True while the search must not answer yet: it is infinite or pondering.
+    private boolean holding;
+    // Time to think once the ponder move is played, or 0 for no limit.
+    private long ponderTime;
+
+    /**
+     * Creates a UCI front-end.
+     *
+     * @param engine Engine to search with
+     * @param out    Receives the engine's side of the conversation
+     */
+    public UciEngine(ChessEngine engine, PrintStream out) {
+        this.engine = engine;
+        this.out = out;
+    }
+
+    /**
+     * Reads commands until "quit" or the end of the input.
+     *
+     * @param in Commands from the GUI
+     * @throws IOException If reading fails
+     */
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line)) {
+                return;
+            }
+        }
+        stop();
+    }
+
+    /**
+     * Handles one command. Commands that are not understood are ignored, as the protocol asks.
+     *
+     * @param line Command line
+     * @return False once the GUI has asked to quit
+     */
+    public boolean handle(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        try {
+            switch (tokens[0]) {
+                case "uci":
+                    send("id name " + NAME);
+                    send("id author " + AUTHOR);
+                    send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+                    send("option name Threads type spin default 1 min 1 max "
+                            + Runtime.getRuntime().availableProcessors());
+                    send("option name MultiPV type spin default 1 min 1 max " + MAX_MULTI_PV);
+                    send("option name Ponder type check default false");
+                    send("uciok");
+                    break;
+                case "isready":
+                    send("readyok");
+                    break;
+                case "setoption":
+                    setOption(tokens);
+                    break;
+                case "ucinewgame":
+                    stop();
+                    board = new ChessBoard();
+                    break;
+                case "position":
+                    position(tokens);
+                    break;
+                case "go":
+                    go(tokens);
+                    break;
+                case "stop":
+                    stop();
+                    break;
+                case "ponderhit":
+                    ponderHit();
+                    break;
+                case "quit":
+                    stop();
+                    timer.cancel();
+                    return false;
+                default:
+                    break;
+            }
+        } catch (IllegalArgumentException ex) {
+            send("info string " + ex.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Handles "setoption name ... value ...".
+     */
+    private void setOption(String[] tokens) {
+        StringBuilder name = new StringBuilder();
+        String value = null;
+        for (int i = 1; i < tokens.length; i++) {
+            if (tokens[i].equals("value")) {
+                value = String.join(" ", List.of(tokens).subList(i + 1, tokens.length));
+                break;
+            } else if (!tokens[i].equals("name")) {
+                name.append(name.length() == 0 ? "" : " ").append(tokens[i]);
+            }
+        }
+        switch (name.toString().toLowerCase()) {
+            case "hash":
+                hash = spin("Hash", value, 1, MAX_HASH);
+                break;
+            case "threads":
+                threads = spin("Threads", value, 1, Runtime.getRuntime().availableProcessors());
+                break;
+            case "multipv":
+                engine.setMultiPv(spin("MultiPV", value, 1, MAX_MULTI_PV));
+                break;
+            case "ponder":
+                // Pondering needs nothing set up; the GUI decides when to "go ponder".
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + name);
+        }
+    }
+
+    private static int spin(String name, String value, int min, int max) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(name + " must be from " + min + " to " + max + ": " + value);
+    }
+
+    /**
+     * Handles "position [fen ... | startpos] [moves ...]".
+     */
+    private void position(String[] tokens) {
+        int i = 1;
+        ChessPosition start;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            start = ChessPosition.startingPosition();
+            i = 2;
+        } else if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                fen.append(tokens[i]).append(' ');
+            }
+            start = ChessPosition.fromFen(fen.toString().trim());
+        } else {
+            throw new IllegalArgumentException("Expected startpos or fen: " + String.join(" ", tokens));
+        }
+        ChessBoard next = new ChessBoard(start);
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                if (!next.submitMove(parseMove(next.getPosition(), tokens[i]))) {
+                    throw new IllegalArgumentException("Illegal move: " + tokens[i]);
+                }
+            }
+        }
+        // A search in progress keeps the board it was given.
+        board = next;
+    }
+
+    /**
+     * Finds the legal move written in UCI's coordinate notation, such as "e2e4" or "e7e8n".
+     *
+     * @param position Position the move is played from
+     * @param text     Move
+     * @return The move
+     * @throws IllegalArgumentException If no legal move is written that way
+     */
+    static ChessMove parseMove(ChessPosition position, String text) {
+        for (ChessMove move : position.findLegalMoves(position.getSideToMove())) {
+            if (formatMove(move).equals(text)
+                    || (move.getPromotion() != null && text.length() == 4 && move.promotionIdentity().equals("Q")
+                    && formatMove(move).startsWith(text))) {
+                return move;
+            }
+        }
+        throw new IllegalArgumentException("Illegal move: " + text);
+    }
+
+    /**
+     * Writes a move in UCI's coordinate notation.
+     *
+     * @param move Move
+     * @return Move such as "e2e4", or "e7e8q" for a promotion
+     */
+    static String formatMove(ChessMove move) {
+        String text = move.getFrom().toString() + move.getTo().toString();
+        return move.getPromotion() == null ? text : text + move.promotionIdentity().toLowerCase();
+    }
+
+    /**
+     * Handles "go", starting a search on a thread of its own.
+     */
+    private void go(String[] tokens) {
+        int depth = 0;
+        long nodes = 0;
+        long moveTime = 0;
+        long whiteTime = 0;
+        long blackTime = 0;
+        long whiteIncrement = 0;
+        long blackIncrement = 0;
+        int movesToGo = 0;
+        boolean infinite = false;
+        boolean ponder = false;
+        for (int i = 1; i < tokens.length; i++) {
+            String value = i + 1 < tokens.length ? tokens[i + 1] : null;
+            switch (tokens[i]) {
+                case "depth":
+                    depth = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "nodes":
+                    nodes = Long.parseLong(value);
+                    i++;
+                    break;
+                case "movetime":
+                    moveTime = Long.parseLong(value);
+                    i++;
+                    break;
+                case "wtime":
+                    whiteTime = Long.parseLong(value);
+                    i++;
+                    break;
+                case "btime":
+                    blackTime = Long.parseLong(value);
+                    i++;
+                    break;
+                case "winc":
+                    whiteIncrement = Long.parseLong(value);
+                    i++;
+                    break;
+                case "binc":
+                    blackIncrement = Long.parseLong(value);
+                    i++;
+                    break;
+                case "movestogo":
+                    movesToGo = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "infinite":
+                    infinite = true;
+                    break;
+                case "ponder":
+                    ponder = true;
+                    break;
+                default:
+                    // "searchmoves" and "mate" are not supported; their arguments are skipped too.
+                    break;
+            }
+        }
+        stop();
+        ChessBoard searched = board;
+        if (searched.getPosition().findLegalMoves(searched.getMovingPlayer()).isEmpty()) {
+            send("bestmove 0000");
+            return;
+        }
+        boolean white = searched.getMovingPlayer() == ChessPlayer.WHITE;
+        long time = moveTime > 0 ? moveTime
+                : thinkingTime(white ? whiteTime : blackTime, white ? whiteIncrement : blackIncrement, movesToGo);
+        int maxDepth = depth;
+        // The engine's depth counts the moves after its own, and 0 means its default.
+        SearchLimits limits = new SearchLimits(depth > 0 ? Math.max(1, depth - 1) : MAX_DEPTH, nodes,
+                infinite || ponder ? 0 : time);
+        synchronized (this) {
+            holding = infinite || ponder;
+            ponderTime = ponder ? time : 0;
+            int id = ++searchId;
+            search = new Thread(() -> search(searched, limits, maxDepth, id), "uci-search");
+            search.setDaemon(true);
+            search.start();
+        }
+    }
+
+    /**
+     * Works out how long to think from the clock.
+     *
+     * @param remaining Time left on the clock, or 0 if not playing on a clock
+     * @param increment Time added after each move
+     * @param movesToGo Moves to play before the next time control, or 0 for the rest of the game
+     * @return Milliseconds to think, or 0 for no limit
+     */
+    static long thinkingTime(long remaining, long increment, int movesToGo) {
+        if (remaining <= 0) {
+            return 0;
+        }
+        long time = remaining / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO) + increment * 3 / 4;
+        return Math.max(1, Math.min(time, remaining - MOVE_OVERHEAD));
+    }
+
+    /**
+     * Runs on the search thread: searches, reports each iteration and answers with the best move.
+     */
+    private void search(ChessBoard searched, SearchLimits limits, int maxDepth, int id) {
+        long start = System.nanoTime();
+        engine.setSearchListener(eval -> {
+            report(eval, start);
+            // A depth of 1 cannot be asked of the engine, so the search is stopped there instead.
+            if (maxDepth > 0 && eval.getDepth() + 1 >= maxDepth) {
+                engine.stop();
+            }
+        });
+        EngineEvaluation eval;
+        try {
+            eval = engine.evaluate(searched, limits);
+        } finally {
+            engine.setSearchListener(null);
+        }
+        synchronized (this) {
+            while (holding && searchId == id) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        send("bestmove " + formatMove(eval.getBestMove()));
+    }
+
+    /**
+     * Sends an "info" line for each line of a completed iteration.
+     */
+    private void report(EngineEvaluation eval, long start) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long nps = millis == 0 ? 0 : eval.getNodes() * 1000 / millis;
+        List<EngineEvaluation> lines = eval.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            EngineEvaluation line = lines.get(i);
+            send("info depth " + (line.getDepth() + 1) + " multipv " + (i + 1) + " score " + score(line.getEval())
+                    + " nodes " + eval.getNodes() + " nps " + nps + " time " + millis
+                    + " pv " + formatMove(line.getBestMove()));
+        }
+    }
+
+    /**
+     * Writes a score the way UCI does.
+     *
+     * @param eval Score in pawns from the point of view of the side to move
+     * @return "cp n", or "mate n" with n in moves, negative if the engine is getting mated
+     */
+    static String score(double eval) {
+        double distance = ChessEngine.MATE_SCORE - Math.abs(eval);
+        // The development bonus can move a mate score by a fraction of a pawn.
+        if (distance < 1000) {
+            long plies = (long) Math.ceil(distance);
+            long moves = (plies + 1) / 2;
+            return "mate " + (eval > 0 ? moves : -moves);
+        }
+        return "cp " + Math.round(eval * 100);
+    }
+
+    /**
+     * Ends the search in progress, if any, and waits for its best move to be sent.
+     */
+    private void stop() {
+        Thread thread;
+        synchronized (this) {
+            holding = false;
+            notifyAll();
+            thread = search;
+            search = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            // A stop can come before the search has started, and would be forgotten.
+            while (thread.isAlive()) {
+                engine.stop();
+                thread.join(10);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles "ponderhit": the ponder move was played, so the search goes on as a normal one
+     * and its time starts now.
+     */
+    private synchronized void ponderHit() {
+        if (search == null || !holding) {
+            return;
+        }
+        holding = false;
+        notifyAll();
+        if (ponderTime > 0) {
+            int id = searchId;
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    synchronized (UciEngine.this) {
+                        if (searchId == id && search != null) {
+                            engine.stop();
+                        }
+                    }
+                }
+            }, ponderTime);
+        }
+    }
+
+    /**
+     * Waits for the search in progress to finish by itself.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    void waitForSearch() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = search;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    public int getHash() {
+        return hash;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    /**
+     * Runs the engine over standard input and output:
+     * <pre>UciEngine</pre>
+     *
+     * @param args Command line arguments, not used
+     * @throws IOException If standard input cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        UciEngine uci = new UciEngine(new ChessEngine(MAX_DEPTH, EngineSettings.BEST_MOVE), System.out);
+        uci.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+}
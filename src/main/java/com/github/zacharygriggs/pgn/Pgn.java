@@ -1,11 +1,29 @@
 package com.github.zacharygriggs.pgn;
 
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
 public class Pgn {
 
     private PgnHeader header;
 
     private String movetext;
 
+    // Moves of the main line, and the position they start from.
+    private List<ChessMove> moves;
+
+    private ChessPosition startingPosition;
+
+    // Clock of the side that moved after each ply, in seconds, and evaluation after
+    // each ply, in centipawns from White's point of view. Null when not recorded.
+    private List<Integer> clocks;
+
+    private List<Integer> evals;
+
     public PgnHeader getHeader() {
         return header;
     }
@@ -22,17 +40,57 @@ public class Pgn {
         this.movetext = movetext;
     }
 
+    public List<ChessMove> getMoves() {
+        return moves;
+    }
+
+    public void setMoves(List<ChessMove> moves) {
+        this.moves = moves;
+    }
+
+    /**
+     * Gets the position the game starts from: the starting position unless
+     * the game has a FEN tag.
+     *
+     * @return Starting position
+     */
+    public ChessPosition getStartingPosition() {
+        return startingPosition;
+    }
+
+    public void setStartingPosition(ChessPosition startingPosition) {
+        this.startingPosition = startingPosition;
+    }
+
+    public List<Integer> getClocks() {
+        return clocks;
+    }
+
+    public void setClocks(List<Integer> clocks) {
+        this.clocks = clocks;
+    }
+
+    public List<Integer> getEvals() {
+        return evals;
+    }
+
+    public void setEvals(List<Integer> evals) {
+        this.evals = evals;
+    }
+
+    /**
+     * Writes the game as PGN, as {@link PgnWriter} does.
+     *
+     * @return The game in PGN
+     */
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[Event \"").append(header.getEvent()).append("\"]\n");
-        sb.append("[Site \"").append(header.getSite()).append("\"]\n");
-        sb.append("[Date \"").append(header.getDate()).append("\"]\n");
-        sb.append("[Round \"").append(header.getRound()).append("\"]\n");
-        sb.append("[White \"").append(header.getWhite()).append("\"]\n");
-        sb.append("[Black \"").append(header.getBlack()).append("\"]\n");
-        sb.append("[Result \"").append(header.getResult()).append("\"]\n");
-        sb.append("\n");
-        sb.append(movetext);
-        return sb.toString();
+        StringWriter text = new StringWriter();
+        try (PgnWriter writer = new PgnWriter(text)) {
+            writer.write(this);
+        } catch (IOException ex) {
+            // A StringWriter does not throw.
+            throw new IllegalStateException(ex);
+        }
+        return text.toString();
     }
 }
@@ -1,74 +1,326 @@
 package com.github.zacharygriggs.pgn;
 
-public class PgnHeader {
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-    private String event = "??";
+/**
+ * The tags of a game, in order: the seven standard tags first, each "??" until set, then any
+ * others in the order they were set.
+ * <p>
+ * Tags are kept in two small arrays rather than a map, and their names and values are shared
+ * through {@link TagInterner#SHARED}, so the headers of a big database cost little more than
+ * the strings that differ from game to game.
+ */
+public class PgnHeader {
 
-    private String site = "??";
+    /**
+     * Value of a standard tag that is not known.
+     */
+    public static final String UNKNOWN = "??";
 
-    private String date = "??";
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
 
-    private String round = "??";
+    private String[] names = new String[12];
 
-    private String white = "??";
+    private String[] values = new String[12];
 
-    private String black = "??";
+    private int size;
 
-    private String result = "??";
+    public PgnHeader() {
+        for (String name : SEVEN_TAG_ROSTER) {
+            names[size] = name;
+            values[size] = UNKNOWN;
+            size++;
+        }
+    }
 
     public String getEvent() {
-        return event;
+        return values[0];
     }
 
     public void setEvent(String event) {
-        this.event = event;
+        setTag("Event", event);
     }
 
     public String getSite() {
-        return site;
+        return values[1];
     }
 
     public void setSite(String site) {
-        this.site = site;
+        setTag("Site", site);
     }
 
     public String getDate() {
-        return date;
+        return values[2];
     }
 
     public void setDate(String date) {
-        this.date = date;
+        setTag("Date", date);
     }
 
     public String getRound() {
-        return round;
+        return values[3];
     }
 
     public void setRound(String round) {
-        this.round = round;
+        setTag("Round", round);
     }
 
     public String getWhite() {
-        return white;
+        return values[4];
     }
 
     public void setWhite(String white) {
-        this.white = white;
+        setTag("White", white);
     }
 
     public String getBlack() {
-        return black;
+        return values[5];
     }
 
     public void setBlack(String black) {
-        this.black = black;
+        setTag("Black", black);
     }
 
     public String getResult() {
-        return result;
+        return values[6];
     }
 
     public void setResult(String result) {
-        this.result = result;
+        setTag("Result", result);
+    }
+
+    /**
+     * Gets White's rating.
+     *
+     * @return The WhiteElo tag, or 0 if it is not set or not a number
+     */
+    public int getWhiteElo() {
+        return rating(getTag("WhiteElo"));
+    }
+
+    public void setWhiteElo(int whiteElo) {
+        setTag("WhiteElo", Integer.toString(whiteElo));
+    }
+
+    /**
+     * Gets Black's rating.
+     *
+     * @return The BlackElo tag, or 0 if it is not set or not a number
+     */
+    public int getBlackElo() {
+        return rating(getTag("BlackElo"));
+    }
+
+    public void setBlackElo(int blackElo) {
+        setTag("BlackElo", Integer.toString(blackElo));
+    }
+
+    /**
+     * Gets the opening code.
+     *
+     * @return The ECO tag, e.g. "C41", or null if it is not set
+     */
+    public String getEco() {
+        return getTag("ECO");
+    }
+
+    public void setEco(String eco) {
+        setTag("ECO", eco);
+    }
+
+    /**
+     * Gets the time control.
+     *
+     * @return The TimeControl tag, e.g. "180+2", or null if it is not set
+     */
+    public String getTimeControl() {
+        return getTag("TimeControl");
+    }
+
+    public void setTimeControl(String timeControl) {
+        setTag("TimeControl", timeControl);
+    }
+
+    private static int rating(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the value of any tag, one of the seven standard tags or another.
+     *
+     * @param name Tag name, e.g. "ECO"
+     * @return Value, or null if the tag is not set
+     */
+    public String getTag(String name) {
+        int i = indexOf(name);
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * Sets the value of any tag, one of the seven standard tags or another. A tag already set
+     * keeps its place; a new one goes last.
+     *
+     * @param name  Tag name, e.g. "ECO"
+     * @param value Value. Null removes a tag other than the seven standard tags, and puts
+     *              a standard tag back to "??", as {@link #removeTag} does.
+     */
+    public void setTag(String name, String value) {
+        put(TagInterner.SHARED.intern(name), isInterned(name) ? TagInterner.SHARED.intern(value) : value);
+    }
+
+    /**
+     * Sets a tag whose name and value have already been through {@link TagInterner#SHARED}.
+     */
+    void put(String name, String value) {
+        int i = indexOf(name);
+        if (i >= SEVEN_TAG_ROSTER.length && value == null) {
+            removeAt(i);
+        } else if (i >= 0) {
+            values[i] = value == null ? UNKNOWN : value;
+        } else if (value != null) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            names[size] = name;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    /**
+     * Removes a tag. The seven standard tags cannot be removed; they go back to "??".
+     *
+     * @param name Tag name
+     */
+    public void removeTag(String name) {
+        int i = indexOf(name);
+        if (i >= SEVEN_TAG_ROSTER.length) {
+            removeAt(i);
+        } else if (i >= 0) {
+            values[i] = UNKNOWN;
+        }
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(names, i + 1, names, i, size - i - 1);
+        System.arraycopy(values, i + 1, values, i, size - i - 1);
+        size--;
+        names[size] = null;
+        values[size] = null;
+    }
+
+    private int indexOf(String name) {
+        // Names are usually the interned ones, so most matches are the same string.
+        for (int i = 0; i < size; i++) {
+            if (names[i] == name) {
+                return i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether the values of a tag are worth sharing between games. A FEN seldom
+     * repeats.
+     *
+     * @param name Tag name
+     * @return True to intern its values
+     */
+    static boolean isInterned(String name) {
+        return !"FEN".equals(name);
+    }
+
+    /**
+     * Gets how many tags are set, counting the seven standard tags.
+     *
+     * @return Number of tags
+     */
+    public int getTagCount() {
+        return size;
+    }
+
+    /**
+     * Gets the name of a tag by its place, the seven standard tags coming first.
+     *
+     * @param index Place, from 0 to {@link #getTagCount()} - 1
+     * @return Tag name
+     */
+    public String getTagName(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * Gets the value of a tag by its place, the seven standard tags coming first.
+     *
+     * @param index Place, from 0 to {@link #getTagCount()} - 1
+     * @return Value
+     */
+    public String getTagValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("No tag " + index + " of " + size);
+        }
+    }
+
+    /**
+     * Gets every tag.
+     *
+     * @return A copy of the tag values by name, in order
+     */
+    public Map<String, String> getTags() {
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            tags.put(names[i], values[i]);
+        }
+        return tags;
+    }
+
+    /**
+     * Gets the tags other than the seven standard tags.
+     *
+     * @return A copy of the tag values by name, in the order they were set
+     */
+    public Map<String, String> getOtherTags() {
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (int i = SEVEN_TAG_ROSTER.length; i < size; i++) {
+            tags.put(names[i], values[i]);
+        }
+        return tags;
+    }
+
+    /**
+     * Replaces the tags other than the seven standard tags.
+     *
+     * @param otherTags Tag values by name, in order
+     */
+    public void setOtherTags(Map<String, String> otherTags) {
+        for (int i = SEVEN_TAG_ROSTER.length; i < size; i++) {
+            names[i] = null;
+            values[i] = null;
+        }
+        size = SEVEN_TAG_ROSTER.length;
+        for (Map.Entry<String, String> tag : otherTags.entrySet()) {
+            setTag(tag.getKey(), tag.getValue());
+        }
     }
 }
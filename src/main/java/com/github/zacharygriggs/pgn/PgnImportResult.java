@@ -0,0 +1,49 @@
+package com.github.zacharygriggs.pgn;
+
+/**
+ * Counts of a finished import.
+ */
+public class PgnImportResult {
+
+    private final long games;
+    private final long skipped;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    PgnImportResult(long games, long skipped, long bytes, long elapsedNanos) {
+        this.games = games;
+        this.skipped = skipped;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of games imported.
+     *
+     * @return Games handed to the sink
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the number of games left out because they could not be read.
+     *
+     * @return Games skipped
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1_000_000_000L / elapsedNanos;
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.zacharygriggs.pgn;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+
+/**
+ * Imports a PGN file using every core.
+ * <p>
+ * The file is memory-mapped and cut into chunks at game boundaries, found by scanning for a
+ * blank line followed by a tag. Chunks are parsed in parallel, each with its own
+ * {@link PgnReader}, and their games handed to the sink in file order on the calling thread.
+ * Only a few chunks per worker are parsed ahead of the sink, so a slow sink holds the
+ * parsing back instead of letting parsed games pile up in memory.
+ */
+public class PgnImporter implements AutoCloseable {
+
+    private static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    private static final int CHUNKS_AHEAD_PER_WORKER = 2;
+    // Bytes mapped at a time while looking for the game boundary after a chunk's nominal end.
+    private static final int SCAN_WINDOW = 1 << 16;
+    // Longest tag name and spacing looked at to decide if a line starts with a tag.
+    private static final int MAX_TAG_START = 256;
+
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+    private boolean resolveMoves = true;
+
+    /**
+     * Creates an importer.
+     *
+     * @param parallelism Number of worker threads
+     * @param chunkBytes  Approximate size of the chunks the file is cut into
+     */
+    public PgnImporter(int parallelism, int chunkBytes) {
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("pgn-import-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Creates an importer with one worker per available processor.
+     */
+    public PgnImporter() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Imports every game of a file.
+     *
+     * @param file PGN file
+     * @param sink Receives the games, in file order, on the calling thread
+     * @return Counts of the import
+     * @throws IOException If the file cannot be read
+     */
+    public PgnImportResult importFile(Path file, Consumer<Pgn> sink) throws IOException {
+        long start = System.nanoTime();
+        long games = 0;
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Deque<ForkJoinTask<Chunk>> ahead = new ArrayDeque<>();
+            int maxAhead = pool.getParallelism() * CHUNKS_AHEAD_PER_WORKER;
+            long chunkStart = 0;
+            while (chunkStart < size || !ahead.isEmpty()) {
+                while (chunkStart < size && ahead.size() < maxAhead) {
+                    long chunkEnd = findBoundary(channel, Math.min(size, chunkStart + chunkBytes), size);
+                    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+                    ahead.add(pool.submit(() -> parse(bytes)));
+                    chunkStart = chunkEnd;
+                }
+                Chunk chunk = join(ahead.poll());
+                for (Pgn pgn : chunk.games) {
+                    sink.accept(pgn);
+                }
+                games += chunk.games.size();
+                skipped += chunk.skipped;
+            }
+            return new PgnImportResult(games, skipped, size, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Finds where the game containing a byte ends: the start of the next line beginning with
+     * a tag, as in {@code [Event "}, that follows a blank line.
+     *
+     * @param channel File
+     * @param from    Byte to start looking from
+     * @param size    Size of the file
+     * @return Offset of the next game, or the size of the file if there is none
+     */
+    static long findBoundary(FileChannel channel, long from, long size) throws IOException {
+        // Start a little early, so the blank line before a tag at 'from' is seen.
+        long position = Math.max(0, from - 2);
+        int newlines = 0;
+        while (position < size) {
+            int length = (int) Math.min(SCAN_WINDOW, size - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    newlines++;
+                } else if (b == '[' && newlines >= 2 && position + i >= from && isTag(channel, position + i, size)) {
+                    return position + i;
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    newlines = 0;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    /**
+     * Determines if a tag starts at an offset: a bracket, a name, spaces and a quote. This tells
+     * a tag apart from a bracket in a comment that spans a blank line.
+     */
+    private static boolean isTag(FileChannel channel, long offset, long size) throws IOException {
+        int length = (int) Math.min(MAX_TAG_START, size - offset);
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        int i = 1;
+        while (i < length && (Character.isLetterOrDigit(bytes.get(i)) || bytes.get(i) == '_')) {
+            i++;
+        }
+        if (i == 1) {
+            return false;
+        }
+        while (i < length && bytes.get(i) == ' ') {
+            i++;
+        }
+        return i < length && bytes.get(i) == '"';
+    }
+
+    private Chunk parse(MappedByteBuffer bytes) throws IOException {
+        Chunk chunk = new Chunk();
+        PgnReader reader = new PgnReader(bytes);
+        reader.setResolveMoves(resolveMoves);
+        while (true) {
+            try {
+                Pgn pgn = reader.next();
+                if (pgn == null) {
+                    return chunk;
+                }
+                chunk.games.add(pgn);
+            } catch (IllegalArgumentException ex) {
+                chunk.skipped++;
+            }
+        }
+    }
+
+    private static Chunk join(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IllegalStateException("Import failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Chooses whether moves are played through. Without, games only have movetext.
+     *
+     * @param resolveMoves True to resolve moves; the default
+     */
+    public void setResolveMoves(boolean resolveMoves) {
+        this.resolveMoves = resolveMoves;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Games parsed from one chunk of the file.
+     */
+    private static class Chunk {
+        private final List<Pgn> games = new ArrayList<>();
+        private int skipped;
+    }
+
+    /**
+     * Imports a file from the command line and reports how fast it went:
+     * <pre>PgnImporter games.pgn [--threads n] [--no-moves]</pre>
+     *
+     * @param args Command line arguments
+     * @throws IOException If the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: PgnImporter games.pgn [--threads n] [--no-moves]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean moves = true;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--no-moves")) {
+                moves = false;
+            } else {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(1);
+            }
+        }
+        try (PgnImporter importer = new PgnImporter(threads, DEFAULT_CHUNK_BYTES)) {
+            importer.setResolveMoves(moves);
+            PgnImportResult result = importer.importFile(Paths.get(args[0]), pgn -> { });
+            System.out.printf("%d games (%d skipped), %d MB in %d ms: %d games/s, %.1f MB/s%n",
+                    result.getGames(), result.getSkipped(), result.getBytes() >> 20,
+                    result.getElapsedNanos() / 1_000_000, result.getGamesPerSecond(),
+                    result.getBytes() / 1048576.0 / (result.getElapsedNanos() / 1e9));
+        }
+    }
+}
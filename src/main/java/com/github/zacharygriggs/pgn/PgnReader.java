@@ -0,0 +1,352 @@
+package com.github.zacharygriggs.pgn;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.San;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads games one at a time from a PGN file of any size.
+ * <p>
+ * Input is read through a fixed size buffer, so only the game being read is held in memory.
+ * Any tags are read. Comments, NAGs, escaped lines and variations are skipped when playing
+ * through the game, but kept in the movetext. Moves of the main line are resolved against
+ * the position, starting from the FEN tag if there is one.
+ * <p>
+ * A game that cannot be read, for example because of an illegal move, is skipped to its end
+ * before the error is thrown, so reading can go on with the next game.
+ */
+public class PgnReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean endOfInput;
+    private boolean resolveMoves = true;
+    private long gameNumber;
+
+    // Whether the next byte starts a line, for '%' escapes.
+    private boolean lineStart = true;
+    // Bytes of the movetext, or of a tag value, being read. Reused between games.
+    private byte[] text = new byte[1024];
+    private int textLength;
+    private boolean recording;
+    private final StringBuilder token = new StringBuilder();
+
+    /**
+     * Creates a reader.
+     *
+     * @param in Stream to read games from
+     */
+    public PgnReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param channel Channel to read games from
+     */
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    /**
+     * Creates a reader of games already in memory, for example in a memory-mapped file.
+     * The bytes are read in place, from the buffer's position to its limit.
+     *
+     * @param games Buffer holding the games. Its position is left alone.
+     */
+    public PgnReader(ByteBuffer games) {
+        this.channel = null;
+        this.buffer = games.slice();
+        this.endOfInput = true;
+    }
+
+    /**
+     * Reads the next game.
+     *
+     * @return The game, or null at the end of the input
+     * @throws IOException If reading fails
+     * @throws IllegalArgumentException If the game has an invalid FEN tag or move. The reader
+     *                                  is left at the start of the following game.
+     */
+    public Pgn next() throws IOException {
+        int c = skipSpace();
+        if (c < 0) {
+            return null;
+        }
+        gameNumber++;
+        PgnHeader header = new PgnHeader();
+        while (c == '[') {
+            readTag(header);
+            c = skipSpace();
+        }
+        IllegalArgumentException error = null;
+        ChessPosition position = ChessPosition.startingPosition();
+        String fen = header.getTag("FEN");
+        if (fen != null) {
+            try {
+                position = Fen.parse(fen);
+            } catch (IllegalArgumentException ex) {
+                error = ex;
+            }
+        }
+        Pgn pgn = new Pgn();
+        pgn.setHeader(header);
+        pgn.setStartingPosition(position);
+        List<ChessMove> moves = resolveMoves ? new ArrayList<>() : null;
+        textLength = 0;
+        recording = true;
+        int depth = 0;
+        while ((c = peek()) >= 0) {
+            if (c == '[') {
+                // The next game started without this one giving a result.
+                break;
+            } else if (c == '%' && lineStart) {
+                skipLine();
+            } else if (c <= ' ') {
+                read();
+            } else if (c == '{') {
+                skipPast('}');
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                read();
+                depth++;
+            } else if (c == ')') {
+                read();
+                depth = Math.max(0, depth - 1);
+            } else if (c == '$') {
+                read();
+                while ((c = peek()) >= '0' && c <= '9') {
+                    read();
+                }
+            } else {
+                readSymbol();
+                if (depth > 0 || isMoveNumber()) {
+                    continue;
+                }
+                if (isResult()) {
+                    if ("??".equals(header.getResult())) {
+                        header.setResult(token.toString());
+                    }
+                    break;
+                }
+                if (moves != null && error == null) {
+                    try {
+                        ChessMove move = San.parse(position, stripMoveNumber());
+                        moves.add(move);
+                        position = position.positionAfterMove(move);
+                        position.updateAllPieces();
+                    } catch (IllegalArgumentException ex) {
+                        error = ex;
+                    }
+                }
+            }
+        }
+        recording = false;
+        if (error != null) {
+            throw new IllegalArgumentException("Game " + gameNumber + ": " + error.getMessage(), error);
+        }
+        pgn.setMovetext(new String(text, 0, textLength, StandardCharsets.UTF_8).trim());
+        pgn.setMoves(moves);
+        return pgn;
+    }
+
+    private void readTag(PgnHeader header) throws IOException {
+        read(); // '['
+        skipSpace();
+        token.setLength(0);
+        int c;
+        while ((c = peek()) > ' ' && c != '"' && c != ']') {
+            token.append((char) read());
+        }
+        String name = TagInterner.SHARED.intern(token);
+        skipSpace();
+        textLength = 0;
+        if (peek() == '"') {
+            read();
+            recording = true;
+            while ((c = peek()) >= 0 && c != '"' && c != '\n') {
+                if (read() == '\\') {
+                    // Drop the escape, keep the escaped character.
+                    textLength--;
+                    read();
+                }
+            }
+            recording = false;
+            read(); // closing '"'
+        }
+        // Anything else before the ']' is ignored.
+        while ((c = peek()) >= 0 && c != '\n' && read() != ']') {
+            // Skip
+        }
+        // Values that repeat are taken from the interner without creating a string.
+        header.put(name, PgnHeader.isInterned(name) ? TagInterner.SHARED.intern(text, 0, textLength)
+                : new String(text, 0, textLength, StandardCharsets.UTF_8));
+    }
+
+    private void readSymbol() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) > ' ' && "{}();[]$%\"".indexOf(c) < 0) {
+            token.append((char) read());
+        }
+        if (token.length() == 0) {
+            // A stray character, such as a closing bracket with no opening one.
+            read();
+        }
+    }
+
+    /**
+     * Determines if the token is only a move number, e.g. "12." or "12...", or only dots.
+     */
+    private boolean isMoveNumber() {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == token.length()) {
+            return true;
+        }
+        if (token.charAt(i) != '.') {
+            return false;
+        }
+        while (i < token.length() && token.charAt(i) == '.') {
+            i++;
+        }
+        return i == token.length();
+    }
+
+    /**
+     * Removes a move number written against its move, as in "1.e4". Only digits followed by
+     * dots are a number, so castling written with zeros, as in "0-0", is left alone.
+     */
+    private CharSequence stripMoveNumber() {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == token.length() || token.charAt(i) != '.') {
+            return token;
+        }
+        while (i < token.length() && token.charAt(i) == '.') {
+            i++;
+        }
+        return token.subSequence(i, token.length());
+    }
+
+    private boolean isResult() {
+        int length = token.length();
+        if (length == 1) {
+            return token.charAt(0) == '*';
+        } else if (length == 3) {
+            char first = token.charAt(0);
+            return token.charAt(1) == '-' && ((first == '1' && token.charAt(2) == '0') || (first == '0' && token.charAt(2) == '1'));
+        }
+        return length == 7 && token.toString().equals("1/2-1/2");
+    }
+
+    private int skipSpace() throws IOException {
+        int c;
+        while ((c = peek()) >= 0) {
+            if (c == '%' && lineStart) {
+                skipLine();
+            } else if (c <= ' ') {
+                read();
+            } else {
+                break;
+            }
+        }
+        return c;
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            // Skip
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != end) {
+            // Skip
+        }
+    }
+
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (endOfInput) {
+                return -1;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                endOfInput = true;
+                return -1;
+            }
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            buffer.position(buffer.position() + 1);
+            lineStart = c == '\n';
+            if (recording) {
+                if (textLength == text.length) {
+                    text = Arrays.copyOf(text, textLength * 2);
+                }
+                text[textLength++] = (byte) c;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Chooses whether moves are played through. Without, games are read much faster,
+     * but have no moves, only movetext.
+     *
+     * @param resolveMoves True to resolve moves; the default
+     */
+    public void setResolveMoves(boolean resolveMoves) {
+        this.resolveMoves = resolveMoves;
+    }
+
+    /**
+     * Gets how many games have been read, including any that failed.
+     *
+     * @return Number of games
+     */
+    public long getGameNumber() {
+        return gameNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
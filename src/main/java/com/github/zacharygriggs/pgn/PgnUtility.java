@@ -1,6 +1,8 @@
 package com.github.zacharygriggs.pgn;
 
 import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
 
 import java.util.List;
 
@@ -24,4 +26,44 @@ public class PgnUtility {
         return sb.toString();
     }
 
+    /**
+     * Writes moves as movetext on one line, numbered from the position they are played from,
+     * and ends it with the termination marker.
+     *
+     * @param start  Position the moves are played from
+     * @param moves  Moves, with their SAN
+     * @param result Result of the game, "*" if it is not known
+     * @return Movetext
+     */
+    public static String movesToMovetext(ChessPosition start, List<ChessMove> moves, String result) {
+        StringBuilder sb = new StringBuilder();
+        int moveNumber = start.getFullmoveNumber();
+        boolean white = start.getSideToMove() == ChessPlayer.WHITE;
+        for (int ply = 0; ply < moves.size(); ply++) {
+            if (white) {
+                sb.append(moveNumber).append(". ");
+            } else if (ply == 0) {
+                sb.append(moveNumber).append("... ");
+            }
+            sb.append(moves.get(ply)).append(' ');
+            if (!white) {
+                moveNumber++;
+            }
+            white = !white;
+        }
+        return sb.append(terminationMarker(result)).toString();
+    }
+
+    /**
+     * Gets the termination marker for a result, which is "*" unless the result is known.
+     *
+     * @param result Result tag value
+     * @return One of "1-0", "0-1", "1/2-1/2" and "*"
+     */
+    public static String terminationMarker(String result) {
+        if ("1-0".equals(result) || "0-1".equals(result) || "1/2-1/2".equals(result)) {
+            return result;
+        }
+        return "*";
+    }
 }
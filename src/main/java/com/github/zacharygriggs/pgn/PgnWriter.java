@@ -0,0 +1,348 @@
+package com.github.zacharygriggs.pgn;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.San;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes games as PGN in export format, one after another, to a stream.
+ * <p>
+ * The seven standard tags come first, then every other tag in its order, and a SetUp and FEN
+ * tag for a game not starting from the starting position. Movetext is wrapped before 80
+ * columns, with clock times and evaluations as {@code [%clk]} and {@code [%eval]} comments when
+ * the game has them. Lines are built in buffers reused from game to game, so writing a game
+ * creates no strings beyond the SAN of moves that do not have it yet.
+ */
+public class PgnWriter implements Closeable, Flushable {
+
+    /**
+     * Longest line written, as the export format asks.
+     */
+    public static final int LINE_LENGTH = 79;
+
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+    private static final String START_FEN = ChessPosition.startingPosition().toFen();
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(LINE_LENGTH + 1);
+    private final StringBuilder token = new StringBuilder(32);
+    private final char[] chars = new char[LINE_LENGTH + 1];
+    private boolean writeClocks = true;
+    private boolean writeEvals = true;
+    private long games;
+
+    /**
+     * Creates a writer.
+     *
+     * @param out Where to write. Closed with the writer.
+     */
+    public PgnWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+    }
+
+    /**
+     * Creates a writer of UTF-8.
+     *
+     * @param out Where to write. Closed with the writer.
+     */
+    public PgnWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a writer of UTF-8.
+     *
+     * @param channel Where to write. Closed with the writer.
+     */
+    public PgnWriter(WritableByteChannel channel) {
+        this(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 1 << 16));
+    }
+
+    /**
+     * Writes a game, followed by a blank line.
+     *
+     * @param pgn Game. Its moves are written if it has them, otherwise its movetext.
+     * @throws IOException If writing fails
+     */
+    public void write(Pgn pgn) throws IOException {
+        PgnHeader header = pgn.getHeader() == null ? new PgnHeader() : pgn.getHeader();
+        // The Result tag has to agree with the termination marker, so both are "*" when it is not known.
+        String result = PgnUtility.terminationMarker(header.getResult());
+        for (String name : SEVEN_TAG_ROSTER) {
+            writeTag(name, name.equals("Result") ? result : header.getTag(name));
+        }
+        ChessPosition start = pgn.getStartingPosition();
+        if (start != null && header.getTag("FEN") == null) {
+            String fen = start.toFen();
+            if (!fen.equals(START_FEN)) {
+                writeTag("SetUp", "1");
+                writeTag("FEN", fen);
+            }
+        }
+        for (int i = SEVEN_TAG_ROSTER.length; i < header.getTagCount(); i++) {
+            writeTag(header.getTagName(i), header.getTagValue(i));
+        }
+        out.write('\n');
+        if (pgn.getMoves() != null) {
+            writeMoves(pgn, start == null ? ChessPosition.startingPosition() : start);
+        } else if (pgn.getMovetext() != null) {
+            writeMovetext(pgn.getMovetext());
+        }
+        token.setLength(0);
+        token.append(result);
+        addToken();
+        endLine();
+        out.write('\n');
+        games++;
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.write('\\');
+                }
+                out.write(c);
+            }
+        }
+        out.write("\"]\n");
+    }
+
+    private void writeMoves(Pgn pgn, ChessPosition start) throws IOException {
+        List<ChessMove> moves = pgn.getMoves();
+        List<Integer> clocks = writeClocks ? pgn.getClocks() : null;
+        List<Integer> evals = writeEvals ? pgn.getEvals() : null;
+        ChessPosition position = start;
+        int moveNumber = start.getFullmoveNumber();
+        boolean white = start.getSideToMove() == ChessPlayer.WHITE;
+        boolean needNumber = true;
+        // Positions are only replayed if a move has no SAN yet.
+        boolean replay = false;
+        for (ChessMove move : moves) {
+            if (move.getSan() == null) {
+                replay = true;
+                break;
+            }
+        }
+        for (int ply = 0; ply < moves.size(); ply++) {
+            ChessMove move = moves.get(ply);
+            // The number goes in the same token as its move, so a line never ends between them.
+            token.setLength(0);
+            if (white || needNumber) {
+                token.append(moveNumber).append(white ? ". " : "... ");
+            }
+            if (replay) {
+                ChessPosition after = position.positionAfterMove(move);
+                after.updateAllPieces();
+                if (move.getSan() != null) {
+                    token.append(move.getSan());
+                } else {
+                    boolean check = after.inCheck(after.getSideToMove());
+                    San.write(position, move, check, check && after.noLegalMoves(after.getSideToMove()), token);
+                }
+                position = after;
+            } else {
+                token.append(move.getSan());
+            }
+            addToken();
+            boolean comment = (clocks != null && ply < clocks.size()) || (evals != null && ply < evals.size());
+            if (comment) {
+                token.setLength(0);
+                token.append('{');
+                if (evals != null && ply < evals.size()) {
+                    appendEval(evals.get(ply));
+                }
+                if (clocks != null && ply < clocks.size()) {
+                    if (token.length() > 1) {
+                        token.append(' ');
+                    }
+                    appendClock(clocks.get(ply));
+                }
+                token.append('}');
+                addToken();
+            }
+            // After a comment, Black's move needs its number again.
+            needNumber = comment;
+            if (!white) {
+                moveNumber++;
+            }
+            white = !white;
+        }
+    }
+
+    private void appendEval(int centipawns) {
+        token.append("[%eval ");
+        if (centipawns < 0) {
+            token.append('-');
+            centipawns = -centipawns;
+        }
+        token.append(centipawns / 100).append('.');
+        int fraction = centipawns % 100;
+        if (fraction < 10) {
+            token.append('0');
+        }
+        token.append(fraction).append(']');
+    }
+
+    private void appendClock(int seconds) {
+        token.append("[%clk ").append(seconds / 3600).append(':');
+        appendTwoDigits(seconds / 60 % 60);
+        token.append(':');
+        appendTwoDigits(seconds % 60);
+        token.append(']');
+    }
+
+    private void appendTwoDigits(int value) {
+        if (value < 10) {
+            token.append('0');
+        }
+        token.append(value);
+    }
+
+    /**
+     * Writes movetext that is already text, rewrapping its lines. A ";" comment runs to the end
+     * of its line and a "%" escape is a whole line, so both keep their line ends.
+     */
+    private void writeMovetext(String movetext) throws IOException {
+        int length = movetext.length();
+        boolean inComment = false;
+        int i = 0;
+        while (i < length) {
+            char c = movetext.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            token.setLength(0);
+            if (!inComment && c == '%' && (i == 0 || movetext.charAt(i - 1) == '\n')) {
+                endLine();
+                i = appendRestOfLine(movetext, i);
+                out.append(token).append('\n');
+                continue;
+            }
+            if (!inComment && c == ';') {
+                i = appendRestOfLine(movetext, i);
+                addToken();
+                endLine();
+                continue;
+            }
+            while (i < length && !Character.isWhitespace(c = movetext.charAt(i))) {
+                if (!inComment && c == ';') {
+                    break;
+                }
+                if (c == '{') {
+                    inComment = true;
+                } else if (c == '}') {
+                    inComment = false;
+                }
+                token.append(c);
+                i++;
+            }
+            if (inComment || !isResult(token)) {
+                addToken();
+            }
+        }
+    }
+
+    /**
+     * Appends the text from an index to the end of its line to the token, without the line end.
+     *
+     * @return Index of the line end, or the length of the text
+     */
+    private int appendRestOfLine(String text, int i) {
+        int end = text.indexOf('\n', i);
+        if (end < 0) {
+            end = text.length();
+        }
+        token.append(text, i, end > i && text.charAt(end - 1) == '\r' ? end - 1 : end);
+        return end;
+    }
+
+    private static boolean isResult(CharSequence token) {
+        for (String result : RESULTS) {
+            if (result.contentEquals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the token to the line, starting a new line first if it would not fit.
+     */
+    private void addToken() throws IOException {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+            endLine();
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    private void endLine() throws IOException {
+        if (line.length() > 0) {
+            // Copied out rather than appended, which would make a string of the line.
+            char[] buffer = line.length() < chars.length ? chars : new char[line.length() + 1];
+            line.getChars(0, line.length(), buffer, 0);
+            buffer[line.length()] = '\n';
+            out.write(buffer, 0, line.length() + 1);
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * Chooses whether clock times are written, for games that have them.
+     *
+     * @param writeClocks True to write clocks; the default
+     */
+    public void setWriteClocks(boolean writeClocks) {
+        this.writeClocks = writeClocks;
+    }
+
+    /**
+     * Chooses whether evaluations are written, for games that have them.
+     *
+     * @param writeEvals True to write evaluations; the default
+     */
+    public void setWriteEvals(boolean writeEvals) {
+        this.writeEvals = writeEvals;
+    }
+
+    /**
+     * Gets how many games have been written.
+     *
+     * @return Number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.zacharygriggs.pgn;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shares the strings of tag names and values that repeat from game to game, such as event and
+ * player names, so a database of millions of games holds each of them once.
+ * <p>
+ * The interner is a fixed-size cache rather than a map: a string goes in the slot its hash
+ * picks, replacing whatever was there. Frequent strings stay, rare ones come and go, and the
+ * cache never grows however many games pass through it. It takes no locks; threads racing on a
+ * slot at worst keep two copies of a string.
+ */
+public final class TagInterner {
+
+    /**
+     * Interner shared by every header.
+     */
+    public static final TagInterner SHARED = new TagInterner(1 << 16);
+
+    /**
+     * Longest string interned. Longer ones rarely repeat.
+     */
+    public static final int MAX_LENGTH = 64;
+
+    private final String[] slots;
+
+    /**
+     * Creates an interner.
+     *
+     * @param capacity Number of strings kept, a power of two
+     */
+    public TagInterner(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new String[capacity];
+    }
+
+    /**
+     * Gets the shared copy of a string.
+     *
+     * @param value String, or null
+     * @return An equal string, the one kept if there is one
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        int slot = slot(value.hashCode());
+        String kept = slots[slot];
+        if (value.equals(kept)) {
+            return kept;
+        }
+        slots[slot] = value;
+        return value;
+    }
+
+    /**
+     * Gets the shared copy of the string in some characters, only creating the string if there
+     * is none.
+     *
+     * @param chars Characters
+     * @return An equal string, the one kept if there is one
+     */
+    public String intern(CharSequence chars) {
+        if (chars.length() > MAX_LENGTH) {
+            return chars.toString();
+        }
+        int hash = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        int slot = slot(hash);
+        String kept = slots[slot];
+        if (kept != null && kept.contentEquals(chars)) {
+            return kept;
+        }
+        String value = chars.toString();
+        slots[slot] = value;
+        return value;
+    }
+
+    /**
+     * Gets the shared copy of the string in some UTF-8 bytes, only creating the string if there
+     * is none.
+     *
+     * @param bytes  Bytes
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     * @return An equal string, the one kept if there is one
+     */
+    public String intern(byte[] bytes, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+        // ASCII hashes the same as the string it decodes to; anything else is decoded first.
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return intern(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = slot(hash);
+        String kept = slots[slot];
+        if (kept != null && matches(kept, bytes, offset, length)) {
+            return kept;
+        }
+        String value = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        slots[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(String kept, byte[] bytes, int offset, int length) {
+        if (kept.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (kept.charAt(i) != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(int hash) {
+        // Mixes the high bits in, as similar strings differ mostly in their last characters.
+        return (hash ^ hash >>> 16) & (slots.length - 1);
+    }
+}
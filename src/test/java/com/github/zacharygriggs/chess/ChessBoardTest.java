@@ -0,0 +1,198 @@
+package com.github.zacharygriggs.chess;
+
+import com.github.zacharygriggs.chess.core.ChessBoard;
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.data.ChessResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class ChessBoardTest {
+
+    private static void play(ChessBoard board, String... moves) {
+        for (String move : moves) {
+            Assert.assertTrue(move, board.submitMove(new ChessCoordinate(move.substring(0, 2)),
+                    new ChessCoordinate(move.substring(2, 4))));
+        }
+    }
+
+    @Test
+    public void testRepetitionByShuffling() {
+        ChessBoard board = new ChessBoard();
+        play(board, "g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1");
+        Assert.assertEquals(ChessResult.ONGOING, board.getGameResult());
+        play(board, "f6g8");
+        Assert.assertEquals(ChessResult.REPETITION_DRAW, board.getGameResult());
+    }
+
+    @Test
+    public void testRepetitionByTransposition() {
+        ChessBoard board = new ChessBoard();
+        // The starting position comes back three times, through different moves each time.
+        play(board, "g1f3", "g8f6", "f3g1", "f6g8", "b1c3", "b8c6", "c3b1");
+        Assert.assertEquals(ChessResult.ONGOING, board.getGameResult());
+        play(board, "c6b8");
+        Assert.assertEquals(ChessResult.REPETITION_DRAW, board.getGameResult());
+    }
+
+    @Test
+    public void testPawnMoveResetsRepetition() {
+        ChessBoard board = new ChessBoard();
+        play(board, "g1f3", "g8f6", "f3g1", "f6g8", "e2e4", "e7e5", "g1f3", "g8f6", "f3g1", "f6g8");
+        Assert.assertEquals(ChessResult.ONGOING, board.getGameResult());
+        Assert.assertEquals(4, board.getHalfmoveClock());
+    }
+
+    @Test
+    public void testEnPassantOnlyStraightAway() {
+        ChessBoard board = new ChessBoard();
+        play(board, "e2e4", "a7a6", "e4e5", "d7d5");
+        Assert.assertEquals(new ChessCoordinate("d6").getIndex(), board.getPosition().getEnPassantSquare());
+        ChessBoard late = new ChessBoard();
+        play(late, "e2e4", "a7a6", "e4e5", "d7d5", "h2h3", "h7h6");
+        Assert.assertEquals(ChessPosition.NO_EN_PASSANT, late.getPosition().getEnPassantSquare());
+        Assert.assertFalse(late.submitMove(new ChessCoordinate("e5"), new ChessCoordinate("d6")));
+        play(board, "e5d6");
+        Assert.assertFalse(board.getPosition().pieceAt(new ChessCoordinate("d5")).isPresent());
+        Assert.assertEquals(3, board.getPosition().getFullmoveNumber());
+    }
+
+    @Test
+    public void testCastlingRightsFollowKingAndRooks() {
+        ChessBoard board = new ChessBoard();
+        play(board, "e2e4", "e7e5", "g1f3", "g8f6", "f1c4", "f8c5", "h1g1", "h8g8", "g1h1", "g8h8");
+        ChessPosition pos = board.getPosition();
+        Assert.assertFalse(pos.hasCastlingRight(ChessPosition.WHITE_SHORT_CASTLE));
+        Assert.assertTrue(pos.hasCastlingRight(ChessPosition.WHITE_LONG_CASTLE));
+        Assert.assertFalse(board.submitMove(new ChessCoordinate("e1"), new ChessCoordinate("g1")));
+        // The same pieces on the same squares, but without the right to castle short.
+        Assert.assertNotEquals(ChessPosition.startingPosition().getZobristKey(board.getMovingPlayer()),
+                pos.getZobristKey(board.getMovingPlayer()));
+        ChessBoard castling = new ChessBoard();
+        play(castling, "e2e4", "e7e5", "g1f3", "g8f6", "f1c4", "f8c5", "e1g1");
+        Assert.assertTrue(castling.getPosition().pieceAt(new ChessCoordinate("f1")).isPresent());
+        Assert.assertEquals(ChessPosition.BLACK_SHORT_CASTLE | ChessPosition.BLACK_LONG_CASTLE,
+                castling.getPosition().getCastlingRights());
+    }
+
+    @Test
+    public void testCheckmateEndsGame() {
+        ChessBoard board = new ChessBoard();
+        play(board, "f2f3", "e7e5", "g2g4");
+        Assert.assertEquals(ChessResult.ONGOING, board.getGameResult());
+        play(board, "d8h4");
+        Assert.assertEquals(ChessResult.BLACK_WINS, board.getGameResult());
+        ChessMove mate = board.getHistory().get(board.getHistory().size() - 1);
+        Assert.assertEquals("Qh4#", mate.toString());
+    }
+
+    @Test
+    public void testLegalMovesMatchEverySquare() {
+        Random random = new Random(32);
+        ChessBoard board = new ChessBoard();
+        for (int ply = 0; ply < 60 && !board.isGameOver(); ply++) {
+            ChessPosition pos = board.getPosition();
+            ChessPlayer player = board.getMovingPlayer();
+            Set<String> expected = new HashSet<>();
+            for (int square = 0; square < 64; square++) {
+                ChessCoordinate to = ChessCoordinate.fromIndex(square);
+                pos.getPieces().stream()
+                        .filter(piece -> piece.getOwner() == player && piece.canMove(to))
+                        .forEach(piece -> expected.add(piece.getCoordinate() + "" + to));
+            }
+            List<ChessMove> moves = pos.findLegalMoves(player);
+            Set<String> found = new HashSet<>();
+            for (ChessMove move : moves) {
+                found.add(move.getFrom() + "" + move.getTo());
+            }
+            Assert.assertEquals(expected, found);
+            Assert.assertEquals(expected.isEmpty(), pos.noLegalMoves(player));
+            Assert.assertTrue(board.submitMove(moves.get(random.nextInt(moves.size()))));
+        }
+    }
+
+    @Test
+    public void testUndoRestoresSpecialMoves() {
+        String[][] cases = {
+                {"r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 10", "e1c1"},
+                {"r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 3 10", "e8g8"},
+                {"4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 2", "e5d6"},
+                {"4k3/1P6/8/8/8/8/8/4K3 w - - 5 40", "b7b8"},
+                {"1n2k3/P7/8/8/8/8/8/4K3 w - - 0 40", "a7b8"},
+                {"4k3/8/8/8/8/8/8/R3K2R w KQ - 0 1", "a1a8"},
+        };
+        for (String[] test : cases) {
+            ChessBoard board = new ChessBoard(ChessPosition.fromFen(test[0]));
+            long[] keys = board.getPositionKeys();
+            play(board, test[1]);
+            String after = board.getPosition().toFen();
+            Assert.assertTrue(board.undo());
+            Assert.assertEquals(test[0], board.getPosition().toFen());
+            Assert.assertArrayEquals(keys, board.getPositionKeys());
+            Assert.assertEquals(0, board.getPly());
+            Assert.assertFalse(board.undo());
+            Assert.assertTrue(board.redo());
+            Assert.assertEquals(after, board.getPosition().toFen());
+            Assert.assertFalse(board.redo());
+        }
+    }
+
+    @Test
+    public void testBoardKeepsItsOwnPosition() {
+        String fen = "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 2";
+        ChessPosition start = ChessPosition.fromFen(fen);
+        ChessBoard board = new ChessBoard(start);
+        start.setSideToMove(ChessPlayer.BLACK);
+        start.setEnPassantSquare(ChessPosition.NO_EN_PASSANT);
+        start.removePiece(start.pieceAt(new ChessCoordinate("e5")).get());
+        Assert.assertEquals(fen, board.getPosition().toFen());
+        play(board, "e5d6");
+        Assert.assertEquals("4k3/8/3P4/8/8/8/8/4K3 b - - 0 2", board.getPosition().toFen());
+    }
+
+    @Test
+    public void testUndoThenNewMoveDropsRedo() {
+        ChessBoard board = new ChessBoard();
+        play(board, "e2e4", "e7e5");
+        Assert.assertTrue(board.undo());
+        play(board, "c7c5");
+        Assert.assertFalse(board.redo());
+        Assert.assertEquals("rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 2",
+                board.getPosition().toFen());
+    }
+
+    @Test
+    public void testGoToPlyMatchesEveryPly() {
+        Random random = new Random(34);
+        ChessBoard board = new ChessBoard();
+        List<String> fens = new ArrayList<>();
+        List<long[]> keys = new ArrayList<>();
+        fens.add(board.getPosition().toFen());
+        keys.add(board.getPositionKeys());
+        while (board.getPly() < 120 && !board.isGameOver()) {
+            List<ChessMove> moves = board.getPosition().findLegalMoves(board.getMovingPlayer());
+            Assert.assertTrue(board.submitMove(moves.get(random.nextInt(moves.size()))));
+            fens.add(board.getPosition().toFen());
+            keys.add(board.getPositionKeys());
+        }
+        int last = board.getPly();
+        for (int i = 0; i < 200; i++) {
+            int ply = random.nextInt(last + 1);
+            board.goToPly(ply);
+            Assert.assertEquals(ply, board.getPly());
+            Assert.assertEquals(fens.get(ply), board.getPosition().toFen());
+            Assert.assertArrayEquals(keys.get(ply), board.getPositionKeys());
+        }
+        board.goToPly(last);
+        Assert.assertEquals(fens.get(last), board.getPosition().toFen());
+        Assert.assertEquals(last, board.getHistory().size());
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.zacharygriggs.chess;
+
+import com.github.zacharygriggs.chess.core.ChessBoard;
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class FenTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    public void testStartingPosition() {
+        Assert.assertEquals(Fen.STARTING_POSITION, ChessPosition.startingPosition().toFen());
+        ChessPosition parsed = ChessPosition.fromFen(Fen.STARTING_POSITION);
+        Assert.assertEquals(32, parsed.getPieces().size());
+        Assert.assertEquals(ChessPosition.startingPosition().getZobristKey(ChessPlayer.WHITE),
+                parsed.getZobristKey(ChessPlayer.WHITE));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        String[] fens = {
+                KIWIPETE,
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbqkb1r/pp1p1ppp/5n2/2pPp3/8/8/PPP1PPPP/RNBQKBNR w KQkq e6 0 4",
+                "8/8/8/8/8/8/6k1/4K2R b K - 37 80",
+        };
+        for (String fen : fens) {
+            Assert.assertEquals(fen, Fen.write(Fen.parse(fen)));
+        }
+    }
+
+    @Test
+    public void testPositionAfterMovesMatchesFen() {
+        ChessBoard board = new ChessBoard();
+        for (String move : new String[]{"e2e4", "c7c5", "g1f3"}) {
+            board.submitMove(new ChessCoordinate(move.substring(0, 2)), new ChessCoordinate(move.substring(2)));
+        }
+        Assert.assertEquals("rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2",
+                board.getPosition().toFen());
+    }
+
+    @Test
+    public void testBoardFromFenPlaysOn() {
+        ChessBoard board = new ChessBoard(ChessPosition.fromFen(
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"));
+        Assert.assertEquals(ChessPlayer.WHITE, board.getMovingPlayer());
+        Assert.assertTrue(board.submitMove(new ChessCoordinate("e5"), new ChessCoordinate("f6")));
+        Assert.assertEquals("rnbqkbnr/ppp1p1pp/5P2/3p4/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 3",
+                board.getPosition().toFen());
+    }
+
+    @Test
+    public void testCountersAreOptional() {
+        ChessPosition pos = Fen.parse("4k3/8/8/8/8/8/8/4K3 b - -");
+        Assert.assertEquals(ChessPlayer.BLACK, pos.getSideToMove());
+        Assert.assertEquals(0, pos.getHalfmoveClock());
+        Assert.assertEquals(1, pos.getFullmoveNumber());
+        String epd = "4k3/8/8/8/8/8/8/4K3 b - - bm Kd7; id \"test\";";
+        Assert.assertEquals(25, Fen.findEnd(epd, 0, epd.length()));
+        String withCounters = "4k3/8/8/8/8/8/8/4K3 b - - 3 9 [0.5]";
+        Assert.assertEquals(29, Fen.findEnd(withCounters, 0, withCounters.length()));
+    }
+
+    @Test
+    public void testParsesLinesFromBuffer() {
+        String text = KIWIPETE + "\r\n" + Fen.STARTING_POSITION + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(KIWIPETE, Fen.write(Fen.parse(buffer)));
+        Assert.assertEquals(Fen.STARTING_POSITION, Fen.write(Fen.parse(buffer)));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testRejectsInvalidFen() {
+        String[] invalid = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e5 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNZ w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra",
+                "rnbq1bnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQ - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKKBNR w kq - 0 1",
+        };
+        for (String fen : invalid) {
+            try {
+                Fen.parse(fen);
+                Assert.fail("Accepted " + fen);
+            } catch (IllegalArgumentException ex) {
+                // Expected
+            }
+        }
+    }
+}
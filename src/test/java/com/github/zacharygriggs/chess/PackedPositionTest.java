@@ -0,0 +1,90 @@
+package com.github.zacharygriggs.chess;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.PackedPosition;
+import com.github.zacharygriggs.database.RandomGames;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PackedPositionTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static List<String> randomGames(int games, int plies) {
+        Random random = new Random(21);
+        List<String> fens = new ArrayList<>();
+        for (int g = 0; g < games; g++) {
+            ChessPosition start = ChessPosition.startingPosition();
+            List<ChessPosition> positions = RandomGames.replay(start, RandomGames.play(random, start, plies));
+            for (ChessPosition position : positions.subList(1, positions.size())) {
+                fens.add(position.toFen());
+            }
+        }
+        return fens;
+    }
+
+    @Test
+    public void testRoundTrips() {
+        ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.BYTES * 3);
+        PackedPosition.write(Fen.parse(KIWIPETE), 35, PackedPosition.WHITE_WINS, buffer);
+        PackedPosition.write(Fen.parse("4k3/8/8/3pP3/8/8/8/4K3 w - d6 17 52"), -40000, PackedPosition.DRAW, buffer);
+        PackedPosition.write(ChessPosition.startingPosition(), 0, PackedPosition.UNKNOWN_RESULT, buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        Assert.assertEquals(KIWIPETE, PackedPosition.read(buffer).toFen());
+        Assert.assertEquals("4k3/8/8/3pP3/8/8/8/4K3 w - d6 17 52", PackedPosition.read(buffer).toFen());
+        Assert.assertEquals(Fen.STARTING_POSITION, PackedPosition.read(buffer).toFen());
+        Assert.assertEquals(35, PackedPosition.score(buffer, 0));
+        Assert.assertEquals(Short.MIN_VALUE, PackedPosition.score(buffer, PackedPosition.BYTES));
+        Assert.assertEquals(PackedPosition.DRAW, PackedPosition.result(buffer, PackedPosition.BYTES));
+        Assert.assertEquals(0xFFFF00000000FFFFL, PackedPosition.occupancy(buffer, 2 * PackedPosition.BYTES));
+    }
+
+    @Test
+    public void testDecodedPositionsPlay() {
+        ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (String fen : randomGames(5, 80)) {
+            ChessPosition position = Fen.parse(fen);
+            buffer.clear();
+            PackedPosition.write(position, 0, PackedPosition.BLACK_WINS, buffer);
+            ChessPosition read = PackedPosition.read(buffer, 0);
+            Assert.assertEquals(fen, read.toFen());
+            Assert.assertEquals(position.getZobristKey(position.getSideToMove()), read.getZobristKey(read.getSideToMove()));
+            Assert.assertEquals(position.findLegalMoves(position.getSideToMove()).size(),
+                    read.findLegalMoves(read.getSideToMove()).size());
+        }
+    }
+
+    @Test
+    public void testMappedFiles() throws IOException {
+        List<String> fens = randomGames(3, 40);
+        Path file = Files.createTempFile("positions", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) fens.size() * PackedPosition.BYTES);
+            for (int i = 0; i < fens.size(); i++) {
+                PackedPosition.write(Fen.parse(fens.get(i)), i, PackedPosition.UNKNOWN_RESULT, out);
+            }
+            out.force();
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int i = fens.size() - 1; i >= 0; i--) {
+                Assert.assertEquals(fens.get(i), PackedPosition.read(in, i * PackedPosition.BYTES).toFen());
+                Assert.assertEquals(i, PackedPosition.score(in, i * PackedPosition.BYTES));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
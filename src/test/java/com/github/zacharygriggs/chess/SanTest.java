@@ -0,0 +1,107 @@
+package com.github.zacharygriggs.chess;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.San;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class SanTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static String parse(String fen, String san) {
+        ChessMove move = San.parse(ChessPosition.fromFen(fen), san);
+        String name = move.getFrom().toString() + move.getTo();
+        return move.getPromotion() == null ? name : name + move.getPromotion();
+    }
+
+    private static String write(String fen, String from, String to, String promotion) {
+        ChessMove move = new ChessMove(new ChessCoordinate(from), new ChessCoordinate(to));
+        move.setPromotion(promotion);
+        return San.write(ChessPosition.fromFen(fen), move);
+    }
+
+    @Test
+    public void testParsesMoves() {
+        Assert.assertEquals("e1g1", parse(KIWIPETE, "O-O"));
+        Assert.assertEquals("e1c1", parse(KIWIPETE, "O-O-O+"));
+        Assert.assertEquals("d5e6", parse(KIWIPETE, "dxe6"));
+        Assert.assertEquals("e2a6", parse(KIWIPETE, "Bxa6!"));
+        Assert.assertEquals("e5f7", parse(KIWIPETE, "Nxf7"));
+        Assert.assertEquals("c3b1", parse(KIWIPETE, "Ncb1"));
+        Assert.assertEquals("a2a4", parse(KIWIPETE, "a4"));
+    }
+
+    @Test
+    public void testParsesPromotionsAndEnPassant() {
+        String fen = "1n2k3/P7/8/3pP3/8/8/8/4K3 w - d6 0 2";
+        Assert.assertEquals("a7a8N", parse(fen, "a8=N"));
+        Assert.assertEquals("a7b8Q", parse(fen, "axb8Q+"));
+        Assert.assertEquals("e5d6", parse(fen, "exd6"));
+    }
+
+    @Test
+    public void testRejectsAmbiguousAndIllegalMoves() {
+        String[] invalid = {"Nd2", "Ke3", "O-O", "e5", "Qxd1", "z9", ""};
+        String fen = "4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1";
+        for (String san : invalid) {
+            try {
+                San.parse(ChessPosition.fromFen(fen), san);
+                Assert.fail("Accepted " + san);
+            } catch (IllegalArgumentException ex) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testWritesMoves() {
+        Assert.assertEquals("O-O", write(KIWIPETE, "e1", "g1", null));
+        Assert.assertEquals("O-O-O", write(KIWIPETE, "e1", "c1", null));
+        Assert.assertEquals("dxe6", write(KIWIPETE, "d5", "e6", null));
+        Assert.assertEquals("Bxa6", write(KIWIPETE, "e2", "a6", null));
+        Assert.assertEquals("Nxf7", write(KIWIPETE, "e5", "f7", null));
+        Assert.assertEquals("Nb1", write(KIWIPETE, "c3", "b1", null));
+        Assert.assertEquals("a4", write(KIWIPETE, "a2", "a4", null));
+        String fen = "1n2k3/P7/8/3pP3/8/8/8/4K3 w - d6 0 2";
+        Assert.assertEquals("a8=N", write(fen, "a7", "a8", "N"));
+        Assert.assertEquals("axb8=Q+", write(fen, "a7", "b8", null));
+        Assert.assertEquals("exd6", write(fen, "e5", "d6", null));
+    }
+
+    @Test
+    public void testWritesDisambiguationAndMate() {
+        // Rooks on a1 and a5 share a file; knights on b1, b3 and f1 need the full square.
+        String fen = "7k/8/8/R7/8/1N6/8/RN2KN2 w - - 0 1";
+        Assert.assertEquals("R1a3", write(fen, "a1", "a3", null));
+        Assert.assertEquals("Nfd2", write(fen, "f1", "d2", null));
+        Assert.assertEquals("Nb1d2", write(fen, "b1", "d2", null));
+        Assert.assertEquals("Nc3", write(fen, "b1", "c3", null));
+        Assert.assertEquals("Qh4#", write("rnbqkbnr/pppp1ppp/8/4p3/6P1/5P2/PPPPP2P/RNBQKBNR b KQkq g3 0 2",
+                "d8", "h4", null));
+    }
+
+    @Test
+    public void testWrittenMovesParseBack() {
+        Random random = new Random(41);
+        for (int game = 0; game < 10; game++) {
+            ChessPosition position = ChessPosition.startingPosition();
+            for (int ply = 0; ply < 80; ply++) {
+                List<ChessMove> moves = position.findLegalMoves(position.getSideToMove());
+                if (moves.isEmpty()) {
+                    break;
+                }
+                for (ChessMove move : moves) {
+                    Assert.assertEquals(move, San.parse(position, San.write(position, move)));
+                }
+                position = position.positionAfterMove(moves.get(random.nextInt(moves.size())));
+                position.updateAllPieces();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.zacharygriggs.chess.perft;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class PerftTest {
+
+    private static final int DEPTH = 3;
+
+    @Test
+    public void testReferencePositions() {
+        try (Perft perft = new Perft(4, null)) {
+            for (PerftPosition reference : PerftPosition.REFERENCE) {
+                ChessPosition position = Fen.parse(reference.getFen());
+                for (int depth = 1; depth <= DEPTH; depth++) {
+                    Assert.assertEquals(reference.getName() + " depth " + depth,
+                            reference.getCount(depth), perft.divide(position, depth).getNodes());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTableGivesSameCounts() {
+        PerftPosition kiwipete = PerftPosition.REFERENCE.get(1);
+        ChessPosition position = Fen.parse(kiwipete.getFen());
+        try (Perft perft = new Perft(4, new PerftTable(4))) {
+            // The second run is answered from the table.
+            Assert.assertEquals(kiwipete.getCount(DEPTH), perft.divide(position, DEPTH).getNodes());
+            Assert.assertEquals(kiwipete.getCount(DEPTH), perft.divide(position, DEPTH).getNodes());
+            Assert.assertEquals(kiwipete.getCount(DEPTH), perft.count(position, DEPTH));
+        }
+    }
+
+    @Test
+    public void testDivideListsEveryPromotion() {
+        ChessPosition position = Fen.parse("8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        try (Perft perft = new Perft(2, null)) {
+            PerftResult result = perft.divide(position, 2);
+            Assert.assertEquals(List.of("a7a8q", "a7a8r", "a7a8b", "a7a8n"),
+                    List.copyOf(result.getDivide().keySet()).subList(0, 4));
+            // The queen and rook take g8 and h8 from the king, the knight checks nothing.
+            Assert.assertEquals(Long.valueOf(3), result.getDivide().get("a7a8q"));
+            Assert.assertEquals(Long.valueOf(5), result.getDivide().get("a7a8n"));
+            long sum = result.getDivide().values().stream().mapToLong(Long::longValue).sum();
+            Assert.assertEquals(sum, result.getNodes());
+        }
+    }
+}
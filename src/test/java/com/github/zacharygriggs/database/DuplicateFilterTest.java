@@ -0,0 +1,92 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.San;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DuplicateFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Pgn game(String white, String... sans) {
+        List<ChessMove> moves = new ArrayList<>();
+        ChessPosition position = ChessPosition.startingPosition();
+        for (String san : sans) {
+            ChessMove move = San.parse(position, san);
+            moves.add(move);
+            position = position.positionAfterMove(move);
+            position.updateAllPieces();
+        }
+        PgnHeader header = new PgnHeader();
+        header.setWhite(white);
+        Pgn pgn = new Pgn();
+        pgn.setHeader(header);
+        pgn.setMoves(moves);
+        return pgn;
+    }
+
+    @Test
+    public void testHashesMovesAndPlayers() {
+        long hash = DuplicateFilter.hash(game("Anand", "e4", "e5", "Nf3"));
+        Assert.assertEquals(hash, DuplicateFilter.hash(game("Anand", "e4", "e5", "Nf3")));
+        Assert.assertNotEquals(hash, DuplicateFilter.hash(game("Kasparov", "e4", "e5", "Nf3")));
+        Assert.assertNotEquals(hash, DuplicateFilter.hash(game("Anand", "Nf3", "e5", "e4")));
+        Assert.assertNotEquals(hash, DuplicateFilter.hash(game("Anand", "e4", "e5")));
+    }
+
+    @Test
+    public void testFindsDuplicatesOnDisk() throws IOException {
+        Random random = new Random(5);
+        long[] hashes = new long[5000];
+        // A tiny table, so most hashes are in runs on disk.
+        try (DuplicateFilter filter = new DuplicateFilter(folder.getRoot().toPath(), 100, 64)) {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = random.nextLong();
+                Assert.assertTrue(filter.add(hashes[i]));
+            }
+            Assert.assertTrue(filter.getRunCount() <= 8);
+            for (long hash : hashes) {
+                Assert.assertFalse(filter.add(hash));
+            }
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertTrue(filter.add(random.nextLong()));
+            }
+            Assert.assertEquals(11000, filter.getGames());
+            Assert.assertEquals(5000, filter.getDuplicates());
+        }
+        Assert.assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testWriterSkipsDuplicates() throws IOException {
+        Path file = folder.newFile().toPath();
+        try (DuplicateFilter filter = new DuplicateFilter(folder.getRoot().toPath(), 10, 2);
+             GameWriter writer = new GameWriter(Files.newOutputStream(file), 2)) {
+            writer.setDuplicateFilter(filter);
+            Assert.assertTrue(writer.write(game("Anand", "e4", "e5")));
+            Assert.assertTrue(writer.write(game("Anand", "d4", "d5")));
+            Assert.assertTrue(writer.write(game("Kasparov", "e4", "e5")));
+            Assert.assertFalse(writer.write(game("Anand", "e4", "e5")));
+            Assert.assertFalse(writer.write(game("Kasparov", "e4", "e5")));
+            Assert.assertEquals(3, writer.getGames());
+        }
+        try (GameArchive archive = new GameArchive(file)) {
+            Assert.assertEquals(3, archive.getGameCount());
+            Assert.assertEquals("Kasparov", archive.read(2).getHeader().getWhite());
+        }
+    }
+}
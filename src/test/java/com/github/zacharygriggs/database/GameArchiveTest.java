@@ -0,0 +1,159 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.San;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import com.github.zacharygriggs.pgn.PgnUtility;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class GameArchiveTest {
+
+    private static final String ENDGAME = "8/2P5/8/8/8/1k6/8/4K2R w K - 0 40";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Pgn randomGame(Random random, int number) {
+        ChessPosition start = number % 5 == 4 ? Fen.parse(ENDGAME) : ChessPosition.startingPosition();
+        PgnHeader header = new PgnHeader();
+        header.setEvent("Club championship");
+        header.setWhite("Player " + random.nextInt(8));
+        header.setBlack("Player " + random.nextInt(8));
+        header.setRound(Integer.toString(number));
+        header.setResult("*");
+        header.setTag("ECO", "A00");
+        List<ChessMove> moves = RandomGames.play(random, start, 40);
+        List<ChessPosition> positions = RandomGames.replay(start, moves);
+        List<Integer> clocks = new ArrayList<>();
+        for (int ply = 0; ply < moves.size(); ply++) {
+            moves.get(ply).setSan(San.write(positions.get(ply), moves.get(ply)));
+            clocks.add(300 - ply - random.nextInt(10));
+        }
+        Pgn pgn = RandomGames.game(header, start, moves);
+        pgn.setMovetext(PgnUtility.movesToMovetext(start, moves, "*"));
+        if (number % 2 == 0) {
+            pgn.setClocks(clocks);
+            pgn.setEvals(Arrays.asList(20, -15, 40, 400, -3000));
+        }
+        return pgn;
+    }
+
+    private static List<ChessMove> parse(ChessPosition start, String... sans) {
+        List<ChessMove> moves = new ArrayList<>();
+        ChessPosition position = start;
+        for (String san : sans) {
+            moves.add(San.parse(position, san));
+            position = RandomGames.replay(position, moves.subList(moves.size() - 1, moves.size())).get(1);
+        }
+        return moves;
+    }
+
+    private static void assertSameGame(Pgn expected, Pgn actual) {
+        Assert.assertEquals(expected.getHeader().getRound(), actual.getHeader().getRound());
+        Assert.assertEquals(expected.getHeader().getWhite(), actual.getHeader().getWhite());
+        Assert.assertEquals("A00", actual.getHeader().getTag("ECO"));
+        Assert.assertEquals(expected.getStartingPosition().toFen(), actual.getStartingPosition().toFen());
+        Assert.assertEquals(expected.getMoves(), actual.getMoves());
+        Assert.assertEquals(expected.getMovetext(), actual.getMovetext());
+        Assert.assertEquals(expected.getClocks(), actual.getClocks());
+        Assert.assertEquals(expected.getEvals(), actual.getEvals());
+    }
+
+    @Test
+    public void testGamesReadBackSequentiallyAndByNumber() throws IOException {
+        Random random = new Random(42);
+        List<Pgn> games = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            games.add(randomGame(random, i));
+        }
+        // Small blocks, so reading by number crosses several.
+        Path file = RandomGames.write(folder.newFile("games.bin").toPath(), games, 4);
+        try (GameReader reader = new GameReader(file)) {
+            for (Pgn pgn : games) {
+                assertSameGame(pgn, reader.next());
+            }
+            Assert.assertNull(reader.next());
+        }
+        try (GameArchive archive = new GameArchive(file)) {
+            Assert.assertEquals(25, archive.getGameCount());
+            for (int i : new int[]{24, 0, 13, 4, 7, 13}) {
+                assertSameGame(games.get(i), archive.read(i));
+            }
+        }
+    }
+
+    @Test
+    public void testMovetextIsNumberedFromTheStart() throws IOException {
+        ChessPosition start = ChessPosition.startingPosition();
+        ChessPosition endgame = Fen.parse("4k3/8/8/8/8/8/4P3/4K3 b - - 0 40");
+        PgnHeader won = new PgnHeader();
+        won.setResult("1-0");
+        List<Pgn> games = Arrays.asList(RandomGames.game(null, start, parse(start, "e4", "e5")),
+                RandomGames.game(won, endgame, parse(endgame, "Kd7", "e4")));
+        Path file = RandomGames.write(folder.newFile("games.bin").toPath(), games, 4);
+        try (GameReader reader = new GameReader(file)) {
+            Assert.assertEquals("1. e4 e5 *", reader.next().getMovetext());
+            Assert.assertEquals("40... Kd7 41. e4 1-0", reader.next().getMovetext());
+        }
+    }
+
+    @Test
+    public void testSmallerThanPgn() throws IOException {
+        Random random = new Random(7);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long pgnBytes = 0;
+        try (GameWriter writer = new GameWriter(bytes, GameWriter.DEFAULT_BLOCK_SIZE)) {
+            for (int i = 0; i < 20; i++) {
+                Pgn pgn = randomGame(random, i * 2 + 1);
+                pgnBytes += pgn.toString().getBytes(StandardCharsets.UTF_8).length;
+                writer.write(pgn);
+            }
+        }
+        Assert.assertTrue(bytes.size() + " bytes against " + pgnBytes, bytes.size() * 4 < pgnBytes);
+    }
+
+    @Test
+    public void testRejectsIllegalMove() throws IOException {
+        Pgn bad = randomGame(new Random(1), 1);
+        bad.getMoves().add(bad.getMoves().get(0));
+        Pgn good = randomGame(new Random(2), 3);
+        Path file = folder.newFile("games.bin").toPath();
+        try (DuplicateFilter filter = new DuplicateFilter(folder.getRoot().toPath(), 100);
+             GameWriter writer = new GameWriter(Files.newOutputStream(file), 4)) {
+            writer.setDuplicateFilter(filter);
+            try {
+                writer.write(bad);
+                Assert.fail("Wrote an illegal move");
+            } catch (IllegalArgumentException ex) {
+                // Expected
+            }
+            // The failed game left nothing behind, in the file or the filter.
+            Assert.assertFalse(filter.contains(DuplicateFilter.hash(bad)));
+            Assert.assertTrue(writer.write(good));
+        }
+        try (GameReader reader = new GameReader(file)) {
+            assertSameGame(good, reader.next());
+            Assert.assertNull(reader.next());
+        }
+        try (GameArchive archive = new GameArchive(file)) {
+            Assert.assertEquals(1, archive.getGameCount());
+            assertSameGame(good, archive.read(0));
+        }
+    }
+}
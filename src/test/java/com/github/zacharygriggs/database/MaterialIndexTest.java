@@ -0,0 +1,125 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.PackedPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class MaterialIndexTest {
+
+    private static final String ROOK_ENDING = "4k3/8/8/8/8/4r3/4P3/R3K3 w - - 0 1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Set<Integer>> reached = new ArrayList<>();
+
+    private Path writeArchive(int count) throws IOException {
+        Random random = new Random(17);
+        List<Pgn> games = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ChessPosition start = i % 2 == 0 ? ChessPosition.startingPosition() : Fen.parse(ROOK_ENDING);
+            List<ChessMove> moves = RandomGames.play(random, start, 60);
+            Set<Integer> signatures = new HashSet<>();
+            for (ChessPosition position : RandomGames.replay(start, moves)) {
+                signatures.add(MaterialSignature.of(position));
+            }
+            games.add(RandomGames.game(null, start, moves));
+            reached.add(signatures);
+        }
+        return RandomGames.write(folder.newFile().toPath(), games, 16);
+    }
+
+    private Path build(Path archive) throws IOException {
+        Path index = folder.newFile().toPath();
+        try (MaterialIndexBuilder builder = new MaterialIndexBuilder(2);
+             GameArchive games = new GameArchive(archive)) {
+            builder.addArchive(games);
+            builder.write(index);
+        }
+        return index;
+    }
+
+    @Test
+    public void testSignatures() {
+        int query = MaterialSignature.parse("KRPvKR w");
+        Assert.assertEquals(query, MaterialSignature.of(Fen.parse(ROOK_ENDING)));
+        Assert.assertEquals("KRPvKR w", MaterialSignature.toString(query));
+        Assert.assertEquals("KQRRBBNNPPPPPPPPvKQRRBBNNPPPPPPPP w", MaterialSignature.toString(MaterialSignature.of(ChessPosition.startingPosition())));
+        Assert.assertEquals(5, MaterialSignature.pieces(query));
+        int either = MaterialSignature.parse("KRPvKR");
+        Assert.assertTrue(MaterialSignature.matches(either, query));
+        Assert.assertTrue(MaterialSignature.matches(either, query | MaterialSignature.BLACK_TO_MOVE));
+        Assert.assertFalse(MaterialSignature.matches(query, query | MaterialSignature.BLACK_TO_MOVE));
+        ByteBuffer packed = ByteBuffer.allocate(PackedPosition.BYTES);
+        PackedPosition.write(Fen.parse(ROOK_ENDING), 0, PackedPosition.UNKNOWN_RESULT, packed, 0);
+        Assert.assertEquals(query, MaterialSignature.of(packed, 0));
+        try {
+            MaterialSignature.parse("RPvR");
+            Assert.fail("Parsed a signature without kings");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testFindsGamesReachingMaterial() throws IOException {
+        Path archive = writeArchive(60);
+        try (MaterialIndex index = new MaterialIndex(build(archive), 2)) {
+            Assert.assertEquals(60, index.getGameCount());
+            Set<Integer> queries = new HashSet<>();
+            for (Set<Integer> signatures : reached) {
+                queries.addAll(signatures);
+            }
+            for (int query : queries) {
+                List<Integer> expected = new ArrayList<>();
+                for (int game = 0; game < reached.size(); game++) {
+                    if (reached.get(game).contains(query)) {
+                        expected.add(game);
+                    }
+                }
+                Assert.assertEquals(MaterialSignature.toString(query), expected, index.find(query, Integer.MAX_VALUE));
+            }
+            Assert.assertEquals(3, index.find(MaterialSignature.parse("KRPvKR"), 3).size());
+            Assert.assertEquals(Arrays.asList(), index.find(MaterialSignature.parse("KQQQvK"), 10));
+        }
+    }
+
+    @Test
+    public void testNarrowsDownByPattern() throws IOException {
+        Path archive = writeArchive(20);
+        PositionPattern pattern = PositionPattern.parse("8/8/8/8/8/4r3/4P3/R3K3");
+        try (MaterialIndex index = new MaterialIndex(build(archive), 2);
+             GameArchive games = new GameArchive(archive)) {
+            // Every game from the rook ending starts on the pattern; the others never reach it.
+            List<Integer> expected = new ArrayList<>();
+            for (int game = 1; game < 20; game += 2) {
+                expected.add(game);
+            }
+            Assert.assertEquals(expected, index.find(MaterialSignature.parse("KRPvKR w"), pattern, games, 100));
+            Assert.assertEquals(2, index.find(MaterialSignature.parse("KRPvKR w"), pattern, games, 2).size());
+            Assert.assertEquals(Arrays.asList(), index.find(MaterialSignature.parse("KRPvKR w"),
+                    PositionPattern.parse("8/8/8/8/8/4r3/4P3/R3KN2"), games, 100));
+        }
+        ByteBuffer packed = ByteBuffer.allocate(2 * PackedPosition.BYTES);
+        PackedPosition.write(ChessPosition.startingPosition(), 0, PackedPosition.UNKNOWN_RESULT, packed);
+        PackedPosition.write(Fen.parse(ROOK_ENDING), 0, PackedPosition.UNKNOWN_RESULT, packed);
+        packed.flip();
+        Assert.assertEquals(Arrays.asList(1), pattern.scan(packed, 10));
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.San;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import com.github.zacharygriggs.pgn.PgnWriter;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class OpeningTreeTest {
+
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Pgn> randomGames(int count) {
+        Random random = new Random(11);
+        List<Pgn> games = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PgnHeader header = new PgnHeader();
+            header.setResult(RESULTS[i % RESULTS.length]);
+            header.setTag("WhiteElo", "2400");
+            List<ChessMove> moves = RandomGames.play(random, ChessPosition.startingPosition(), 8, 8, 3);
+            games.add(RandomGames.game(header, ChessPosition.startingPosition(), moves));
+        }
+        return games;
+    }
+
+    private Path writeArchive(int count) throws IOException {
+        return RandomGames.write(folder.newFile().toPath(), randomGames(count), 8);
+    }
+
+    private Path build(Path archive, int maxPly, int minGames) throws IOException {
+        Path tree = folder.newFile().toPath();
+        // Tiny shards, so they grow while games are added.
+        try (OpeningTreeBuilder builder = new OpeningTreeBuilder(2, maxPly, 4);
+             GameArchive games = new GameArchive(archive)) {
+            builder.setMinGames(minGames);
+            builder.addArchive(games);
+            builder.write(tree);
+        }
+        return tree;
+    }
+
+    @Test
+    public void testCountsMatchTheGames() throws IOException {
+        Path archive = writeArchive(90);
+        Map<String, Integer> firstMoves = new HashMap<>();
+        try (GameArchive games = new GameArchive(archive)) {
+            for (int i = 0; i < games.getGameCount(); i++) {
+                ChessMove first = games.read(i).getMoves().get(0);
+                firstMoves.merge(San.write(ChessPosition.startingPosition(), first), 1, Integer::sum);
+            }
+        }
+        try (OpeningTree tree = new OpeningTree(build(archive, 4, 1))) {
+            Assert.assertEquals(4, tree.getMaxPly());
+            PositionStats start = tree.lookup(ChessPosition.startingPosition());
+            Assert.assertEquals(90, start.getGames());
+            Assert.assertEquals(30, start.getWhiteWins());
+            Assert.assertEquals(30, start.getDraws());
+            Assert.assertEquals(30, start.getBlackWins());
+            Assert.assertEquals(2400, start.getAverageRating());
+            Assert.assertEquals(firstMoves.size(), start.getMoves().size());
+            for (MoveStats move : start.getMoves()) {
+                Assert.assertEquals(firstMoves.get(move.getMove().toString()).longValue(), move.getGames());
+            }
+            // Positions past the depth are not in the tree.
+            Pgn game;
+            try (GameArchive games = new GameArchive(archive)) {
+                game = games.read(0);
+            }
+            ChessPosition position = ChessPosition.startingPosition();
+            for (int ply = 0; ply < 4; ply++) {
+                Assert.assertTrue(tree.lookup(position).getGames() > 0);
+                position = position.positionAfterMove(game.getMoves().get(ply));
+                position.updateAllPieces();
+            }
+            Assert.assertEquals(0, tree.lookup(position).getGames());
+        }
+    }
+
+    @Test
+    public void testBuildsFromPgn() throws IOException {
+        // More batches than are read ahead of the two workers.
+        List<Pgn> games = randomGames(1500);
+        Path pgn = folder.newFile("games.pgn").toPath();
+        try (PgnWriter writer = new PgnWriter(Files.newOutputStream(pgn))) {
+            for (Pgn game : games) {
+                writer.write(game);
+            }
+        }
+        Path fromPgn = folder.newFile().toPath();
+        try (OpeningTreeBuilder builder = new OpeningTreeBuilder(2, 4, 4)) {
+            builder.addPgn(pgn);
+            Assert.assertEquals(1500, builder.getGames());
+            builder.write(fromPgn);
+        }
+        Path archive = RandomGames.write(folder.newFile().toPath(), games, 8);
+        try (OpeningTree expected = new OpeningTree(build(archive, 4, 1));
+             OpeningTree tree = new OpeningTree(fromPgn)) {
+            Assert.assertEquals(expected.getPositionCount(), tree.getPositionCount());
+            PositionStats start = tree.lookup(ChessPosition.startingPosition());
+            Assert.assertEquals(1500, start.getGames());
+            Assert.assertEquals(500, start.getWhiteWins());
+            Assert.assertEquals(500, start.getDraws());
+            Assert.assertEquals(500, start.getBlackWins());
+            List<MoveStats> moves = start.getMoves();
+            List<MoveStats> expectedMoves = expected.lookup(ChessPosition.startingPosition()).getMoves();
+            Assert.assertEquals(expectedMoves.size(), moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                Assert.assertEquals(expectedMoves.get(i).getMove().toString(), moves.get(i).getMove().toString());
+                Assert.assertEquals(expectedMoves.get(i).getGames(), moves.get(i).getGames());
+            }
+        }
+    }
+
+    @Test
+    public void testLeavesOutRareMoves() throws IOException {
+        Path archive = writeArchive(60);
+        try (OpeningTree all = new OpeningTree(build(archive, 6, 1));
+             OpeningTree common = new OpeningTree(build(archive, 6, 5))) {
+            Assert.assertTrue(common.getPositionCount() < all.getPositionCount());
+            for (MoveStats move : common.lookup(ChessPosition.startingPosition()).getMoves()) {
+                Assert.assertTrue(move.getGames() >= 5);
+            }
+        }
+    }
+}
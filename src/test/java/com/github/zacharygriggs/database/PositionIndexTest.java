@@ -0,0 +1,129 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PositionIndexTest {
+
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Pgn> randomGames(int count) {
+        Random random = new Random(5);
+        List<Pgn> games = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PgnHeader header = new PgnHeader();
+            header.setResult(RESULTS[i % RESULTS.length]);
+            header.setTag("WhiteElo", Integer.toString(2000 + i));
+            header.setTag("BlackElo", Integer.toString(2100 + i));
+            // Few choices early on, so games share their first positions.
+            List<ChessMove> moves = RandomGames.play(random, ChessPosition.startingPosition(), 40, 4, 2);
+            games.add(RandomGames.game(header, ChessPosition.startingPosition(), moves));
+        }
+        return games;
+    }
+
+    @Test
+    public void testQueriesMatchTheGames() throws IOException {
+        List<Pgn> games = randomGames(120);
+        Path index = folder.newFile("positions.idx").toPath();
+        // Small runs, so the entries are merged from many.
+        try (PositionIndexBuilder builder = new PositionIndexBuilder(2, folder.getRoot().toPath(), 700);
+             GameArchive archive = new GameArchive(RandomGames.write(folder.newFile().toPath(), games, 16))) {
+            builder.addArchive(archive);
+            builder.write(index);
+        }
+        try (PositionIndex positions = new PositionIndex(index)) {
+            Assert.assertEquals(120, positions.getGameCount());
+            PositionStats start = positions.query(ChessPosition.startingPosition());
+            Assert.assertEquals(120, start.getGames());
+            Assert.assertEquals(30, start.getWhiteWins());
+            Assert.assertEquals(30, start.getDraws());
+            Assert.assertEquals(30, start.getBlackWins());
+            Assert.assertEquals(2109, start.getAverageRating());
+            long played = 0;
+            for (MoveStats move : start.getMoves()) {
+                played += move.getGames();
+            }
+            Assert.assertEquals(120, played);
+
+            // Every game reaching the position after its second move is found.
+            ChessPosition position = ChessPosition.startingPosition();
+            for (ChessMove move : games.get(7).getMoves().subList(0, 2)) {
+                position = position.positionAfterMove(move);
+                position.updateAllPieces();
+            }
+            long key = position.getZobristKey(position.getSideToMove());
+            List<Integer> expected = new ArrayList<>();
+            for (int g = 0; g < games.size(); g++) {
+                ChessPosition replay = ChessPosition.startingPosition();
+                for (ChessMove move : games.get(g).getMoves()) {
+                    if (replay.getZobristKey(replay.getSideToMove()) == key) {
+                        break;
+                    }
+                    replay = replay.positionAfterMove(move);
+                    replay.updateAllPieces();
+                }
+                if (replay.getZobristKey(replay.getSideToMove()) == key) {
+                    expected.add(g);
+                }
+            }
+            Assert.assertEquals(expected, positions.findGames(position, Integer.MAX_VALUE));
+            Assert.assertEquals(expected.size(), positions.query(position).getGames());
+            Assert.assertEquals(0, positions.query(ChessPosition.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1")).getGames());
+        }
+    }
+
+    @Test
+    public void testBuildsFromPgn() throws IOException {
+        String text = "[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 1-0\n\n"
+                + "[Result \"0-1\"]\n\n1. e4 c5 0-1\n\n"
+                + "[Result \"1/2-1/2\"]\n\n1. d4 1/2-1/2\n";
+        Path pgn = folder.newFile("games.pgn").toPath();
+        // Enough games for more batches than may be read ahead of the workers.
+        Files.write(pgn, (text + "\n").repeat(600).getBytes(StandardCharsets.UTF_8));
+        Path index = folder.newFile("pgn.idx").toPath();
+        try (PositionIndexBuilder builder = new PositionIndexBuilder(2, folder.getRoot().toPath(), 1000)) {
+            builder.addPgn(pgn);
+            builder.write(index);
+        }
+        try (PositionIndex positions = new PositionIndex(index)) {
+            PositionStats start = positions.query(ChessPosition.startingPosition());
+            Assert.assertEquals(1800, start.getGames());
+            Assert.assertEquals("e4", start.getMoves().get(0).getMove().toString());
+            Assert.assertEquals(1200, start.getMoves().get(0).getGames());
+            Assert.assertEquals(600, start.getMoves().get(0).getWhiteWins());
+            Assert.assertEquals(600, start.getMoves().get(0).getBlackWins());
+        }
+    }
+
+    @Test
+    public void testSortsEntries() {
+        Random random = new Random(3);
+        long[] entries = new long[2000];
+        for (int i = 0; i < entries.length; i += 2) {
+            entries[i] = random.nextInt(50) - 25;
+            entries[i + 1] = random.nextLong();
+        }
+        PositionIndexBuilder.sort(entries, 0, entries.length / 2);
+        for (int i = 2; i < entries.length; i += 2) {
+            Assert.assertTrue(entries[i - 2] < entries[i] || (entries[i - 2] == entries[i] && entries[i - 1] <= entries[i + 1]));
+        }
+    }
+}
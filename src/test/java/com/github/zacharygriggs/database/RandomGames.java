@@ -0,0 +1,114 @@
+package com.github.zacharygriggs.database;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.pgn.Pgn;
+import com.github.zacharygriggs.pgn.PgnHeader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays random games for tests, and writes them to binary game files.
+ */
+public final class RandomGames {
+
+    private RandomGames() {}
+
+    /**
+     * Plays random legal moves until the game ends or enough are played.
+     *
+     * @param random Moves are drawn from this
+     * @param start  Position to play from
+     * @param plies  Most moves to play
+     * @return The moves
+     */
+    public static List<ChessMove> play(Random random, ChessPosition start, int plies) {
+        return play(random, start, plies, 0, 0);
+    }
+
+    /**
+     * Plays random legal moves, choosing among only the first few for the first plies,
+     * so games share their openings.
+     *
+     * @param random         Moves are drawn from this
+     * @param start          Position to play from
+     * @param plies          Most moves to play
+     * @param openingPlies   Number of plies with few choices
+     * @param openingChoices Number of legal moves chosen among for those plies
+     * @return The moves
+     */
+    public static List<ChessMove> play(Random random, ChessPosition start, int plies, int openingPlies, int openingChoices) {
+        List<ChessMove> moves = new ArrayList<>();
+        ChessPosition position = start;
+        for (int ply = 0; ply < plies; ply++) {
+            List<ChessMove> legal = position.findLegalMoves(position.getSideToMove());
+            if (legal.isEmpty()) {
+                break;
+            }
+            int choices = ply < openingPlies ? Math.min(openingChoices, legal.size()) : legal.size();
+            ChessMove move = legal.get(random.nextInt(choices));
+            moves.add(move);
+            position = position.positionAfterMove(move);
+            position.updateAllPieces();
+        }
+        return moves;
+    }
+
+    /**
+     * Replays moves.
+     *
+     * @param start Position to play from
+     * @param moves Moves
+     * @return Every position reached, the start first
+     */
+    public static List<ChessPosition> replay(ChessPosition start, List<ChessMove> moves) {
+        List<ChessPosition> positions = new ArrayList<>(moves.size() + 1);
+        ChessPosition position = start;
+        positions.add(position);
+        for (ChessMove move : moves) {
+            position = position.positionAfterMove(move);
+            position.updateAllPieces();
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    /**
+     * Makes a game of moves.
+     *
+     * @param header Tags, or null for the defaults
+     * @param start  Position the moves are played from
+     * @param moves  Moves
+     * @return The game
+     */
+    public static Pgn game(PgnHeader header, ChessPosition start, List<ChessMove> moves) {
+        Pgn pgn = new Pgn();
+        pgn.setHeader(header == null ? new PgnHeader() : header);
+        pgn.setStartingPosition(start);
+        pgn.setMoves(moves);
+        return pgn;
+    }
+
+    /**
+     * Writes games to a binary game file.
+     *
+     * @param file      File to write
+     * @param games     Games
+     * @param blockSize Games per block
+     * @return The file
+     * @throws IOException If writing fails
+     */
+    public static Path write(Path file, List<Pgn> games, int blockSize) throws IOException {
+        try (GameWriter writer = new GameWriter(Files.newOutputStream(file), blockSize)) {
+            for (Pgn pgn : games) {
+                writer.write(pgn);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.zacharygriggs.engine;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class BenchTest {
+
+    private static final PrintStream DISCARD = new PrintStream(new ByteArrayOutputStream());
+
+    @Test
+    public void testNodeCountIsRepeatable() {
+        long first = new Bench(2).run(DISCARD);
+        Assert.assertTrue(first > 0);
+        Assert.assertEquals(first, new Bench(2).run(DISCARD));
+    }
+
+    @Test
+    public void testSeededEngineRepeatsItsSearch() {
+        ChessPosition position = Fen.parse(Bench.POSITIONS.get(1));
+        ChessEngine engine = new ChessEngine(2, EngineSettings.BEST_MOVE);
+        engine.setSeed(42L);
+        EngineEvaluation first = engine.evaluate(position, position.getSideToMove());
+        EngineEvaluation second = engine.evaluate(position, position.getSideToMove());
+        Assert.assertEquals(first.getNodes(), second.getNodes());
+        Assert.assertEquals(first.getEval(), second.getEval(), 0);
+        Assert.assertEquals(first.getBestMove(), second.getBestMove());
+    }
+
+    @Test
+    public void testDepthIsClamped() {
+        // Drawn by the fifty move rule, so every iteration is only as big as the root.
+        ChessPosition position = Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 100 80");
+        ChessEngine engine = new ChessEngine(2, EngineSettings.BEST_MOVE);
+        EngineEvaluation eval = engine.evaluate(position, position.getSideToMove(), SearchLimits.depth(1000));
+        Assert.assertEquals(ChessEngine.MAX_DEPTH, eval.getDepth());
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.zacharygriggs.engine;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChessEngineTest {
+
+    @Test
+    public void testLateMovePruningKeepsPromotions() {
+        // Black's promotion comes after more than a dozen rook and king moves, one ply
+        // from the leaves, where late quiet moves are pruned.
+        ChessPosition position = Fen.parse("k7/3r4/8/8/8/8/1p6/7K w - - 0 1");
+        ChessEngine engine = new ChessEngine(2, EngineSettings.BEST_MOVE);
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        engine.setWeights(weights);
+        EngineEvaluation eval = engine.evaluate(position, position.getSideToMove(), SearchLimits.depth(2));
+        Assert.assertTrue(Double.toString(eval.getEval()), eval.getEval() < -12);
+    }
+}
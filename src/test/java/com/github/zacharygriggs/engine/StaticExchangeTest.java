@@ -0,0 +1,106 @@
+package com.github.zacharygriggs.engine;
+
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StaticExchangeTest {
+
+    private final StaticExchange exchange = new StaticExchange();
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(new ChessCoordinate(from), new ChessCoordinate(to));
+    }
+
+    private static ChessPosition position(List<ChessPiece> pieces) {
+        ChessPosition pos = pieces.get(0).getPosition();
+        pos.setPieces(pieces);
+        return pos;
+    }
+
+    @Test
+    public void testUndefendedCapture() {
+        ChessPosition pos = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>();
+        pieces.add(new King(pos, ChessPlayer.WHITE, "a1"));
+        pieces.add(new King(pos, ChessPlayer.BLACK, "h8"));
+        pieces.add(new Queen(pos, ChessPlayer.WHITE, "d1"));
+        pieces.add(new Knight(pos, ChessPlayer.BLACK, "d5"));
+        position(pieces);
+        Assert.assertEquals(3, exchange.evaluate(pos, move("d1", "d5")));
+    }
+
+    @Test
+    public void testLosingCapture() {
+        ChessPosition pos = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>();
+        pieces.add(new King(pos, ChessPlayer.WHITE, "a1"));
+        pieces.add(new King(pos, ChessPlayer.BLACK, "h8"));
+        pieces.add(new Rook(pos, ChessPlayer.WHITE, "e1"));
+        pieces.add(new Pawn(pos, ChessPlayer.BLACK, "e5"));
+        pieces.add(new Pawn(pos, ChessPlayer.BLACK, "d6"));
+        position(pieces);
+        Assert.assertEquals(-4, exchange.evaluate(pos, move("e1", "e5")));
+        Assert.assertFalse(exchange.atLeast(pos, move("e1", "e5"), 0));
+    }
+
+    @Test
+    public void testPawnTakesDefendedKnight() {
+        ChessPosition pos = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>();
+        pieces.add(new King(pos, ChessPlayer.WHITE, "a1"));
+        pieces.add(new King(pos, ChessPlayer.BLACK, "h8"));
+        pieces.add(new Pawn(pos, ChessPlayer.WHITE, "e4"));
+        pieces.add(new Knight(pos, ChessPlayer.BLACK, "d5"));
+        pieces.add(new Pawn(pos, ChessPlayer.BLACK, "c6"));
+        position(pieces);
+        Assert.assertEquals(2, exchange.evaluate(pos, move("e4", "d5")));
+    }
+
+    @Test
+    public void testXrayRecapture() {
+        ChessPosition pos = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>();
+        pieces.add(new King(pos, ChessPlayer.WHITE, "a1"));
+        pieces.add(new King(pos, ChessPlayer.BLACK, "h8"));
+        pieces.add(new Rook(pos, ChessPlayer.WHITE, "e1"));
+        pieces.add(new Rook(pos, ChessPlayer.WHITE, "e2"));
+        pieces.add(new Pawn(pos, ChessPlayer.BLACK, "e5"));
+        pieces.add(new Rook(pos, ChessPlayer.BLACK, "e8"));
+        position(pieces);
+        // Rxe5 Rxe5 Rxe5 - the rook on e1 only joins in once the one on e2 has gone.
+        Assert.assertEquals(1, exchange.evaluate(pos, move("e2", "e5")));
+    }
+
+    @Test
+    public void testKingRecapturesUndefendedPiece() {
+        ChessPosition pos = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>();
+        pieces.add(new King(pos, ChessPlayer.WHITE, "a1"));
+        pieces.add(new King(pos, ChessPlayer.BLACK, "e6"));
+        pieces.add(new Rook(pos, ChessPlayer.WHITE, "d1"));
+        pieces.add(new Pawn(pos, ChessPlayer.BLACK, "d5"));
+        position(pieces);
+        Assert.assertEquals(-4, exchange.evaluate(pos, move("d1", "d5")));
+    }
+
+    @Test
+    public void testKingCannotRecaptureDefendedPiece() {
+        ChessPosition pos = new ChessPosition();
+        List<ChessPiece> pieces = new ArrayList<>();
+        pieces.add(new King(pos, ChessPlayer.WHITE, "a1"));
+        pieces.add(new King(pos, ChessPlayer.BLACK, "e6"));
+        pieces.add(new Bishop(pos, ChessPlayer.WHITE, "b3"));
+        pieces.add(new Rook(pos, ChessPlayer.WHITE, "d1"));
+        pieces.add(new Pawn(pos, ChessPlayer.BLACK, "d5"));
+        position(pieces);
+        Assert.assertEquals(1, exchange.evaluate(pos, move("d1", "d5")));
+    }
+}
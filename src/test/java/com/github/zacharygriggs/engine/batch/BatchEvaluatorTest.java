@@ -0,0 +1,105 @@
+package com.github.zacharygriggs.engine.batch;
+
+import com.github.zacharygriggs.chess.core.ChessBoard;
+import com.github.zacharygriggs.chess.core.ChessCoordinate;
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.SearchLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class BatchEvaluatorTest {
+
+    @Test
+    public void testEveryRequestIsAnswered() {
+        List<BatchRequest> requests = new ArrayList<>();
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < 12; i++) {
+            requests.add(new BatchRequest(i, board.getPosition(), board.getMovingPlayer(), SearchLimits.depth(1)));
+            ChessMove move = board.getPosition().findLegalMoves(board.getMovingPlayer()).get(0);
+            board.submitMove(move);
+        }
+        try (BatchEvaluator evaluator = new BatchEvaluator(3, () -> new ChessEngine(1, EngineSettings.BEST_MOVE))) {
+            try (BatchRun run = evaluator.submit(requests.iterator())) {
+                Set<Long> answered = new HashSet<>();
+                while (run.hasNext()) {
+                    BatchResult result = run.next();
+                    Assert.assertTrue(result.isSuccess());
+                    Assert.assertNotNull(result.getEvaluation().getBestMove());
+                    Assert.assertTrue(answered.add(result.getRequest().getId()));
+                }
+                Assert.assertEquals(requests.size(), answered.size());
+                Assert.assertEquals(requests.size(), run.getMetrics().getCompleted());
+                Assert.assertTrue(run.getMetrics().getNodes() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testClosingStopsFeeding() throws InterruptedException {
+        AtomicLong pulled = new AtomicLong();
+        ChessBoard board = new ChessBoard();
+        Iterator<BatchRequest> endless = Stream.generate(() -> new BatchRequest(pulled.incrementAndGet(),
+                board.getPosition(), board.getMovingPlayer(), SearchLimits.depth(1))).iterator();
+        try (BatchEvaluator evaluator = new BatchEvaluator(1, () -> new ChessEngine(1, EngineSettings.BEST_MOVE))) {
+            BatchRun run = evaluator.submit(endless);
+            Assert.assertTrue(run.hasNext());
+            run.next();
+            // Four requests per worker are in flight. Wait until the feeder has filled the
+            // freed slot and pulled one more, so it is waiting for room when the run closes.
+            long deadline = System.currentTimeMillis() + 1000;
+            while (pulled.get() <= evaluator.getParallelism() * 4 + 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            run.close();
+            Assert.assertFalse(run.hasNext());
+            deadline = System.currentTimeMillis() + 1000;
+            while (feederRunning() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertFalse(feederRunning());
+            long stopped = pulled.get();
+            Thread.sleep(50);
+            Assert.assertEquals(stopped, pulled.get());
+        }
+    }
+
+    private static boolean feederRunning() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("batch-feeder") && thread.isAlive());
+    }
+
+    @Test
+    public void testPositionWithoutMovesFails() {
+        ChessBoard board = new ChessBoard();
+        // Fool's mate.
+        for (String move : new String[]{"f2f3", "e7e5", "g2g4", "d8h4"}) {
+            board.submitMove(new ChessCoordinate(move.substring(0, 2)), new ChessCoordinate(move.substring(2)));
+        }
+        List<BatchRequest> requests = new ArrayList<>();
+        requests.add(new BatchRequest(1, board.getPosition(), ChessPlayer.WHITE, SearchLimits.nodes(1000)));
+        AtomicLong engines = new AtomicLong();
+        try (BatchEvaluator evaluator = new BatchEvaluator(1, () -> {
+            engines.incrementAndGet();
+            return new ChessEngine();
+        })) {
+            List<BatchResult> results = evaluator.evaluateAll(requests);
+            Assert.assertEquals(1, results.size());
+            Assert.assertFalse(results.get(0).isSuccess());
+            Assert.assertEquals(1, results.get(0).getRequest().getId());
+            Assert.assertEquals("No legal moves in the position", results.get(0).getError().getMessage());
+        }
+        // The game is over, so no engine was asked.
+        Assert.assertEquals(0, engines.get());
+    }
+}
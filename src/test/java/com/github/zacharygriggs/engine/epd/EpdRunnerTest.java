@@ -0,0 +1,58 @@
+package com.github.zacharygriggs.engine.epd;
+
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.EvaluationWeights;
+import com.github.zacharygriggs.engine.SearchLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class EpdRunnerTest {
+
+    private static ChessEngine engine() {
+        ChessEngine engine = new ChessEngine(3, EngineSettings.BEST_MOVE);
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        engine.setWeights(weights);
+        return engine;
+    }
+
+    @Test
+    public void testParsesOperations() {
+        EpdPosition position = EpdPosition.parse(
+                "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - bm Qxf7#; id \"Scholar's mate\"; c0 \"a; b\";");
+        Assert.assertEquals("Scholar's mate", position.getId());
+        Assert.assertEquals(List.of("a; b"), position.getOperations().get("c0"));
+        Assert.assertEquals(1, position.getBestMoves().size());
+        Assert.assertEquals("h5", position.getBestMoves().get(0).getFrom().toString());
+        Assert.assertEquals("f7", position.getBestMoves().get(0).getTo().toString());
+        Assert.assertTrue(position.getAvoidMoves().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsIllegalBestMove() {
+        EpdPosition.parse("4k3/8/8/8/8/8/8/4K3 w - - bm Qd8;");
+    }
+
+    @Test
+    public void testSolvesSuite() {
+        List<EpdPosition> suite = List.of(
+                EpdPosition.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - bm Ra8#; id \"mate\";"),
+                EpdPosition.parse("4k3/8/8/3r4/8/8/3Q4/4K3 w - - bm Qxd5; id \"capture\";"),
+                EpdPosition.parse("4k3/8/8/8/2p5/1n6/8/1Q2K3 w - - am Qxb3; id \"defended\";"));
+        try (EpdRunner runner = new EpdRunner(2, EpdRunnerTest::engine, SearchLimits.depth(2))) {
+            List<EpdResult> results = runner.run(suite);
+            Assert.assertEquals(suite.size(), results.size());
+            for (int i = 0; i < suite.size(); i++) {
+                EpdResult result = results.get(i);
+                Assert.assertSame(suite.get(i), result.getPosition());
+                Assert.assertTrue(result.getPosition().getId(), result.isSolved());
+                Assert.assertTrue(result.getSolveDepth() >= 0);
+                Assert.assertTrue(result.getSolveNodes() <= result.getEvaluation().getNodes());
+                Assert.assertTrue(result.getSolveNanos() <= result.getElapsedNanos());
+            }
+        }
+    }
+}
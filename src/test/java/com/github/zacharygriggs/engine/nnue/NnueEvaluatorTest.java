@@ -0,0 +1,98 @@
+package com.github.zacharygriggs.engine.nnue;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.helper.MiscHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+public class NnueEvaluatorTest {
+
+    private static NnueNetwork randomNetwork(long seed) {
+        Random random = new Random(seed);
+        NnueNetwork network = new NnueNetwork(16, 8, 8);
+        for (int i = 0; i < network.featureBiases.length; i++) {
+            network.featureBiases[i] = (short) random.nextInt(64);
+        }
+        for (int i = 0; i < network.featureWeights.length; i++) {
+            network.featureWeights[i] = (short) (random.nextInt(41) - 20);
+        }
+        for (int i = 0; i < network.layer1Weights.length; i++) {
+            network.layer1Weights[i] = (byte) (random.nextInt(31) - 15);
+        }
+        for (int i = 0; i < network.layer1Biases.length; i++) {
+            network.layer1Biases[i] = random.nextInt(2000) - 1000;
+        }
+        for (int i = 0; i < network.layer2Weights.length; i++) {
+            network.layer2Weights[i] = (byte) (random.nextInt(31) - 15);
+        }
+        for (int i = 0; i < network.layer2Biases.length; i++) {
+            network.layer2Biases[i] = random.nextInt(2000) - 1000;
+        }
+        for (int i = 0; i < network.outputWeights.length; i++) {
+            network.outputWeights[i] = (byte) (random.nextInt(255) - 127);
+        }
+        network.outputBias = random.nextInt(200) - 100;
+        return network;
+    }
+
+    @Test
+    public void testIncrementalMatchesReference() {
+        NnueNetwork network = randomNetwork(1);
+        NnueEvaluator evaluator = new NnueEvaluator(network);
+        Random random = new Random(2);
+        ChessPosition pos = ChessPosition.startingPosition();
+        ChessPlayer toMove = ChessPlayer.WHITE;
+        evaluator.refresh(0, pos);
+        for (int ply = 1; ply <= 40; ply++) {
+            List<ChessMove> moves = pos.findLegalMoves(toMove);
+            if (moves.isEmpty()) {
+                break;
+            }
+            ChessMove move = moves.get(random.nextInt(moves.size()));
+            ChessPosition next = pos.positionAfterMove(move);
+            evaluator.update(ply, pos, next, move);
+            for (ChessPlayer perspective : ChessPlayer.values()) {
+                Assert.assertEquals("ply " + ply + " after " + move,
+                        NnueReference.evaluate(network, next, perspective),
+                        evaluator.evaluate(ply, perspective));
+            }
+            pos = next;
+            toMove = MiscHelper.opposite(toMove);
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        NnueNetwork network = randomNetwork(3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        network.save(out);
+        NnueNetwork loaded = NnueNetwork.load(new ByteArrayInputStream(out.toByteArray()));
+        ChessPosition pos = ChessPosition.startingPosition();
+        for (ChessPlayer perspective : ChessPlayer.values()) {
+            Assert.assertEquals(NnueReference.evaluate(network, pos, perspective),
+                    NnueReference.evaluate(loaded, pos, perspective));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsGarbage() throws IOException {
+        NnueNetwork.load(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsHugeDimensions() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(NnueNetwork.MAGIC).putInt(NnueNetwork.VERSION).putInt(1 << 20).putInt(8).putInt(8);
+        NnueNetwork.load(new ByteArrayInputStream(header.array()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.zacharygriggs.engine.nnue;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.data.ChessPlayer;
+import com.github.zacharygriggs.chess.pieces.ChessPiece;
+
+/**
+ * Straightforward reference implementation of the network's forward pass.
+ * Recomputes everything from the position with no incremental state,
+ * so the optimized evaluator can be checked against it.
+ */
+final class NnueReference {
+
+    private NnueReference() {}
+
+    static int evaluate(NnueNetwork network, ChessPosition pos, ChessPlayer perspective) {
+        int hidden = network.getHiddenSize();
+        ChessPlayer other = perspective == ChessPlayer.WHITE ? ChessPlayer.BLACK : ChessPlayer.WHITE;
+        int[] input = new int[2 * hidden];
+        int[] us = accumulate(network, pos, perspective);
+        int[] them = accumulate(network, pos, other);
+        for (int i = 0; i < hidden; i++) {
+            input[i] = clip((short) us[i]);
+            input[hidden + i] = clip((short) them[i]);
+        }
+        int[] layer1 = new int[network.getLayer1Size()];
+        for (int o = 0; o < layer1.length; o++) {
+            int sum = network.layer1Biases[o];
+            for (int i = 0; i < input.length; i++) {
+                sum += network.layer1Weights[o * input.length + i] * input[i];
+            }
+            layer1[o] = clip(sum >> NnueEvaluator.WEIGHT_SHIFT);
+        }
+        int[] layer2 = new int[network.getLayer2Size()];
+        for (int o = 0; o < layer2.length; o++) {
+            int sum = network.layer2Biases[o];
+            for (int i = 0; i < layer1.length; i++) {
+                sum += network.layer2Weights[o * layer1.length + i] * layer1[i];
+            }
+            layer2[o] = clip(sum >> NnueEvaluator.WEIGHT_SHIFT);
+        }
+        int output = network.outputBias;
+        for (int i = 0; i < layer2.length; i++) {
+            output += network.outputWeights[i] * layer2[i];
+        }
+        return output / NnueEvaluator.OUTPUT_SCALE;
+    }
+
+    private static int[] accumulate(NnueNetwork network, ChessPosition pos, ChessPlayer perspective) {
+        int hidden = network.getHiddenSize();
+        int[] acc = new int[hidden];
+        for (int i = 0; i < hidden; i++) {
+            acc[i] = network.featureBiases[i];
+        }
+        int kingSquare = NnueFeatures.square(pos.getKing(perspective).getCoordinate());
+        for (ChessPiece piece : pos.getPieces()) {
+            int type = NnueFeatures.pieceType(piece);
+            if (type < 0) {
+                continue;
+            }
+            int feature = NnueFeatures.index(perspective, kingSquare, type, piece.getOwner(),
+                    NnueFeatures.square(piece.getCoordinate()));
+            for (int i = 0; i < hidden; i++) {
+                acc[i] += network.featureWeights[feature * hidden + i];
+            }
+        }
+        return acc;
+    }
+
+    private static int clip(int value) {
+        return Math.max(0, Math.min(NnueEvaluator.ACTIVATION_MAX, value));
+    }
+}
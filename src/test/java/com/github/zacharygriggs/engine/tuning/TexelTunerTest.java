@@ -0,0 +1,114 @@
+package com.github.zacharygriggs.engine.tuning;
+
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.EvaluationWeights;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TexelTunerTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String BLACK_MISSING_KNIGHT = "r1bqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1";
+    private static final String WHITE_MISSING_PAWN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPP1/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    public void testParsesResults() {
+        Assert.assertEquals(1, LabelledPosition.parse(START + " c9 \"1-0\";").getResult(), 0);
+        Assert.assertEquals(0, LabelledPosition.parse(START + " 0-1").getResult(), 0);
+        Assert.assertEquals(0.5, LabelledPosition.parse(START + " 1/2-1/2").getResult(), 0);
+        Assert.assertEquals(0.5, LabelledPosition.parse(START + " [0.5]").getResult(), 0);
+        Assert.assertEquals(32, LabelledPosition.parse(START + " [0.5]").getPosition().getPieces().size());
+        try {
+            LabelledPosition.parse(START);
+            Assert.fail("Parsed a line without a result");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testPositionIsResolvedBeforeFeaturesAreTaken() {
+        // White wins the queen with the pawn.
+        LabelledPosition labelled = LabelledPosition.parse("4k3/8/8/3q4/4P3/8/8/4K3 w - - 0 1 1-0");
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        ChessEngine engine = new ChessEngine(0, EngineSettings.BEST_MOVE);
+        engine.setWeights(weights);
+        ChessPosition quiet = engine.quietPosition(labelled.getPosition(), labelled.getWhoseMove());
+        int[] features = new int[EvaluationWeights.TERM_COUNT];
+        EvaluationWeights.extractFeatures(quiet, features);
+        Assert.assertArrayEquals(new int[]{1, 0, 0, 0, 0}, features);
+    }
+
+    @Test
+    public void testTuningLowersError() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            lines.add(START + " 1/2-1/2");
+            lines.add(BLACK_MISSING_KNIGHT + (i % 8 == 0 ? " 1/2-1/2" : " 1-0"));
+            // Fixes the scale, which the knight alone could trade off against its value.
+            lines.add(WHITE_MISSING_PAWN + (i % 4 == 0 ? " 0-1" : " 1/2-1/2"));
+        }
+        lines.add("not a position");
+        Path file = Files.createTempFile("texel", ".epd");
+        try {
+            Files.write(file, lines);
+            EvaluationWeights start = new EvaluationWeights();
+            start.set(EvaluationWeights.KNIGHT, 0.5);
+            TexelTuner tuner = new TexelTuner(start);
+            tuner.load(file);
+            Assert.assertEquals(120, tuner.getPositions().size());
+            Assert.assertEquals(1, tuner.getSkipped());
+
+            double[] before = {1, 0.5, 3, 5, 9};
+            EvaluationWeights tuned = tuner.tune(100);
+            double[] after = new double[EvaluationWeights.TERM_COUNT];
+            for (int i = 0; i < after.length; i++) {
+                after[i] = tuned.get(i);
+            }
+            double scale = tuner.getScale();
+            Assert.assertTrue(tuner.getPositions().error(after, scale) < tuner.getPositions().error(before, scale));
+            Assert.assertTrue(tuned.get(EvaluationWeights.KNIGHT) > 0.5);
+            Assert.assertEquals(1, tuned.get(EvaluationWeights.PAWN), 0);
+            Assert.assertEquals(start.get(EvaluationWeights.NOISE), tuned.get(EvaluationWeights.NOISE), 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPackedFilesLoadTheSame() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            lines.add(START + " 1/2-1/2");
+            lines.add(BLACK_MISSING_KNIGHT + " 1-0");
+            lines.add(WHITE_MISSING_PAWN + " [0.0]");
+        }
+        lines.add("not a position");
+        Path file = Files.createTempFile("texel", ".epd");
+        Path packed = Files.createTempFile("texel", ".bin");
+        try {
+            Files.write(file, lines);
+            Assert.assertEquals(90, TexelTuner.pack(file, packed));
+            Assert.assertEquals(90 * 32, Files.size(packed));
+            TexelTuner fromLines = new TexelTuner(new EvaluationWeights());
+            fromLines.load(file);
+            TexelTuner fromPacked = new TexelTuner(new EvaluationWeights());
+            fromPacked.loadPacked(packed);
+            Assert.assertEquals(90, fromPacked.getPositions().size());
+            double[] weights = {1, 3, 3, 5, 9};
+            Assert.assertEquals(fromLines.getPositions().error(weights, 1), fromPacked.getPositions().error(weights, 1), 1e-12);
+        } finally {
+            Files.delete(file);
+            Files.delete(packed);
+        }
+    }
+}
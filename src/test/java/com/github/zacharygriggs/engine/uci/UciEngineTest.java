@@ -0,0 +1,113 @@
+package com.github.zacharygriggs.engine.uci;
+
+import com.github.zacharygriggs.chess.core.ChessBoard;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.engine.ChessEngine;
+import com.github.zacharygriggs.engine.EngineSettings;
+import com.github.zacharygriggs.engine.EvaluationWeights;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class UciEngineTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final UciEngine uci = new UciEngine(engine(), new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+    private static ChessEngine engine() {
+        ChessEngine engine = new ChessEngine(3, EngineSettings.BEST_MOVE);
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.set(EvaluationWeights.NOISE, 0);
+        engine.setWeights(weights);
+        return engine;
+    }
+
+    private List<String> output() {
+        return new ArrayList<>(Arrays.asList(bytes.toString(StandardCharsets.UTF_8).split("\\R")));
+    }
+
+    private String last() {
+        List<String> lines = output();
+        return lines.get(lines.size() - 1);
+    }
+
+    @Test
+    public void testHandshake() {
+        Assert.assertTrue(uci.handle("uci"));
+        List<String> lines = output();
+        Assert.assertEquals("id name " + UciEngine.NAME, lines.get(0));
+        Assert.assertTrue(lines.contains("option name MultiPV type spin default 1 min 1 max 64"));
+        Assert.assertEquals("uciok", last());
+        uci.handle("setoption name Hash value 64");
+        uci.handle("setoption name Threads value 1");
+        Assert.assertEquals(64, uci.getHash());
+        uci.handle("setoption name Hash value lots");
+        Assert.assertTrue(last().startsWith("info string Hash must be"));
+        uci.handle("isready");
+        Assert.assertEquals("readyok", last());
+        Assert.assertFalse(uci.handle("quit"));
+    }
+
+    @Test
+    public void testSearchesPositionToDepth() throws InterruptedException {
+        uci.handle("setoption name MultiPV value 2");
+        // After 1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 White mates on f7.
+        uci.handle("position startpos moves e2e4 e7e5 f1c4 b8c6 d1h5 g8f6");
+        uci.handle("go depth 2");
+        uci.waitForSearch();
+        List<String> lines = output();
+        Assert.assertEquals(5, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("info depth 1 multipv 1 score "));
+        Assert.assertTrue(lines.get(2), lines.get(2).startsWith("info depth 2 multipv 1 score mate 1 "));
+        Assert.assertTrue(lines.get(2).endsWith(" pv h5f7"));
+        Assert.assertTrue(lines.get(3).startsWith("info depth 2 multipv 2 score cp "));
+        Assert.assertEquals("bestmove h5f7", lines.get(4));
+
+        uci.handle("position fen 4k3/1P6/8/8/8/8/8/4K3 w - - 0 1 moves b7b8n");
+        uci.handle("go depth 1");
+        uci.waitForSearch();
+        Assert.assertTrue(last(), last().startsWith("bestmove e8"));
+        uci.handle("position startpos moves e2e5");
+        Assert.assertEquals("info string Illegal move: e2e5", last());
+    }
+
+    @Test
+    public void testStopEndsInfiniteSearch() throws InterruptedException {
+        uci.handle("position startpos");
+        uci.handle("go infinite");
+        Thread.sleep(200);
+        Assert.assertFalse(output().stream().anyMatch(line -> line.startsWith("bestmove")));
+        long start = System.nanoTime();
+        uci.handle("stop");
+        Assert.assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+        String bestMove = last();
+        Assert.assertTrue(bestMove, bestMove.startsWith("bestmove "));
+        ChessBoard board = new ChessBoard();
+        Assert.assertTrue(board.submitMove(UciEngine.parseMove(ChessPosition.startingPosition(), bestMove.substring(9))));
+
+        // A ponder search also waits, until the ponder move is played and its time runs out.
+        uci.handle("go ponder wtime 2000 btime 2000");
+        Thread.sleep(100);
+        Assert.assertEquals(1, output().stream().filter(line -> line.startsWith("bestmove")).count());
+        uci.handle("ponderhit");
+        uci.waitForSearch();
+        Assert.assertEquals(2, output().stream().filter(line -> line.startsWith("bestmove")).count());
+        Assert.assertTrue(last().startsWith("bestmove "));
+    }
+
+    @Test
+    public void testThinkingTime() {
+        Assert.assertEquals(0, UciEngine.thinkingTime(0, 0, 0));
+        Assert.assertEquals(2000, UciEngine.thinkingTime(60000, 0, 0));
+        Assert.assertEquals(10750, UciEngine.thinkingTime(60000, 1000, 6));
+        Assert.assertEquals(50, UciEngine.thinkingTime(100, 0, 1));
+        Assert.assertEquals("cp -125", UciEngine.score(-1.25));
+        Assert.assertEquals("mate -2", UciEngine.score(-ChessEngine.MATE_SCORE + 4));
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.zacharygriggs.pgn;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class PgnHeaderTest {
+
+    @Test
+    public void testKeepsTagsInOrder() {
+        PgnHeader header = new PgnHeader();
+        Assert.assertEquals(7, header.getTagCount());
+        Assert.assertEquals("??", header.getWhite());
+        header.setTag("TimeControl", "180+2");
+        header.setEco("B01");
+        header.setWhiteElo(2150);
+        header.setBlack("Player, Some");
+        header.setTimeControl("600");
+        Assert.assertEquals(Arrays.asList("Event", "Site", "Date", "Round", "White", "Black", "Result",
+                "TimeControl", "ECO", "WhiteElo"), new ArrayList<>(header.getTags().keySet()));
+        Assert.assertEquals("600", header.getTagValue(7));
+        Assert.assertEquals("Player, Some", header.getTag("Black"));
+        Assert.assertEquals(2150, header.getWhiteElo());
+        Assert.assertEquals(0, header.getBlackElo());
+        header.setTag("ECO", null);
+        header.removeTag("Black");
+        Assert.assertNull(header.getEco());
+        Assert.assertEquals("??", header.getBlack());
+        header.setResult(null);
+        Assert.assertEquals("??", header.getResult());
+        Assert.assertEquals(Arrays.asList("TimeControl", "WhiteElo"), new ArrayList<>(header.getOtherTags().keySet()));
+    }
+
+    @Test
+    public void testSharesRepeatedStrings() throws IOException {
+        String games = "[Event \"Titled Arena\"]\n[White \"Ljubojević\"]\n[Black \"Anand\"]\n[FEN \"8/8/8/8/8/8/8/K6k w - - 0 1\"]\n\n1. Kb1 *\n\n"
+                + "[Event \"Titled Arena\"]\n[White \"Anand\"]\n[Black \"Ljubojević\"]\n[FEN \"8/8/8/8/8/8/8/K6k w - - 0 1\"]\n\n1. Kb2 *\n\n";
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(games.getBytes(StandardCharsets.UTF_8)))) {
+            PgnHeader first = reader.next().getHeader();
+            PgnHeader second = reader.next().getHeader();
+            Assert.assertEquals("Ljubojević", first.getWhite());
+            Assert.assertSame(first.getEvent(), second.getEvent());
+            Assert.assertSame(first.getWhite(), second.getBlack());
+            Assert.assertSame(first.getBlack(), second.getWhite());
+            Assert.assertSame(first.getTagName(7), second.getTagName(7));
+            Assert.assertEquals(first.getTag("FEN"), second.getTag("FEN"));
+        }
+    }
+
+    @Test
+    public void testInternerIsBounded() {
+        TagInterner interner = new TagInterner(4);
+        String name = interner.intern(new StringBuilder("Carlsen"));
+        Assert.assertSame(name, interner.intern(new String("Carlsen")));
+        Assert.assertSame(name, interner.intern("Carlsen".getBytes(StandardCharsets.UTF_8), 0, 7));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("Player " + i, interner.intern("Player " + i));
+        }
+        Assert.assertEquals("Carlsen", interner.intern("Carlsen"));
+    }
+}
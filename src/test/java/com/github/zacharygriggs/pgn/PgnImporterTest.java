@@ -0,0 +1,60 @@
+package com.github.zacharygriggs.pgn;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PgnImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testImportsInFileOrder() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append("[Event \"Game ").append(i).append("\"]\n[Result \"*\"]\n\n");
+            if (i % 50 == 7) {
+                text.append("1. e4 e5 2. Ke3 *\n\n");
+            } else {
+                text.append("1. e4 {A comment\n\n[with a blank line]} e5 2. Nf3 (2. f4 exf4) Nc6 *\r\n\r\n");
+            }
+        }
+        Path file = folder.newFile("games.pgn").toPath();
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        List<Pgn> games = new ArrayList<>();
+        // Small chunks, so the file is cut in many places.
+        try (PgnImporter importer = new PgnImporter(3, 512)) {
+            PgnImportResult result = importer.importFile(file, games::add);
+            Assert.assertEquals(294, result.getGames());
+            Assert.assertEquals(6, result.getSkipped());
+            Assert.assertEquals(Files.size(file), result.getBytes());
+        }
+        Assert.assertEquals(294, games.size());
+        int expected = 0;
+        for (Pgn pgn : games) {
+            if (expected % 50 == 7) {
+                expected++;
+            }
+            Assert.assertEquals("Game " + expected, pgn.getHeader().getEvent());
+            Assert.assertEquals(4, pgn.getMoves().size());
+            expected++;
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Path file = folder.newFile("empty.pgn").toPath();
+        try (PgnImporter importer = new PgnImporter(2, 512)) {
+            Assert.assertEquals(0, importer.importFile(file, pgn -> Assert.fail()).getGames());
+        }
+    }
+}
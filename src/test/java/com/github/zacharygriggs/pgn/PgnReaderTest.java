@@ -0,0 +1,128 @@
+package com.github.zacharygriggs.pgn;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class PgnReaderTest {
+
+    private static final String OPERA_GAME = "[Event \"Paris\"]\n"
+            + "[Site \"Paris FRA\"]\n"
+            + "[Date \"1858.??.??\"]\n"
+            + "[Round \"?\"]\n"
+            + "[White \"Paul Morphy\"]\n"
+            + "[Black \"Duke Karl / Count Isouard\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "[ECO \"C41\"]\n"
+            + "[Annotator \"Someone \\\"quoted\\\"\"]\n"
+            + "\n"
+            + "1. e4 e5 2. Nf3 d6 3. d4 Bg4 {This is a weak move already.} 4. dxe5 Bxf3\n"
+            + "5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7 8. Nc3 c6 9. Bg5 b5 $6 (9... Qb4+ 10. Qxb4 Bxb4)\n"
+            + "10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7 14. Rd1 Qe6\n"
+            + "; A rest of line comment\n"
+            + "15. Bxd7+ Nxd7 16. Qb8+!! Nxb8 17. Rd8# 1-0\n";
+
+    private static ChessPosition play(Pgn pgn) {
+        ChessPosition position = pgn.getStartingPosition();
+        for (ChessMove move : pgn.getMoves()) {
+            position = position.positionAfterMove(move);
+            position.updateAllPieces();
+        }
+        return position;
+    }
+
+    private static PgnReader reader(String text) {
+        return new PgnReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testReadsGame() throws IOException {
+        try (PgnReader reader = reader(OPERA_GAME)) {
+            Pgn pgn = reader.next();
+            Assert.assertEquals("Paul Morphy", pgn.getHeader().getWhite());
+            Assert.assertEquals("1-0", pgn.getHeader().getResult());
+            Assert.assertEquals("C41", pgn.getHeader().getTag("ECO"));
+            Assert.assertEquals("Someone \"quoted\"", pgn.getHeader().getTag("Annotator"));
+            Assert.assertEquals(33, pgn.getMoves().size());
+            Assert.assertEquals("1n1Rkb1r/p4ppp/4q3/4p1B1/4P3/8/PPP2PPP/2K5 b k - 1 17", play(pgn).toFen());
+            Assert.assertTrue(pgn.getMovetext().startsWith("1. e4 e5"));
+            Assert.assertTrue(pgn.getMovetext().endsWith("17. Rd8# 1-0"));
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testReadsManyGamesAndFormats() throws IOException {
+        String text = "% An escaped line\r\n"
+                + "[Event \"FEN\"]\r\n[SetUp \"1\"]\r\n[FEN \"4k3/1P6/8/8/8/8/8/4K3 w - - 0 1\"]\r\n\r\n"
+                + "1.b8=N Kf7 2.Nc6 *\r\n\r\n"
+                + "1.e4 e5 2.Nf3\n\n"
+                + "[Event \"After a game with no result\"]\n\n1. d4 1/2-1/2";
+        try (PgnReader reader = reader(text)) {
+            Pgn first = reader.next();
+            Assert.assertEquals("*", first.getHeader().getResult());
+            Assert.assertEquals("1", first.getHeader().getTag("SetUp"));
+            Assert.assertEquals("8/5k2/2N5/8/8/8/8/4K3 b - - 2 2", play(first).toFen());
+            Pgn second = reader.next();
+            Assert.assertEquals("??", second.getHeader().getEvent());
+            Assert.assertEquals(3, second.getMoves().size());
+            Pgn third = reader.next();
+            Assert.assertEquals("After a game with no result", third.getHeader().getEvent());
+            Assert.assertEquals("1/2-1/2", third.getHeader().getResult());
+            Assert.assertEquals(1, third.getMoves().size());
+            Assert.assertNull(reader.next());
+            Assert.assertEquals(3, reader.getGameNumber());
+        }
+    }
+
+    @Test
+    public void testReadsZeroCastling() throws IOException {
+        String text = "[SetUp \"1\"]\n[FEN \"r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 4\"]\n\n4. 0-0 0-0-0 5.Kg2 *\n\n"
+                + "[SetUp \"1\"]\n[FEN \"r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 4\"]\n\n4.0-0-0 4...0-0 *\n";
+        try (PgnReader reader = reader(text)) {
+            Assert.assertEquals("2kr3r/8/8/8/8/8/6K1/R4R2 b - - 3 5", play(reader.next()).toFen());
+            Assert.assertEquals("r4rk1/8/8/8/8/8/8/2KR3R w - - 2 5", play(reader.next()).toFen());
+        }
+    }
+
+    @Test
+    public void testSkipsBadGame() throws IOException {
+        String text = "[Event \"Bad\"]\n\n1. e4 e5 2. Ke3 Nc6 {a comment} 3. Nf3 1-0\n\n"
+                + "[Event \"Good\"]\n\n1. d4 d5 0-1\n";
+        try (PgnReader reader = reader(text)) {
+            try {
+                reader.next();
+                Assert.fail("Read an illegal move");
+            } catch (IllegalArgumentException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("Game 1"));
+            }
+            Pgn good = reader.next();
+            Assert.assertEquals("Good", good.getHeader().getEvent());
+            Assert.assertEquals(2, good.getMoves().size());
+        }
+    }
+
+    @Test
+    public void testReadsAcrossBufferRefills() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append(OPERA_GAME).append('\n');
+        }
+        try (PgnReader reader = reader(text.toString())) {
+            reader.setResolveMoves(false);
+            int games = 0;
+            Pgn pgn;
+            while ((pgn = reader.next()) != null) {
+                Assert.assertNull(pgn.getMoves());
+                Assert.assertEquals("C41", pgn.getHeader().getTag("ECO"));
+                games++;
+            }
+            Assert.assertEquals(200, games);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.zacharygriggs.pgn;
+
+import com.github.zacharygriggs.chess.core.ChessMove;
+import com.github.zacharygriggs.chess.core.ChessPosition;
+import com.github.zacharygriggs.chess.core.Fen;
+import com.github.zacharygriggs.chess.core.San;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class PgnWriterTest {
+
+    private static Pgn game(ChessPosition start, String... sans) {
+        List<ChessMove> moves = new ArrayList<>();
+        ChessPosition position = start;
+        for (String san : sans) {
+            ChessMove move = San.parse(position, san);
+            moves.add(move);
+            position = position.positionAfterMove(move);
+            position.updateAllPieces();
+        }
+        Pgn pgn = new Pgn();
+        pgn.setHeader(new PgnHeader());
+        pgn.setStartingPosition(start);
+        pgn.setMoves(moves);
+        return pgn;
+    }
+
+    private static String write(Pgn... games) throws IOException {
+        StringWriter text = new StringWriter();
+        try (PgnWriter writer = new PgnWriter(text)) {
+            for (Pgn pgn : games) {
+                writer.write(pgn);
+            }
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testWritesTagsMovesAndComments() throws IOException {
+        Pgn pgn = game(ChessPosition.startingPosition(), "f3", "e5", "g4", "Qh4");
+        pgn.getHeader().setEvent("Blitz \"Arena\"");
+        pgn.getHeader().setResult("0-1");
+        pgn.getHeader().setTag("WhiteElo", "1500");
+        pgn.setClocks(Arrays.asList(180, 179, 175, 178));
+        pgn.setEvals(Arrays.asList(-35, 5));
+        Assert.assertEquals("[Event \"Blitz \\\"Arena\\\"\"]\n"
+                + "[Site \"??\"]\n[Date \"??\"]\n[Round \"??\"]\n[White \"??\"]\n[Black \"??\"]\n"
+                + "[Result \"0-1\"]\n[WhiteElo \"1500\"]\n\n"
+                + "1. f3 {[%eval -0.35] [%clk 0:03:00]} 1... e5 {[%eval 0.05] [%clk 0:02:59]}\n"
+                + "2. g4 {[%clk 0:02:55]} 2... Qh4# {[%clk 0:02:58]} 0-1\n\n", write(pgn));
+    }
+
+    @Test
+    public void testWritesSetUpPositions() throws IOException {
+        String fen = "4k3/8/8/8/8/8/4P3/4K3 b - - 0 12";
+        Pgn pgn = game(Fen.parse(fen), "Kd7", "e4");
+        Assert.assertTrue(write(pgn).contains("[Result \"*\"]\n"));
+        Assert.assertTrue(write(pgn).endsWith("[SetUp \"1\"]\n[FEN \"" + fen + "\"]\n\n12... Kd7 13. e4 *\n\n"));
+    }
+
+    @Test
+    public void testMovetextKeepsLineComments() throws IOException {
+        String text = "[Result \"*\"]\n\n1. e4 ; best by test\ne5 {a; b} 2. Nf3\n% escaped 3. d4\nNc6 *\n";
+        Pgn pgn;
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+            reader.setResolveMoves(false);
+            pgn = reader.next();
+        }
+        String written = write(pgn);
+        Assert.assertTrue(written, written.endsWith("\n\n1. e4 ; best by test\ne5 {a; b} 2. Nf3\n% escaped 3. d4\nNc6 *\n\n"));
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(written.getBytes(StandardCharsets.UTF_8)))) {
+            Assert.assertEquals(game(ChessPosition.startingPosition(), "e4", "e5", "Nf3", "Nc6").getMoves(),
+                    reader.next().getMoves());
+        }
+    }
+
+    @Test
+    public void testWrappedGamesReadBack() throws IOException {
+        Random random = new Random(9);
+        List<Pgn> games = new ArrayList<>();
+        for (int g = 0; g < 5; g++) {
+            ChessPosition position = ChessPosition.startingPosition();
+            List<ChessMove> moves = new ArrayList<>();
+            for (int ply = 0; ply < 60; ply++) {
+                List<ChessMove> legal = position.findLegalMoves(position.getSideToMove());
+                if (legal.isEmpty()) {
+                    break;
+                }
+                ChessMove move = legal.get(random.nextInt(legal.size()));
+                moves.add(move);
+                position = position.positionAfterMove(move);
+                position.updateAllPieces();
+            }
+            Pgn pgn = new Pgn();
+            pgn.setHeader(new PgnHeader());
+            pgn.setStartingPosition(ChessPosition.startingPosition());
+            pgn.setMoves(moves);
+            games.add(pgn);
+        }
+        String text = write(games.toArray(new Pgn[0]));
+        for (String line : text.split("\n")) {
+            Assert.assertTrue(line, line.length() <= PgnWriter.LINE_LENGTH);
+        }
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+            for (Pgn pgn : games) {
+                Assert.assertEquals(pgn.getMoves(), reader.next().getMoves());
+            }
+            Assert.assertNull(reader.next());
+        }
+    }
+}